@@ -0,0 +1,249 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.distributed.jgroups;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.distributed.Command;
+import net.sf.hajdbc.distributed.Member;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvocationEventImpl;
+import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.durability.InvokerEventImpl;
+import net.sf.hajdbc.durability.InvokerResultImpl;
+import net.sf.hajdbc.lock.distributed.LockType;
+import net.sf.hajdbc.lock.distributed.MemberAcquireLockCommand;
+import net.sf.hajdbc.lock.distributed.RemoteLockDescriptor;
+import net.sf.hajdbc.state.distributed.InvokerCommand;
+import net.sf.hajdbc.state.distributed.PreInvocationCommand;
+import net.sf.hajdbc.state.distributed.RemoteInvocationDescriptor;
+import net.sf.hajdbc.state.distributed.RemoteInvokerDescriptor;
+import net.sf.hajdbc.state.health.HeartBeatCommand;
+import net.sf.hajdbc.state.health.HostCommand;
+import net.sf.hajdbc.util.Objects;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the time to write and read the payload of the most frequently dispatched commands, via Java serialization versus {@link CommandMarshaller}.
+ * Run via <code>gradle jmh -Pjmh.includes=CommandMarshallerBenchmark</code>, or via {@link #main(String[])}, which also prints the bytes per message of each command type.
+ * The descriptors are stand-ins for those of the lock and state managers, so the Java serialized sizes differ slightly from those on the wire.
+ * @author Paul Ferraro
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandMarshallerBenchmark
+{
+	static final String[] COMMANDS = { "MemberAcquireLockCommand", "PreInvocationCommand", "InvokerCommand", "HeartBeatCommand", "HostCommand" };
+	
+	@Param({ "MemberAcquireLockCommand", "PreInvocationCommand", "InvokerCommand", "HeartBeatCommand", "HostCommand" })
+	String command;
+	
+	/**
+	 * Indicates whether to use {@link CommandMarshaller}, or plain Java serialization.
+	 */
+	@Param({ "false", "true" })
+	boolean compact;
+	
+	private final CommandMarshaller marshaller = new CommandMarshaller();
+	private Command<?, ?> target;
+	private byte[] payload;
+	
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		this.target = createCommand(this.command);
+		this.payload = this.marshal();
+	}
+	
+	@Benchmark
+	public byte[] marshal()
+	{
+		return this.compact ? this.marshaller.marshal(this.target) : Objects.serialize(this.target);
+	}
+	
+	@Benchmark
+	public Object unmarshal()
+	{
+		return this.compact ? this.marshaller.unmarshal(this.payload, 0, this.payload.length) : Objects.deserialize(this.payload);
+	}
+	
+	static Command<?, ?> createCommand(String name)
+	{
+		Member member = new AddressMember(org.jgroups.util.UUID.randomUUID());
+		
+		switch (name)
+		{
+			case "MemberAcquireLockCommand":
+			{
+				return new MemberAcquireLockCommand(new LockDescriptor("db1", LockType.WRITE, member));
+			}
+			case "PreInvocationCommand":
+			{
+				return new PreInvocationCommand<Void, Database<Void>>(new InvocationDescriptor(new InvocationEventImpl(UUID.randomUUID(), Durability.Phase.COMMIT, ExceptionType.SQL), member));
+			}
+			case "InvokerCommand":
+			{
+				InvokerEvent event = new InvokerEventImpl(UUID.randomUUID(), Durability.Phase.COMMIT, "db1");
+				event.setResult(new InvokerResultImpl(Integer.valueOf(1)));
+				return new InvokerCommand<Void, Database<Void>>(new InvokerDescriptor(event, member));
+			}
+			case "HeartBeatCommand":
+			{
+				return new HeartBeatCommand<Void, Database<Void>>().preSend();
+			}
+			case "HostCommand":
+			{
+				HostCommand<Void, Database<Void>> command = new HostCommand<Void, Database<Void>>();
+				command.setHost(member);
+				command.setToken(System.currentTimeMillis());
+				return command;
+			}
+			default:
+			{
+				throw new IllegalArgumentException(name);
+			}
+		}
+	}
+	
+	/**
+	 * Prints the bytes per message of each command type, then runs this benchmark.
+	 * @param args ignored
+	 * @throws Exception if the benchmark failed to run
+	 */
+	public static void main(String... args) throws Exception
+	{
+		CommandMarshaller marshaller = new CommandMarshaller();
+		
+		for (String name: COMMANDS)
+		{
+			Command<?, ?> command = createCommand(name);
+			
+			System.out.println(String.format("%s: %d bytes/message serialized, %d bytes/message compact", name, Objects.serialize(command).length, marshaller.marshal(command).length));
+		}
+		
+		new Runner(new OptionsBuilder().include(CommandMarshallerBenchmark.class.getName()).build()).run();
+	}
+	
+	private static class LockDescriptor implements RemoteLockDescriptor
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private final String id;
+		private final LockType type;
+		private final Member member;
+		
+		LockDescriptor(String id, LockType type, Member member)
+		{
+			this.id = id;
+			this.type = type;
+			this.member = member;
+		}
+
+		@Override
+		public String getId()
+		{
+			return this.id;
+		}
+
+		@Override
+		public LockType getType()
+		{
+			return this.type;
+		}
+
+		@Override
+		public Member getMember()
+		{
+			return this.member;
+		}
+	}
+	
+	private static class InvocationDescriptor implements RemoteInvocationDescriptor
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private final InvocationEvent event;
+		private final Member member;
+		
+		InvocationDescriptor(InvocationEvent event, Member member)
+		{
+			this.event = event;
+			this.member = member;
+		}
+
+		@Override
+		public InvocationEvent getEvent()
+		{
+			return this.event;
+		}
+
+		@Override
+		public Member getMember()
+		{
+			return this.member;
+		}
+	}
+	
+	private static class InvokerDescriptor implements RemoteInvokerDescriptor
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private final InvokerEvent event;
+		private final Member member;
+		
+		InvokerDescriptor(InvokerEvent event, Member member)
+		{
+			this.event = event;
+			this.member = member;
+		}
+
+		@Override
+		public InvokerEvent getEvent()
+		{
+			return this.event;
+		}
+
+		@Override
+		public Member getMember()
+		{
+			return this.member;
+		}
+	}
+}
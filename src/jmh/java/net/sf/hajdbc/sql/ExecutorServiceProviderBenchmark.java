@@ -0,0 +1,160 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sql;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.hajdbc.ExecutorServiceProvider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares write fan-out throughput of the executor service providers, with hundreds of concurrent callers each writing to 3 blocking H2 databases.
+ * Each write sleeps inside the database to emulate the network round trip to a remote replica.
+ * @author Paul Ferraro
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(256)
+public class ExecutorServiceProviderBenchmark
+{
+	static final int DATABASES = 3;
+	static final String URL_FORMAT = "jdbc:h2:mem:executor-benchmark-%d;DB_CLOSE_DELAY=-1";
+
+	@State(Scope.Benchmark)
+	public static class Cluster
+	{
+		@Param({ "default", "virtual" })
+		String provider;
+
+		ExecutorServiceProvider executorProvider;
+		ExecutorService executor;
+		final AtomicInteger callers = new AtomicInteger();
+
+		@Setup(Level.Trial)
+		public void setUp() throws SQLException
+		{
+			this.executorProvider = "virtual".equals(this.provider) ? new VirtualThreadExecutorServiceProvider() : new DefaultExecutorServiceProvider();
+			this.executor = this.executorProvider.getExecutor(Executors.defaultThreadFactory());
+			
+			for (int i = 0; i < DATABASES; ++i)
+			{
+				try (Connection connection = DriverManager.getConnection(String.format(URL_FORMAT, i)))
+				{
+					try (Statement statement = connection.createStatement())
+					{
+						statement.execute("CREATE ALIAS IF NOT EXISTS SLEEP FOR 'java.lang.Thread.sleep'");
+						statement.execute("CREATE TABLE IF NOT EXISTS counter (id INT PRIMARY KEY, value BIGINT)");
+					}
+				}
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown()
+		{
+			this.executorProvider.release(this.executor);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Caller
+	{
+		final List<Callable<Integer>> writes = new ArrayList<Callable<Integer>>(DATABASES);
+		final List<Connection> connections = new ArrayList<Connection>(DATABASES);
+
+		@Setup(Level.Trial)
+		public void setUp(Cluster cluster) throws SQLException
+		{
+			int id = cluster.callers.incrementAndGet();
+			
+			for (int i = 0; i < DATABASES; ++i)
+			{
+				Connection connection = DriverManager.getConnection(String.format(URL_FORMAT, i));
+				this.connections.add(connection);
+				
+				try (Statement statement = connection.createStatement())
+				{
+					statement.executeUpdate(String.format("MERGE INTO counter KEY (id) VALUES (%d, 0)", id));
+				}
+				
+				final PreparedStatement sleep = connection.prepareStatement("CALL SLEEP(1)");
+				final PreparedStatement update = connection.prepareStatement("UPDATE counter SET value = value + 1 WHERE id = ?");
+				update.setInt(1, id);
+				
+				this.writes.add(new Callable<Integer>()
+				{
+					@Override
+					public Integer call() throws SQLException
+					{
+						sleep.execute();
+						return update.executeUpdate();
+					}
+				});
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws SQLException
+		{
+			for (Connection connection: this.connections)
+			{
+				connection.close();
+			}
+		}
+	}
+
+	@Benchmark
+	public int write(Cluster cluster, Caller caller) throws Exception
+	{
+		int count = 0;
+		for (Future<Integer> future: cluster.executor.invokeAll(caller.writes))
+		{
+			count += future.get();
+		}
+		return count;
+	}
+}
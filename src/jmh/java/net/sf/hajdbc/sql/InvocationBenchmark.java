@@ -0,0 +1,168 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sql;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.hajdbc.SimpleDatabaseClusterConfigurationFactory;
+import net.sf.hajdbc.dialect.h2.H2DialectFactory;
+import net.sf.hajdbc.state.StateManager;
+import net.sf.hajdbc.state.simple.SimpleStateManagerFactory;
+import net.sf.hajdbc.util.reflect.Methods;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the per call overhead of the proxy for {@link PreparedStatement#setInt(int, int)} and {@link PreparedStatement#executeUpdate()}, relative to a plain H2 statement.
+ * The dispatch benchmarks isolate the cost of a reflective {@link Method#invoke(Object, Object...)} versus {@link Methods#invoke(Method, net.sf.hajdbc.ExceptionFactory, Object, Object...)}.
+ * @author Paul Ferraro
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class InvocationBenchmark
+{
+	static final String URL_FORMAT = "jdbc:h2:mem:invocation-benchmark-%d;DB_CLOSE_DELAY=-1";
+	static final Method SET_INT = Methods.getMethod(PreparedStatement.class, "setInt", Integer.TYPE, Integer.TYPE);
+
+	/**
+	 * Number of databases in the cluster, or 0 to bypass the proxy.
+	 */
+	@Param({ "0", "1", "2" })
+	int databases;
+
+	private DataSource dataSource;
+	private Connection connection;
+	private PreparedStatement statement;
+	private PreparedStatement target;
+	private final SQLExceptionFactory exceptionFactory = new SQLExceptionFactory();
+	private int value;
+
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException
+	{
+		System.setProperty(StateManager.CLEAR_LOCAL_STATE, Boolean.toString(true));
+
+		List<DataSourceDatabase> databaseList = new ArrayList<DataSourceDatabase>(this.databases);
+
+		for (int i = 0; i < Math.max(this.databases, 1); ++i)
+		{
+			String url = String.format(URL_FORMAT, i);
+			try (Connection connection = DriverManager.getConnection(url))
+			{
+				try (Statement statement = connection.createStatement())
+				{
+					statement.execute("CREATE TABLE IF NOT EXISTS counter (id INT PRIMARY KEY, value INT)");
+					statement.execute("MERGE INTO counter KEY (id) VALUES (1, 0)");
+				}
+			}
+
+			DataSourceDatabase database = new DataSourceDatabase();
+			database.setId("db" + i);
+			database.setLocation("org.h2.jdbcx.JdbcDataSource");
+			database.setProperty("url", url);
+			databaseList.add(database);
+		}
+
+		String sql = "UPDATE counter SET value = ? WHERE id = 1";
+
+		this.target = DriverManager.getConnection(String.format(URL_FORMAT, 0)).prepareStatement(sql);
+
+		if (this.databases > 0)
+		{
+			DataSourceDatabaseClusterConfiguration config = new DataSourceDatabaseClusterConfiguration();
+			config.setDatabases(databaseList.subList(0, this.databases));
+			config.setDialectFactory(new H2DialectFactory());
+			config.setStateManagerFactory(new SimpleStateManagerFactory());
+
+			this.dataSource = new DataSource();
+			this.dataSource.setCluster("invocation-benchmark");
+			this.dataSource.setConfigurationFactory(new SimpleDatabaseClusterConfigurationFactory<javax.sql.DataSource, DataSourceDatabase>(config));
+
+			this.connection = this.dataSource.getConnection();
+			this.statement = this.connection.prepareStatement(sql);
+		}
+		else
+		{
+			this.statement = this.target;
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException
+	{
+		Connection connection = this.target.getConnection();
+		this.target.close();
+		connection.close();
+
+		if (this.dataSource != null)
+		{
+			this.statement.close();
+			this.connection.close();
+			this.dataSource.stop();
+		}
+	}
+
+	@Benchmark
+	public void setInt() throws SQLException
+	{
+		this.statement.setInt(1, this.value++);
+	}
+
+	@Benchmark
+	public int executeUpdate() throws SQLException
+	{
+		this.statement.setInt(1, this.value++);
+		return this.statement.executeUpdate();
+	}
+
+	@Benchmark
+	public Object reflectiveDispatch() throws Exception
+	{
+		return SET_INT.invoke(this.target, 1, this.value++);
+	}
+
+	@Benchmark
+	public Object methodHandleDispatch() throws SQLException
+	{
+		return Methods.invoke(SET_INT, this.exceptionFactory, this.target, 1, this.value++);
+	}
+}
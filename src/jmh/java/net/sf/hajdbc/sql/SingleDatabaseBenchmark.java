@@ -0,0 +1,187 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sql;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.hajdbc.SimpleDatabaseClusterConfigurationFactory;
+import net.sf.hajdbc.dialect.h2.H2DialectFactory;
+import net.sf.hajdbc.state.StateManager;
+import net.sf.hajdbc.state.simple.SimpleStateManagerFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the allocation overhead of the proxy for a single database cluster, i.e. a cluster degraded to one node.
+ * Run via <code>gradle jmh -Pjmh.includes=SingleDatabaseBenchmark -Pjmh.profilers=gc</code>, or via {@link #main(String[])}, which fails if the bytes allocated per operation by the proxy, beyond those allocated by the driver itself, exceed {@link #ALLOCATION_LIMIT}.
+ * The allocations of the invocation strategy itself are asserted by InvokeOnManyInvocationStrategyTest.
+ * The remaining allocations are the invoker, the argument array of the proxied method, the recorded setter invocation, the singleton result map, and for executeUpdate(), the locking and transaction strategies.
+ * @author Paul Ferraro
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SingleDatabaseBenchmark
+{
+	static final String URL = "jdbc:h2:mem:single-database-benchmark;DB_CLOSE_DELAY=-1";
+	static final String SQL = "UPDATE counter SET value = ? WHERE id = 1";
+	// Leaves room for the locking and transaction strategies of executeUpdate()
+	static final double ALLOCATION_LIMIT = 512;
+
+	/**
+	 * Indicates whether to invoke the driver through the proxy, or directly.
+	 */
+	@Param({ "false", "true" })
+	boolean proxy;
+
+	private DataSource dataSource;
+	private Connection connection;
+	private PreparedStatement statement;
+
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException
+	{
+		System.setProperty(StateManager.CLEAR_LOCAL_STATE, Boolean.toString(true));
+
+		try (Connection connection = DriverManager.getConnection(URL))
+		{
+			try (Statement statement = connection.createStatement())
+			{
+				statement.execute("CREATE TABLE IF NOT EXISTS counter (id INT PRIMARY KEY, value INT)");
+				statement.execute("MERGE INTO counter KEY (id) VALUES (1, 0)");
+			}
+		}
+
+		if (this.proxy)
+		{
+			DataSourceDatabase database = new DataSourceDatabase();
+			database.setId("db");
+			database.setLocation("org.h2.jdbcx.JdbcDataSource");
+			database.setProperty("url", URL);
+
+			DataSourceDatabaseClusterConfiguration config = new DataSourceDatabaseClusterConfiguration();
+			config.setDatabases(Collections.singletonList(database));
+			config.setDialectFactory(new H2DialectFactory());
+			config.setStateManagerFactory(new SimpleStateManagerFactory());
+
+			this.dataSource = new DataSource();
+			this.dataSource.setCluster("single-database-benchmark");
+			this.dataSource.setConfigurationFactory(new SimpleDatabaseClusterConfigurationFactory<javax.sql.DataSource, DataSourceDatabase>(config));
+
+			this.connection = this.dataSource.getConnection();
+		}
+		else
+		{
+			this.connection = DriverManager.getConnection(URL);
+		}
+
+		this.statement = this.connection.prepareStatement(SQL);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException
+	{
+		this.statement.close();
+		this.connection.close();
+
+		if (this.dataSource != null)
+		{
+			this.dataSource.stop();
+		}
+	}
+
+	@Benchmark
+	public void setInt() throws SQLException
+	{
+		// Use a cached Integer, so we only measure our own allocations
+		this.statement.setInt(1, 1);
+	}
+
+	@Benchmark
+	public int executeUpdate() throws SQLException
+	{
+		return this.statement.executeUpdate();
+	}
+
+	/**
+	 * Runs this benchmark with the GC profiler, and verifies the allocations of the proxy.
+	 * @param args ignored
+	 * @throws Exception if the benchmark failed to run
+	 */
+	public static void main(String... args) throws Exception
+	{
+		Map<String, Double> direct = new HashMap<String, Double>();
+		Map<String, Double> proxied = new HashMap<String, Double>();
+
+		for (RunResult result: new Runner(new OptionsBuilder().include(SingleDatabaseBenchmark.class.getName()).addProfiler(GCProfiler.class).build()).run())
+		{
+			String benchmark = result.getParams().getBenchmark();
+			Map<String, Double> allocations = Boolean.parseBoolean(result.getParams().getParam("proxy")) ? proxied : direct;
+
+			for (Map.Entry<String, Result> entry: result.getSecondaryResults().entrySet())
+			{
+				// Label is prefixed by a middle dot in older JMH versions
+				if (entry.getKey().endsWith("gc.alloc.rate.norm"))
+				{
+					allocations.put(benchmark, entry.getValue().getScore());
+				}
+			}
+		}
+
+		for (Map.Entry<String, Double> entry: proxied.entrySet())
+		{
+			String benchmark = entry.getKey();
+			double overhead = entry.getValue() - direct.get(benchmark);
+
+			System.out.println(String.format("%s: %.1f bytes/op allocated by proxy", benchmark, overhead));
+
+			if (overhead > ALLOCATION_LIMIT)
+			{
+				throw new IllegalStateException(String.format("%s allocates %.1f bytes/op, exceeding limit of %.1f bytes/op", benchmark, overhead, ALLOCATION_LIMIT));
+			}
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state.sql;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.codec.SimpleCodecFactory;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvocationEventImpl;
+import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.durability.InvokerEventImpl;
+import net.sf.hajdbc.durability.InvokerResultImpl;
+import net.sf.hajdbc.state.StateManager;
+import net.sf.hajdbc.tx.SimpleTransactionIdentifierFactory;
+import net.sf.hajdbc.tx.TransactionIdentifierFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the commit throughput of the durability events of concurrent transactions, persisted by an H2-backed {@link SQLStateManager}, with and without group commit.
+ * Each operation records the durability events of a commit against a two database cluster, as emitted by fine durability.
+ * Run via <code>gradle jmh -Pjmh.includes=DurabilityBenchmark</code>.
+ * @author Paul Ferraro
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class DurabilityBenchmark
+{
+	static final String[] DATABASES = { "db1", "db2" };
+
+	@Param({ "false", "true" })
+	boolean groupCommit;
+
+	private final TransactionIdentifierFactory<Long> txIdFactory = new SimpleTransactionIdentifierFactory();
+	private File directory;
+	private StateManager manager;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception
+	{
+		this.directory = new File(System.getProperty("java.io.tmpdir"), "durability-benchmark-" + System.nanoTime());
+
+		SQLStateManagerFactory factory = new SQLStateManagerFactory();
+		// Use a file-based database, so that each commit is actually persisted
+		factory.setUrlPattern(String.format("jdbc:h2:%s/{0}", this.directory.getAbsolutePath().replace('\\', '/')));
+		factory.setGroupCommit(this.groupCommit);
+
+		this.manager = factory.createStateManager(this.createCluster());
+		this.manager.start();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		this.manager.stop();
+
+		File[] files = this.directory.listFiles();
+		if (files != null)
+		{
+			for (File file: files)
+			{
+				file.delete();
+			}
+		}
+		this.directory.delete();
+	}
+
+	@Benchmark
+	public void commit()
+	{
+		Long txId = this.txIdFactory.createTransactionIdentifier();
+		InvocationEvent invocation = new InvocationEventImpl(txId, Durability.Phase.COMMIT, ExceptionType.SQL);
+
+		this.manager.beforeInvocation(invocation);
+
+		for (String database: DATABASES)
+		{
+			InvokerEvent invoker = new InvokerEventImpl(txId, Durability.Phase.COMMIT, database);
+			this.manager.beforeInvoker(invoker);
+			invoker.setResult(new InvokerResultImpl((Object) null));
+			this.manager.afterInvoker(invoker);
+		}
+
+		this.manager.afterInvocation(invocation);
+	}
+
+	// The state manager only needs the identifier, decoder and transaction identifier factory of its cluster
+	@SuppressWarnings("unchecked")
+	private DatabaseCluster<Object, ?> createCluster()
+	{
+		final SimpleCodecFactory decoder = new SimpleCodecFactory();
+		InvocationHandler handler = new InvocationHandler()
+		{
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args)
+			{
+				String name = method.getName();
+				if (name.equals("getId")) return "durability-benchmark";
+				if (name.equals("getDecoder")) return decoder;
+				if (name.equals("getTransactionIdentifierFactory")) return DurabilityBenchmark.this.txIdFactory;
+				if (name.equals("toString")) return "durability-benchmark";
+				return null;
+			}
+		};
+		return (DatabaseCluster<Object, ?>) Proxy.newProxyInstance(DatabaseCluster.class.getClassLoader(), new Class<?>[] { DatabaseCluster.class }, handler);
+	}
+}
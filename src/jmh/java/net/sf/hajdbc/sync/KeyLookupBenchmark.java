@@ -0,0 +1,199 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of fetching the columns of the changed rows of a versioned table, as done by {@link DifferentialSynchronizationStrategy} when a version pattern is specified.
+ * Compares a query per changed key, as previously executed per inserted or updated row, against a query per batch of keys via {@link KeyLookup}.
+ * Both iterate over the same ordered stream of changed keys, i.e. every 10th row of an H2 table with a version column.
+ * Run via <code>gradle jmh -Pjmh.includes=KeyLookupBenchmark</code>.
+ * @author Paul Ferraro
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyLookupBenchmark
+{
+	static final String URL = "jdbc:h2:mem:key-lookup-benchmark;DB_CLOSE_DELAY=-1";
+	static final int ROWS = 100000;
+	static final String CHANGED_KEYS_SQL = "SELECT id, version FROM versioned WHERE MOD(id, 10) = 0 ORDER BY id";
+
+	/**
+	 * Maximum number of keys per query of the batched lookup.
+	 */
+	@Param({ "10", "100", "1000" })
+	int lookupSize;
+
+	private Connection connection;
+	private PreparedStatement keyStatement;
+	private PreparedStatement pointStatement;
+
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException
+	{
+		this.connection = DriverManager.getConnection(URL);
+
+		try (Statement statement = this.connection.createStatement())
+		{
+			statement.execute("CREATE TABLE IF NOT EXISTS versioned (id INT PRIMARY KEY, version TIMESTAMP NOT NULL, name VARCHAR(64), amount DECIMAL(10, 2))");
+			statement.execute("DELETE FROM versioned");
+		}
+
+		try (PreparedStatement statement = this.connection.prepareStatement("INSERT INTO versioned (id, version, name, amount) VALUES (?, CURRENT_TIMESTAMP, ?, ?)"))
+		{
+			for (int i = 0; i < ROWS; ++i)
+			{
+				statement.setInt(1, i);
+				statement.setString(2, "name-" + i);
+				statement.setInt(3, i);
+				statement.addBatch();
+
+				if ((i % 1000) == 999)
+				{
+					statement.executeBatch();
+				}
+			}
+			statement.executeBatch();
+		}
+
+		this.keyStatement = this.connection.prepareStatement(CHANGED_KEYS_SQL);
+		this.pointStatement = this.connection.prepareStatement("SELECT version, name, amount FROM versioned WHERE id = ?");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException
+	{
+		this.pointStatement.close();
+		this.keyStatement.close();
+
+		try (Statement statement = this.connection.createStatement())
+		{
+			statement.execute("DROP TABLE versioned");
+		}
+
+		this.connection.close();
+	}
+
+	@Benchmark
+	public long pointLookup() throws SQLException
+	{
+		long result = 0;
+
+		try (ResultSet keys = this.keyStatement.executeQuery())
+		{
+			while (keys.next())
+			{
+				this.pointStatement.setObject(1, keys.getObject(1), Types.INTEGER);
+
+				try (ResultSet resultSet = this.pointStatement.executeQuery())
+				{
+					result += consume(resultSet, 1);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	@Benchmark
+	public long batchedLookup() throws SQLException
+	{
+		long result = 0;
+		KeyLookup lookup = new KeyLookup(this.connection, "versioned", Collections.singletonList("id"), new int[] { Types.INTEGER }, Arrays.asList("version", "name", "amount"), this.lookupSize);
+
+		try (ResultSet keys = this.keyStatement.executeQuery())
+		{
+			while (keys.next())
+			{
+				if (lookup.add(keys))
+				{
+					result += fetch(lookup);
+				}
+			}
+
+			if (!lookup.isEmpty())
+			{
+				result += fetch(lookup);
+			}
+		}
+		finally
+		{
+			lookup.close();
+		}
+
+		return result;
+	}
+
+	private static long fetch(KeyLookup lookup) throws SQLException
+	{
+		ResultSet resultSet = lookup.fetch();
+
+		try
+		{
+			return consume(resultSet, 2);
+		}
+		finally
+		{
+			lookup.close(resultSet);
+		}
+	}
+
+	private static long consume(ResultSet resultSet, int start) throws SQLException
+	{
+		long result = 0;
+
+		while (resultSet.next())
+		{
+			for (int i = start; i < start + 3; ++i)
+			{
+				Object value = resultSet.getObject(i);
+				result += (value != null) ? value.hashCode() : 0;
+			}
+		}
+
+		return result;
+	}
+}
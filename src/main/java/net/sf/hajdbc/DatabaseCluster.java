@@ -23,6 +23,7 @@ import net.sf.hajdbc.codec.Decoder;
 import net.sf.hajdbc.dialect.Dialect;
 import net.sf.hajdbc.durability.Durability;
 import net.sf.hajdbc.io.InputSinkStrategy;
+import net.sf.hajdbc.journal.Journal;
 import net.sf.hajdbc.lock.LockManager;
 import net.sf.hajdbc.logging.Level;
 import net.sf.hajdbc.state.StateManager;
@@ -95,6 +96,30 @@ public interface DatabaseCluster<Z, D extends Database<Z>> extends Lifecycle
 	TransactionMode getTransactionMode();
 	
 	ExecutorService getExecutor();
+
+	/**
+	 * Returns the number of backup databases, in addition to the primary, that must complete a write before it returns to the caller.
+	 * @return a write quorum, or {@link Integer#MAX_VALUE} if writes wait for all databases
+	 */
+	int getWriteQuorum();
+	
+	/**
+	 * Returns the comparator used to detect divergent results across databases.
+	 * @return a result comparator
+	 */
+	ResultComparator getResultComparator();
+	
+	/**
+	 * Returns the number of elements of a result digested by the result comparator, beyond which results are only spot-checked.
+	 * @return a sample size, or 0 if results are digested in full
+	 */
+	int getResultSampleSize();
+	
+	/**
+	 * Returns the journal of the writes missed by inactive databases.
+	 * @return a journal, or null if writes are not journaled
+	 */
+	Journal getJournal();
 	
 	/**
 	 * Returns a dialect capable of returning database vendor specific values.
@@ -135,6 +135,31 @@ public interface DatabaseClusterConfiguration<Z, D extends Database<Z>> extends
 	
 	boolean isEmptyClusterAllowed();
 
+	/**
+	 * Returns the number of backup databases, in addition to the primary, that must complete a write before it returns to the caller.
+	 * Writes to the remaining databases complete asynchronously.
+	 * @return a write quorum, or {@link Integer#MAX_VALUE} if writes wait for all databases
+	 */
+	int getWriteQuorum();
+
+	/**
+	 * Returns the comparator used to detect divergent results across databases.
+	 * @return a result comparator
+	 */
+	ResultComparator getResultComparator();
+
+	/**
+	 * Returns the number of elements of a result digested by the result comparator, beyond which results are only spot-checked.
+	 * @return a sample size, or 0 if results are digested in full
+	 */
+	int getResultSampleSize();
+
+	/**
+	 * Returns the maximum number of writes journaled while any database is inactive, such that it can be synchronized by replaying the writes it missed.
+	 * @return a number of writes, or 0 if writes are not journaled
+	 */
+	int getJournalCapacity();
+
 	DatabaseFactory<Z, D> getDatabaseFactory();
 
 	InputSinkProvider getInputSinkProvider();
@@ -23,8 +23,19 @@ import java.util.concurrent.ThreadFactory;
 /**
  * @author Paul Ferraro
  */
-public interface ExecutorServiceProvider
+public interface ExecutorServiceProvider extends Identifiable
 {
+	/**
+	 * Identifies this provider in the executor attribute of a cluster configuration.
+	 * Defaults to the class name, so that existing providers need not implement this method.
+	 * @return a unique identifier
+	 */
+	@Override
+	default String getId()
+	{
+		return this.getClass().getName();
+	}
+	
 	/**
 	 * Returns an executor to use for parallel statement execution
 	 * @param threadFactory factory for creating threads
@@ -0,0 +1,53 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc;
+
+import java.sql.SQLException;
+
+/**
+ * Detects divergent results of the same invocation across databases.
+ * Digests are computed by the thread that invoked the database, so that only digests need be compared by the calling thread.
+ * @author Paul Ferraro
+ */
+public interface ResultComparator extends Identifiable
+{
+	/**
+	 * Indicates whether results of the specified type should be digested by this comparator.
+	 * Results of unsupported types are compared in full.
+	 * @param resultClass the return type of an invoked method
+	 * @return true, if results of this type are digested, false otherwise
+	 */
+	boolean supports(Class<?> resultClass);
+
+	/**
+	 * Computes the digest of the specified result.
+	 * @param result an invocation result
+	 * @param sampleSize the number of elements of a result to digest, or 0, to digest the entire result
+	 * @return a digest of the result
+	 * @throws SQLException if the result could not be read
+	 */
+	Object digest(Object result, int sampleSize) throws SQLException;
+
+	/**
+	 * Indicates whether the digest of a backup database differs from the digest of the primary database.
+	 * @param primaryDigest the digest of the primary database result
+	 * @param backupDigest the digest of a backup database result
+	 * @return true, if the digests differ, false otherwise
+	 */
+	boolean differs(Object primaryDigest, Object backupDigest);
+}
@@ -0,0 +1,39 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc;
+
+import java.io.OutputStream;
+
+import net.sf.hajdbc.codec.Decoder;
+import net.sf.hajdbc.sync.SynchronizationContext;
+
+/**
+ * Dump/restore support of a dialect whose dump can be written directly into a restore, without an intermediate file.
+ * @author Paul Ferraro
+ */
+public interface StreamingDumpRestoreSupport extends DumpRestoreSupport
+{
+	<Z, D extends Database<Z>> void dump(SynchronizationContext<Z,D> context, D database, Decoder decoder, OutputStream output, boolean dataOnly) throws Exception;
+
+	/**
+	 * Starts a restore of the specified database, which reads the dump written to the returned stream.
+	 * Closing the returned stream completes the restore, and fails if the restore did not complete successfully.
+	 * @return a stream to which a dump is written
+	 */
+	<Z, D extends Database<Z>> OutputStream restore(SynchronizationContext<Z,D> context, D database, Decoder decoder, boolean dataOnly) throws Exception;
+}
@@ -38,4 +38,15 @@ public interface SynchronizationListener extends EventListener
 	 * @param event identifies the database to be synchronized.
 	 */
 	void afterSynchronization(DatabaseEvent event);
+	
+	/**
+	 * Triggered as synchronization progresses, i.e. whenever a table completes.
+	 * May be triggered concurrently, if tables are synchronized concurrently.
+	 * @param event identifies the database to be synchronized.
+	 * @param progress the live progress of the synchronization
+	 */
+	default void synchronizationProgress(DatabaseEvent event, SynchronizationProgress progress)
+	{
+		// Do nothing
+	}
 }
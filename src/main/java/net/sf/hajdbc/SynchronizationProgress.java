@@ -0,0 +1,122 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc;
+
+import java.util.Map;
+
+/**
+ * Live progress of the synchronization of a database, for tables synchronized row by row.
+ * Estimates are derived from the row count statistics of the source database, and are therefore approximate.
+ * @author Paul Ferraro
+ */
+public interface SynchronizationProgress
+{
+	/**
+	 * Returns the time elapsed since synchronization started.
+	 * @return a duration in milliseconds
+	 */
+	long getElapsedTime();
+	
+	/**
+	 * Returns the estimated number of rows to scan, where tables that completed count their scanned rows.
+	 * @return a number of rows
+	 */
+	long getEstimatedRows();
+	
+	/**
+	 * Returns the number of source rows scanned thus far.
+	 * @return a number of rows
+	 */
+	long getScannedRows();
+	
+	/**
+	 * Returns the number of rows inserted into the target database thus far.
+	 * @return a number of rows
+	 */
+	long getInsertedRows();
+	
+	/**
+	 * Returns the number of rows updated in the target database thus far.
+	 * @return a number of rows
+	 */
+	long getUpdatedRows();
+	
+	/**
+	 * Returns the number of rows deleted from the target database thus far.
+	 * @return a number of rows
+	 */
+	long getDeletedRows();
+	
+	/**
+	 * Returns the estimated number of bytes written to the target database thus far.
+	 * @return a number of bytes
+	 */
+	long getBytes();
+	
+	/**
+	 * Returns the average rate at which source rows were scanned.
+	 * @return a number of rows per second
+	 */
+	double getRowsPerSecond();
+	
+	/**
+	 * Returns the estimated time until all rows are scanned, based on the average scan rate.
+	 * @return a duration in milliseconds, or -1 if unknown
+	 */
+	long getEstimatedRemainingTime();
+	
+	/**
+	 * Returns the progress of each table.
+	 * @return a map of table progress, keyed by qualified table name
+	 */
+	Map<String, Table> getTables();
+	
+	/**
+	 * Live progress of the synchronization of a single table.
+	 */
+	interface Table
+	{
+		/**
+		 * Returns the estimated number of rows of this table.
+		 * @return a number of rows, or -1 if unknown
+		 */
+		long getEstimatedRows();
+		
+		long getScannedRows();
+		
+		long getInsertedRows();
+		
+		long getUpdatedRows();
+		
+		long getDeletedRows();
+		
+		long getBytes();
+		
+		/**
+		 * Returns the average rate at which source rows of this table were scanned, since synchronization of this table started.
+		 * @return a number of rows per second
+		 */
+		double getRowsPerSecond();
+		
+		/**
+		 * Indicates whether synchronization of this table completed.
+		 * @return true, if this table completed, false otherwise
+		 */
+		boolean isComplete();
+	}
+}
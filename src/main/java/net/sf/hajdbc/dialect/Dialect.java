@@ -21,6 +21,7 @@ import java.io.File;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -61,6 +62,30 @@ public interface Dialect
 	 */
 	String getTruncateTableSQL(TableProperties properties) throws SQLException;
 	
+	/**
+	 * Returns an aggregate SQL expression that computes an order-independent checksum of the specified columns over the rows of a query.
+	 * By default, checksums are not supported.
+	 * @param columns the columns of a table
+	 * @return an aggregate SQL expression, or null if this dialect cannot compute checksums
+	 */
+	default String getChecksumFunction(List<String> columns)
+	{
+		return null;
+	}
+	
+	/**
+	 * Returns an aggregate SQL expression that computes an order-independent checksum of all columns of the specified table over the rows of a query.
+	 * Unlike {@link #getChecksumFunction(List)}, this may take the types of the columns into account.
+	 * By default, delegates to {@link #getChecksumFunction(List)} using the columns of the table.
+	 * @param table table meta data
+	 * @return an aggregate SQL expression, or null if this dialect cannot compute checksums for this table
+	 * @throws SQLException if there was an error fetching meta data.
+	 */
+	default String getChecksumFunction(TableProperties table) throws SQLException
+	{
+		return this.getChecksumFunction(new ArrayList<String>(table.getColumns()));
+	}
+	
 	/**
 	 * Returns a SQL statement used to create a foreign key constraint.
 	 * @param constraint foreign key constraint meta data
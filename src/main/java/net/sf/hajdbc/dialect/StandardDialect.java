@@ -196,6 +196,24 @@ public class StandardDialect implements Dialect, SequenceSupport, IdentityColumn
 		return "DELETE FROM {0}";
 	}
 
+	/**
+	 * @see net.sf.hajdbc.dialect.Dialect#getChecksumFunction(java.util.List)
+	 */
+	@Override
+	public String getChecksumFunction(List<String> columns)
+	{
+		return null;
+	}
+
+	/**
+	 * @see net.sf.hajdbc.dialect.Dialect#getChecksumFunction(net.sf.hajdbc.TableProperties)
+	 */
+	@Override
+	public String getChecksumFunction(TableProperties table) throws SQLException
+	{
+		return this.getChecksumFunction(new ArrayList<String>(table.getColumns()));
+	}
+
 	/**
 	 * @see net.sf.hajdbc.dialect.Dialect#getCreateForeignKeyConstraintSQL(net.sf.hajdbc.ForeignKeyConstraint)
 	 */
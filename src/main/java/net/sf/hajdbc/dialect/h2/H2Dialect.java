@@ -29,7 +29,12 @@ import net.sf.hajdbc.sync.SynchronizationContext;
 import net.sf.hajdbc.util.Resources;
 import net.sf.hajdbc.util.StopWatch;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.*;
 
@@ -63,6 +68,21 @@ public class H2Dialect extends StandardDialect
 		return "CALL {0}";
 	}
 
+	/**
+	 * Sums the ORA_HASH of the concatenated columns of each row, each followed by a null indicator.
+	 * @see net.sf.hajdbc.dialect.StandardDialect#getChecksumFunction(java.util.List)
+	 */
+	@Override
+	public String getChecksumFunction(List<String> columns)
+	{
+		StringBuilder builder = new StringBuilder();
+		for (String column: columns)
+		{
+			builder.append(", ").append(column).append(", ").append(column).append(" IS NULL");
+		}
+		return String.format("SUM(ORA_HASH(CONCAT_WS('|'%s)))", builder);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.dialect.StandardDialect#getSequenceSupport()
@@ -177,9 +197,17 @@ public class H2Dialect extends StandardDialect
 	public <Z, D extends Database<Z>> void dump(SynchronizationContext<Z,D> context, D database, Decoder decoder, File file, boolean dataOnly) throws Exception {
 		final String password = database.decodePassword(decoder);
 		StopWatch stopWatch = StopWatch.createStarted();
-		try(Connection connection = database.connect(database.getConnectionSource(), password))
+		// SCRIPT TO would write the file on the host of the source database, so read the script over the connection instead
+		try(Connection connection = database.connect(database.getConnectionSource(), password);
+			Statement statement = connection.createStatement();
+			ResultSet resultSet = statement.executeQuery("SCRIPT");
+			Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)))
 		{
-			executeSql(connection, "SCRIPT TO  '" + file.getPath() + "'");
+			while (resultSet.next())
+			{
+				writer.write(resultSet.getString(1));
+				writer.write('\n');
+			}
 		}
 		stopWatch.stop();
 		logger.log(Level.INFO,"h2 dump time={0} path={1}", stopWatch.toString(), file.getPath());
@@ -188,12 +216,9 @@ public class H2Dialect extends StandardDialect
 	@Override
 	public <Z, D extends Database<Z>> void restore(SynchronizationContext<Z,D> context, D database, Decoder decoder, File file, boolean dataOnly) throws Exception {
 		if(database.isLocal()) {
-			SyncMgr syncMgr = context.getDatabaseCluster().getSyncMgr();
-			Member target = syncMgr.getMember(context.getSourceDatabase());
-			if(syncMgr.download(target,file)){
-				DbRestore dbRestore = new DbRestore();
-				dbRestore.restore(database, decoder, file);
-			}
+			// The dump was already written locally
+			DbRestore dbRestore = new DbRestore();
+			dbRestore.restore(database, decoder, file);
 		}else{
 			StopWatch stopWatch = StopWatch.createStarted();
 			SyncMgr syncMgr = context.getDatabaseCluster().getSyncMgr();
@@ -7,6 +7,7 @@ import net.sf.hajdbc.logging.Logger;
 import net.sf.hajdbc.logging.LoggerFactory;
 import net.sf.hajdbc.state.distributed.StateCommandContext;
 import net.sf.hajdbc.state.sync.SyncCommand;
+import net.sf.hajdbc.state.sync.UploadedCommand;
 import net.sf.hajdbc.util.StopWatch;
 
 import java.io.File;
@@ -47,6 +48,12 @@ public class H2RunScriptCommand implements SyncCommand<Boolean> {
       }
     }catch (Exception e){
       logger.log(Level.WARN, e);
+    }finally {
+      // 脚本由上传而来，执行后即删除
+      if(path!=null) {
+        new File(path).delete();
+        new File(path + UploadedCommand.TMP_FILE_SUFFIX).delete();
+      }
     }
     return false;
   }
@@ -18,6 +18,7 @@
 package net.sf.hajdbc.dialect.mysql;
 
 import java.io.File;
+import java.io.OutputStream;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.util.Arrays;
@@ -28,6 +29,7 @@ import java.util.Set;
 
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DumpRestoreSupport;
+import net.sf.hajdbc.StreamingDumpRestoreSupport;
 import net.sf.hajdbc.codec.Decoder;
 import net.sf.hajdbc.dialect.ConnectionProperties;
 import net.sf.hajdbc.dialect.StandardDialect;
@@ -40,7 +42,7 @@ import net.sf.hajdbc.util.Strings;
  * @author Paul Ferraro
  */
 @SuppressWarnings("nls")
-public class MySQLDialect extends StandardDialect implements DumpRestoreSupport
+public class MySQLDialect extends StandardDialect implements StreamingDumpRestoreSupport
 {
 	// Taken from: http://dev.mysql.com/doc/refman/5.7/en/reserved-words.html
 	protected static final String[] RESERVED_KEY_WORDS = new String[] {
@@ -88,6 +90,21 @@ public class MySQLDialect extends StandardDialect implements DumpRestoreSupport
 		return new HashSet<String>(Arrays.asList(RESERVED_KEY_WORDS));
 	}
 
+	/**
+	 * Sums the leading 64 bits of the MD5 hash of the concatenated columns of each row, each followed by a null indicator.
+	 * @see net.sf.hajdbc.dialect.StandardDialect#getChecksumFunction(java.util.List)
+	 */
+	@Override
+	public String getChecksumFunction(List<String> columns)
+	{
+		StringBuilder builder = new StringBuilder();
+		for (String column: columns)
+		{
+			builder.append(Strings.PADDED_COMMA).append(column).append(Strings.PADDED_COMMA).append("ISNULL(").append(column).append(')');
+		}
+		return String.format("SUM(CAST(CONV(SUBSTRING(MD5(CONCAT_WS('|'%s)), 1, 16), 16, 10) AS UNSIGNED))", builder);
+	}
+
 	/**
 	 * @see net.sf.hajdbc.dialect.StandardDialect#getDefaultSchemas(java.sql.DatabaseMetaData)
 	 */
@@ -209,6 +226,31 @@ public class MySQLDialect extends StandardDialect implements DumpRestoreSupport
 
 	@Override
 	public <Z, D extends Database<Z>> void dump(SynchronizationContext<Z,D> context, D database, Decoder decoder, File file, boolean dataOnly) throws Exception
+	{
+		Processes.run(this.createDumpProcessBuilder(database, decoder, dataOnly, "--result-file=" + file.getPath()));
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> void dump(SynchronizationContext<Z,D> context, D database, Decoder decoder, OutputStream output, boolean dataOnly) throws Exception
+	{
+		// Writes to standard output, if no result file is specified
+		Processes.run(this.createDumpProcessBuilder(database, decoder, dataOnly), output);
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> void restore(SynchronizationContext<Z,D> context, D database, Decoder decoder, File file, boolean dataOnly) throws Exception
+	{
+		Processes.run(this.createRestoreProcessBuilder(database, decoder, "-e", "source " + file.getPath()));
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> OutputStream restore(SynchronizationContext<Z,D> context, D database, Decoder decoder, boolean dataOnly) throws Exception
+	{
+		// Executes statements from standard input, if none are specified
+		return Processes.pipe(this.createRestoreProcessBuilder(database, decoder));
+	}
+
+	private <Z, D extends Database<Z>> ProcessBuilder createDumpProcessBuilder(D database, Decoder decoder, boolean dataOnly, String... options) throws SQLException
 	{
 		ConnectionProperties properties = this.getConnectionProperties(database, decoder);
 		ProcessBuilder builder = new ProcessBuilder("mysqldump");
@@ -217,7 +259,7 @@ public class MySQLDialect extends StandardDialect implements DumpRestoreSupport
 		args.add("--port=" + properties.getPort());
 		args.add("--user=" + properties.getUser());
 		args.add("--password=" + properties.getPassword());
-		args.add("--result-file=" + file.getPath());
+		args.addAll(Arrays.asList(options));
 		args.add("--compress");
 		if (dataOnly)
 		{
@@ -225,11 +267,10 @@ public class MySQLDialect extends StandardDialect implements DumpRestoreSupport
 			args.add("--skip-triggers");
 		}
 		args.add(properties.getDatabase());
-		Processes.run(setPassword(builder, properties));
+		return setPassword(builder, properties);
 	}
 
-	@Override
-	public <Z, D extends Database<Z>> void restore(SynchronizationContext<Z,D> context, D database, Decoder decoder, File file, boolean dataOnly) throws Exception
+	private <Z, D extends Database<Z>> ProcessBuilder createRestoreProcessBuilder(D database, Decoder decoder, String... options) throws SQLException
 	{
 		ConnectionProperties properties = this.getConnectionProperties(database, decoder);
 		ProcessBuilder builder = new ProcessBuilder("mysql");
@@ -239,9 +280,8 @@ public class MySQLDialect extends StandardDialect implements DumpRestoreSupport
 		args.add("--user=" + properties.getUser());
 		args.add("--password=" + properties.getPassword());
 		args.add("--database="+properties.getDatabase());
-		args.add("-e");
-		args.add("source "+file.getPath());
-		Processes.run(setPassword(builder, properties));
+		args.addAll(Arrays.asList(options));
+		return setPassword(builder, properties);
 	}
 	
 	private static ProcessBuilder setPassword(final ProcessBuilder builder, final ConnectionProperties properties)
@@ -21,13 +21,16 @@ import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 
+import net.sf.hajdbc.ColumnProperties;
 import net.sf.hajdbc.SequenceProperties;
 import net.sf.hajdbc.SequencePropertiesFactory;
 import net.sf.hajdbc.SequenceSupport;
+import net.sf.hajdbc.TableProperties;
 import net.sf.hajdbc.dialect.StandardDialect;
 import net.sf.hajdbc.util.Resources;
 
@@ -38,6 +41,12 @@ import net.sf.hajdbc.util.Resources;
 @SuppressWarnings("nls")
 public class OracleDialect extends StandardDialect
 {
+	// Oracle specific JDBC types
+	private static final int BINARY_FLOAT = 100;
+	private static final int BINARY_DOUBLE = 101;
+	// Each column contributes 10 digits, or 'N', plus a separator
+	private static final int MAX_CHECKSUM_COLUMNS = 4000 / 11;
+	
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.dialect.StandardDialect#vendorPattern()
@@ -106,6 +115,101 @@ public class OracleDialect extends StandardDialect
 		return "TRUNCATE TABLE {0}";
 	}
 	
+	/**
+	 * Checksums require the column types, to convert values to text independently of NLS settings.
+	 * @see net.sf.hajdbc.dialect.StandardDialect#getChecksumFunction(java.util.List)
+	 */
+	@Override
+	public String getChecksumFunction(List<String> columns)
+	{
+		return null;
+	}
+
+	/**
+	 * Sums the ORA_HASH of the hashes of the columns of each row, where each column is hashed separately, after conversion to text via an explicit format, and each null column is represented by 'N'.
+	 * Returns null, such that the table is compared row by row, if the table contains LOB, LONG, or other columns not supported by ORA_HASH,
+	 * or if the column hashes of a row would exceed the 4000 byte limit of VARCHAR2.
+	 * @see net.sf.hajdbc.dialect.StandardDialect#getChecksumFunction(net.sf.hajdbc.TableProperties)
+	 */
+	@Override
+	public String getChecksumFunction(TableProperties table) throws SQLException
+	{
+		Collection<String> columns = table.getColumns();
+		
+		if (columns.size() > MAX_CHECKSUM_COLUMNS)
+		{
+			return null;
+		}
+		
+		StringBuilder builder = new StringBuilder();
+		for (String column: columns)
+		{
+			String value = checksumValue(column, table.getColumnProperties(column));
+			
+			if (value == null)
+			{
+				return null;
+			}
+			if (builder.length() > 0)
+			{
+				builder.append(" || '|' || ");
+			}
+			builder.append("NVL2(").append(column).append(", TO_CHAR(ORA_HASH(").append(value).append("), 'FM0000000000'), 'N')");
+		}
+		return String.format("SUM(ORA_HASH(%s))", builder);
+	}
+	
+	/**
+	 * Returns an expression for the value of the specified column whose hash does not depend on session settings.
+	 * @return an expression, or null if the column cannot be hashed
+	 */
+	private static String checksumValue(String column, ColumnProperties properties)
+	{
+		String nativeType = properties.getNativeType().toUpperCase();
+		
+		if (nativeType.startsWith("TIMESTAMP"))
+		{
+			// Normalize time zones
+			return nativeType.contains("TIME ZONE") ? String.format("TO_CHAR(SYS_EXTRACT_UTC(%s), 'YYYY-MM-DD HH24:MI:SS.FF9')", column) : String.format("TO_CHAR(%s, 'YYYY-MM-DD HH24:MI:SS.FF9')", column);
+		}
+		if (nativeType.equals("DATE"))
+		{
+			return String.format("TO_CHAR(%s, 'YYYY-MM-DD HH24:MI:SS')", column);
+		}
+		
+		switch (properties.getType())
+		{
+			case Types.CHAR:
+			case Types.VARCHAR:
+			case Types.NCHAR:
+			case Types.NVARCHAR:
+			case Types.BINARY:
+			case Types.VARBINARY:
+			{
+				return column;
+			}
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+			case Types.BIGINT:
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+			case BINARY_FLOAT:
+			case BINARY_DOUBLE:
+			{
+				return String.format("TO_CHAR(%s, 'TM9', 'NLS_NUMERIC_CHARACTERS=''.,''')", column);
+			}
+			default:
+			{
+				// e.g. BLOB, CLOB, NCLOB, LONG, LONG RAW, BFILE, XMLTYPE, object types
+				return null;
+			}
+		}
+	}
+	
 	/**
 	 * ON UPDATE and deferrability clauses are not supported.
 	 * @see net.sf.hajdbc.dialect.StandardDialect#createForeignKeyConstraintFormat()
@@ -18,6 +18,7 @@
 package net.sf.hajdbc.dialect.postgresql;
 
 import java.io.File;
+import java.io.OutputStream;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
@@ -36,6 +37,7 @@ import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DumpRestoreSupport;
 import net.sf.hajdbc.IdentityColumnSupport;
 import net.sf.hajdbc.SequenceSupport;
+import net.sf.hajdbc.StreamingDumpRestoreSupport;
 import net.sf.hajdbc.TriggerSupport;
 import net.sf.hajdbc.codec.Decoder;
 import net.sf.hajdbc.dialect.ConnectionProperties;
@@ -51,7 +53,7 @@ import net.sf.hajdbc.util.Strings;
  * @since   1.1
  */
 @SuppressWarnings("nls")
-public class PostgreSQLDialect extends StandardDialect implements DumpRestoreSupport
+public class PostgreSQLDialect extends StandardDialect implements StreamingDumpRestoreSupport
 {
 	// Taken from: http://www.postgresql.org/docs/9.2/static/sql-keywords-appendix.html
 	public static final String[] RESERVED_KEY_WORDS = new String[] {
@@ -180,6 +182,16 @@ public class PostgreSQLDialect extends StandardDialect implements DumpRestoreSup
 		return "TRUNCATE TABLE {0}";
 	}
 
+	/**
+	 * Sums the leading 64 bits of the MD5 hash of the text representation of each row.
+	 * @see net.sf.hajdbc.dialect.StandardDialect#getChecksumFunction(java.util.List)
+	 */
+	@Override
+	public String getChecksumFunction(List<String> columns)
+	{
+		return String.format("SUM(('x' || SUBSTR(MD5(ROW(%s)::TEXT), 1, 16))::BIT(64)::BIGINT)", Strings.join(columns, Strings.PADDED_COMMA));
+	}
+
 	/**
 	 * @see net.sf.hajdbc.dialect.StandardDialect#sequencePattern()
 	 */
@@ -247,6 +259,31 @@ public class PostgreSQLDialect extends StandardDialect implements DumpRestoreSup
 
 	@Override
 	public <Z, D extends Database<Z>> void dump(SynchronizationContext<Z,D> context, D database, Decoder decoder, File file, boolean dataOnly) throws Exception
+	{
+		Processes.run(this.createDumpProcessBuilder(database, decoder, "--file=" + file.getPath(), "--format=tar"));
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> void dump(SynchronizationContext<Z,D> context, D database, Decoder decoder, OutputStream output, boolean dataOnly) throws Exception
+	{
+		// Unlike tar, the custom format can be restored sequentially from a pipe
+		Processes.run(this.createDumpProcessBuilder(database, decoder, "--format=custom"), output);
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> void restore(SynchronizationContext<Z,D> context, D database, Decoder decoder, File file, boolean dataOnly) throws Exception
+	{
+		Processes.run(this.createRestoreProcessBuilder(database, decoder, dataOnly, file.getPath()));
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> OutputStream restore(SynchronizationContext<Z,D> context, D database, Decoder decoder, boolean dataOnly) throws Exception
+	{
+		// Reads from standard input, if no file is specified
+		return Processes.pipe(this.createRestoreProcessBuilder(database, decoder, dataOnly));
+	}
+
+	private <Z, D extends Database<Z>> ProcessBuilder createDumpProcessBuilder(D database, Decoder decoder, String... options) throws SQLException
 	{
 		ConnectionProperties properties = this.getConnectionProperties(database, decoder);
 		ProcessBuilder builder = new ProcessBuilder("pg_dump");
@@ -255,14 +292,12 @@ public class PostgreSQLDialect extends StandardDialect implements DumpRestoreSup
 		args.add("--port=" + properties.getPort());
 		args.add("--username=" + properties.getUser());
 		args.add("--no-password");
-		args.add("--file=" + file.getPath());
-		args.add("--format=tar");
+		args.addAll(Arrays.asList(options));
 		args.add(properties.getDatabase());
-		Processes.run(setPassword(builder, properties));
+		return setPassword(builder, properties);
 	}
 
-	@Override
-	public <Z, D extends Database<Z>> void restore(SynchronizationContext<Z,D> context, D database, Decoder decoder, File file, boolean dataOnly) throws Exception
+	private <Z, D extends Database<Z>> ProcessBuilder createRestoreProcessBuilder(D database, Decoder decoder, boolean dataOnly, String... files) throws SQLException
 	{
 		ConnectionProperties properties = this.getConnectionProperties(database, decoder);
 		ProcessBuilder builder = new ProcessBuilder("pg_restore");
@@ -279,8 +314,8 @@ public class PostgreSQLDialect extends StandardDialect implements DumpRestoreSup
 			args.add("--disable-triggers"); // Used to prevent integrity constraints during restoration of data
 			args.add("--superuser=" + properties.getUser()); // Required by --disable-triggers
 		}
-		args.add(file.getPath());
-		Processes.run(setPassword(builder, properties));
+		args.addAll(Arrays.asList(files));
+		return setPassword(builder, properties);
 	}
 	
 	private static ProcessBuilder setPassword(ProcessBuilder builder, ConnectionProperties properties)
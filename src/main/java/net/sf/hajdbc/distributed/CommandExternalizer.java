@@ -0,0 +1,64 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.distributed;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Writes and reads the fields of a specific command type, so that a command dispatcher need not use Java serialization for frequently sent commands.
+ * Implementations are located via {@link java.util.ServiceLoader}.
+ * Command types without an externalizer are still sent via Java serialization.
+ * 
+ * @author Paul Ferraro
+ * @param <T> the command type
+ */
+public interface CommandExternalizer<T>
+{
+	/**
+	 * Identifies the command type on the wire.
+	 * Must be unique among all externalizers, between 1 and 127, and must never change, since members of a cluster may run different versions.
+	 * @return a unique identifier
+	 */
+	int getId();
+	
+	/**
+	 * Returns the exact class of the commands handled by this externalizer.
+	 * @return a command class
+	 */
+	Class<T> getTargetClass();
+	
+	/**
+	 * Writes the fields of the specified command.
+	 * {@link ObjectOutput#writeObject(Object)} writes members and common value types compactly, and anything else via Java serialization.
+	 * @param output an output stream
+	 * @param command a command
+	 * @throws IOException if the command could not be written
+	 */
+	void writeObject(ObjectOutput output, T command) throws IOException;
+	
+	/**
+	 * Reads a command previously written by {@link #writeObject(ObjectOutput, Object)}.
+	 * @param input an input stream
+	 * @return a command
+	 * @throws IOException if the command could not be read
+	 * @throws ClassNotFoundException if a serialized field references an unknown class
+	 */
+	T readObject(ObjectInput input) throws IOException, ClassNotFoundException;
+}
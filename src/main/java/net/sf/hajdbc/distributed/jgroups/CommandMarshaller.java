@@ -0,0 +1,322 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.distributed.jgroups;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamConstants;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import net.sf.hajdbc.distributed.Command;
+import net.sf.hajdbc.distributed.CommandExternalizer;
+import net.sf.hajdbc.util.Objects;
+import net.sf.hajdbc.util.ServiceLoaders;
+
+import org.jgroups.util.Util;
+
+/**
+ * Converts commands to and from the payload of a JGroups message.
+ * A command with a registered {@link CommandExternalizer} is written as its 1 byte type identifier, followed by the fields written by the externalizer.
+ * Any other command is written via Java serialization, whose stream header never collides with a type identifier.
+ * Consequently, Java serialized commands sent by members without externalizers are still understood.
+ * 
+ * @author Paul Ferraro
+ */
+public class CommandMarshaller
+{
+	static final int MAX_ID = Byte.MAX_VALUE;
+	
+	// Tags of the values written by ObjectOutput.writeObject(...)
+	private static final int NULL = 0;
+	private static final int MEMBER = 1;
+	private static final int STRING = 2;
+	private static final int BOOLEAN = 3;
+	private static final int INTEGER = 4;
+	private static final int LONG = 5;
+	private static final int UUID_VALUE = 6;
+	private static final int SERIALIZED = 7;
+	
+	// DataOutput.writeUTF(...) is limited to 65535 bytes, i.e. at least this many chars
+	private static final int MAX_UTF_LENGTH = 0xFFFF / 3;
+	
+	private final CommandExternalizer<?>[] externalizers = new CommandExternalizer<?>[MAX_ID + 1];
+	private final Map<Class<?>, CommandExternalizer<?>> classExternalizers = new IdentityHashMap<Class<?>, CommandExternalizer<?>>();
+	
+	/**
+	 * Constructs a new CommandMarshaller using the externalizers located via {@link java.util.ServiceLoader}.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public CommandMarshaller()
+	{
+		this((Collection) ServiceLoaders.findServices(CommandExternalizer.class));
+	}
+	
+	/**
+	 * Constructs a new CommandMarshaller using the specified externalizers.
+	 * @param externalizers a collection of command externalizers
+	 * @throws IllegalArgumentException if an externalizer identifier is out of range, or is not unique
+	 */
+	public CommandMarshaller(Collection<CommandExternalizer<?>> externalizers)
+	{
+		for (CommandExternalizer<?> externalizer: externalizers)
+		{
+			int id = externalizer.getId();
+			
+			if ((id <= 0) || (id > MAX_ID))
+			{
+				throw new IllegalArgumentException(String.format("%s has an invalid identifier: %d", externalizer.getClass().getName(), id));
+			}
+			if (this.externalizers[id] != null)
+			{
+				throw new IllegalArgumentException(String.format("%s and %s share identifier %d", this.externalizers[id].getClass().getName(), externalizer.getClass().getName(), id));
+			}
+			
+			this.externalizers[id] = externalizer;
+			this.classExternalizers.put(externalizer.getTargetClass(), externalizer);
+		}
+	}
+	
+	/**
+	 * Writes the specified command.
+	 * @param command a command
+	 * @return the message payload
+	 */
+	public byte[] marshal(Command<?, ?> command)
+	{
+		@SuppressWarnings("unchecked")
+		CommandExternalizer<Command<?, ?>> externalizer = (CommandExternalizer<Command<?, ?>>) this.classExternalizers.get(command.getClass());
+		
+		if (externalizer == null)
+		{
+			return Objects.serialize(command);
+		}
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		
+		try
+		{
+			Output output = new Output(bytes);
+			output.writeByte(externalizer.getId());
+			externalizer.writeObject(output, command);
+			output.flush();
+			
+			return bytes.toByteArray();
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Reads a command from the specified message payload.
+	 * @param buffer a buffer containing the payload
+	 * @param offset the offset of the payload within the buffer
+	 * @param length the length of the payload
+	 * @return a command
+	 */
+	public <R, C> Command<R, C> unmarshal(byte[] buffer, int offset, int length)
+	{
+		int id = buffer[offset] & 0xFF;
+		
+		try
+		{
+			if (id == ((ObjectStreamConstants.STREAM_MAGIC >>> 8) & 0xFF))
+			{
+				ObjectInput input = new ObjectInputStream(new ByteArrayInputStream(buffer, offset, length));
+				try
+				{
+					return Objects.readObject(input);
+				}
+				finally
+				{
+					input.close();
+				}
+			}
+			
+			@SuppressWarnings("unchecked")
+			CommandExternalizer<Command<R, C>> externalizer = (id <= MAX_ID) ? (CommandExternalizer<Command<R, C>>) this.externalizers[id] : null;
+			
+			if (externalizer == null)
+			{
+				throw new IllegalStateException(String.format("No externalizer found for command type %d", id));
+			}
+			
+			return externalizer.readObject(new Input(new ByteArrayInputStream(buffer, offset + 1, length - 1)));
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		catch (ClassNotFoundException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Writes members and common value types without the overhead of Java serialization.
+	 */
+	private static class Output extends DataOutputStream implements ObjectOutput
+	{
+		Output(OutputStream output)
+		{
+			super(output);
+		}
+
+		@Override
+		public void writeObject(Object object) throws IOException
+		{
+			if (object == null)
+			{
+				this.writeByte(NULL);
+			}
+			else if (object instanceof AddressMember)
+			{
+				this.writeByte(MEMBER);
+				try
+				{
+					Util.writeAddress(((AddressMember) object).getAddress(), this);
+				}
+				catch (IOException e)
+				{
+					throw e;
+				}
+				catch (Exception e)
+				{
+					throw new IOException(e);
+				}
+			}
+			else if ((object instanceof String) && (((String) object).length() <= MAX_UTF_LENGTH))
+			{
+				this.writeByte(STRING);
+				this.writeUTF((String) object);
+			}
+			else if (object instanceof Boolean)
+			{
+				this.writeByte(BOOLEAN);
+				this.writeBoolean((Boolean) object);
+			}
+			else if (object instanceof Integer)
+			{
+				this.writeByte(INTEGER);
+				this.writeInt((Integer) object);
+			}
+			else if (object instanceof Long)
+			{
+				this.writeByte(LONG);
+				this.writeLong((Long) object);
+			}
+			else if (object instanceof UUID)
+			{
+				UUID uuid = (UUID) object;
+				this.writeByte(UUID_VALUE);
+				this.writeLong(uuid.getMostSignificantBits());
+				this.writeLong(uuid.getLeastSignificantBits());
+			}
+			else
+			{
+				byte[] bytes = Objects.serialize(object);
+				this.writeByte(SERIALIZED);
+				this.writeInt(bytes.length);
+				this.write(bytes);
+			}
+		}
+	}
+	
+	/**
+	 * Reads the values written by {@link Output}.
+	 */
+	private static class Input extends DataInputStream implements ObjectInput
+	{
+		Input(InputStream input)
+		{
+			super(input);
+		}
+
+		@Override
+		public Object readObject() throws IOException
+		{
+			int tag = this.readUnsignedByte();
+			
+			switch (tag)
+			{
+				case NULL:
+				{
+					return null;
+				}
+				case MEMBER:
+				{
+					try
+					{
+						return new AddressMember(Util.readAddress(this));
+					}
+					catch (IOException e)
+					{
+						throw e;
+					}
+					catch (Exception e)
+					{
+						throw new IOException(e);
+					}
+				}
+				case STRING:
+				{
+					return this.readUTF();
+				}
+				case BOOLEAN:
+				{
+					return this.readBoolean();
+				}
+				case INTEGER:
+				{
+					return this.readInt();
+				}
+				case LONG:
+				{
+					return this.readLong();
+				}
+				case UUID_VALUE:
+				{
+					return new UUID(this.readLong(), this.readLong());
+				}
+				case SERIALIZED:
+				{
+					byte[] bytes = new byte[this.readInt()];
+					this.readFully(bytes);
+					return Objects.deserialize(bytes);
+				}
+				default:
+				{
+					throw new IOException(String.format("Unexpected value tag %d", tag));
+				}
+			}
+		}
+	}
+}
@@ -38,7 +38,6 @@ import net.sf.hajdbc.distributed.Stateful;
 import net.sf.hajdbc.logging.Level;
 import net.sf.hajdbc.logging.Logger;
 import net.sf.hajdbc.logging.LoggerFactory;
-import net.sf.hajdbc.util.Objects;
 
 import org.jgroups.*;
 import org.jgroups.blocks.MessageDispatcher;
@@ -67,6 +66,7 @@ public class JGroupsCommandDispatcher<C> implements RequestHandler, CommandDispa
 	private final MembershipListener membershipListener;
 	private final Stateful stateful;
 	private final LockService lockService;
+	private final CommandMarshaller marshaller = new CommandMarshaller();
 	
 	/**
 	 * Constructs a new ChannelCommandDispatcher.
@@ -143,7 +143,7 @@ public class JGroupsCommandDispatcher<C> implements RequestHandler, CommandDispa
 	@Override
 	public <R> Map<Member, R> executeAll(Command<R, C> command, Member... excludedMembers)
 	{
-		Message message = new Message(null, this.getLocalAddress(), Objects.serialize(command));
+		Message message = new Message(null, this.getLocalAddress(), this.marshaller.marshal(command));
 		RequestOptions options = new RequestOptions(ResponseMode.GET_ALL, this.timeout);
 
 		if ((excludedMembers != null) && (excludedMembers.length > 0))
@@ -186,7 +186,7 @@ public class JGroupsCommandDispatcher<C> implements RequestHandler, CommandDispa
 	@Override
 	public <R> R execute(Command<R, C> command, Member member)
 	{
-		Message message = new Message(((AddressMember) member).getAddress(), this.getLocalAddress(), Objects.serialize(command));
+		Message message = new Message(((AddressMember) member).getAddress(), this.getLocalAddress(), this.marshaller.marshal(command));
 
 		try
 		{
@@ -236,7 +236,7 @@ public class JGroupsCommandDispatcher<C> implements RequestHandler, CommandDispa
 	@Override
 	public Object handle(Message message)
 	{
-		Command<Object, C> command = Objects.deserialize(message.getRawBuffer());
+		Command<Object, C> command = this.marshaller.unmarshal(message.getRawBuffer(), message.getOffset(), message.getLength());
 
 		this.logger.log(Level.DEBUG, Messages.COMMAND_RECEIVED.getMessage(command, message.getSrc()));
 		
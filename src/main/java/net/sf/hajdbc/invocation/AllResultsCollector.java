@@ -30,6 +30,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DatabaseCluster;
@@ -54,10 +55,21 @@ public class AllResultsCollector implements InvokeOnManyInvocationStrategy.Resul
 	}
 	
 	private final ExecutorProvider provider;
+	private final boolean callerRuns;
 	
 	public AllResultsCollector(ExecutorProvider provider)
+	{
+		this(provider, false);
+	}
+	
+	/**
+	 * @param provider provides the executor for the invocations
+	 * @param callerRuns indicates whether the primary database should be invoked by the calling thread, while the backup databases are invoked by the executor
+	 */
+	public AllResultsCollector(ExecutorProvider provider, boolean callerRuns)
 	{
 		this.provider = provider;
+		this.callerRuns = callerRuns;
 	}
 	
 	/**
@@ -88,7 +100,7 @@ public class AllResultsCollector implements InvokeOnManyInvocationStrategy.Resul
 		
 		try
 		{
-			List<Future<R>> futureList = this.provider.getExecutor(cluster).invokeAll(invocationList);
+			List<Future<R>> futureList = this.invokeAll(cluster, invocationList);
 			
 			final SortedMap<D, R> resultMap = new TreeMap<D, R>();
 			final SortedMap<D, E> exceptionMap = new TreeMap<D, E>();
@@ -127,8 +139,42 @@ public class AllResultsCollector implements InvokeOnManyInvocationStrategy.Resul
 			throw new IllegalStateException(e);
 		}
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <Z, D extends Database<Z>, T, E extends Exception> T getTarget(ProxyFactory<Z, D, T, E> factory, D database)
+	{
+		return factory.get(database);
+	}
+	
+	private <Z, D extends Database<Z>, T, R, E extends Exception> List<Future<R>> invokeAll(DatabaseCluster<Z, D> cluster, List<Invocation<Z, D, T, R, E>> invocationList) throws InterruptedException
+	{
+		ExecutorService executor = this.provider.getExecutor(cluster);
+		int size = invocationList.size();
+		
+		// A parallel transactional executor is the cluster executor itself, whereas a serial one already invokes the primary in the calling thread
+		if ((size == 1) || ((size > 1) && this.callerRuns && (executor == cluster.getExecutor())))
+		{
+			List<Future<R>> futureList = new ArrayList<Future<R>>(size);
+			FutureTask<R> primaryTask = new FutureTask<R>(invocationList.get(0));
+			futureList.add(primaryTask);
+			
+			for (Invocation<Z, D, T, R, E> invocation: invocationList.subList(1, size))
+			{
+				futureList.add(executor.submit(invocation));
+			}
+			
+			primaryTask.run();
+			
+			return futureList;
+		}
+		
+		return executor.invokeAll(invocationList);
+	}
 	
-	private static class Invocation<Z, D extends Database<Z>, T, R, E extends Exception> implements Callable<R>
+	static class Invocation<Z, D extends Database<Z>, T, R, E extends Exception> implements Callable<R>
 	{
 		private final Invoker<Z, D, T, R, E> invoker;
 		private final D database;
@@ -0,0 +1,40 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.invocation;
+
+import java.util.SortedMap;
+import java.util.concurrent.CompletionStage;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.sql.ProxyFactory;
+
+/**
+ * An invocation strategy that can return its results without blocking the calling thread.
+ * @author Paul Ferraro
+ */
+public interface AsyncInvocationStrategy extends InvocationStrategy
+{
+	/**
+	 * Invokes the specified invoker against the databases of the specified proxy factory.
+	 * The returned stage completes exceptionally, with an exception of type E, if the invocation failed.
+	 * @param proxy a proxy factory
+	 * @param invoker an invoker
+	 * @return a stage that completes with the results of the invocation, indexed by database
+	 */
+	<Z, D extends Database<Z>, T, R, E extends Exception> CompletionStage<SortedMap<D, R>> invokeAsync(ProxyFactory<Z, D, T, E> proxy, Invoker<Z, D, T, R, E> invoker);
+}
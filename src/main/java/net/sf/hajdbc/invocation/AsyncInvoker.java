@@ -0,0 +1,39 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.invocation;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+import net.sf.hajdbc.Database;
+
+/**
+ * An invoker whose invocation can complete asynchronously.
+ * @author Paul Ferraro
+ */
+public interface AsyncInvoker<Z, D extends Database<Z>, T, R, E extends Exception> extends Invoker<Z, D, T, R, E>
+{
+	/**
+	 * Invokes an action against the specified database on the specified SQL object
+	 * @param database a database
+	 * @param object an SQL object
+	 * @param executor an executor on which any blocking work should be performed
+	 * @return a stage that completes with the invocation result, or exceptionally with an exception of type E
+	 */
+	CompletionStage<R> invokeAsync(D database, T object, Executor executor);
+}
@@ -0,0 +1,206 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.invocation;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.ExceptionFactory;
+import net.sf.hajdbc.Messages;
+import net.sf.hajdbc.invocation.AllResultsCollector.ExecutorProvider;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+import net.sf.hajdbc.sql.ProxyFactory;
+import net.sf.hajdbc.util.Tracer;
+import net.sf.hajdbc.util.concurrent.CompletionStages;
+
+/**
+ * Invokes on all databases, composing the per-database invocations into a single completion stage, so that no thread blocks waiting for an individual database.
+ * The primary database, and the only backup of a two database cluster, are invoked via the provided executor; the remaining backups via the cluster executor.
+ * Consequently, a synchronous transaction executor behaves as it does for {@link AllResultsCollector}.
+ * If the cluster contains a single database, or if so configured and the provided executor is the cluster executor, the primary database is invoked by the calling thread.
+ * If the cluster contains no active databases, the returned stage completes exceptionally.
+ * @author Paul Ferraro
+ */
+public class CompletionStageResultsCollector implements InvokeOnManyInvocationStrategy.AsyncResultsCollector
+{
+	// Runs a task in the calling thread
+	private static final Executor CALLER = new Executor()
+	{
+		@Override
+		public void execute(Runnable task)
+		{
+			task.run();
+		}
+	};
+	
+	protected final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final ExecutorProvider provider;
+	private final boolean callerRuns;
+	
+	public CompletionStageResultsCollector(ExecutorProvider provider)
+	{
+		this(provider, false);
+	}
+	
+	/**
+	 * @param provider provides the executor for the invocations
+	 * @param callerRuns indicates whether the primary database should be invoked by the calling thread, once the backup databases were submitted to the executor
+	 */
+	public CompletionStageResultsCollector(ExecutorProvider provider, boolean callerRuns)
+	{
+		this.provider = provider;
+		this.callerRuns = callerRuns;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <Z, D extends Database<Z>, T, R, E extends Exception> Map.Entry<SortedMap<D, R>, SortedMap<D, E>> collectResults(ProxyFactory<Z, D, T, E> factory, Invoker<Z, D, T, R, E> invoker)
+	{
+		try
+		{
+			// Failures are collected per database, so the results are only exceptional if there are no active databases
+			return this.collectResultsAsync(factory, invoker).toCompletableFuture().join();
+		}
+		catch (CompletionException e)
+		{
+			throw new IllegalStateException(CompletionStages.unwrap(e));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <Z, D extends Database<Z>, T, E extends Exception> T getTarget(ProxyFactory<Z, D, T, E> factory, D database)
+	{
+		return factory.get(database);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <Z, D extends Database<Z>, T, R, E extends Exception> CompletionStage<Map.Entry<SortedMap<D, R>, SortedMap<D, E>>> collectResultsAsync(ProxyFactory<Z, D, T, E> factory, Invoker<Z, D, T, R, E> invoker)
+	{
+		DatabaseCluster<Z, D> cluster = factory.getDatabaseCluster();
+		final ExceptionFactory<E> exceptionFactory = factory.getExceptionFactory();
+		final Set<D> databaseSet = cluster.getBalancer();
+		if (Tracer.invoke.isTrace())
+		{
+			this.logger.log(Level.INFO, "databaseSet={0}", databaseSet);
+		}
+		
+		if (databaseSet.isEmpty())
+		{
+			return CompletionStages.failed(exceptionFactory.createException(Messages.NO_ACTIVE_DATABASES.getMessage(cluster)));
+		}
+		
+		int size = databaseSet.size();
+		Executor executor = this.provider.getExecutor(cluster);
+		final SortedMap<D, CompletableFuture<R>> futureMap = new TreeMap<D, CompletableFuture<R>>();
+		
+		Iterator<D> databases = databaseSet.iterator();
+		
+		if (databases.hasNext())
+		{
+			D primaryDatabase = databases.next();
+			T primaryObject = factory.get(primaryDatabase);
+			// A parallel transactional executor is the cluster executor itself, whereas a serial one must complete the primary before any backup
+			boolean callerRuns = !databases.hasNext() || (this.callerRuns && (executor == cluster.getExecutor()));
+			
+			if (!callerRuns)
+			{
+				futureMap.put(primaryDatabase, invokeAsync(invoker, primaryDatabase, primaryObject, executor).toCompletableFuture());
+			}
+			
+			while (databases.hasNext())
+			{
+				D database = databases.next();
+				futureMap.put(database, invokeAsync(invoker, database, factory.get(database), (size == 2) ? executor : cluster.getExecutor()).toCompletableFuture());
+			}
+			
+			if (callerRuns)
+			{
+				futureMap.put(primaryDatabase, invokeAsync(invoker, primaryDatabase, primaryObject, CALLER).toCompletableFuture());
+			}
+		}
+		
+		return CompletableFuture.allOf(futureMap.values().toArray(new CompletableFuture<?>[futureMap.size()])).handle((value, exception) -> {
+			SortedMap<D, R> resultMap = new TreeMap<D, R>();
+			SortedMap<D, E> exceptionMap = new TreeMap<D, E>();
+			
+			for (Map.Entry<D, CompletableFuture<R>> entry: futureMap.entrySet())
+			{
+				D database = entry.getKey();
+				
+				try
+				{
+					resultMap.put(database, entry.getValue().join());
+				}
+				catch (CompletionException e)
+				{
+					if (Tracer.invoke.isTrace())
+					{
+						this.logger.log(Level.INFO, e);
+					}
+					// If this database was concurrently deactivated, just ignore the failure
+					if (databaseSet.contains(database))
+					{
+						exceptionMap.put(database, exceptionFactory.createException(CompletionStages.unwrap(e)));
+					}
+				}
+			}
+			
+			return new AbstractMap.SimpleImmutableEntry<SortedMap<D, R>, SortedMap<D, E>>(resultMap, exceptionMap);
+		});
+	}
+	
+	private static <Z, D extends Database<Z>, T, R, E extends Exception> CompletionStage<R> invokeAsync(final Invoker<Z, D, T, R, E> invoker, final D database, final T object, Executor executor)
+	{
+		if (invoker instanceof AsyncInvoker)
+		{
+			return ((AsyncInvoker<Z, D, T, R, E>) invoker).invokeAsync(database, object, executor);
+		}
+		
+		return CompletableFuture.supplyAsync(() -> {
+			try
+			{
+				return invoker.invoke(database, object);
+			}
+			catch (Exception e)
+			{
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+}
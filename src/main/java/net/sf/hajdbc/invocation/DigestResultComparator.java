@@ -0,0 +1,150 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.invocation;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import net.sf.hajdbc.ResultComparator;
+import net.sf.hajdbc.util.Objects;
+
+/**
+ * Compares update counts, e.g. of {@link java.sql.Statement#executeBatch()}, and generated keys, via a 64-bit FNV-1a hash of the bytes of their values.
+ * If a sample size is specified, larger results are spot-checked by hashing only that many evenly spaced elements or rows, in addition to their number.
+ * Result sets are digested in full, then repositioned before the first row, so they must be scrollable, e.g. as materialized by {@link DigestingInvoker}.
+ * @author Paul Ferraro
+ */
+public class DigestResultComparator implements ResultComparator, Serializable
+{
+	private static final long serialVersionUID = 4434373442580536208L;
+
+	private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long PRIME = 0x100000001b3L;
+
+	@Override
+	public String getId()
+	{
+		return "digest";
+	}
+
+	@Override
+	public boolean supports(Class<?> resultClass)
+	{
+		return resultClass.equals(int[].class) || resultClass.equals(long[].class) || ResultSet.class.isAssignableFrom(resultClass);
+	}
+
+	@Override
+	public Object digest(Object result, int sampleSize) throws SQLException
+	{
+		if (result instanceof int[])
+		{
+			int[] values = (int[]) result;
+			int stride = stride(values.length, sampleSize);
+			long hash = hash(OFFSET_BASIS, values.length);
+			for (int i = 0; i < values.length; i += stride)
+			{
+				hash = hash(hash, values[i]);
+			}
+			return hash;
+		}
+		if (result instanceof long[])
+		{
+			long[] values = (long[]) result;
+			int stride = stride(values.length, sampleSize);
+			long hash = hash(OFFSET_BASIS, values.length);
+			for (int i = 0; i < values.length; i += stride)
+			{
+				hash = hash(hash, values[i]);
+			}
+			return hash;
+		}
+		if (result instanceof ResultSet)
+		{
+			return digest((ResultSet) result, sampleSize);
+		}
+		return result;
+	}
+
+	@Override
+	public boolean differs(Object primaryDigest, Object backupDigest)
+	{
+		return !Objects.equals(primaryDigest, backupDigest);
+	}
+
+	private static long digest(ResultSet resultSet, int sampleSize) throws SQLException
+	{
+		int columns = resultSet.getMetaData().getColumnCount();
+		resultSet.last();
+		int rows = resultSet.getRow();
+		int stride = stride(rows, sampleSize);
+		long hash = hash(hash(OFFSET_BASIS, rows), columns);
+		for (int row = 1; row <= rows; row += stride)
+		{
+			resultSet.absolute(row);
+			for (int column = 1; column <= columns; ++column)
+			{
+				Object value = resultSet.getObject(column);
+				if (value == null)
+				{
+					// Distinguishes null from an empty value
+					hash = hash(hash, -1);
+				}
+				else
+				{
+					// Compare keys by value, regardless of the Java type chosen by the driver
+					byte[] bytes = (value instanceof byte[]) ? (byte[]) value : value.toString().getBytes(StandardCharsets.UTF_8);
+					hash = hash(hash(hash, bytes.length), bytes);
+				}
+			}
+		}
+		resultSet.beforeFirst();
+		return hash;
+	}
+
+	private static int stride(int length, int sampleSize)
+	{
+		return ((sampleSize > 0) && (length > sampleSize)) ? ((length + sampleSize - 1) / sampleSize) : 1;
+	}
+
+	private static long hash(long hash, byte[] bytes)
+	{
+		long result = hash;
+		for (byte value: bytes)
+		{
+			result = hash(result, value);
+		}
+		return result;
+	}
+
+	private static long hash(long hash, long value)
+	{
+		return hash(hash(hash, (int) (value >>> 32)), (int) value);
+	}
+
+	private static long hash(long hash, int value)
+	{
+		return hash(hash(hash(hash(hash, (byte) (value >>> 24)), (byte) (value >>> 16)), (byte) (value >>> 8)), (byte) value);
+	}
+
+	private static long hash(long hash, byte value)
+	{
+		return (hash ^ (value & 0xff)) * PRIME;
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.invocation;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.ExceptionFactory;
+import net.sf.hajdbc.ResultComparator;
+import net.sf.hajdbc.util.Resources;
+
+/**
+ * Invoker decorator that digests the result of each database, using the thread that invoked it.
+ * Result sets, e.g. generated keys, are first materialized into a {@link CachedRowSet}, which replaces the result of the invocation, so that digesting them does not consume the rows read by the application.
+ * @author Paul Ferraro
+ */
+public class DigestingInvoker<Z, D extends Database<Z>, T, R, E extends Exception> implements Invoker<Z, D, T, R, E>
+{
+	private final Invoker<Z, D, T, R, E> invoker;
+	private final ResultComparator comparator;
+	private final int sampleSize;
+	private final ExceptionFactory<E> exceptionFactory;
+	private final Map<D, Object> digests = new ConcurrentHashMap<D, Object>();
+
+	public DigestingInvoker(Invoker<Z, D, T, R, E> invoker, ResultComparator comparator, int sampleSize, ExceptionFactory<E> exceptionFactory)
+	{
+		this.invoker = invoker;
+		this.comparator = comparator;
+		this.sampleSize = sampleSize;
+		this.exceptionFactory = exceptionFactory;
+	}
+
+	@Override
+	public R invoke(D database, T object) throws E
+	{
+		R result = this.invoker.invoke(database, object);
+
+		if (result != null)
+		{
+			try
+			{
+				if (result instanceof ResultSet)
+				{
+					result = this.materialize((ResultSet) result);
+				}
+				this.digests.put(database, this.comparator.digest(result, this.sampleSize));
+			}
+			catch (SQLException e)
+			{
+				throw this.exceptionFactory.createException(e);
+			}
+		}
+
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private R materialize(ResultSet resultSet) throws SQLException
+	{
+		try
+		{
+			CachedRowSet rowSet = RowSetProvider.newFactory().createCachedRowSet();
+			rowSet.populate(resultSet);
+			return (R) rowSet;
+		}
+		finally
+		{
+			Resources.close(resultSet);
+		}
+	}
+
+	/**
+	 * Indicates whether the result of the specified backup database differs from that of the specified primary database.
+	 * @param primaryDatabase the primary database
+	 * @param backupDatabase a backup database
+	 * @return true, if the digests of the results differ, false otherwise
+	 */
+	public boolean differs(D primaryDatabase, D backupDatabase)
+	{
+		return this.comparator.differs(this.digests.get(primaryDatabase), this.digests.get(backupDatabase));
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.invoker.toString();
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.invocation;
+
+import java.io.Serializable;
+
+import net.sf.hajdbc.ResultComparator;
+import net.sf.hajdbc.util.Objects;
+
+/**
+ * Compares results in full.  This is the default comparator.
+ * @author Paul Ferraro
+ */
+public class ExactResultComparator implements ResultComparator, Serializable
+{
+	private static final long serialVersionUID = -1581546741442862727L;
+
+	@Override
+	public String getId()
+	{
+		return "exact";
+	}
+
+	@Override
+	public boolean supports(Class<?> resultClass)
+	{
+		return false;
+	}
+
+	@Override
+	public Object digest(Object result, int sampleSize)
+	{
+		return result;
+	}
+
+	@Override
+	public boolean differs(Object primaryDigest, Object backupDigest)
+	{
+		return !Objects.equals(primaryDigest, backupDigest);
+	}
+}
@@ -71,4 +71,11 @@ public class ExistingResultsCollector implements InvokeOnManyInvocationStrategy.
 		
 		return new AbstractMap.SimpleImmutableEntry<SortedMap<D, R>, SortedMap<D, E>>(resultMap, exceptionMap);
 	}
+
+	@Override
+	public <Z, D extends Database<Z>, T, E extends Exception> T getTarget(ProxyFactory<Z, D, T, E> factory, D database)
+	{
+		// Never create the object, if it does not already exist
+		return factory.getExisting(database);
+	}
 }
@@ -1,22 +1,26 @@
 package net.sf.hajdbc.invocation;
 
 import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.logging.Level;
 import net.sf.hajdbc.logging.Logger;
 import net.sf.hajdbc.logging.LoggerFactory;
 import net.sf.hajdbc.sql.ProxyFactory;
+import net.sf.hajdbc.util.concurrent.CompletionStages;
 
-public enum InvocationStrategies implements InvocationStrategy
+public enum InvocationStrategies implements AsyncInvocationStrategy
 {
-	INVOKE_ON_ALL(new InvokeOnManyInvocationStrategy(new AllResultsCollector(new StandardExecutorProvider()))),
+	INVOKE_ON_ALL(new InvokeOnManyInvocationStrategy(new CompletionStageResultsCollector(new StandardExecutorProvider(), true))),
 	INVOKE_ON_ANY(new InvokeOnAnyInvocationStrategy(new InvokeOnOneInvocationStrategy(new NextDatabaseSelector()))),
 	INVOKE_ON_EXISTING(new InvokeOnManyInvocationStrategy(new ExistingResultsCollector())),
   INVOKE_ON_NEXT(new InvokeOnOneInvocationStrategy(new NextDatabaseSelector())),
 	INVOKE_ON_PRIMARY(new InvokeOnOneInvocationStrategy(new PrimaryDatabaseSelector())),
-	TRANSACTION_INVOKE_ON_ALL(new InvokeOnManyInvocationStrategy(new AllResultsCollector(new TransactionalExecutorProvider(false)))),
-	END_TRANSACTION_INVOKE_ON_ALL(new InvokeOnManyInvocationStrategy(new AllResultsCollector(new TransactionalExecutorProvider(true)))),
+	TRANSACTION_INVOKE_ON_ALL(new InvokeOnManyInvocationStrategy(new CompletionStageResultsCollector(new TransactionalExecutorProvider(false), true))),
+	TRANSACTION_INVOKE_ON_QUORUM(new InvokeOnManyInvocationStrategy(new QuorumResultsCollector(new TransactionalExecutorProvider(false)))),
+	END_TRANSACTION_INVOKE_ON_ALL(new InvokeOnManyInvocationStrategy(new AllResultsCollector(new TransactionalExecutorProvider(true), true))),
 	;
 	
 	private static final Logger logger = LoggerFactory.getLogger(SimpleInvoker.class);
@@ -34,4 +38,23 @@ public enum InvocationStrategies implements InvocationStrategy
 		logger.log(Level.TRACE, "Invoking {0} using {1} strategy.", invoker, this);
 		return this.strategy.invoke(map, invoker);
 	}
+
+	@Override
+	public <Z, D extends Database<Z>, T, R, E extends Exception> CompletionStage<SortedMap<D, R>> invokeAsync(ProxyFactory<Z, D, T, E> map, Invoker<Z, D, T, R, E> invoker)
+	{
+		if (this.strategy instanceof AsyncInvocationStrategy)
+		{
+			logger.log(Level.TRACE, "Invoking {0} asynchronously using {1} strategy.", invoker, this);
+			return ((AsyncInvocationStrategy) this.strategy).invokeAsync(map, invoker);
+		}
+		
+		try
+		{
+			return CompletableFuture.completedFuture(this.invoke(map, invoker));
+		}
+		catch (Exception e)
+		{
+			return CompletionStages.failed(e);
+		}
+	}
 }
\ No newline at end of file
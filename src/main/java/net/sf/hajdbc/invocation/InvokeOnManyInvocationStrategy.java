@@ -21,29 +21,48 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DatabaseCluster;
 import net.sf.hajdbc.ExceptionFactory;
 import net.sf.hajdbc.Messages;
+import net.sf.hajdbc.balancer.Balancer;
 import net.sf.hajdbc.dialect.Dialect;
 import net.sf.hajdbc.logging.Level;
 import net.sf.hajdbc.logging.Logger;
 import net.sf.hajdbc.logging.LoggerFactory;
 import net.sf.hajdbc.sql.ProxyFactory;
 import net.sf.hajdbc.state.StateManager;
+import net.sf.hajdbc.util.Collections;
+import net.sf.hajdbc.util.concurrent.CompletionStages;
 
 /**
  * @author paul
  *
  */
-public class InvokeOnManyInvocationStrategy implements InvocationStrategy
+public class InvokeOnManyInvocationStrategy implements AsyncInvocationStrategy
 {
 	private static Logger logger = LoggerFactory.getLogger(InvokeOnManyInvocationStrategy.class);
 	
 	public static interface ResultsCollector
 	{
 		<Z, D extends Database<Z>, T, R, E extends Exception> Map.Entry<SortedMap<D, R>, SortedMap<D, E>> collectResults(ProxyFactory<Z, D, T, E> map, Invoker<Z, D, T, R, E> invoker);
+		
+		/**
+		 * Returns the object against which to invoke the only database of a single database cluster.
+		 * @param map a proxy factory
+		 * @param database the only active database
+		 * @return an object, or null if this collector would not invoke the specified database
+		 */
+		<Z, D extends Database<Z>, T, E extends Exception> T getTarget(ProxyFactory<Z, D, T, E> map, D database);
+	}
+
+	public static interface AsyncResultsCollector extends ResultsCollector
+	{
+		<Z, D extends Database<Z>, T, R, E extends Exception> CompletionStage<Map.Entry<SortedMap<D, R>, SortedMap<D, E>>> collectResultsAsync(ProxyFactory<Z, D, T, E> map, Invoker<Z, D, T, R, E> invoker);
 	}
 
 	private final ResultsCollector collector;
@@ -59,10 +78,102 @@ public class InvokeOnManyInvocationStrategy implements InvocationStrategy
 	@Override
 	public <Z, D extends Database<Z>, T, R, E extends Exception> SortedMap<D, R> invoke(ProxyFactory<Z, D, T, E> factory, Invoker<Z, D, T, R, E> invoker) throws E
 	{
+		DatabaseCluster<Z, D> cluster = factory.getDatabaseCluster();
+		
+		if (cluster.getBalancer().isEmpty())
+		{
+			throw factory.getExceptionFactory().createException(Messages.NO_ACTIVE_DATABASES.getMessage(cluster));
+		}
+		
+		SortedMap<D, R> singleResult = this.invokeSingle(factory, invoker);
+		
+		if (singleResult != null)
+		{
+			return singleResult;
+		}
+		
 		Map.Entry<SortedMap<D, R>, SortedMap<D, E>> results = this.collector.collectResults(factory, invoker);
+		
+		return reconcile(factory, results.getKey(), results.getValue());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <Z, D extends Database<Z>, T, R, E extends Exception> CompletionStage<SortedMap<D, R>> invokeAsync(final ProxyFactory<Z, D, T, E> factory, Invoker<Z, D, T, R, E> invoker)
+	{
+		if (!(this.collector instanceof AsyncResultsCollector) || (factory.getDatabaseCluster().getBalancer().size() == 1))
+		{
+			try
+			{
+				return CompletableFuture.completedFuture(this.invoke(factory, invoker));
+			}
+			catch (Exception e)
+			{
+				return CompletionStages.failed(e);
+			}
+		}
+		
+		return ((AsyncResultsCollector) this.collector).collectResultsAsync(factory, invoker).thenApply(results -> {
+			try
+			{
+				return reconcile(factory, results.getKey(), results.getValue());
+			}
+			catch (Exception e)
+			{
+				throw new CompletionException(e);
+			}
+		});
+	}
+
+	/**
+	 * Invokes the only database of a single database cluster directly in the calling thread, bypassing result collection and reconciliation.
+	 * A degraded cluster thereby allocates nothing but the singleton result map.
+	 * @param factory a proxy factory
+	 * @param invoker an invoker
+	 * @return the result of the only database, or null if the cluster does not contain exactly one database.
+	 * @throws E the exception thrown by the only database
+	 */
+	private <Z, D extends Database<Z>, T, R, E extends Exception> SortedMap<D, R> invokeSingle(ProxyFactory<Z, D, T, E> factory, Invoker<Z, D, T, R, E> invoker) throws E
+	{
+		Balancer<Z, D> balancer = factory.getDatabaseCluster().getBalancer();
+		
+		if (balancer.size() != 1)
+		{
+			return null;
+		}
+		
+		D database = balancer.primary();
+		// Database may have been concurrently deactivated
+		T object = (database != null) ? this.collector.getTarget(factory, database) : null;
+		
+		if (object == null)
+		{
+			return null;
+		}
+		
+		try
+		{
+			return Collections.singletonSortedMap(database, invoker.invoke(database, object));
+		}
+		catch (Exception e)
+		{
+			throw factory.getExceptionFactory().createException(e);
+		}
+	}
+
+	/**
+	 * Deactivates any databases whose invocation failed, or whose outcome is inconsistent with that of the primary database.
+	 * @param factory a proxy factory
+	 * @param resultMap the results of the successful invocations, indexed by database
+	 * @param exceptionMap the exceptions of the failed invocations, indexed by database
+	 * @return the results of the successful invocations
+	 * @throws E the exception thrown by the primary database, if it failed
+	 */
+	static <Z, D extends Database<Z>, T, R, E extends Exception> SortedMap<D, R> reconcile(ProxyFactory<Z, D, T, E> factory, SortedMap<D, R> resultMap, SortedMap<D, E> exceptionMap) throws E
+	{
 		ExceptionFactory<E> exceptionFactory = factory.getExceptionFactory();
-		SortedMap<D, R> resultMap = results.getKey();
-		SortedMap<D, E> exceptionMap = results.getValue();
 		
 		if (!exceptionMap.isEmpty())
 		{
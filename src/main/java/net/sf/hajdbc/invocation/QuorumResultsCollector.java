@@ -0,0 +1,278 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.invocation;
+
+import java.util.AbstractMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.ExceptionFactory;
+import net.sf.hajdbc.Messages;
+import net.sf.hajdbc.invocation.AllResultsCollector.ExecutorProvider;
+import net.sf.hajdbc.invocation.AllResultsCollector.Invocation;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+import net.sf.hajdbc.sql.ProxyFactory;
+import net.sf.hajdbc.sql.TransactionContext;
+import net.sf.hajdbc.sql.TransactionalProxyFactory;
+import net.sf.hajdbc.util.Objects;
+
+/**
+ * Invokes on all databases, but returns as soon as the primary database and a quorum of backup databases have completed.
+ * The quorum is defined by {@link DatabaseCluster#getWriteQuorum()}.
+ * The remaining invocations complete asynchronously, after which any database that failed, or whose result differs from that of the primary database, is deactivated.
+ * Since results are compared via {@link Objects#equals(Object, Object)}, this collector is only suitable for methods that return simple values, e.g. update counts.
+ * The remaining invocations are registered with the {@link TransactionContext} of the proxy factory, which defers any subsequent invocation on the same connection until they complete.
+ * Consequently, proxy factories without a transaction context always wait for all databases.
+ * Callers must not use this collector for auto-commit or locked writes, whose locks and durability events are released as soon as the invocation returns.
+ * @author Paul Ferraro
+ */
+public class QuorumResultsCollector implements InvokeOnManyInvocationStrategy.ResultsCollector
+{
+	protected final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final ExecutorProvider provider;
+	private final InvokeOnManyInvocationStrategy.ResultsCollector collector;
+
+	public QuorumResultsCollector(ExecutorProvider provider)
+	{
+		this.provider = provider;
+		this.collector = new AllResultsCollector(provider, true);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <Z, D extends Database<Z>, T, R, E extends Exception> Map.Entry<SortedMap<D, R>, SortedMap<D, E>> collectResults(ProxyFactory<Z, D, T, E> factory, Invoker<Z, D, T, R, E> invoker)
+	{
+		DatabaseCluster<Z, D> cluster = factory.getDatabaseCluster();
+		Set<D> databaseSet = cluster.getBalancer();
+		int quorum = cluster.getWriteQuorum();
+
+		// Nothing to gain if we need to wait for every backup anyway
+		if ((quorum < 0) || (quorum >= (databaseSet.size() - 1)) || !(factory instanceof TransactionalProxyFactory))
+		{
+			return this.collector.collectResults(factory, invoker);
+		}
+
+		ExceptionFactory<E> exceptionFactory = factory.getExceptionFactory();
+		BlockingQueue<Future<R>> queue = new LinkedBlockingQueue<Future<R>>();
+		// Primary database uses the provided executor, so that serial transaction mode still completes the primary first
+		CompletionService<R> primaryService = new ExecutorCompletionService<R>(this.provider.getExecutor(cluster), queue);
+		CompletionService<R> backupService = new ExecutorCompletionService<R>(cluster.getExecutor(), queue);
+		Map<Future<R>, D> futureMap = new IdentityHashMap<Future<R>, D>();
+		D primaryDatabase = null;
+
+		for (D database: databaseSet)
+		{
+			Invocation<Z, D, T, R, E> invocation = new Invocation<Z, D, T, R, E>(invoker, database, factory.get(database));
+
+			if (primaryDatabase == null)
+			{
+				primaryDatabase = database;
+				futureMap.put(primaryService.submit(invocation), database);
+			}
+			else
+			{
+				futureMap.put(backupService.submit(invocation), database);
+			}
+		}
+
+		SortedMap<D, R> resultMap = new TreeMap<D, R>();
+		SortedMap<D, E> exceptionMap = new TreeMap<D, E>();
+		int remaining = futureMap.size();
+
+		try
+		{
+			// Wait for all databases if the primary failed, so the usual consistency checks apply
+			while ((remaining > 0) && !(resultMap.containsKey(primaryDatabase) && (resultMap.size() > quorum)))
+			{
+				Future<R> future = queue.take();
+				D database = futureMap.get(future);
+				remaining -= 1;
+
+				try
+				{
+					resultMap.put(database, future.get());
+				}
+				catch (ExecutionException e)
+				{
+					// If this database was concurrently deactivated, just ignore the failure
+					if (databaseSet.contains(database))
+					{
+						exceptionMap.put(database, exceptionFactory.createException(e.getCause()));
+					}
+				}
+			}
+
+			return new AbstractMap.SimpleImmutableEntry<SortedMap<D, R>, SortedMap<D, E>>(resultMap, exceptionMap);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+		finally
+		{
+			if (remaining > 0)
+			{
+				SortedMap<D, R> primaryResultMap = new TreeMap<D, R>();
+				if (resultMap.containsKey(primaryDatabase))
+				{
+					primaryResultMap.put(primaryDatabase, resultMap.get(primaryDatabase));
+				}
+				Stragglers<Z, D, T, R, E> stragglers = new Stragglers<Z, D, T, R, E>(factory, queue, futureMap, remaining, primaryDatabase, primaryResultMap);
+				TransactionContext<?, ?> context = ((TransactionalProxyFactory<?, ?, ?, ?>) factory).getTransactionContext();
+				try
+				{
+					context.addPendingInvocations(cluster.getExecutor().submit(stragglers));
+				}
+				catch (RejectedExecutionException e)
+				{
+					// Never skip the consistency checks, just forgo the early return
+					this.logger.log(Level.WARN, e);
+					stragglers.run();
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <Z, D extends Database<Z>, T, E extends Exception> T getTarget(ProxyFactory<Z, D, T, E> factory, D database)
+	{
+		return factory.get(database);
+	}
+
+	/**
+	 * Waits for the invocations that did not complete within the quorum, then deactivates any failed or inconsistent databases.
+	 */
+	private static class Stragglers<Z, D extends Database<Z>, T, R, E extends Exception> implements Runnable
+	{
+		private static final Logger logger = LoggerFactory.getLogger(QuorumResultsCollector.class);
+
+		private final ProxyFactory<Z, D, T, E> factory;
+		private final BlockingQueue<Future<R>> queue;
+		private final Map<Future<R>, D> futureMap;
+		private final int count;
+		private final D primaryDatabase;
+		private final SortedMap<D, R> primaryResultMap;
+
+		/**
+		 * @param primaryResultMap contains the result of the primary database, if it completed successfully
+		 */
+		Stragglers(ProxyFactory<Z, D, T, E> factory, BlockingQueue<Future<R>> queue, Map<Future<R>, D> futureMap, int count, D primaryDatabase, SortedMap<D, R> primaryResultMap)
+		{
+			this.factory = factory;
+			this.queue = queue;
+			this.futureMap = futureMap;
+			this.count = count;
+			this.primaryDatabase = primaryDatabase;
+			this.primaryResultMap = primaryResultMap;
+		}
+
+		@Override
+		public void run()
+		{
+			DatabaseCluster<Z, D> cluster = this.factory.getDatabaseCluster();
+			ExceptionFactory<E> exceptionFactory = this.factory.getExceptionFactory();
+			SortedMap<D, R> resultMap = new TreeMap<D, R>(this.primaryResultMap);
+			SortedMap<D, E> exceptionMap = new TreeMap<D, E>();
+
+			try
+			{
+				for (int i = 0; i < this.count; ++i)
+				{
+					Future<R> future = this.queue.take();
+					D database = this.futureMap.get(future);
+
+					try
+					{
+						resultMap.put(database, future.get());
+					}
+					catch (ExecutionException e)
+					{
+						// If this database was concurrently deactivated, just ignore the failure
+						if (cluster.getBalancer().contains(database))
+						{
+							exceptionMap.put(database, exceptionFactory.createException(e.getCause()));
+						}
+					}
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+
+			if (resultMap.containsKey(this.primaryDatabase))
+			{
+				R primaryResult = resultMap.get(this.primaryDatabase);
+				Iterator<Map.Entry<D, R>> results = resultMap.tailMap(this.primaryDatabase).entrySet().iterator();
+				// Skip primary
+				results.next();
+
+				while (results.hasNext())
+				{
+					Map.Entry<D, R> entry = results.next();
+					R result = entry.getValue();
+
+					if (!Objects.equals(primaryResult, result))
+					{
+						results.remove();
+						D database = entry.getKey();
+
+						if (cluster.deactivate(database, cluster.getStateManager()))
+						{
+							logger.log(Level.ERROR, Messages.DATABASE_INCONSISTENT.getMessage(), database, cluster, primaryResult, result);
+						}
+					}
+				}
+			}
+
+			if (!exceptionMap.isEmpty())
+			{
+				try
+				{
+					InvokeOnManyInvocationStrategy.reconcile(this.factory, resultMap, exceptionMap);
+				}
+				catch (Exception e)
+				{
+					logger.log(Level.WARN, e);
+				}
+			}
+		}
+	}
+}
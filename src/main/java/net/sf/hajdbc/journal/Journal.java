@@ -0,0 +1,278 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.journal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+
+/**
+ * Bounded, in-memory journal of the writes committed by the active databases of a cluster, while any of its databases is inactive.
+ * Writes are recorded in commit order, keyed by the transaction identifier used by the durability layer.
+ * While active, commits of journaled writes are serialized via {@link #begin()} and {@link #end(boolean)}, such that their order in the journal matches their order on the databases.
+ * Once the number of journaled writes would exceed the capacity of the journal, or a write cannot be journaled, the journal is invalidated for every inactive database, and recording stops until another database is deactivated.
+ * @author Paul Ferraro
+ */
+public class Journal
+{
+	private static final Logger logger = LoggerFactory.getLogger(Journal.class);
+	// Position of a database that missed writes that were not journaled
+	private static final long INCOMPLETE = -1;
+	
+	private final int capacity;
+	// Committed transactions in commit order
+	private final Map<Object, Record> records = new LinkedHashMap<Object, Record>();
+	// Sequence of the first record that each inactive database may have missed
+	private final Map<String, Long> positions = new HashMap<String, Long>();
+	private long sequence = 0;
+	private int size = 0;
+	private volatile boolean active = false;
+	// Serializes commits while active
+	private final Lock commitLock = new ReentrantLock();
+	
+	/**
+	 * @param capacity the maximum number of journaled writes
+	 */
+	public Journal(int capacity)
+	{
+		this.capacity = capacity;
+	}
+	
+	/**
+	 * Returns the maximum number of writes retained by this journal.
+	 * @return a number of writes
+	 */
+	public int getCapacity()
+	{
+		return this.capacity;
+	}
+	
+	/**
+	 * Indicates whether this journal is currently recording writes, i.e. whether any inactive database can still be synchronized from this journal.
+	 * @return true, if writes are recorded, false otherwise
+	 */
+	public boolean isActive()
+	{
+		return this.active;
+	}
+	
+	/**
+	 * Starts tracking the writes missed by the specified database, which was just deactivated.
+	 * Has no effect if the specified database is already tracked.
+	 * @param databaseId a database identifier
+	 */
+	public synchronized void start(String databaseId)
+	{
+		if (!this.positions.containsKey(databaseId))
+		{
+			this.positions.put(databaseId, this.sequence);
+			this.active = true;
+		}
+	}
+	
+	/**
+	 * Stops tracking the writes missed by the specified database, which was just activated, and discards any writes no longer needed by another database.
+	 * @param databaseId a database identifier
+	 */
+	public synchronized void stop(String databaseId)
+	{
+		if (this.positions.remove(databaseId) != null)
+		{
+			this.trim();
+		}
+	}
+	
+	/**
+	 * Begins the commit of journaled writes, which must be followed by {@link #end(boolean)} once the commit is appended, or has failed.
+	 * While this journal is active, commits are serialized.
+	 * A commit that begins while this journal is inactive is not serialized, but can never be replayed:
+	 * any database deactivated during such a commit was still active when the committing transaction determined its active databases,
+	 * so the commit either includes that database, or invalidates the journal for it.
+	 * @return true, if this commit is serialized, false otherwise
+	 */
+	public boolean begin()
+	{
+		if (!this.active)
+		{
+			return false;
+		}
+		this.commitLock.lock();
+		return true;
+	}
+	
+	/**
+	 * Ends the commit begun via {@link #begin()}.
+	 * @param serialized the value returned by {@link #begin()}
+	 */
+	public void end(boolean serialized)
+	{
+		if (serialized)
+		{
+			this.commitLock.unlock();
+		}
+	}
+	
+	/**
+	 * Records the writes of a committed transaction.
+	 * @param transactionId the identifier of the transaction
+	 * @param entries the writes of the transaction, in execution order
+	 * @param databases the identifiers of the databases on which the transaction committed
+	 */
+	public synchronized void append(Object transactionId, List<JournalEntry> entries, Set<String> databases)
+	{
+		if (!this.active || entries.isEmpty())
+		{
+			return;
+		}
+		
+		if ((this.size + entries.size()) > this.capacity)
+		{
+			logger.log(Level.WARN, "Journal capacity of {0} writes exceeded, inactive databases {1} can no longer be synchronized from the journal", this.capacity, this.positions.keySet());
+			this.clear();
+			return;
+		}
+		
+		this.records.put(transactionId, new Record(this.sequence++, new ArrayList<JournalEntry>(entries), databases));
+		this.size += entries.size();
+	}
+	
+	/**
+	 * Invalidates this journal for every inactive database, e.g. following a write that could not be journaled.
+	 */
+	public synchronized void invalidate()
+	{
+		if (this.active)
+		{
+			logger.log(Level.WARN, "Journal invalidated, inactive databases {0} can no longer be synchronized from the journal", this.positions.keySet());
+			this.clear();
+		}
+	}
+	
+	/**
+	 * Invalidates this journal for the specified inactive database only, e.g. since it is unknown whether a journaled transaction committed on it.
+	 * Has no effect if the specified database is not tracked.
+	 * @param databaseId a database identifier
+	 */
+	public synchronized void invalidate(String databaseId)
+	{
+		Long position = this.positions.get(databaseId);
+		
+		if ((position != null) && (position.longValue() != INCOMPLETE))
+		{
+			logger.log(Level.WARN, "Journal invalidated, inactive database {0} can no longer be synchronized from the journal", databaseId);
+			this.positions.put(databaseId, INCOMPLETE);
+			this.trim();
+		}
+	}
+	
+	/**
+	 * Returns the writes missed by the specified database since it was deactivated, in commit order.
+	 * @param databaseId a database identifier
+	 * @return a list of journal entries, or null if the journal does not contain every write missed by the specified database
+	 */
+	public synchronized List<JournalEntry> getEntries(String databaseId)
+	{
+		Long position = this.positions.get(databaseId);
+		
+		if ((position == null) || (position.longValue() == INCOMPLETE))
+		{
+			return null;
+		}
+		
+		List<JournalEntry> entries = new ArrayList<JournalEntry>();
+		
+		for (Record record: this.records.values())
+		{
+			if ((record.sequence >= position.longValue()) && !record.databases.contains(databaseId))
+			{
+				entries.addAll(record.entries);
+			}
+		}
+		
+		return entries;
+	}
+	
+	/**
+	 * Discards any writes no longer needed by an inactive database.
+	 */
+	private void trim()
+	{
+		long position = Long.MAX_VALUE;
+		
+		for (long value: this.positions.values())
+		{
+			if (value != INCOMPLETE)
+			{
+				position = Math.min(position, value);
+			}
+		}
+		
+		Iterator<Record> records = this.records.values().iterator();
+		
+		while (records.hasNext())
+		{
+			Record record = records.next();
+			
+			if (record.sequence >= position)
+			{
+				break;
+			}
+			
+			this.size -= record.entries.size();
+			records.remove();
+		}
+		
+		this.active = (position != Long.MAX_VALUE);
+	}
+	
+	private void clear()
+	{
+		for (Map.Entry<String, Long> entry: this.positions.entrySet())
+		{
+			entry.setValue(INCOMPLETE);
+		}
+		
+		this.records.clear();
+		this.size = 0;
+		this.active = false;
+	}
+	
+	private static class Record
+	{
+		final long sequence;
+		final List<JournalEntry> entries;
+		final Set<String> databases;
+		
+		Record(long sequence, List<JournalEntry> entries, Set<String> databases)
+		{
+			this.sequence = sequence;
+			this.entries = entries;
+			this.databases = databases;
+		}
+	}
+}
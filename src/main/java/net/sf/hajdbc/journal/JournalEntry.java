@@ -0,0 +1,35 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.journal;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A write recorded by a {@link Journal}, that can be replayed against a database that missed it.
+ * @author Paul Ferraro
+ */
+public interface JournalEntry
+{
+	/**
+	 * Re-executes this write via the specified connection.
+	 * @param connection a connection to the database being synchronized
+	 * @throws SQLException if the write failed
+	 */
+	void replay(Connection connection) throws SQLException;
+}
@@ -0,0 +1,164 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.journal;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLXML;
+import java.sql.Struct;
+import java.util.List;
+
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.util.Resources;
+import net.sf.hajdbc.util.reflect.Methods;
+
+/**
+ * Journal entry for a write executed via {@link PreparedStatement#execute()}, {@link PreparedStatement#executeUpdate()}, or {@link PreparedStatement#executeBatch()}.
+ * @author Paul Ferraro
+ */
+public class PreparedStatementJournalEntry implements JournalEntry
+{
+	private final String sql;
+	private final List<List<Parameter>> parameterSets;
+	private final boolean batch;
+	
+	/**
+	 * @param sql the evaluated SQL of the prepared statement
+	 * @param parameterSets the parameters of each execution, i.e. a single set, unless this is a batch
+	 * @param batch indicates whether the parameter sets were executed as a batch
+	 */
+	public PreparedStatementJournalEntry(String sql, List<List<Parameter>> parameterSets, boolean batch)
+	{
+		this.sql = sql;
+		this.parameterSets = parameterSets;
+		this.batch = batch;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.journal.JournalEntry#replay(java.sql.Connection)
+	 */
+	@Override
+	public void replay(Connection connection) throws SQLException
+	{
+		PreparedStatement statement = connection.prepareStatement(this.sql);
+		
+		try
+		{
+			for (List<Parameter> parameters: this.parameterSets)
+			{
+				for (Parameter parameter: parameters)
+				{
+					parameter.apply(statement);
+				}
+				
+				if (this.batch)
+				{
+					statement.addBatch();
+				}
+				else
+				{
+					statement.execute();
+				}
+			}
+			
+			if (this.batch)
+			{
+				statement.executeBatch();
+			}
+		}
+		finally
+		{
+			Resources.close(statement);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.sql;
+	}
+	
+	/**
+	 * A recorded invocation of a parameter setter of a prepared statement.
+	 */
+	public static class Parameter
+	{
+		// Values that are either consumed when set, or bound to the database that created them
+		private static final Class<?>[] unreplayableTypes = new Class<?>[] { InputStream.class, Reader.class, Blob.class, Clob.class, SQLXML.class, Array.class, Ref.class, RowId.class, Struct.class };
+		
+		private final Method method;
+		private final Object[] arguments;
+		
+		/**
+		 * @param method a setter method of {@link PreparedStatement}
+		 * @param arguments the arguments of the setter, the first of which is the parameter index
+		 */
+		public Parameter(Method method, Object[] arguments)
+		{
+			this.method = method;
+			this.arguments = arguments.clone();
+		}
+		
+		/**
+		 * Returns the parameter index or name of this setter, i.e. its first argument.
+		 * @return a parameter index or name
+		 */
+		public Object getIndex()
+		{
+			return this.arguments[0];
+		}
+		
+		/**
+		 * Indicates whether this setter can be applied to a statement of another database, after the fact.
+		 * @return true, if the value of this parameter can be replayed, false otherwise
+		 */
+		public boolean isReplayable()
+		{
+			for (Object argument: this.arguments)
+			{
+				if (argument != null)
+				{
+					for (Class<?> type: unreplayableTypes)
+					{
+						if (type.isInstance(argument))
+						{
+							return false;
+						}
+					}
+				}
+			}
+			
+			return true;
+		}
+		
+		void apply(PreparedStatement statement) throws SQLException
+		{
+			Methods.<Object, SQLException>invoke(this.method, ExceptionType.SQL.<SQLException>getExceptionFactory(), statement, this.arguments);
+		}
+	}
+}
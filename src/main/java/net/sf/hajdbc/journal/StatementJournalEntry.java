@@ -0,0 +1,97 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.journal;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.hajdbc.util.Resources;
+
+/**
+ * Journal entry for a write executed via {@link Statement#execute(String)}, {@link Statement#executeUpdate(String)}, or {@link Statement#executeBatch()}.
+ * @author Paul Ferraro
+ */
+public class StatementJournalEntry implements JournalEntry
+{
+	private final List<String> statements;
+	private final boolean batch;
+	
+	/**
+	 * Creates a journal entry for a single statement.
+	 * @param sql an evaluated SQL statement
+	 */
+	public StatementJournalEntry(String sql)
+	{
+		this(Collections.singletonList(sql), false);
+	}
+	
+	/**
+	 * Creates a journal entry for a batch of statements.
+	 * @param batch a list of evaluated SQL statements
+	 */
+	public StatementJournalEntry(List<String> batch)
+	{
+		this(batch, true);
+	}
+	
+	private StatementJournalEntry(List<String> statements, boolean batch)
+	{
+		this.statements = statements;
+		this.batch = batch;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.journal.JournalEntry#replay(java.sql.Connection)
+	 */
+	@Override
+	public void replay(Connection connection) throws SQLException
+	{
+		Statement statement = connection.createStatement();
+		
+		try
+		{
+			if (this.batch)
+			{
+				for (String sql: this.statements)
+				{
+					statement.addBatch(sql);
+				}
+				
+				statement.executeBatch();
+			}
+			else
+			{
+				statement.execute(this.statements.get(0));
+			}
+		}
+		finally
+		{
+			Resources.close(statement);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.batch ? this.statements.toString() : this.statements.get(0);
+	}
+}
@@ -309,7 +309,7 @@ public class DistributedLockManager implements LockManager, LockCommandContext,
 	}
 
 
-	private static class RemoteLockDescriptorImpl implements RemoteLockDescriptor
+	static class RemoteLockDescriptorImpl implements RemoteLockDescriptor
 	{
 		private static final long serialVersionUID = 1950781245453120790L;
 		
@@ -0,0 +1,107 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.lock.distributed;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+import net.sf.hajdbc.distributed.CommandExternalizer;
+import net.sf.hajdbc.distributed.Member;
+
+/**
+ * Externalizers for the commands sent by {@link DistributedLock} on every lock and unlock.
+ * @author Paul Ferraro
+ */
+public class LockCommandExternalizers
+{
+	static void writeDescriptor(ObjectOutput output, RemoteLockDescriptor descriptor) throws IOException
+	{
+		output.writeObject(descriptor.getId());
+		output.writeByte(descriptor.getType().ordinal());
+		output.writeObject(descriptor.getMember());
+	}
+	
+	static RemoteLockDescriptor readDescriptor(ObjectInput input) throws IOException, ClassNotFoundException
+	{
+		String id = (String) input.readObject();
+		LockType type = LockType.values()[input.readUnsignedByte()];
+		Member member = (Member) input.readObject();
+		
+		return new DistributedLockManager.RemoteLockDescriptorImpl(id, type, member);
+	}
+	
+	public static class MemberAcquireLockCommandExternalizer implements CommandExternalizer<MemberAcquireLockCommand>
+	{
+		@Override
+		public int getId()
+		{
+			return 1;
+		}
+
+		@Override
+		public Class<MemberAcquireLockCommand> getTargetClass()
+		{
+			return MemberAcquireLockCommand.class;
+		}
+
+		@Override
+		public void writeObject(ObjectOutput output, MemberAcquireLockCommand command) throws IOException
+		{
+			writeDescriptor(output, command.getDescriptor());
+		}
+
+		@Override
+		public MemberAcquireLockCommand readObject(ObjectInput input) throws IOException, ClassNotFoundException
+		{
+			return new MemberAcquireLockCommand(readDescriptor(input));
+		}
+	}
+	
+	public static class MemberReleaseLockCommandExternalizer implements CommandExternalizer<MemberReleaseLockCommand>
+	{
+		@Override
+		public int getId()
+		{
+			return 2;
+		}
+
+		@Override
+		public Class<MemberReleaseLockCommand> getTargetClass()
+		{
+			return MemberReleaseLockCommand.class;
+		}
+
+		@Override
+		public void writeObject(ObjectOutput output, MemberReleaseLockCommand command) throws IOException
+		{
+			writeDescriptor(output, command.getDescriptor());
+		}
+
+		@Override
+		public MemberReleaseLockCommand readObject(ObjectInput input) throws IOException, ClassNotFoundException
+		{
+			return new MemberReleaseLockCommand(readDescriptor(input));
+		}
+	}
+	
+	private LockCommandExternalizers()
+	{
+		// Hide
+	}
+}
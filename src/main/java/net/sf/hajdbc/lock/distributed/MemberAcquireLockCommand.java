@@ -40,6 +40,11 @@ public class MemberAcquireLockCommand implements Command<Boolean, LockCommandCon
 		this.descriptor = descriptor;
 	}
 
+	RemoteLockDescriptor getDescriptor()
+	{
+		return this.descriptor;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.distributed.Command#execute(java.lang.Object)
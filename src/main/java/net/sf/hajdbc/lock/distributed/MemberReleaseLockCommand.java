@@ -42,6 +42,11 @@ public class MemberReleaseLockCommand implements Command<Void, LockCommandContex
 		this.descriptor = descriptor;
 	}
 
+	RemoteLockDescriptor getDescriptor()
+	{
+		return this.descriptor;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.distributed.Command#execute(java.lang.Object)
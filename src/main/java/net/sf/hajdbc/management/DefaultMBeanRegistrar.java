@@ -27,6 +27,7 @@ import javax.management.ObjectName;
 
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.SynchronizationProgress;
 import net.sf.hajdbc.logging.Level;
 import net.sf.hajdbc.logging.Logger;
 import net.sf.hajdbc.logging.LoggerFactory;
@@ -42,6 +43,7 @@ public class DefaultMBeanRegistrar<Z, D extends Database<Z>> implements MBeanReg
 	
 	private static final String CLUSTER_TYPE = "DatabaseCluster";
 	private static final String DATABASE_TYPE = "Database";
+	private static final String SYNCHRONIZATION_TYPE = "Synchronization";
 	
 	private static final Logger logger = LoggerFactory.getLogger(DefaultMBeanRegistrar.class);
 	
@@ -83,6 +85,16 @@ public class DefaultMBeanRegistrar<Z, D extends Database<Z>> implements MBeanReg
 		this.register(database, this.createAttributes(cluster, database));
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.management.MBeanRegistrar#register(net.sf.hajdbc.DatabaseCluster, net.sf.hajdbc.Database, net.sf.hajdbc.SynchronizationProgress)
+	 */
+	@Override
+	public void register(DatabaseCluster<Z, D> cluster, D database, SynchronizationProgress progress) throws JMException
+	{
+		this.register(progress, this.createAttributes(cluster, database, SYNCHRONIZATION_TYPE));
+	}
+
 	private void register(Object object, Hashtable<String, String> attributes) throws JMException
 	{
 		ObjectName name = this.createObjectName(attributes);
@@ -110,6 +122,16 @@ public class DefaultMBeanRegistrar<Z, D extends Database<Z>> implements MBeanReg
 		this.unregister(this.createAttributes(cluster, database));
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.management.MBeanRegistrar#unregister(net.sf.hajdbc.DatabaseCluster, net.sf.hajdbc.Database, net.sf.hajdbc.SynchronizationProgress)
+	 */
+	@Override
+	public void unregister(DatabaseCluster<Z, D> cluster, D database, SynchronizationProgress progress)
+	{
+		this.unregister(this.createAttributes(cluster, database, SYNCHRONIZATION_TYPE));
+	}
+
 	private void unregister(Hashtable<String, String> attributes)
 	{
 		try
@@ -136,9 +158,14 @@ public class DefaultMBeanRegistrar<Z, D extends Database<Z>> implements MBeanReg
 	}
 
 	private Hashtable<String, String> createAttributes(DatabaseCluster<Z, D> cluster, D database)
+	{
+		return this.createAttributes(cluster, database, DATABASE_TYPE);
+	}
+
+	private Hashtable<String, String> createAttributes(DatabaseCluster<Z, D> cluster, D database, String type)
 	{
 		Hashtable<String, String> attributes = new Hashtable<String, String>();
-		attributes.put(TYPE_ATTRIBUTE, DATABASE_TYPE);
+		attributes.put(TYPE_ATTRIBUTE, type);
 		attributes.put(CLUSTER_ATTRIBUTE, cluster.getId());
 		attributes.put(DATABASE_ATTRIBUTE, database.getId());
 		return attributes;
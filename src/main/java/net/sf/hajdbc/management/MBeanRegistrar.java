@@ -21,6 +21,7 @@ import javax.management.JMException;
 
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.SynchronizationProgress;
 
 /**
  * @author Paul Ferraro
@@ -32,4 +33,27 @@ public interface MBeanRegistrar<Z, D extends Database<Z>>
 	
 	void unregister(DatabaseCluster<Z, D> cluster);
 	void unregister(DatabaseCluster<Z, D> cluster, D database);
+	
+	/**
+	 * Registers the progress of the synchronization of the specified database.
+	 * Does nothing by default.
+	 * @param cluster a database cluster
+	 * @param database the database being synchronized
+	 * @param progress an annotated MBean
+	 * @throws JMException if registration failed
+	 */
+	default void register(DatabaseCluster<Z, D> cluster, D database, SynchronizationProgress progress) throws JMException
+	{
+	}
+	
+	/**
+	 * Unregisters the progress of the synchronization of the specified database.
+	 * Does nothing by default.
+	 * @param cluster a database cluster
+	 * @param database the database that was synchronized
+	 * @param progress a registered MBean
+	 */
+	default void unregister(DatabaseCluster<Z, D> cluster, D database, SynchronizationProgress progress)
+	{
+	}
 }
@@ -18,6 +18,7 @@
 package net.sf.hajdbc.sql;
 
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 import net.sf.hajdbc.Database;
@@ -37,7 +38,8 @@ public abstract class AbstractChildProxyFactory<Z, D extends Database<Z>, P, PE
 	
 	protected AbstractChildProxyFactory(P parentProxy, ProxyFactory<Z, D, P, PE> parent, Invoker<Z, D, P, T, PE> invoker, Map<D, T> map, Class<E> exceptionClass)
 	{
-		super(parent.getDatabaseCluster(), map, exceptionClass);
+		// Adopt the results of an invocation, unless immutable, e.g. the singleton results of a single database cluster
+		super(parent.getDatabaseCluster(), (map instanceof TreeMap) ? map : new TreeMap<D, T>(map), exceptionClass);
 		this.parentProxy = parentProxy;
 		this.invoker = invoker;
 		this.parent = parent;
@@ -49,6 +49,7 @@ import net.sf.hajdbc.ExecutorServiceProvider;
 import net.sf.hajdbc.Identifiable;
 import net.sf.hajdbc.IdentifiableMatcher;
 import net.sf.hajdbc.Messages;
+import net.sf.hajdbc.ResultComparator;
 import net.sf.hajdbc.SynchronizationStrategy;
 import net.sf.hajdbc.TransactionMode;
 import net.sf.hajdbc.balancer.BalancerFactory;
@@ -58,6 +59,7 @@ import net.sf.hajdbc.codec.MultiplexingDecoderFactory;
 import net.sf.hajdbc.dialect.DialectFactory;
 import net.sf.hajdbc.distributed.CommandDispatcherFactory;
 import net.sf.hajdbc.durability.DurabilityFactory;
+import net.sf.hajdbc.invocation.ExactResultComparator;
 import net.sf.hajdbc.io.InputSinkProvider;
 import net.sf.hajdbc.lock.LockManagerFactory;
 import net.sf.hajdbc.management.DefaultMBeanRegistrar;
@@ -549,6 +551,50 @@ public abstract class AbstractDatabaseClusterConfiguration<Z, D extends Database
 		this.getNestedConfiguration().setEmptyClusterAllowed(emptyClusterAllowed);
 	}
 	
+	@Override
+	public int getWriteQuorum()
+	{
+		return this.getNestedConfiguration().getWriteQuorum();
+	}
+
+	public void setWriteQuorum(int quorum)
+	{
+		this.getNestedConfiguration().setWriteQuorum(quorum);
+	}
+	
+	@Override
+	public ResultComparator getResultComparator()
+	{
+		return this.getNestedConfiguration().getResultComparator();
+	}
+	
+	public void setResultComparator(ResultComparator comparator)
+	{
+		this.getNestedConfiguration().setResultComparator(comparator);
+	}
+	
+	@Override
+	public int getResultSampleSize()
+	{
+		return this.getNestedConfiguration().getResultSampleSize();
+	}
+	
+	public void setResultSampleSize(int sampleSize)
+	{
+		this.getNestedConfiguration().setResultSampleSize(sampleSize);
+	}
+	
+	@Override
+	public int getJournalCapacity()
+	{
+		return this.getNestedConfiguration().getJournalCapacity();
+	}
+	
+	public void setJournalCapacity(int capacity)
+	{
+		this.getNestedConfiguration().setJournalCapacity(capacity);
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.DatabaseClusterConfiguration#getTransactionIdentifierFactory()
@@ -584,6 +630,8 @@ public abstract class AbstractDatabaseClusterConfiguration<Z, D extends Database
 		@XmlAttribute(name = "input-sink")
 		private InputSinkProvider sinkSourceProvider = ServiceLoaders.findService(InputSinkProvider.class);
 		
+		@XmlJavaTypeAdapter(ExecutorServiceProviderAdapter.class)
+		@XmlAttribute(name = "executor")
 		private ExecutorServiceProvider executorProvider = new DefaultExecutorServiceProvider();
 		private ThreadFactory threadFactory = Executors.defaultThreadFactory();
 		private DecoderFactory decoderFactory = new MultiplexingDecoderFactory();
@@ -616,6 +664,17 @@ public abstract class AbstractDatabaseClusterConfiguration<Z, D extends Database
 
 		@XmlAttribute(name = "allow-empty-cluster")
 		private Boolean emptyClusterAllowed = false;
+
+		@XmlAttribute(name = "write-quorum")
+		private Integer writeQuorum;
+		
+		@XmlJavaTypeAdapter(ResultComparatorAdapter.class)
+		@XmlAttribute(name = "result-comparator")
+		private ResultComparator resultComparator = new ExactResultComparator();
+		@XmlAttribute(name = "result-sample-size")
+		private Integer resultSampleSize = 0;
+		@XmlAttribute(name = "journal-capacity")
+		private Integer journalCapacity = 0;
 		
 		private String defaultSynchronizationStrategy;
 		
@@ -900,6 +959,50 @@ public abstract class AbstractDatabaseClusterConfiguration<Z, D extends Database
 		{
 			this.emptyClusterAllowed = emptyClusterAllowed;
 		}
+
+		@Override
+		public int getWriteQuorum()
+		{
+			return (this.writeQuorum != null) ? this.writeQuorum : Integer.MAX_VALUE;
+		}
+
+		void setWriteQuorum(int quorum)
+		{
+			this.writeQuorum = quorum;
+		}
+
+		@Override
+		public ResultComparator getResultComparator()
+		{
+			return this.resultComparator;
+		}
+
+		void setResultComparator(ResultComparator comparator)
+		{
+			this.resultComparator = comparator;
+		}
+
+		@Override
+		public int getResultSampleSize()
+		{
+			return this.resultSampleSize;
+		}
+
+		void setResultSampleSize(int sampleSize)
+		{
+			this.resultSampleSize = sampleSize;
+		}
+
+		@Override
+		public int getJournalCapacity()
+		{
+			return this.journalCapacity;
+		}
+
+		void setJournalCapacity(int capacity)
+		{
+			this.journalCapacity = capacity;
+		}
 	}
 
 	static class IdentifiableServiceAdapter<T extends Identifiable> extends XmlAdapter<String, T>
@@ -948,6 +1051,22 @@ public abstract class AbstractDatabaseClusterConfiguration<Z, D extends Database
 		}
 	}
 
+	static class ExecutorServiceProviderAdapter extends IdentifiableServiceAdapter<ExecutorServiceProvider>
+	{
+		ExecutorServiceProviderAdapter()
+		{
+			super(ExecutorServiceProvider.class);
+		}
+	}
+
+	static class ResultComparatorAdapter extends IdentifiableServiceAdapter<ResultComparator>
+	{
+		ResultComparatorAdapter()
+		{
+			super(ResultComparator.class);
+		}
+	}
+
 	static class TransactionModeAdapter extends EnumAdapter<TransactionMode, TransactionModeEnum>
 	{
 		@Override
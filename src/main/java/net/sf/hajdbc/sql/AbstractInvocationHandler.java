@@ -21,6 +21,7 @@ import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DatabaseCluster;
 import net.sf.hajdbc.ExceptionFactory;
 import net.sf.hajdbc.Messages;
+import net.sf.hajdbc.ResultComparator;
 import net.sf.hajdbc.invocation.*;
 import net.sf.hajdbc.logging.Level;
 import net.sf.hajdbc.logging.Logger;
@@ -30,13 +31,16 @@ import net.sf.hajdbc.sql.serial.SerialLocatorFactory;
 import net.sf.hajdbc.state.health.ClusterHealth;
 import net.sf.hajdbc.util.StopWatch;
 import net.sf.hajdbc.util.Tracer;
+import net.sf.hajdbc.util.concurrent.CompletionStages;
 import net.sf.hajdbc.util.reflect.Methods;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Wrapper;
 import java.util.*;
+import java.util.concurrent.CompletionStage;
 
 /**
  * 
@@ -48,14 +52,36 @@ public class AbstractInvocationHandler<Z, D extends Database<Z>, T, E extends Ex
 	private static final Method hashCodeMethod = Methods.getMethod(Object.class, "hashCode");
 	private static final Method toStringMethod = Methods.getMethod(Object.class, "toString");
 	private static final Set<Method> wrapperMethods = Methods.findMethods(Wrapper.class, "isWrapperFor", "unwrap");
+	// Stateless, so can be shared by all invocations
+	@SuppressWarnings("rawtypes")
+	private static final InvocationResultFactory simpleResultFactory = new SimpleInvocationResultFactory();
+	// Marks methods whose invocation strategy must be resolved per invocation
+	private static final InvocationStrategy DYNAMIC_STRATEGY = new InvocationStrategy()
+	{
+		@Override
+		public <Z, D extends Database<Z>, T, R, E extends Exception> SortedMap<D, R> invoke(ProxyFactory<Z, D, T, E> proxy, Invoker<Z, D, T, R, E> invoker)
+		{
+			throw new IllegalStateException();
+		}
+	};
+	private static final ClassValue<InvocationStrategyTable> invocationStrategyTables = new ClassValue<InvocationStrategyTable>()
+	{
+		@Override
+		protected InvocationStrategyTable computeValue(Class<?> handlerClass)
+		{
+			return new InvocationStrategyTable();
+		}
+	};
 	protected final Logger logger = LoggerFactory.getLogger(this.getClass());
 	private final Class<T> proxyClass;
 	private final F proxyFactory;
+	private final InvocationStrategyTable invocationStrategyTable;
 	
 	protected AbstractInvocationHandler(Class<T> targetClass, F proxyFactory)
 	{
 		this.proxyClass = targetClass;
 		this.proxyFactory = proxyFactory;
+		this.invocationStrategyTable = invocationStrategyTables.get(this.getClass());
 	}
 	
 	@Override
@@ -74,20 +100,58 @@ public class AbstractInvocationHandler<Z, D extends Database<Z>, T, E extends Ex
 			throw new SQLException(Messages.CLUSTER_NOT_ACTIVE.getMessage(cluster));
 		}
 		
+		if (this.proxyFactory instanceof TransactionalProxyFactory)
+		{
+			// A preceding quorum write may still be running against the same connection
+			((TransactionalProxyFactory<?, ?, ?, ?>) this.proxyFactory).getTransactionContext().awaitPendingInvocations();
+		}
+		
 		return this.invokeOnProxy(this.proxyClass.cast(proxy), method, args);
 	}
 
 	private <R> R invokeOnProxy(T proxy, Method method, Object... parameters) throws E
 	{
-		InvocationStrategy strategy = this.getInvocationStrategy(proxy, method, parameters);
+		InvocationStrategy strategy = this.resolveInvocationStrategy(proxy, method, parameters);
 
 		Invoker<Z, D, T, R, E> invoker = this.getInvoker(proxy, method, parameters);
+		DigestingInvoker<Z, D, T, R, E> digester = this.createDigester(invoker, method);
 
 		//this.logger.log(Level.INFO, "Invoking {0} using {1}", method, strategy);
-		StopWatch stopWatch = StopWatch.createStarted();
-		SortedMap<D, R> results = strategy.invoke(this.proxyFactory, invoker);
+		boolean trace = Tracer.invoke.isTrace();
+		StopWatch stopWatch = trace ? StopWatch.createStarted() : null;
+		SortedMap<D, R> results;
+		InvocationResultFactory<Z, D, R> resultFactory;
+		
+		if (strategy instanceof AsyncInvocationStrategy)
+		{
+			CompletionStage<SortedMap<D, R>> stage = ((AsyncInvocationStrategy) strategy).invokeAsync(this.proxyFactory, (digester != null) ? digester : invoker);
+			
+			// Prepare the result factory while the remaining databases complete
+			try
+			{
+				resultFactory = this.createResultFactory(invoker, proxy, method, parameters);
+			}
+			catch (RuntimeException | Error e)
+			{
+				this.join(stage);
+				throw e;
+			}
+			catch (Exception e)
+			{
+				// Failure of the invocation takes precedence
+				this.join(stage);
+				throw this.proxyFactory.getExceptionFactory().createException(e);
+			}
+			
+			results = this.join(stage);
+		}
+		else
+		{
+			results = strategy.invoke(this.proxyFactory, (digester != null) ? digester : invoker);
+			resultFactory = null;
+		}
 
-		if(Tracer.invoke.isTrace()) {
+		if(trace) {
 			List<String> ps = new ArrayList<>();
 			if(parameters!=null){
 				for (Object parameter : parameters) {
@@ -98,9 +162,10 @@ public class AbstractInvocationHandler<Z, D extends Database<Z>, T, E extends Ex
 		}
 		this.postInvoke(invoker, proxy, method, parameters);
 		
-		@SuppressWarnings("unchecked")
-		ProxyFactoryFactory<Z, D, T, E, R, ? extends Exception> factory = (ProxyFactoryFactory<Z, D, T, E, R, ? extends Exception>) this.getProxyFactoryFactory(proxy, method, parameters);
-		InvocationResultFactory<Z, D, R> resultFactory = (factory != null) ? new ProxyInvocationResultFactory<Z, D, T, R, E>(factory, proxy, this.getProxyFactory(), invoker) : new SimpleInvocationResultFactory<Z, D, R>();
+		if (resultFactory == null)
+		{
+			resultFactory = this.createResultFactory(invoker, proxy, method, parameters);
+		}
 		if(isAllInvoke(strategy)){
 			DatabaseCluster<Z, D> cluster = this.proxyFactory.getDatabaseCluster();
 			ClusterHealth clusterHealth = cluster.getClusterHealth();
@@ -109,7 +174,53 @@ public class AbstractInvocationHandler<Z, D extends Database<Z>, T, E extends Ex
 			}
 		}
 
-		return this.createResult(resultFactory, results);
+		return this.createResult(resultFactory, results, digester);
+	}
+
+	/**
+	 * Creates the factory for the result of the specified method, which does not depend on the outcome of the invocation.
+	 */
+	private <R> InvocationResultFactory<Z, D, R> createResultFactory(Invoker<Z, D, T, R, E> invoker, T proxy, Method method, Object... parameters) throws E
+	{
+		@SuppressWarnings("unchecked")
+		ProxyFactoryFactory<Z, D, T, E, R, ? extends Exception> factory = (ProxyFactoryFactory<Z, D, T, E, R, ? extends Exception>) this.getProxyFactoryFactory(proxy, method, parameters);
+		@SuppressWarnings("unchecked")
+		InvocationResultFactory<Z, D, R> resultFactory = (factory != null) ? new ProxyInvocationResultFactory<Z, D, T, R, E>(factory, proxy, this.getProxyFactory(), invoker) : (InvocationResultFactory<Z, D, R>) simpleResultFactory;
+		return resultFactory;
+	}
+
+	/**
+	 * Creates an invoker that digests the results of the specified invoker, if the results of the specified method are supported by the configured result comparator.
+	 * @return a digesting invoker, or null, if results should be compared in full
+	 */
+	private <R> DigestingInvoker<Z, D, T, R, E> createDigester(Invoker<Z, D, T, R, E> invoker, Method method)
+	{
+		DatabaseCluster<Z, D> cluster = this.proxyFactory.getDatabaseCluster();
+		ResultComparator comparator = cluster.getResultComparator();
+		
+		// Nothing to compare against a single database
+		return ((comparator != null) && comparator.supports(method.getReturnType()) && this.isResultDigestible(method) && (cluster.getBalancer().size() > 1)) ? new DigestingInvoker<Z, D, T, R, E>(invoker, comparator, cluster.getResultSampleSize(), this.proxyFactory.getExceptionFactory()) : null;
+	}
+
+	/**
+	 * Indicates whether the result of the specified method may be digested, if supported by the configured result comparator.
+	 * By default, result sets are never digested, since this requires materializing them.
+	 * @param method a proxied method
+	 * @return true, if the result of this method may be digested, false otherwise
+	 */
+	protected boolean isResultDigestible(Method method)
+	{
+		return !ResultSet.class.isAssignableFrom(method.getReturnType());
+	}
+
+	/**
+	 * Waits for the results of an asynchronous invocation.
+	 * This is the only point at which the calling thread blocks, since the JDBC API is itself synchronous.
+	 * By then, the calling thread has already invoked the primary database, and prepared the result factory.
+	 */
+	private <R> SortedMap<D, R> join(CompletionStage<SortedMap<D, R>> stage) throws E
+	{
+		return CompletionStages.join(stage, this.proxyFactory.getExceptionFactory());
 	}
 
 	private boolean isAllInvoke(InvocationStrategy strategy) {
@@ -126,6 +237,43 @@ public class AbstractInvocationHandler<Z, D extends Database<Z>, T, E extends Ex
 		return null;
 	}
 	
+	/**
+	 * Resolves the invocation strategy for the specified method via the strategy table of this handler class.
+	 * Only dynamic methods, and the first invocation of every other method, are delegated to {@link #getInvocationStrategy(Object, Method, Object...)}.
+	 */
+	private InvocationStrategy resolveInvocationStrategy(T proxy, Method method, Object... parameters) throws E
+	{
+		InvocationStrategy strategy = this.invocationStrategyTable.get(method);
+		
+		if (strategy == DYNAMIC_STRATEGY)
+		{
+			return this.getInvocationStrategy(proxy, method, parameters);
+		}
+		
+		if (strategy == null)
+		{
+			boolean dynamic = this.isInvocationStrategyDynamic(method);
+			
+			strategy = this.getInvocationStrategy(proxy, method, parameters);
+			
+			this.invocationStrategyTable.put(method, dynamic ? DYNAMIC_STRATEGY : strategy);
+		}
+		
+		return strategy;
+	}
+	
+	/**
+	 * Indicates whether the invocation strategy of the specified method depends on the proxied object, the invocation parameters, or the state of the proxy factory.
+	 * If not, the strategy returned by {@link #getInvocationStrategy(Object, Method, Object...)} for the first invocation of the method is reused for all subsequent invocations, by any handler of this class.
+	 * Subclasses that resolve strategies dynamically must override this method accordingly.
+	 * @param method a proxied method
+	 * @return true, if the strategy must be resolved per invocation, false otherwise
+	 */
+	protected boolean isInvocationStrategyDynamic(Method method)
+	{
+		return false;
+	}
+	
 	/**
 	 * Returns the appropriate {@link InvocationStrategy} for the specified method.
 	 * This implementation detects {@link java.sql.Wrapper} methods; and {@link Object#equals}, {@link Object#hashCode()}, and {@link Object#toString()}.
@@ -215,7 +363,7 @@ public class AbstractInvocationHandler<Z, D extends Database<Z>, T, E extends Ex
 		return this.getInvoker(method, parameters);
 	}
 	
-	private <R> R createResult(InvocationResultFactory<Z, D, R> factory, SortedMap<D, R> resultMap) throws E
+	private <R> R createResult(InvocationResultFactory<Z, D, R> factory, SortedMap<D, R> resultMap, DigestingInvoker<Z, D, T, R, E> digester) throws E
 	{
 		DatabaseCluster<Z, D> cluster = this.proxyFactory.getDatabaseCluster();
 		
@@ -224,15 +372,23 @@ public class AbstractInvocationHandler<Z, D extends Database<Z>, T, E extends Ex
 			throw this.proxyFactory.getExceptionFactory().createException(Messages.NO_ACTIVE_DATABASES.getMessage(cluster));
 		}
 		
+		// Nothing to compare
+		if (resultMap.size() == 1)
+		{
+			return (resultMap.get(resultMap.firstKey()) != null) ? factory.createResult(resultMap) : null;
+		}
+		
 		Iterator<Map.Entry<D, R>> results = resultMap.entrySet().iterator();
-		R primaryResult = results.next().getValue();
+		Map.Entry<D, R> primaryEntry = results.next();
+		D primaryDatabase = primaryEntry.getKey();
+		R primaryResult = primaryEntry.getValue();
 		
 		while (results.hasNext())
 		{
 			Map.Entry<D, R> entry = results.next();
 			R result = entry.getValue();
 			
-			if (factory.differs(primaryResult, result))
+			if ((digester != null) ? digester.differs(primaryDatabase, entry.getKey()) : factory.differs(primaryResult, result))
 			{
 				results.remove();
 				D database = entry.getKey();
@@ -251,4 +407,25 @@ public class AbstractInvocationHandler<Z, D extends Database<Z>, T, E extends Ex
 	{
 		// Do nothing
 	}
+	
+	/**
+	 * Copy-on-write identity table of invocation strategies, such that a lookup is a single probe of an array.
+	 * Proxy classes reuse the same {@link Method} instances for every invocation, so identity suffices.
+	 */
+	private static class InvocationStrategyTable
+	{
+		private volatile Map<Method, InvocationStrategy> strategies = new IdentityHashMap<Method, InvocationStrategy>();
+		
+		InvocationStrategy get(Method method)
+		{
+			return this.strategies.get(method);
+		}
+		
+		synchronized void put(Method method, InvocationStrategy strategy)
+		{
+			Map<Method, InvocationStrategy> strategies = new IdentityHashMap<Method, InvocationStrategy>(this.strategies);
+			strategies.put(method, strategy);
+			this.strategies = strategies;
+		}
+	}
 }
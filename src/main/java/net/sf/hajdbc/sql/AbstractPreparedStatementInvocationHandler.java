@@ -31,6 +31,7 @@ import net.sf.hajdbc.invocation.InvocationStrategies;
 import net.sf.hajdbc.invocation.InvocationStrategy;
 import net.sf.hajdbc.invocation.Invoker;
 import net.sf.hajdbc.invocation.LockingInvocationStrategy;
+import net.sf.hajdbc.journal.JournalEntry;
 import net.sf.hajdbc.util.reflect.Methods;
 
 /**
@@ -46,6 +47,8 @@ public abstract class AbstractPreparedStatementInvocationHandler<Z, D extends Da
 	private static final Method executeQueryMethod = Methods.getMethod(PreparedStatement.class, "executeQuery");
 	private static final Method clearParametersMethod = Methods.getMethod(PreparedStatement.class, "clearParameters");
 	private static final Method addBatchMethod = Methods.getMethod(PreparedStatement.class, "addBatch");
+	private static final Method clearBatchMethod = Methods.getMethod(PreparedStatement.class, "clearBatch");
+	private static final Method executeBatchMethod = Methods.getMethod(PreparedStatement.class, "executeBatch");
 	
 	private final Set<Method> setMethods;
 	
@@ -84,7 +87,7 @@ public abstract class AbstractPreparedStatementInvocationHandler<Z, D extends Da
 		
 		if (method.equals(executeMethod) || method.equals(executeUpdateMethod))
 		{
-			return this.getProxyFactory().getTransactionContext().start(new LockingInvocationStrategy(InvocationStrategies.TRANSACTION_INVOKE_ON_ALL, this.getProxyFactory().getLocks()), this.getProxyFactory().getParentProxy());
+			return this.getWriteInvocationStrategy(this.getProxyFactory().getLocks());
 		}
 		
 		if (method.equals(executeQueryMethod))
@@ -112,6 +115,12 @@ public abstract class AbstractPreparedStatementInvocationHandler<Z, D extends Da
 		return super.getInvocationStrategy(statement, method, parameters);
 	}
 
+	@Override
+	protected boolean isInvocationStrategyDynamic(Method method)
+	{
+		return method.equals(executeMethod) || method.equals(executeUpdateMethod) || method.equals(executeQueryMethod) || super.isInvocationStrategyDynamic(method);
+	}
+
 	@Override
 	protected <R> Invoker<Z, D, S, R, SQLException> getInvoker(S statement, final Method method, final Object... parameters) throws SQLException
 	{
@@ -122,6 +131,55 @@ public abstract class AbstractPreparedStatementInvocationHandler<Z, D extends Da
 		
 		return super.getInvoker(statement, method, parameters);
 	}
+
+	@Override
+	protected boolean isJournaledMethod(Method method)
+	{
+		return method.equals(executeMethod) || method.equals(executeUpdateMethod) || super.isJournaledMethod(method);
+	}
+
+	@Override
+	protected JournalEntry createJournalEntry(Method method, Object... parameters) throws SQLException
+	{
+		if (method.equals(executeMethod) || method.equals(executeUpdateMethod))
+		{
+			return this.getProxyFactory().createJournalEntry(false);
+		}
+		
+		if (method.equals(executeBatchMethod))
+		{
+			return this.getProxyFactory().createJournalEntry(true);
+		}
+		
+		return super.createJournalEntry(method, parameters);
+	}
+
+	@Override
+	protected <R> void postInvoke(Invoker<Z, D, S, R, SQLException> invoker, S proxy, Method method, Object... parameters)
+	{
+		// Parameters are only needed to journal writes
+		if (this.getProxyFactory().getDatabaseCluster().getJournal() != null)
+		{
+			if (this.isSetParameterMethod(method))
+			{
+				this.getProxyFactory().setParameter(method, parameters);
+			}
+			else if (method.equals(clearParametersMethod))
+			{
+				this.getProxyFactory().clearParameters();
+			}
+			else if (method.equals(addBatchMethod))
+			{
+				this.getProxyFactory().addParameterBatch();
+			}
+			else if (method.equals(clearBatchMethod) || method.equals(executeBatchMethod))
+			{
+				this.getProxyFactory().clearParameterBatches();
+			}
+		}
+		
+		super.postInvoke(invoker, proxy, method, parameters);
+	}
 	
 	@Override
 	protected boolean isBatchMethod(Method method)
@@ -17,15 +17,22 @@
  */
 package net.sf.hajdbc.sql;
 
+import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.Lock;
 
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.invocation.Invoker;
+import net.sf.hajdbc.journal.JournalEntry;
+import net.sf.hajdbc.journal.PreparedStatementJournalEntry;
 
 /**
  * 
@@ -33,16 +40,26 @@ import net.sf.hajdbc.invocation.Invoker;
  */
 public abstract class AbstractPreparedStatementProxyFactory<Z, D extends Database<Z>, S extends PreparedStatement> extends AbstractStatementProxyFactory<Z, D, S>
 {
+	private final String sql;
 	private final List<Lock> locks;
 	private final boolean selectForUpdate;
+	// Current parameters, and parameters of the current batch, recorded only if writes are journaled
+	private final Map<Object, PreparedStatementJournalEntry.Parameter> parameters = new LinkedHashMap<Object, PreparedStatementJournalEntry.Parameter>();
+	private final List<List<PreparedStatementJournalEntry.Parameter>> parameterBatches = new LinkedList<List<PreparedStatementJournalEntry.Parameter>>();
 	
-	protected AbstractPreparedStatementProxyFactory(Connection parent, ProxyFactory<Z, D, Connection, SQLException> parentFactory, Invoker<Z, D, Connection, S, SQLException> invoker, Map<D, S> map, TransactionContext<Z, D> context, List<Lock> locks, boolean selectForUpdate)
+	protected AbstractPreparedStatementProxyFactory(Connection parent, ProxyFactory<Z, D, Connection, SQLException> parentFactory, Invoker<Z, D, Connection, S, SQLException> invoker, Map<D, S> map, TransactionContext<Z, D> context, String sql, List<Lock> locks, boolean selectForUpdate)
 	{
 		super(parent, parentFactory, invoker, map, context);
+		this.sql = sql;
 		this.locks = locks;
 		this.selectForUpdate = selectForUpdate;
 	}
 
+	public String getSQL()
+	{
+		return this.sql;
+	}
+
 	public List<Lock> getLocks()
 	{
 		return this.locks;
@@ -52,4 +69,55 @@ public abstract class AbstractPreparedStatementProxyFactory<Z, D extends Databas
 	{
 		return this.selectForUpdate;
 	}
+	
+	public void setParameter(Method method, Object... arguments)
+	{
+		PreparedStatementJournalEntry.Parameter parameter = new PreparedStatementJournalEntry.Parameter(method, arguments);
+		
+		this.parameters.put(parameter.getIndex(), parameter);
+	}
+	
+	public void clearParameters()
+	{
+		this.parameters.clear();
+	}
+	
+	public void addParameterBatch()
+	{
+		this.parameterBatches.add(new ArrayList<PreparedStatementJournalEntry.Parameter>(this.parameters.values()));
+	}
+	
+	public void clearParameterBatches()
+	{
+		this.parameterBatches.clear();
+	}
+	
+	/**
+	 * Creates a journal entry for the execution of this statement, using its recorded parameters.
+	 * @param batch indicates whether the recorded batch is executed
+	 * @return a journal entry, or null if the statement or a parameter cannot be replayed
+	 * @throws SQLException if the statement could not be parsed
+	 */
+	public JournalEntry createJournalEntry(boolean batch) throws SQLException
+	{
+		if (!this.isReplayable(this.sql))
+		{
+			return null;
+		}
+		
+		List<List<PreparedStatementJournalEntry.Parameter>> parameterSets = batch ? new ArrayList<List<PreparedStatementJournalEntry.Parameter>>(this.parameterBatches) : Collections.<List<PreparedStatementJournalEntry.Parameter>>singletonList(new ArrayList<PreparedStatementJournalEntry.Parameter>(this.parameters.values()));
+		
+		for (List<PreparedStatementJournalEntry.Parameter> parameters: parameterSets)
+		{
+			for (PreparedStatementJournalEntry.Parameter parameter: parameters)
+			{
+				if (!parameter.isReplayable())
+				{
+					return null;
+				}
+			}
+		}
+		
+		return new PreparedStatementJournalEntry(this.sql, parameterSets, batch);
+	}
 }
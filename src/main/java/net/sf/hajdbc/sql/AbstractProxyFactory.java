@@ -138,6 +138,15 @@ public abstract class AbstractProxyFactory<Z, D extends Database<Z>, TE extends
 			return object;
 		}
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public T getExisting(D database)
+	{
+		return this.map.get(database);
+	}
 	
 	protected abstract T create(D database) throws TE;
 
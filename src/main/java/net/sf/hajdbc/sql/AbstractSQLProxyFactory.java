@@ -151,6 +151,61 @@ public abstract class AbstractSQLProxyFactory<Z, D extends Database<Z>, P, T> ex
 		return lockList;
 	}
 
+	@Override
+	public boolean isReplayable(String sql) throws SQLException
+	{
+		return this.isReplayable(Collections.singleton(sql));
+	}
+	
+	/**
+	 * Indicates whether the specified evaluated statements have the same effect when replayed on another database.
+	 * This is not the case for statements that generate keys via a sequence or an identity column, or that contain non-deterministic functions that were not evaluated.
+	 * @param statements evaluated SQL statements
+	 * @return true, if the statements can be replayed, false otherwise
+	 * @throws SQLException if the statements could not be parsed
+	 */
+	protected boolean isReplayable(Collection<String> statements) throws SQLException
+	{
+		DatabaseCluster<Z, D> cluster = this.getDatabaseCluster();
+		Dialect dialect = cluster.getDialect();
+		SequenceSupport sequenceSupport = dialect.getSequenceSupport();
+		IdentityColumnSupport identityColumnSupport = dialect.getIdentityColumnSupport();
+		long now = System.currentTimeMillis();
+		
+		for (String sql: statements)
+		{
+			if ((sequenceSupport != null) && (sequenceSupport.parseSequence(sql) != null))
+			{
+				return false;
+			}
+			
+			if (identityColumnSupport != null)
+			{
+				String table = identityColumnSupport.parseInsertTable(sql);
+				
+				if (table != null)
+				{
+					TableProperties tableProperties = this.getDatabaseProperties().findTable(table);
+					
+					if ((tableProperties == null) || !tableProperties.getIdentityColumns().isEmpty())
+					{
+						return false;
+					}
+				}
+			}
+			
+			// Any remaining date/time or random functions would evaluate differently
+			String evaluatedSQL = dialect.evaluateRand(dialect.evaluateCurrentTime(dialect.evaluateCurrentDate(dialect.evaluateCurrentTimestamp(sql, new java.sql.Timestamp(now)), new java.sql.Date(now)), new java.sql.Time(now)));
+			
+			if (!evaluatedSQL.equals(sql))
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+
 	private DatabaseProperties getDatabaseProperties() throws SQLException
 	{
 		DatabaseCluster<Z, D> cluster = this.getDatabaseCluster();
@@ -22,15 +22,19 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
 
 import net.sf.hajdbc.Database;
+import net.sf.hajdbc.ResultComparator;
 import net.sf.hajdbc.invocation.InvocationStrategies;
 import net.sf.hajdbc.invocation.InvocationStrategy;
 import net.sf.hajdbc.invocation.Invoker;
 import net.sf.hajdbc.invocation.LockingInvocationStrategy;
+import net.sf.hajdbc.journal.JournalEntry;
+import net.sf.hajdbc.journal.StatementJournalEntry;
 import net.sf.hajdbc.logging.Level;
 import net.sf.hajdbc.util.Resources;
 import net.sf.hajdbc.util.reflect.Methods;
@@ -53,6 +57,7 @@ public abstract class AbstractStatementInvocationHandler<Z, D extends Database<Z
 	private static final Method executeBatchMethod = Methods.getMethod(Statement.class, "executeBatch");
 	private static final Method getMoreResultsMethod = Methods.getMethod(Statement.class, "getMoreResults", Integer.TYPE);
 	private static final Method getResultSetMethod = Methods.getMethod(Statement.class, "getResultSet");
+	private static final Method getGeneratedKeysMethod = Methods.getMethod(Statement.class, "getGeneratedKeys");
 	private static final Method addBatchMethod = Methods.getMethod(Statement.class, "addBatch", String.class);
 	private static final Method closeMethod = Methods.getMethod(Statement.class, "close");
 	
@@ -75,6 +80,14 @@ public abstract class AbstractStatementInvocationHandler<Z, D extends Database<Z
 	@Override
 	protected InvocationStrategy getInvocationStrategy(S statement, Method method, Object... parameters) throws SQLException
 	{
+		if (method.equals(getGeneratedKeysMethod))
+		{
+			ResultComparator comparator = this.getProxyFactory().getDatabaseCluster().getResultComparator();
+			
+			// Compare generated keys across databases, if the configured comparator can digest them
+			return ((comparator != null) && comparator.supports(ResultSet.class)) ? InvocationStrategies.INVOKE_ON_EXISTING : InvocationStrategies.INVOKE_ON_ANY;
+		}
+		
 		if (driverReadMethodSet.contains(method))
 		{
 			return InvocationStrategies.INVOKE_ON_ANY;
@@ -89,7 +102,7 @@ public abstract class AbstractStatementInvocationHandler<Z, D extends Database<Z
 		{
 			List<Lock> locks = this.getProxyFactory().extractLocks((String) parameters[0]);
 			
-			return this.getProxyFactory().getTransactionContext().start(new LockingInvocationStrategy(InvocationStrategies.TRANSACTION_INVOKE_ON_ALL, locks), this.getProxyFactory().getParentProxy());
+			return this.getWriteInvocationStrategy(locks);
 		}
 		
 		if (method.equals(executeQueryMethod))
@@ -118,7 +131,7 @@ public abstract class AbstractStatementInvocationHandler<Z, D extends Database<Z
 		
 		if (method.equals(executeBatchMethod))
 		{
-			return this.getProxyFactory().getTransactionContext().start(new LockingInvocationStrategy(InvocationStrategies.TRANSACTION_INVOKE_ON_ALL, this.getProxyFactory().getBatchLocks()), this.getProxyFactory().getParentProxy());
+			return this.getWriteInvocationStrategy(this.getProxyFactory().getBatchLocks());
 		}
 		
 		if (method.equals(getMoreResultsMethod))
@@ -142,6 +155,34 @@ public abstract class AbstractStatementInvocationHandler<Z, D extends Database<Z
 		return super.getInvocationStrategy(statement, method, parameters);
 	}
 
+	/**
+	 * Returns the strategy for a write using the specified locks.
+	 * Only unlocked writes within a transaction may complete on a quorum of databases, since the locks, and the durability event of an auto-commit write, are released once the invocation returns.
+	 * The remaining databases complete before any subsequent invocation on the same connection, see {@link TransactionContext#addPendingInvocations(java.util.concurrent.Future)}.
+	 * @param locks the locks required by the write
+	 * @return an invocation strategy
+	 * @throws SQLException if the auto-commit mode of the connection could not be determined
+	 */
+	protected InvocationStrategy getWriteInvocationStrategy(List<Lock> locks) throws SQLException
+	{
+		Connection connection = this.getProxyFactory().getParentProxy();
+		InvocationStrategy strategy = (locks.isEmpty() && !connection.getAutoCommit()) ? InvocationStrategies.TRANSACTION_INVOKE_ON_QUORUM : InvocationStrategies.TRANSACTION_INVOKE_ON_ALL;
+		
+		return this.getProxyFactory().getTransactionContext().start(new LockingInvocationStrategy(strategy, locks), connection);
+	}
+
+	@Override
+	protected boolean isInvocationStrategyDynamic(Method method)
+	{
+		return executeMethodSet.contains(method) || method.equals(executeQueryMethod) || method.equals(executeBatchMethod) || method.equals(getMoreResultsMethod) || method.equals(getResultSetMethod) || method.equals(getGeneratedKeysMethod) || super.isInvocationStrategyDynamic(method);
+	}
+
+	@Override
+	protected boolean isResultDigestible(Method method)
+	{
+		return method.equals(getGeneratedKeysMethod) || super.isResultDigestible(method);
+	}
+
 	@Override
 	protected <R> Invoker<Z, D, S, R, SQLException> getInvoker(S proxy, Method method, Object... parameters) throws SQLException
 	{
@@ -150,9 +191,50 @@ public abstract class AbstractStatementInvocationHandler<Z, D extends Database<Z
 			parameters[0] = this.getProxyFactory().evaluate((String) parameters[0]);
 		}
 		
+		// Record the evaluated write, which the transaction context journals once it succeeds
+		if (this.isJournaledMethod(method) && (this.getProxyFactory().getDatabaseCluster().getJournal() != null))
+		{
+			this.getProxyFactory().getTransactionContext().journal(this.createJournalEntry(method, parameters));
+		}
+		
 		return super.getInvoker(proxy, method, parameters);
 	}
 
+	/**
+	 * Indicates whether the specified method writes to the database, such that it must be journaled for inactive databases.
+	 * @param method a statement method
+	 * @return true, if the method must be journaled, false otherwise
+	 */
+	protected boolean isJournaledMethod(Method method)
+	{
+		return executeMethodSet.contains(method) || method.equals(executeBatchMethod);
+	}
+
+	/**
+	 * Creates a journal entry for the specified write.
+	 * @param method a journaled method
+	 * @param parameters the evaluated parameters of the method
+	 * @return a journal entry, or null if the write cannot be replayed
+	 * @throws SQLException if the write could not be parsed
+	 */
+	protected JournalEntry createJournalEntry(Method method, Object... parameters) throws SQLException
+	{
+		if (method.equals(executeBatchMethod))
+		{
+			return this.getProxyFactory().isBatchReplayable() ? new StatementJournalEntry(new ArrayList<String>(this.getProxyFactory().getBatch())) : null;
+		}
+		
+		// Generated keys would differ on replay
+		if ((parameters.length > 1) && !Integer.valueOf(Statement.NO_GENERATED_KEYS).equals(parameters[1]))
+		{
+			return null;
+		}
+		
+		String sql = (String) parameters[0];
+		
+		return this.getProxyFactory().isReplayable(sql) ? new StatementJournalEntry(sql) : null;
+	}
+
 	@Override
 	protected <R> void postInvoke(Invoker<Z, D, S, R, SQLException> invoker, S proxy, Method method, Object... parameters)
 	{
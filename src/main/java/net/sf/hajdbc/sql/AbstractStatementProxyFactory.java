@@ -57,6 +57,11 @@ public abstract class AbstractStatementProxyFactory<Z, D extends Database<Z>, S
 		return this.extractLocks(this.batch);
 	}
 	
+	public boolean isBatchReplayable() throws SQLException
+	{
+		return this.isReplayable(this.batch);
+	}
+	
 	public void addBatchSQL(String sql)
 	{
 		this.batch.add(sql);
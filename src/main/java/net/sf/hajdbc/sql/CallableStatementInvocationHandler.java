@@ -26,6 +26,7 @@ import java.util.Set;
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.invocation.InvocationStrategies;
 import net.sf.hajdbc.invocation.InvocationStrategy;
+import net.sf.hajdbc.journal.JournalEntry;
 import net.sf.hajdbc.util.reflect.Methods;
 
 /**
@@ -75,6 +76,16 @@ public class CallableStatementInvocationHandler<Z, D extends Database<Z>> extend
 		return registerOutParameterMethods.contains(method) || super.isBatchMethod(method);
 	}
 
+	/**
+	 * Stored procedures may have side effects that do not replay consistently, so they invalidate the journal.
+	 * @see net.sf.hajdbc.sql.AbstractPreparedStatementInvocationHandler#createJournalEntry(java.lang.reflect.Method, java.lang.Object[])
+	 */
+	@Override
+	protected JournalEntry createJournalEntry(Method method, Object... parameters) throws SQLException
+	{
+		return null;
+	}
+
 	/**
 	 * @see net.sf.hajdbc.sql.AbstractPreparedStatementInvocationHandler#isIndexType(java.lang.Class)
 	 */
@@ -34,17 +34,19 @@ import net.sf.hajdbc.invocation.Invoker;
 public class CallableStatementProxyFactoryFactory<Z, D extends Database<Z>> implements ProxyFactoryFactory<Z, D, Connection, SQLException, CallableStatement, SQLException>
 {
 	private final TransactionContext<Z, D> context;
+	private final String sql;
 	private final List<Lock> locks;
 	
-	public CallableStatementProxyFactoryFactory(TransactionContext<Z, D> context, List<Lock> locks)
+	public CallableStatementProxyFactoryFactory(TransactionContext<Z, D> context, String sql, List<Lock> locks)
 	{
 		this.context = context;
+		this.sql = sql;
 		this.locks = locks;
 	}
 
 	@Override
 	public ProxyFactory<Z, D, CallableStatement, SQLException> createProxyFactory(Connection connection, ProxyFactory<Z, D, Connection, SQLException> parent, Invoker<Z, D, Connection, CallableStatement, SQLException> invoker, Map<D, CallableStatement> statements)
 	{
-		return new CallableStatementProxyFactory<Z, D>(connection, parent, invoker, statements, this.context, this.locks);
+		return new CallableStatementProxyFactory<Z, D>(connection, parent, invoker, statements, this.context, this.sql, this.locks);
 	}
 }
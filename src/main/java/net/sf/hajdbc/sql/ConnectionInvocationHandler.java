@@ -88,12 +88,12 @@ public class ConnectionInvocationHandler<Z, D extends Database<Z>, P> extends Ch
 		if (prepareStatementMethodSet.contains(method))
 		{
 			String sql = (String) parameters[0];
-			return new PreparedStatementProxyFactoryFactory<Z, D>(this.getProxyFactory().getTransactionContext(), this.getProxyFactory().extractLocks(sql), this.getProxyFactory().isSelectForUpdate(sql));
+			return new PreparedStatementProxyFactoryFactory<Z, D>(this.getProxyFactory().getTransactionContext(), sql, this.getProxyFactory().extractLocks(sql), this.getProxyFactory().isSelectForUpdate(sql));
 		}
 		if (prepareCallMethodSet.contains(method))
 		{
 			String sql = (String) parameters[0];
-			return new CallableStatementProxyFactoryFactory<Z, D>(this.getProxyFactory().getTransactionContext(), this.getProxyFactory().extractLocks(sql));
+			return new CallableStatementProxyFactoryFactory<Z, D>(this.getProxyFactory().getTransactionContext(), sql, this.getProxyFactory().extractLocks(sql));
 		}
 		
 		if (setSavepointMethodSet.contains(method))
@@ -174,12 +174,27 @@ public class ConnectionInvocationHandler<Z, D extends Database<Z>, P> extends Ch
 		return super.getInvocationStrategy(connection, method, parameters);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean isInvocationStrategyDynamic(Method method)
+	{
+		return endTransactionMethodSet.contains(method) || super.isInvocationStrategyDynamic(method);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	protected <R> Invoker<Z, D, Connection, R, SQLException> getInvoker(Connection connection, Method method, Object... parameters) throws SQLException
 	{
+		if (method.equals(rollbackSavepointMethod))
+		{
+			// Journaled writes since the savepoint are not discarded
+			this.getProxyFactory().getTransactionContext().invalidateJournal();
+		}
+		
 		if (method.equals(releaseSavepointMethod) || method.equals(rollbackSavepointMethod))
 		{
 			return this.getInvoker(Savepoint.class, 0, connection, method, parameters);
@@ -28,6 +28,7 @@ import net.sf.hajdbc.durability.Durability;
 import net.sf.hajdbc.durability.InvocationEvent;
 import net.sf.hajdbc.durability.InvokerEvent;
 import net.sf.hajdbc.io.InputSinkStrategy;
+import net.sf.hajdbc.journal.Journal;
 import net.sf.hajdbc.lock.LockManager;
 import net.sf.hajdbc.lock.distributed.DistributedLockManager;
 import net.sf.hajdbc.logging.Level;
@@ -50,6 +51,7 @@ import net.sf.hajdbc.state.health.observer.NetworkDetectObserveAdapter;
 import net.sf.hajdbc.state.sync.SyncMgr;
 import net.sf.hajdbc.sync.SynchronizationContext;
 import net.sf.hajdbc.sync.SynchronizationContextImpl;
+import net.sf.hajdbc.sync.SynchronizationMonitor;
 import net.sf.hajdbc.tx.TransactionIdentifierFactory;
 import net.sf.hajdbc.util.LocalHost;
 import net.sf.hajdbc.util.Resources;
@@ -92,6 +94,7 @@ public class DatabaseClusterImpl<Z, D extends Database<Z>> implements DatabaseCl
 	private LockManager lockManager;
 	private StateManager stateManager;
 	private InputSinkStrategy<? extends Object> sinkSourceFactory;
+	private volatile Journal journal;
 	
 	private boolean active = false;
 	private String localDbId = null;
@@ -469,6 +472,11 @@ public class DatabaseClusterImpl<Z, D extends Database<Z>> implements DatabaseCl
 		{
 			database.setActive(true);
 			
+			if (this.journal != null)
+			{
+				this.journal.stop(database.getId());
+			}
+			
 			if (database.isDirty())
 			{
 				database.clean();
@@ -496,6 +504,14 @@ public class DatabaseClusterImpl<Z, D extends Database<Z>> implements DatabaseCl
 		if(Tracer.db_state.isTrace()){
 			logger.log(Level.WARN, new Exception("trace db_state"),"deactivate {0}", database.getId());
 		}
+		Journal journal = this.journal;
+		
+		// Start tracking before removal, so that no write that excludes this database escapes the journal
+		if ((journal != null) && this.balancer.contains(database))
+		{
+			journal.start(database.getId());
+		}
+		
 		boolean removed = this.balancer.remove(database);
 		
 		if (removed)
@@ -649,6 +665,46 @@ public class DatabaseClusterImpl<Z, D extends Database<Z>> implements DatabaseCl
 		return this.executor;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.DatabaseCluster#getWriteQuorum()
+	 */
+	@Override
+	public int getWriteQuorum()
+	{
+		return this.configuration.getWriteQuorum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.DatabaseCluster#getResultComparator()
+	 */
+	@Override
+	public ResultComparator getResultComparator()
+	{
+		return this.configuration.getResultComparator();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.DatabaseCluster#getResultSampleSize()
+	 */
+	@Override
+	public int getResultSampleSize()
+	{
+		return this.configuration.getResultSampleSize();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.DatabaseCluster#getJournal()
+	 */
+	@Override
+	public Journal getJournal()
+	{
+		return this.journal;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.DatabaseCluster#getTransactionMode()
@@ -802,6 +858,21 @@ public class DatabaseClusterImpl<Z, D extends Database<Z>> implements DatabaseCl
 		this.executor = this.configuration.getExecutorProvider().getExecutor(this.configuration.getThreadFactory());
 		this.sinkSourceFactory = this.configuration.getInputSinkProvider().createInputSinkStrategy();
 		
+		int journalCapacity = this.configuration.getJournalCapacity();
+		
+		if (journalCapacity > 0)
+		{
+			// Writes of other cluster members are not visible to a local journal
+			if (dispatcherFactory == null)
+			{
+				this.journal = new Journal(journalCapacity);
+			}
+			else
+			{
+				logger.log(Level.WARN, "Write journal is not supported by distributed cluster {0}", this.id);
+			}
+		}
+		
 		this.lockManager.start();
 		this.stateManager.start();
 
@@ -1069,10 +1140,19 @@ public class DatabaseClusterImpl<Z, D extends Database<Z>> implements DatabaseCl
 				}
 
 				if (!this.balancer.isEmpty()) {
-					SynchronizationContext<Z, D> context = new SynchronizationContextImpl<Z, D>(this, database);
+					DatabaseEvent event = new DatabaseEvent(database);
+					SynchronizationMonitor monitor = new SynchronizationMonitor(event, this.synchronizationListeners);
+					SynchronizationContext<Z, D> context = new SynchronizationContextImpl<Z, D>(this, database, monitor);
+					MBeanRegistrar<Z, D> registrar = this.configuration.getMBeanRegistrar();
 
 					try {
-						DatabaseEvent event = new DatabaseEvent(database);
+						if (registrar != null) {
+							try {
+								registrar.register(this, database, monitor);
+							} catch (JMException e) {
+								logger.log(Level.WARN, e);
+							}
+						}
 
 						logger.log(Level.INFO, Messages.DATABASE_SYNC_START.getMessage(this, database));
 
@@ -1088,6 +1168,9 @@ public class DatabaseClusterImpl<Z, D extends Database<Z>> implements DatabaseCl
 							listener.afterSynchronization(event);
 						}
 					} finally {
+						if (registrar != null) {
+							registrar.unregister(this, database, monitor);
+						}
 						context.close();
 					}
 				}
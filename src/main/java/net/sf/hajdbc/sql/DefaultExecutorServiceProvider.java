@@ -32,6 +32,12 @@ public class DefaultExecutorServiceProvider implements ExecutorServiceProvider,
 {
 	private static final long serialVersionUID = 5781743869682086889L;
 
+	@Override
+	public String getId()
+	{
+		return "default";
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.ExecutorServiceProvider#getExecutor(java.util.concurrent.ThreadFactory)
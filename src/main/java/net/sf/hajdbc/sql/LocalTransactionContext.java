@@ -19,7 +19,15 @@ package net.sf.hajdbc.sql;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.locks.Lock;
 
 import net.sf.hajdbc.Database;
@@ -28,6 +36,8 @@ import net.sf.hajdbc.ExceptionType;
 import net.sf.hajdbc.durability.Durability;
 import net.sf.hajdbc.invocation.InvocationStrategy;
 import net.sf.hajdbc.invocation.Invoker;
+import net.sf.hajdbc.journal.Journal;
+import net.sf.hajdbc.journal.JournalEntry;
 import net.sf.hajdbc.tx.TransactionIdentifierFactory;
 
 /**
@@ -40,7 +50,18 @@ public class LocalTransactionContext<Z, D extends Database<Z>> implements Transa
 	final Durability<Z, D> durability;
 	private final Lock lock;
 	private final TransactionIdentifierFactory<? extends Object> transactionIdFactory;
+	private final Journal journal;
+	// Journaled writes of the current transaction, or of the pending auto-commit write
+	private final List<JournalEntry> journalEntries = new ArrayList<JournalEntry>();
+	private boolean journalComplete = true;
+	// Identifier of the transaction under which the first write of the journaled writes was tracked
+	private Object journalTransactionId;
+	// Write about to be executed, which is only journaled if it succeeds
+	private JournalEntry pendingJournalEntry;
+	private boolean journalPending = false;
 	volatile Object transactionId;
+	// Backup invocations of quorum writes that were still running when the write returned
+	private final Deque<Future<?>> pendingInvocations = new ConcurrentLinkedDeque<Future<?>>();
 	
 	/**
 	 * @param cluster
@@ -50,6 +71,7 @@ public class LocalTransactionContext<Z, D extends Database<Z>> implements Transa
 		this.lock = cluster.getLockManager().readLock(null);
 		this.durability = cluster.getDurability();
 		this.transactionIdFactory = cluster.getTransactionIdentifierFactory();
+		this.journal = cluster.getJournal();
 	}
 	
 	/**
@@ -59,7 +81,19 @@ public class LocalTransactionContext<Z, D extends Database<Z>> implements Transa
 	@Override
 	public InvocationStrategy start(final InvocationStrategy strategy, final Connection connection) throws SQLException
 	{
-		if (this.transactionId != null) return strategy;
+		if (this.transactionId != null)
+		{
+			if (this.journal == null) return strategy;
+			
+			return new InvocationStrategy()
+			{
+				@Override
+				public <ZZ, DD extends Database<ZZ>, T, R, E extends Exception> SortedMap<DD, R> invoke(ProxyFactory<ZZ, DD, T, E> proxy, Invoker<ZZ, DD, T, R, E> invoker) throws E
+				{
+					return LocalTransactionContext.this.invokeJournaled(strategy, proxy, invoker);
+				}
+			};
+		}
 		
 		if (connection.getAutoCommit())
 		{
@@ -73,11 +107,25 @@ public class LocalTransactionContext<Z, D extends Database<Z>> implements Transa
 					try
 					{
 						InvocationStrategy durabilityStrategy = LocalTransactionContext.this.durability.getInvocationStrategy(strategy, Durability.Phase.COMMIT, LocalTransactionContext.this.transactionId);
+						Set<String> databases = LocalTransactionContext.this.getActiveDatabases(proxy);
+						boolean serialized = LocalTransactionContext.this.beginCommit();
 						
-						return durabilityStrategy.invoke(proxy, invoker);
+						try
+						{
+							SortedMap<DD, R> results = LocalTransactionContext.this.invokeJournaled(durabilityStrategy, proxy, invoker);
+							
+							LocalTransactionContext.this.appendJournal(databases, results.keySet());
+							
+							return results;
+						}
+						finally
+						{
+							LocalTransactionContext.this.endCommit(serialized);
+						}
 					}
 					finally
 					{
+						LocalTransactionContext.this.clearJournal();
 						LocalTransactionContext.this.unlock();
 					}
 				}
@@ -93,7 +141,7 @@ public class LocalTransactionContext<Z, D extends Database<Z>> implements Transa
 				
 				try
 				{
-					return strategy.invoke(proxy, invoker);
+					return LocalTransactionContext.this.invokeJournaled(strategy, proxy, invoker);
 				}
 				catch (Throwable e)
 				{
@@ -133,7 +181,47 @@ public class LocalTransactionContext<Z, D extends Database<Z>> implements Transa
 	@Override
 	public InvocationStrategy end(final InvocationStrategy strategy, final Durability.Phase phase)
 	{
-		if (this.transactionId == null) return strategy;
+		if (this.transactionId == null)
+		{
+			if (this.journal == null) return strategy;
+			
+			return new InvocationStrategy()
+			{
+				@Override
+				public <ZZ, DD extends Database<ZZ>, T, R, E extends Exception> SortedMap<DD, R> invoke(ProxyFactory<ZZ, DD, T, E> proxy, Invoker<ZZ, DD, T, R, E> invoker) throws E
+				{
+					// Journal the writes of the transaction while holding the transaction lock, such that no activation can miss them
+					LocalTransactionContext.this.lock();
+					
+					try
+					{
+						Set<String> databases = LocalTransactionContext.this.getActiveDatabases(proxy);
+						boolean serialized = (phase == Durability.Phase.COMMIT) && LocalTransactionContext.this.beginCommit();
+						
+						try
+						{
+							SortedMap<DD, R> results = strategy.invoke(proxy, invoker);
+							
+							if (phase == Durability.Phase.COMMIT)
+							{
+								LocalTransactionContext.this.appendJournal(databases, results.keySet());
+							}
+							
+							return results;
+						}
+						finally
+						{
+							LocalTransactionContext.this.endCommit(serialized);
+						}
+					}
+					finally
+					{
+						LocalTransactionContext.this.clearJournal();
+						LocalTransactionContext.this.unlock();
+					}
+				}
+			};
+		}
 
 		return new InvocationStrategy()
 		{
@@ -141,13 +229,24 @@ public class LocalTransactionContext<Z, D extends Database<Z>> implements Transa
 			public <ZZ, DD extends Database<ZZ>, T, R, E extends Exception> SortedMap<DD, R> invoke(ProxyFactory<ZZ, DD, T, E> proxy, Invoker<ZZ, DD, T, R, E> invoker) throws E
 			{
 				InvocationStrategy durabilityStrategy = LocalTransactionContext.this.durability.getInvocationStrategy(strategy, phase, LocalTransactionContext.this.transactionId);
+				Set<String> databases = LocalTransactionContext.this.getActiveDatabases(proxy);
+				boolean serialized = (phase == Durability.Phase.COMMIT) && LocalTransactionContext.this.beginCommit();
 				
 				try
 				{
-					return durabilityStrategy.invoke(proxy, invoker);
+					SortedMap<DD, R> results = durabilityStrategy.invoke(proxy, invoker);
+					
+					if (phase == Durability.Phase.COMMIT)
+					{
+						LocalTransactionContext.this.appendJournal(databases, results.keySet());
+					}
+					
+					return results;
 				}
 				finally
 				{
+					LocalTransactionContext.this.endCommit(serialized);
+					LocalTransactionContext.this.clearJournal();
 					LocalTransactionContext.this.unlock();
 				}
 			}
@@ -166,12 +265,84 @@ public class LocalTransactionContext<Z, D extends Database<Z>> implements Transa
 		return this.durability.getInvoker(invoker, phase, this.transactionId, ExceptionType.SQL.<SQLException>getExceptionFactory());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.sql.TransactionContext#addPendingInvocations(java.util.concurrent.Future)
+	 */
+	@Override
+	public void addPendingInvocations(Future<?> invocations)
+	{
+		this.pendingInvocations.add(invocations);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.sql.TransactionContext#awaitPendingInvocations()
+	 */
+	@Override
+	public void awaitPendingInvocations() throws SQLException
+	{
+		Future<?> invocations = this.pendingInvocations.poll();
+		
+		while (invocations != null)
+		{
+			try
+			{
+				invocations.get();
+			}
+			catch (InterruptedException e)
+			{
+				// Leave for the next invocation to wait for
+				this.pendingInvocations.addFirst(invocations);
+				Thread.currentThread().interrupt();
+				throw new SQLException(e);
+			}
+			catch (ExecutionException e)
+			{
+				// Failures of the pending invocations were already handled by deactivating the affected databases
+			}
+			
+			invocations = this.pendingInvocations.poll();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.sql.TransactionContext#journal(net.sf.hajdbc.journal.JournalEntry)
+	 */
+	@Override
+	public void journal(JournalEntry entry)
+	{
+		if (this.journal != null)
+		{
+			// Supersedes any write that failed before it could be journaled
+			this.pendingJournalEntry = entry;
+			this.journalPending = true;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.sql.TransactionContext#invalidateJournal()
+	 */
+	@Override
+	public void invalidateJournal()
+	{
+		if (this.journal != null)
+		{
+			this.journalComplete = false;
+			this.journalEntries.clear();
+		}
+	}
+
 	/**
 	 * @see net.sf.hajdbc.sql.TransactionContext#close()
 	 */
 	@Override
 	public void close()
 	{
+		this.clearJournal();
+		
 		// Tsk, tsk... User neglected to commit/rollback transaction
 		if (this.transactionId != null)
 		{
@@ -179,6 +350,128 @@ public class LocalTransactionContext<Z, D extends Database<Z>> implements Transa
 		}
 	}
 
+	/**
+	 * Invokes the specified write, and adds its pending journal entry to the current transaction, only if it succeeds.
+	 */
+	<ZZ, DD extends Database<ZZ>, T, R, E extends Exception> SortedMap<DD, R> invokeJournaled(InvocationStrategy strategy, ProxyFactory<ZZ, DD, T, E> proxy, Invoker<ZZ, DD, T, R, E> invoker) throws E
+	{
+		try
+		{
+			SortedMap<DD, R> results = strategy.invoke(proxy, invoker);
+			
+			if (this.journalPending)
+			{
+				if (this.pendingJournalEntry == null)
+				{
+					this.invalidateJournal();
+				}
+				else if (this.journalComplete)
+				{
+					if (this.journalEntries.size() < this.journal.getCapacity())
+					{
+						if (this.journalEntries.isEmpty())
+						{
+							this.journalTransactionId = this.transactionId;
+						}
+						this.journalEntries.add(this.pendingJournalEntry);
+					}
+					else
+					{
+						// This transaction can no longer be journaled in full
+						this.invalidateJournal();
+					}
+				}
+			}
+			
+			return results;
+		}
+		finally
+		{
+			this.pendingJournalEntry = null;
+			this.journalPending = false;
+		}
+	}
+	
+	/**
+	 * Returns the identifiers of the active databases, prior to ending a transaction, or null if writes are not journaled.
+	 */
+	<ZZ, DD extends Database<ZZ>> Set<String> getActiveDatabases(ProxyFactory<ZZ, DD, ?, ?> proxy)
+	{
+		return (this.journal != null) ? getDatabaseIds(proxy.getDatabaseCluster().getBalancer()) : null;
+	}
+	
+	/**
+	 * Journals the writes of the current transaction, which committed on the specified databases.
+	 * Must be invoked while the transaction lock is still held, such that no activation can miss them.
+	 * @param databases the databases that were active prior to the commit
+	 * @param committed the databases on which the commit succeeded
+	 */
+	void appendJournal(Set<String> databases, Set<? extends Database<?>> committed)
+	{
+		if (this.journal == null)
+		{
+			return;
+		}
+		
+		Set<String> databaseIds = getDatabaseIds(committed);
+		
+		// A database that failed the commit may have committed nonetheless, so the writes of this transaction must not be replayed on it
+		for (String databaseId: databases)
+		{
+			if (!databaseIds.contains(databaseId))
+			{
+				this.journal.invalidate(databaseId);
+			}
+		}
+		
+		if (!this.journalComplete)
+		{
+			this.journal.invalidate();
+		}
+		else if (!this.journalEntries.isEmpty())
+		{
+			this.journal.append(this.journalTransactionId, this.journalEntries, databaseIds);
+		}
+	}
+	
+	void clearJournal()
+	{
+		if (this.journal != null)
+		{
+			this.journalEntries.clear();
+			this.journalComplete = true;
+			this.journalTransactionId = null;
+		}
+	}
+	
+	/**
+	 * Begins the commit of the writes of the current transaction, which is serialized with other journaled commits while the journal is active, such that the journal records commits in the order in which they occur.
+	 * Must be invoked after determining the active databases.
+	 * @return true, if the commit is serialized
+	 */
+	boolean beginCommit()
+	{
+		return (this.journal != null) && (this.journalPending || !this.journalEntries.isEmpty()) && this.journal.begin();
+	}
+	
+	void endCommit(boolean serialized)
+	{
+		if (serialized)
+		{
+			this.journal.end(serialized);
+		}
+	}
+	
+	private static Set<String> getDatabaseIds(Set<? extends Database<?>> databases)
+	{
+		Set<String> databaseIds = new HashSet<String>();
+		for (Database<?> database: databases)
+		{
+			databaseIds.add(database.getId());
+		}
+		return databaseIds;
+	}
+
 	void lock()
 	{
 		this.lock.lock();
@@ -67,6 +67,15 @@ public abstract class LocatorInvocationHandler<Z, D extends Database<Z>, P, T, F
 		
 		return super.getInvocationStrategy(locator, method, parameters);
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean isInvocationStrategyDynamic(Method method)
+	{
+		return this.readMethods.contains(method) || this.writeMethods.contains(method) || super.isInvocationStrategyDynamic(method);
+	}
 	
 	@Override
 	protected <R> void postInvoke(Invoker<Z, D, T, R, SQLException> invoker, T proxy, Method method, Object... parameters)
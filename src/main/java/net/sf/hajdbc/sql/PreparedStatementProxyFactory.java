@@ -34,9 +34,9 @@ import net.sf.hajdbc.util.reflect.Proxies;
  */
 public class PreparedStatementProxyFactory<Z, D extends Database<Z>> extends AbstractPreparedStatementProxyFactory<Z, D, PreparedStatement>
 {
-	protected PreparedStatementProxyFactory(Connection parent, ProxyFactory<Z, D, Connection, SQLException> parentFactory, Invoker<Z, D, Connection, PreparedStatement, SQLException> invoker, Map<D, PreparedStatement> map, TransactionContext<Z, D> context, List<Lock> locks, boolean selectForUpdate)
+	protected PreparedStatementProxyFactory(Connection parent, ProxyFactory<Z, D, Connection, SQLException> parentFactory, Invoker<Z, D, Connection, PreparedStatement, SQLException> invoker, Map<D, PreparedStatement> map, TransactionContext<Z, D> context, String sql, List<Lock> locks, boolean selectForUpdate)
 	{
-		super(parent, parentFactory, invoker, map, context, locks, selectForUpdate);
+		super(parent, parentFactory, invoker, map, context, sql, locks, selectForUpdate);
 	}
 
 	@Override
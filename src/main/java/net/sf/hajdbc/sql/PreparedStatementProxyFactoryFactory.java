@@ -36,12 +36,14 @@ import net.sf.hajdbc.invocation.Invoker;
 public class PreparedStatementProxyFactoryFactory<Z, D extends Database<Z>> implements ProxyFactoryFactory<Z, D, Connection, SQLException, PreparedStatement, SQLException>
 {
 	private final TransactionContext<Z, D> context;
+	private final String sql;
 	private final List<Lock> locks;
 	private final boolean selectForUpdate;
 	
-	public PreparedStatementProxyFactoryFactory(TransactionContext<Z, D> context, List<Lock> locks, boolean selectForUpdate)
+	public PreparedStatementProxyFactoryFactory(TransactionContext<Z, D> context, String sql, List<Lock> locks, boolean selectForUpdate)
 	{
 		this.context = context;
+		this.sql = sql;
 		this.locks = locks;
 		this.selectForUpdate = selectForUpdate;
 	}
@@ -49,6 +51,6 @@ public class PreparedStatementProxyFactoryFactory<Z, D extends Database<Z>> impl
 	@Override
 	public ProxyFactory<Z, D, PreparedStatement, SQLException> createProxyFactory(Connection connection, ProxyFactory<Z, D, Connection, SQLException> parent, Invoker<Z, D, Connection, PreparedStatement, SQLException> invoker, Map<D, PreparedStatement> statements)
 	{
-		return new PreparedStatementProxyFactory<Z, D>(connection, parent, invoker, statements, this.context, this.locks, this.selectForUpdate);
+		return new PreparedStatementProxyFactory<Z, D>(connection, parent, invoker, statements, this.context, this.sql, this.locks, this.selectForUpdate);
 	}
 }
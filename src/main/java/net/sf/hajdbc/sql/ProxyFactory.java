@@ -33,6 +33,13 @@ public interface ProxyFactory<Z, D extends Database<Z>, T, E extends Exception>
 {
 	T get(D database);
 	
+	/**
+	 * Returns the existing SQL object for the specified database, without attempting to create it.
+	 * @param database a database descriptor
+	 * @return an SQL object, or null if none exists for the specified database
+	 */
+	T getExisting(D database);
+	
 	Set<Map.Entry<D, T>> entries();
 
 	DatabaseCluster<Z, D> getDatabaseCluster();
@@ -122,6 +122,12 @@ public class ResultSetInvocationHandler<Z, D extends Database<Z>, S extends Stat
 		return super.getInvocationStrategy(resultSet, method, parameters);
 	}
 
+	@Override
+	protected boolean isInvocationStrategyDynamic(Method method)
+	{
+		return transactionalWriteMethodSet.contains(method) || super.isInvocationStrategyDynamic(method);
+	}
+
 	@Override
 	protected <R> Invoker<Z, D, ResultSet, R, SQLException> getInvoker(ResultSet results, final Method method, final Object... parameters) throws SQLException
 	{
@@ -130,6 +136,12 @@ public class ResultSetInvocationHandler<Z, D extends Database<Z>, S extends Stat
 			return this.getInvoker(method.getParameterTypes()[1], 1, results, method, parameters);
 		}
 		
+		// Writes via an updatable result set cannot be journaled
+		if (transactionalWriteMethodSet.contains(method))
+		{
+			this.getProxyFactory().getTransactionContext().journal(null);
+		}
+		
 		return super.getInvoker(results, method, parameters);
 	}
 
@@ -57,7 +57,9 @@ public class ResultSetProxyFactory<Z, D extends Database<Z>, S extends Statement
 	@Override
 	public Connection getConnection(D database) throws SQLException
 	{
-		return this.get(database).getStatement().getConnection();
+		Statement statement = this.get(database).getStatement();
+		// Materialized result sets, e.g. digested generated keys, have no statement
+		return (statement != null) ? statement.getConnection() : this.getParent().get(database).getConnection();
 	}
 
 	@Override
@@ -35,6 +35,12 @@ public class SimpleExecutorServiceProvider implements ExecutorServiceProvider
 		this.executor = executor;
 	}
 	
+	@Override
+	public String getId()
+	{
+		return "simple";
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.ExecutorServiceProvider#getExecutor(java.util.concurrent.ThreadFactory)
@@ -36,6 +36,6 @@ public class SimpleInvocationResultFactory<Z, D extends Database<Z>, R> implemen
 	@Override
 	public R createResult(SortedMap<D, R> results)
 	{
-		return results.values().iterator().next();
+		return results.get(results.firstKey());
 	}
 }
@@ -19,11 +19,13 @@ package net.sf.hajdbc.sql;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.Future;
 
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.durability.Durability;
 import net.sf.hajdbc.invocation.InvocationStrategy;
 import net.sf.hajdbc.invocation.Invoker;
+import net.sf.hajdbc.journal.JournalEntry;
 
 /**
  * Decorates an invocation strategy with transaction boundary logic.
@@ -73,6 +75,30 @@ public interface TransactionContext<Z, D extends Database<Z>>
 	 */
 	<T, R> Invoker<Z, D, T, R, SQLException> end(Invoker<Z, D, T, R, SQLException> invoker, Durability.Phase phase) throws SQLException;
 	
+	/**
+	 * Registers invocations that are still running against the databases of this transaction context, i.e. the backup databases of a write that returned on a quorum.
+	 * @param invocations completes once the invocations completed, and any failed or inconsistent databases were deactivated
+	 */
+	void addPendingInvocations(Future<?> invocations);
+	
+	/**
+	 * Waits for any pending invocations, such that no subsequent invocation uses the same connection, statement, or result set concurrently, nor overtakes them.
+	 * @throws SQLException if interrupted while waiting
+	 */
+	void awaitPendingInvocations() throws SQLException;
+	
+	/**
+	 * Records the specified write, which is about to be executed via a strategy started by this transaction context.
+	 * The write is only journaled if it succeeds, once its transaction commits.
+	 * @param entry a journal entry, or null if the write cannot be journaled
+	 */
+	void journal(JournalEntry entry);
+	
+	/**
+	 * Indicates that the writes of the current transaction can no longer be journaled in full.
+	 */
+	void invalidateJournal();
+	
 	/**
 	 * Closes this transaction context.
 	 */
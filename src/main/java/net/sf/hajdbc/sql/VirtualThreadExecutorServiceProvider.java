@@ -0,0 +1,102 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sql;
+
+import java.io.Serializable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import net.sf.hajdbc.ExecutorServiceProvider;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+
+/**
+ * Provides an executor that runs each task on its own virtual thread, so that a blocked JDBC invocation does not occupy a platform thread.
+ * Falls back to the behavior of {@link DefaultExecutorServiceProvider} if the runtime does not support virtual threads.
+ * N.B. Drivers that block while holding a monitor will pin the carrier thread of a virtual thread.
+ * @author Paul Ferraro
+ */
+public class VirtualThreadExecutorServiceProvider implements ExecutorServiceProvider, Serializable
+{
+	private static final long serialVersionUID = -3260541180387123468L;
+
+	private static final Logger logger = LoggerFactory.getLogger(VirtualThreadExecutorServiceProvider.class);
+
+	// Executors.newVirtualThreadPerTaskExecutor() requires Java 21, or Java 19+ with preview features enabled
+	private static final String FACTORY_METHOD = "newVirtualThreadPerTaskExecutor";
+
+	@Override
+	public String getId()
+	{
+		return "virtual";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.ExecutorServiceProvider#getExecutor(java.util.concurrent.ThreadFactory)
+	 */
+	@Override
+	public ExecutorService getExecutor(ThreadFactory threadFactory)
+	{
+		return this.getExecutor(threadFactory, FACTORY_METHOD);
+	}
+
+	/**
+	 * Returns the executor created by the specified factory method of {@link Executors}, or a cached pool of platform threads if the runtime does not provide it.
+	 * @param threadFactory factory for creating platform threads
+	 * @param factoryMethod the name of a static no-arg method of {@link Executors}
+	 * @return an executor service
+	 */
+	ExecutorService getExecutor(ThreadFactory threadFactory, String factoryMethod)
+	{
+		try
+		{
+			Method method = Executors.class.getMethod(factoryMethod);
+			
+			return (ExecutorService) method.invoke(null);
+		}
+		catch (NoSuchMethodException e)
+		{
+			logger.log(Level.INFO, "Virtual threads are not supported by this runtime, using platform threads");
+		}
+		catch (InvocationTargetException e)
+		{
+			logger.log(Level.WARN, e.getTargetException(), "Virtual threads are not enabled in this runtime, using platform threads");
+		}
+		catch (IllegalAccessException e)
+		{
+			logger.log(Level.WARN, e, "Virtual threads are not accessible, using platform threads");
+		}
+		
+		return Executors.newCachedThreadPool(threadFactory);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.ExecutorServiceProvider#release(java.util.concurrent.ExecutorService)
+	 */
+	@Override
+	public void release(ExecutorService executor)
+	{
+		executor.shutdown();
+	}
+}
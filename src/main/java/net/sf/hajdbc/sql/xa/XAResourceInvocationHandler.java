@@ -167,6 +167,12 @@ public class XAResourceInvocationHandler extends ChildInvocationHandler<XADataSo
 		return super.getInvocationStrategy(resource, method, parameters);
 	}
 
+	@Override
+	protected boolean isInvocationStrategyDynamic(Method method)
+	{
+		return method.equals(startMethod) || endTransactionMethodSet.contains(method) || method.equals(prepareMethod) || intraTransactionMethodSet.contains(method) || super.isInvocationStrategyDynamic(method);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.sql.AbstractInvocationHandler#getInvoker(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
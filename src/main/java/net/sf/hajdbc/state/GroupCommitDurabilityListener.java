@@ -0,0 +1,170 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+
+/**
+ * Serialized durability listener that persists concurrent events in a single store transaction.
+ * Each event joins the pending batch; the first caller to find no batch in progress persists the pending batch on behalf of all its callers, while subsequent events accumulate in the next batch.
+ * A caller returns only once the batch containing its event was persisted, so durability semantics are the same as those of a listener that persists each event individually.
+ * An uncontended caller persists its own event immediately, i.e. a batch never waits to fill.
+ * @author Paul Ferraro
+ */
+public class GroupCommitDurabilityListener implements SerializedDurabilityListener
+{
+	/**
+	 * Persists a batch of durability events.
+	 */
+	public interface Store
+	{
+		/**
+		 * Persists the specified events, in order, within a single transaction.
+		 * Events of a batch never target the same invocation and phase, except for the invoker events of different databases.
+		 * @param events a batch of durability events
+		 * @throws Exception if the batch could not be persisted
+		 */
+		void store(List<SerializedDurabilityEvent> events) throws Exception;
+	}
+
+	private static final Logger logger = LoggerFactory.getLogger(GroupCommitDurabilityListener.class);
+
+	private final Store store;
+	private final Object monitor = new Object();
+	// Guarded by monitor
+	private Batch batch = new Batch();
+	private boolean storing = false;
+
+	public GroupCommitDurabilityListener(Store store)
+	{
+		this.store = store;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.SerializedDurabilityListener#beforeInvocation(byte[], byte, byte)
+	 */
+	@Override
+	public void beforeInvocation(byte[] transactionId, byte phase, byte exceptionType)
+	{
+		this.persist(new SerializedDurabilityEvent(SerializedDurabilityEvent.Type.BEFORE_INVOCATION, transactionId, phase, exceptionType, null, null));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.SerializedDurabilityListener#afterInvocation(byte[], byte)
+	 */
+	@Override
+	public void afterInvocation(byte[] transactionId, byte phase)
+	{
+		this.persist(new SerializedDurabilityEvent(SerializedDurabilityEvent.Type.AFTER_INVOCATION, transactionId, phase, (byte) 0, null, null));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.SerializedDurabilityListener#beforeInvoker(byte[], byte, java.lang.String)
+	 */
+	@Override
+	public void beforeInvoker(byte[] transactionId, byte phase, String databaseId)
+	{
+		this.persist(new SerializedDurabilityEvent(SerializedDurabilityEvent.Type.BEFORE_INVOKER, transactionId, phase, (byte) 0, databaseId, null));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.SerializedDurabilityListener#afterInvoker(byte[], byte, java.lang.String, byte[])
+	 */
+	@Override
+	public void afterInvoker(byte[] transactionId, byte phase, String databaseId, byte[] result)
+	{
+		this.persist(new SerializedDurabilityEvent(SerializedDurabilityEvent.Type.AFTER_INVOKER, transactionId, phase, (byte) 0, databaseId, result));
+	}
+
+	private void persist(SerializedDurabilityEvent event)
+	{
+		Batch batch = null;
+		boolean stored = false;
+		boolean interrupted = false;
+
+		synchronized (this.monitor)
+		{
+			batch = this.batch;
+			batch.events.add(event);
+
+			// Wait for the batch in progress, which may or may not include our event
+			while (this.storing && !batch.stored)
+			{
+				try
+				{
+					this.monitor.wait();
+				}
+				catch (InterruptedException e)
+				{
+					// Our event must be persisted before we can return
+					interrupted = true;
+				}
+			}
+
+			stored = batch.stored;
+
+			if (!stored)
+			{
+				// Store this batch on behalf of its callers
+				this.storing = true;
+				this.batch = new Batch();
+			}
+		}
+
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		if (stored) return;
+
+		try
+		{
+			this.store.store(batch.events);
+		}
+		catch (Exception e)
+		{
+			logger.log(Level.ERROR, e, e.getMessage());
+		}
+		finally
+		{
+			synchronized (this.monitor)
+			{
+				batch.stored = true;
+				this.storing = false;
+				this.monitor.notifyAll();
+			}
+		}
+	}
+
+	private static class Batch
+	{
+		final List<SerializedDurabilityEvent> events = new ArrayList<SerializedDurabilityEvent>();
+		// Guarded by monitor
+		boolean stored = false;
+	}
+}
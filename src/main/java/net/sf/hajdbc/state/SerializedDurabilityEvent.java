@@ -0,0 +1,86 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state;
+
+/**
+ * A serialized durability event, queued by a {@link GroupCommitDurabilityListener} until persisted.
+ * @author Paul Ferraro
+ */
+public class SerializedDurabilityEvent
+{
+	public enum Type
+	{
+		BEFORE_INVOCATION, AFTER_INVOCATION, BEFORE_INVOKER, AFTER_INVOKER;
+	}
+
+	private final Type type;
+	private final byte[] transactionId;
+	private final byte phase;
+	private final byte exceptionType;
+	private final String databaseId;
+	private final byte[] result;
+
+	public SerializedDurabilityEvent(Type type, byte[] transactionId, byte phase, byte exceptionType, String databaseId, byte[] result)
+	{
+		this.type = type;
+		this.transactionId = transactionId;
+		this.phase = phase;
+		this.exceptionType = exceptionType;
+		this.databaseId = databaseId;
+		this.result = result;
+	}
+
+	public Type getType()
+	{
+		return this.type;
+	}
+
+	public byte[] getTransactionId()
+	{
+		return this.transactionId;
+	}
+
+	public byte getPhase()
+	{
+		return this.phase;
+	}
+
+	/**
+	 * @return the exception type of a {@link Type#BEFORE_INVOCATION} event
+	 */
+	public byte getExceptionType()
+	{
+		return this.exceptionType;
+	}
+
+	/**
+	 * @return the database identifier of a {@link Type#BEFORE_INVOKER} or {@link Type#AFTER_INVOKER} event
+	 */
+	public String getDatabaseId()
+	{
+		return this.databaseId;
+	}
+
+	/**
+	 * @return the serialized result of an {@link Type#AFTER_INVOKER} event
+	 */
+	public byte[] getResult()
+	{
+		return this.result;
+	}
+}
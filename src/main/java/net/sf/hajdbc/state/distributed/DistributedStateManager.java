@@ -474,7 +474,7 @@ public class DistributedStateManager<Z, D extends Database<Z>> implements StateM
   }
 
 
-	private static class RemoteDescriptor implements Remote, Serializable
+	static class RemoteDescriptor implements Remote, Serializable
 	{
 		private static final long serialVersionUID = 3717630867671175936L;
 		
@@ -492,7 +492,7 @@ public class DistributedStateManager<Z, D extends Database<Z>> implements StateM
 		}
 	}
 	
-	private static class RemoteInvocationDescriptorImpl extends RemoteDescriptor implements RemoteInvocationDescriptor
+	static class RemoteInvocationDescriptorImpl extends RemoteDescriptor implements RemoteInvocationDescriptor
 	{
 		private static final long serialVersionUID = 7782082258670023082L;
 		
@@ -522,7 +522,7 @@ public class DistributedStateManager<Z, D extends Database<Z>> implements StateM
 		}
 	}
 	
-	private static class RemoteInvokerDescriptorImpl extends RemoteDescriptor implements RemoteInvokerDescriptor
+	static class RemoteInvokerDescriptorImpl extends RemoteDescriptor implements RemoteInvokerDescriptor
 	{
 		private static final long serialVersionUID = 6991831573393882786L;
 		
@@ -0,0 +1,207 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state.distributed;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.distributed.CommandExternalizer;
+import net.sf.hajdbc.distributed.Member;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvocationEventImpl;
+import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.durability.InvokerEventImpl;
+import net.sf.hajdbc.durability.InvokerResult;
+import net.sf.hajdbc.durability.InvokerResultImpl;
+
+/**
+ * Externalizers for the commands sent by {@link DistributedStateManager} before and after every durable invocation.
+ * @author Paul Ferraro
+ */
+public class InvocationCommandExternalizers
+{
+	private static final ExceptionType[] EXCEPTION_TYPES = ExceptionType.values();
+	private static final Durability.Phase[] PHASES = Durability.Phase.values();
+	
+	// Result flags of an invoker event
+	private static final int NO_RESULT = 0;
+	private static final int VALUE_RESULT = 1;
+	private static final int EXCEPTION_RESULT = 2;
+	
+	static void writeDescriptor(ObjectOutput output, RemoteInvocationDescriptor descriptor) throws IOException
+	{
+		InvocationEvent event = descriptor.getEvent();
+		ExceptionType type = event.getExceptionType();
+		
+		output.writeObject(event.getTransactionId());
+		output.writeByte(event.getPhase().ordinal());
+		output.writeByte((type != null) ? type.ordinal() + 1 : 0);
+		output.writeObject(descriptor.getMember());
+	}
+	
+	static RemoteInvocationDescriptor readInvocationDescriptor(ObjectInput input) throws IOException, ClassNotFoundException
+	{
+		Object transactionId = input.readObject();
+		Durability.Phase phase = PHASES[input.readUnsignedByte()];
+		int type = input.readUnsignedByte();
+		Member member = (Member) input.readObject();
+		
+		return new DistributedStateManager.RemoteInvocationDescriptorImpl(new InvocationEventImpl(transactionId, phase, (type > 0) ? EXCEPTION_TYPES[type - 1] : null), member);
+	}
+	
+	static void writeDescriptor(ObjectOutput output, RemoteInvokerDescriptor descriptor) throws IOException
+	{
+		InvokerEvent event = descriptor.getEvent();
+		InvokerResult result = event.getResult();
+		
+		output.writeObject(event.getTransactionId());
+		output.writeByte(event.getPhase().ordinal());
+		output.writeObject(event.getDatabaseId());
+		if (result == null)
+		{
+			output.writeByte(NO_RESULT);
+		}
+		else if (result.getException() != null)
+		{
+			output.writeByte(EXCEPTION_RESULT);
+			output.writeObject(result.getException());
+		}
+		else
+		{
+			output.writeByte(VALUE_RESULT);
+			output.writeObject(result.getValue());
+		}
+		output.writeObject(descriptor.getMember());
+	}
+	
+	static RemoteInvokerDescriptor readInvokerDescriptor(ObjectInput input) throws IOException, ClassNotFoundException
+	{
+		Object transactionId = input.readObject();
+		Durability.Phase phase = PHASES[input.readUnsignedByte()];
+		String databaseId = (String) input.readObject();
+		InvokerEvent event = new InvokerEventImpl(transactionId, phase, databaseId);
+		int result = input.readUnsignedByte();
+		if (result == EXCEPTION_RESULT)
+		{
+			event.setResult(new InvokerResultImpl((Exception) input.readObject()));
+		}
+		else if (result == VALUE_RESULT)
+		{
+			event.setResult(new InvokerResultImpl(input.readObject()));
+		}
+		Member member = (Member) input.readObject();
+		
+		return new DistributedStateManager.RemoteInvokerDescriptorImpl(event, member);
+	}
+	
+	@SuppressWarnings("unchecked")
+	static <T> Class<T> cast(Class<?> targetClass)
+	{
+		return (Class<T>) targetClass;
+	}
+	
+	public static class PreInvocationCommandExternalizer implements CommandExternalizer<PreInvocationCommand<?, ?>>
+	{
+		@Override
+		public int getId()
+		{
+			return 3;
+		}
+
+		@Override
+		public Class<PreInvocationCommand<?, ?>> getTargetClass()
+		{
+			return cast(PreInvocationCommand.class);
+		}
+
+		@Override
+		public void writeObject(ObjectOutput output, PreInvocationCommand<?, ?> command) throws IOException
+		{
+			writeDescriptor(output, command.getDescriptor());
+		}
+
+		@Override
+		public PreInvocationCommand<?, ?> readObject(ObjectInput input) throws IOException, ClassNotFoundException
+		{
+			return new PreInvocationCommand<Void, Database<Void>>(readInvocationDescriptor(input));
+		}
+	}
+	
+	public static class PostInvocationCommandExternalizer implements CommandExternalizer<PostInvocationCommand<?, ?>>
+	{
+		@Override
+		public int getId()
+		{
+			return 4;
+		}
+
+		@Override
+		public Class<PostInvocationCommand<?, ?>> getTargetClass()
+		{
+			return cast(PostInvocationCommand.class);
+		}
+
+		@Override
+		public void writeObject(ObjectOutput output, PostInvocationCommand<?, ?> command) throws IOException
+		{
+			writeDescriptor(output, command.getDescriptor());
+		}
+
+		@Override
+		public PostInvocationCommand<?, ?> readObject(ObjectInput input) throws IOException, ClassNotFoundException
+		{
+			return new PostInvocationCommand<Void, Database<Void>>(readInvocationDescriptor(input));
+		}
+	}
+	
+	public static class InvokerCommandExternalizer implements CommandExternalizer<InvokerCommand<?, ?>>
+	{
+		@Override
+		public int getId()
+		{
+			return 5;
+		}
+
+		@Override
+		public Class<InvokerCommand<?, ?>> getTargetClass()
+		{
+			return cast(InvokerCommand.class);
+		}
+
+		@Override
+		public void writeObject(ObjectOutput output, InvokerCommand<?, ?> command) throws IOException
+		{
+			writeDescriptor(output, command.getDescriptor());
+		}
+
+		@Override
+		public InvokerCommand<?, ?> readObject(ObjectInput input) throws IOException, ClassNotFoundException
+		{
+			return new InvokerCommand<Void, Database<Void>>(readInvokerDescriptor(input));
+		}
+	}
+	
+	private InvocationCommandExternalizers()
+	{
+		// Hide
+	}
+}
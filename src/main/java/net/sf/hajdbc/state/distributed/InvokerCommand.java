@@ -30,11 +30,16 @@ public class InvokerCommand<Z, D extends Database<Z>> implements Command<Void, S
 	
 	private final RemoteInvokerDescriptor descriptor;
 	
-	protected InvokerCommand(RemoteInvokerDescriptor descriptor)
+	public InvokerCommand(RemoteInvokerDescriptor descriptor)
 	{
 		this.descriptor = descriptor;
 	}
 
+	RemoteInvokerDescriptor getDescriptor()
+	{
+		return this.descriptor;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.distributed.Command#execute(java.lang.Object)
@@ -0,0 +1,114 @@
+package net.sf.hajdbc.state.health;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+import net.sf.hajdbc.distributed.CommandExternalizer;
+import net.sf.hajdbc.distributed.Member;
+
+/**
+ * 心跳、健康检查、令牌等高频命令的紧凑编码，避免每次都走 Java 序列化
+ */
+@SuppressWarnings("rawtypes")
+public class HealthCommandExternalizers {
+
+  public static class HeartBeatCommandExternalizer implements CommandExternalizer<HeartBeatCommand> {
+    @Override
+    public int getId() {
+      return 6;
+    }
+
+    @Override
+    public Class<HeartBeatCommand> getTargetClass() {
+      return HeartBeatCommand.class;
+    }
+
+    @Override
+    public void writeObject(ObjectOutput output, HeartBeatCommand command) throws IOException {
+      output.writeLong(command.getSendTime());
+    }
+
+    @Override
+    public HeartBeatCommand readObject(ObjectInput input) throws IOException {
+      HeartBeatCommand command = new HeartBeatCommand();
+      command.setSendTime(input.readLong());
+      return command;
+    }
+  }
+
+  public static class NodeHealthCommandExternalizer implements CommandExternalizer<NodeHealthCommand> {
+    @Override
+    public int getId() {
+      return 7;
+    }
+
+    @Override
+    public Class<NodeHealthCommand> getTargetClass() {
+      return NodeHealthCommand.class;
+    }
+
+    @Override
+    public void writeObject(ObjectOutput output, NodeHealthCommand command) {
+      // 无字段，只有类型号
+    }
+
+    @Override
+    public NodeHealthCommand readObject(ObjectInput input) {
+      return new NodeHealthCommand();
+    }
+  }
+
+  public static class UpdateTokenCommandExternalizer implements CommandExternalizer<UpdateTokenCommand> {
+    @Override
+    public int getId() {
+      return 8;
+    }
+
+    @Override
+    public Class<UpdateTokenCommand> getTargetClass() {
+      return UpdateTokenCommand.class;
+    }
+
+    @Override
+    public void writeObject(ObjectOutput output, UpdateTokenCommand command) throws IOException {
+      output.writeLong(command.getToken());
+    }
+
+    @Override
+    public UpdateTokenCommand readObject(ObjectInput input) throws IOException {
+      UpdateTokenCommand command = new UpdateTokenCommand();
+      command.setToken(input.readLong());
+      return command;
+    }
+  }
+
+  public static class HostCommandExternalizer implements CommandExternalizer<HostCommand> {
+    @Override
+    public int getId() {
+      return 9;
+    }
+
+    @Override
+    public Class<HostCommand> getTargetClass() {
+      return HostCommand.class;
+    }
+
+    @Override
+    public void writeObject(ObjectOutput output, HostCommand command) throws IOException {
+      output.writeObject(command.getHost());
+      output.writeLong(command.getToken());
+    }
+
+    @Override
+    public HostCommand readObject(ObjectInput input) throws IOException, ClassNotFoundException {
+      HostCommand command = new HostCommand();
+      command.setHost((Member) input.readObject());
+      command.setToken(input.readLong());
+      return command;
+    }
+  }
+
+  private HealthCommandExternalizers() {
+  }
+}
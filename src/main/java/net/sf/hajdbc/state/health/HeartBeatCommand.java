@@ -33,6 +33,14 @@ public class HeartBeatCommand<Z, D extends Database<Z>> implements Command<Void,
 		return this;
 	}
 
+  long getSendTime() {
+    return sendTime;
+  }
+
+  void setSendTime(long sendTime) {
+    this.sendTime = sendTime;
+  }
+
 	@Override
 	public Void execute(StateCommandContext<Z, D> context) {
 		ClusterHealth health = context.getHealth();
@@ -0,0 +1,886 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state.log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.DurabilityListener;
+import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvocationEventImpl;
+import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.durability.InvokerEventImpl;
+import net.sf.hajdbc.durability.InvokerResult;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+import net.sf.hajdbc.state.DatabaseEvent;
+import net.sf.hajdbc.state.DurabilityListenerAdapter;
+import net.sf.hajdbc.state.GroupCommitDurabilityListener;
+import net.sf.hajdbc.state.SerializedDurabilityEvent;
+import net.sf.hajdbc.state.StateManager;
+import net.sf.hajdbc.tx.TransactionIdentifierFactory;
+import net.sf.hajdbc.util.HaJdbcThreadFactory;
+import net.sf.hajdbc.util.Objects;
+
+/**
+ * State manager backed by a segmented, memory-mapped, append-only log.
+ * Durability events are appended as checksummed records, where the completion of an invocation is appended as a tombstone.
+ * Concurrent durability events are appended via a single sequential write, see {@link GroupCommitDurabilityListener}.
+ * The live state is indexed in memory, and rebuilt on startup by replaying the log.
+ * Whenever a new segment is started, older segments are compacted in the background, i.e. their live records are copied forward, after which they are deleted.
+ * @author Paul Ferraro
+ */
+public class LogStateManager implements StateManager, GroupCommitDurabilityListener.Store
+{
+	private static final Logger logger = LoggerFactory.getLogger(LogStateManager.class);
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	// Record types, N.B. these are persistent
+	private static final byte BEFORE_INVOCATION = 1;
+	private static final byte AFTER_INVOCATION = 2;
+	private static final byte BEFORE_INVOKER = 3;
+	private static final byte AFTER_INVOKER = 4;
+	private static final byte STATE = 5;
+
+	private final DatabaseCluster<?, ?> cluster;
+	private final File directory;
+	private final int segmentSize;
+	private final boolean force;
+	private final DurabilityListener listener;
+
+	private final Lock lock = new ReentrantLock();
+	// The following are guarded by lock
+	private final NavigableMap<Long, Segment> segments = new TreeMap<Long, Segment>();
+	private final Map<InvocationKey, Invocation> invocations = new HashMap<InvocationKey, Invocation>();
+	private Set<String> activeDatabases = Collections.emptySet();
+	private long stateSegment = 0;
+	private Segment head;
+	// Serializes compactions, without blocking concurrent stores
+	private final Lock compactionLock = new ReentrantLock();
+
+	private volatile ExecutorService compactor;
+
+	/**
+	 * @param cluster a database cluster
+	 * @param directory the directory containing the log segments
+	 * @param segmentSize the size of each log segment, in bytes
+	 * @param force indicates whether appended records should be forced to the storage device before returning
+	 */
+	public LogStateManager(DatabaseCluster<?, ?> cluster, File directory, int segmentSize, boolean force)
+	{
+		this.cluster = cluster;
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.force = force;
+		this.listener = new DurabilityListenerAdapter(new GroupCommitDurabilityListener(this), cluster.getTransactionIdentifierFactory());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.Lifecycle#start()
+	 */
+	@Override
+	public void start() throws Exception
+	{
+		this.directory.mkdirs();
+		this.compactor = Executors.newSingleThreadExecutor(HaJdbcThreadFactory.c("log-compactor"));
+
+		this.lock.lock();
+		try
+		{
+			this.replay();
+
+			if (this.head == null)
+			{
+				this.roll(0);
+			}
+
+			if (Boolean.getBoolean(StateManager.CLEAR_LOCAL_STATE))
+			{
+				this.writeState(Collections.<String>emptySet());
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+
+		this.scheduleCompaction();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.Lifecycle#stop()
+	 */
+	@Override
+	public void stop()
+	{
+		ExecutorService compactor = this.compactor;
+		if (compactor != null)
+		{
+			compactor.shutdown();
+		}
+
+		this.lock.lock();
+		try
+		{
+			if (this.head != null)
+			{
+				this.head.force();
+			}
+			for (Segment segment: this.segments.values())
+			{
+				segment.close();
+			}
+			this.segments.clear();
+			this.head = null;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	private void replay() throws IOException
+	{
+		NavigableMap<Long, File> files = new TreeMap<Long, File>();
+		File[] list = this.directory.listFiles();
+		if (list != null)
+		{
+			for (File file: list)
+			{
+				String name = file.getName();
+				if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+				{
+					files.put(Long.valueOf(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), file);
+				}
+			}
+		}
+
+		Segment.RecordHandler handler = new Segment.RecordHandler()
+		{
+			@Override
+			public void handle(Segment segment, byte[] payload) throws IOException
+			{
+				LogStateManager.this.apply(segment.getId(), new DataInputStream(new ByteArrayInputStream(payload)));
+			}
+		};
+
+		for (Map.Entry<Long, File> entry: files.entrySet())
+		{
+			Segment segment = Segment.open(entry.getValue(), entry.getKey());
+			if (segment.replay(handler))
+			{
+				logger.log(Level.WARN, "Discarded incomplete record from {0}", segment);
+			}
+			if (this.head != null)
+			{
+				// Only the head segment remains mapped
+				this.head.close();
+			}
+			this.segments.put(segment.getId(), segment);
+			this.head = segment;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.StateManager#getActiveDatabases()
+	 */
+	@Override
+	public Set<String> getActiveDatabases()
+	{
+		this.lock.lock();
+		try
+		{
+			return new TreeSet<String>(this.activeDatabases);
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.StateManager#setActiveDatabases(java.util.Set)
+	 */
+	@Override
+	public void setActiveDatabases(Set<String> databases)
+	{
+		this.writeState(new TreeSet<String>(databases));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.DatabaseClusterListener#activated(net.sf.hajdbc.state.DatabaseEvent)
+	 */
+	@Override
+	public void activated(DatabaseEvent event)
+	{
+		this.lock.lock();
+		try
+		{
+			Set<String> databases = new TreeSet<String>(this.activeDatabases);
+			if (databases.add(event.getSource()))
+			{
+				this.writeState(databases);
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.DatabaseClusterListener#deactivated(net.sf.hajdbc.state.DatabaseEvent)
+	 */
+	@Override
+	public void deactivated(DatabaseEvent event)
+	{
+		this.lock.lock();
+		try
+		{
+			Set<String> databases = new TreeSet<String>(this.activeDatabases);
+			if (databases.remove(event.getSource()))
+			{
+				this.writeState(databases);
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	private void writeState(Set<String> databases)
+	{
+		this.lock.lock();
+		try
+		{
+			this.append(Collections.singletonList(encodeState(databases)));
+			this.activeDatabases = databases;
+			this.stateSegment = this.head.getId();
+		}
+		catch (IOException e)
+		{
+			logger.log(Level.ERROR, e, e.getMessage());
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.durability.DurabilityListener#beforeInvocation(net.sf.hajdbc.durability.InvocationEvent)
+	 */
+	@Override
+	public void beforeInvocation(InvocationEvent event)
+	{
+		this.listener.beforeInvocation(event);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.durability.DurabilityListener#afterInvocation(net.sf.hajdbc.durability.InvocationEvent)
+	 */
+	@Override
+	public void afterInvocation(InvocationEvent event)
+	{
+		this.listener.afterInvocation(event);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.durability.DurabilityListener#beforeInvoker(net.sf.hajdbc.durability.InvokerEvent)
+	 */
+	@Override
+	public void beforeInvoker(InvokerEvent event)
+	{
+		this.listener.beforeInvoker(event);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.durability.DurabilityListener#afterInvoker(net.sf.hajdbc.durability.InvokerEvent)
+	 */
+	@Override
+	public void afterInvoker(InvokerEvent event)
+	{
+		this.listener.afterInvoker(event);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.GroupCommitDurabilityListener.Store#store(java.util.List)
+	 */
+	@Override
+	public void store(List<SerializedDurabilityEvent> events) throws IOException
+	{
+		List<byte[]> payloads = new ArrayList<byte[]>(events.size());
+		for (SerializedDurabilityEvent event: events)
+		{
+			payloads.add(encode(event));
+		}
+
+		this.lock.lock();
+		try
+		{
+			this.append(payloads);
+			long segment = this.head.getId();
+			for (SerializedDurabilityEvent event: events)
+			{
+				this.apply(segment, event);
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.StateManager#recover()
+	 */
+	@Override
+	public Map<InvocationEvent, Map<String, InvokerEvent>> recover()
+	{
+		TransactionIdentifierFactory<?> txIdFactory = this.cluster.getTransactionIdentifierFactory();
+		Map<InvocationEvent, Map<String, InvokerEvent>> result = new HashMap<InvocationEvent, Map<String, InvokerEvent>>();
+
+		this.lock.lock();
+		try
+		{
+			for (Map.Entry<InvocationKey, Invocation> entry: this.invocations.entrySet())
+			{
+				InvocationKey key = entry.getKey();
+				Invocation invocation = entry.getValue();
+				Object txId = txIdFactory.deserialize(key.transactionId);
+				Durability.Phase phase = Durability.Phase.values()[key.phase];
+				Map<String, InvokerEvent> invokers = new HashMap<String, InvokerEvent>();
+
+				for (Map.Entry<String, byte[]> invokerEntry: invocation.invokers.entrySet())
+				{
+					String databaseId = invokerEntry.getKey();
+					InvokerEvent event = new InvokerEventImpl(txId, phase, databaseId);
+					byte[] bytes = invokerEntry.getValue();
+					if (bytes != null)
+					{
+						event.setResult(Objects.<InvokerResult>deserialize(bytes));
+					}
+					invokers.put(databaseId, event);
+				}
+
+				result.put(new InvocationEventImpl(txId, phase, ExceptionType.values()[invocation.exceptionType]), invokers);
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+
+		return result;
+	}
+
+	@Override
+	public boolean isEnabled()
+	{
+		return true;
+	}
+
+	@Override
+	public boolean isValid(Database<?> database)
+	{
+		return this.getActiveDatabases().contains(database.getId());
+	}
+
+	/**
+	 * Appends the specified record payloads to the head segment via a single write, starting a new segment if necessary.
+	 * Must be called while holding the lock.
+	 */
+	private void append(List<byte[]> payloads) throws IOException
+	{
+		int size = 0;
+		for (byte[] payload: payloads)
+		{
+			size += Segment.RECORD_OVERHEAD + payload.length;
+		}
+		ByteBuffer records = ByteBuffer.allocate(size);
+		for (byte[] payload: payloads)
+		{
+			Segment.frame(payload, records);
+		}
+		records.flip();
+
+		if (this.head.remaining() < size)
+		{
+			this.roll(size);
+		}
+
+		this.head.append(records);
+
+		if (this.force)
+		{
+			this.head.force();
+		}
+	}
+
+	/**
+	 * Starts a new head segment, large enough for the specified number of bytes.
+	 * Must be called while holding the lock.
+	 */
+	private void roll(int size) throws IOException
+	{
+		Segment previous = this.head;
+		long id = (previous != null) ? previous.getId() + 1 : 1;
+		File file = new File(this.directory, SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+		Segment segment = Segment.create(file, id, Math.max(this.segmentSize, Segment.HEADER_SIZE + size));
+
+		this.segments.put(id, segment);
+		this.head = segment;
+
+		if (previous != null)
+		{
+			previous.force();
+			previous.close();
+			this.scheduleCompaction();
+		}
+	}
+
+	private void scheduleCompaction()
+	{
+		ExecutorService compactor = this.compactor;
+		if (compactor != null)
+		{
+			try
+			{
+				compactor.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						LogStateManager.this.compact();
+					}
+				});
+			}
+			catch (RejectedExecutionException e)
+			{
+				// We are stopping
+			}
+		}
+	}
+
+	/**
+	 * Compacts all segments preceding the head segment, oldest first.
+	 * Live records of a segment are appended to the head segment, after which the segment is deleted.
+	 * Since a tombstone always follows the record it deletes, deleting segments oldest first never resurrects a deleted record.
+	 * The live records are copied and encoded without holding the lock, which is only held to swap the copies into the head segment.
+	 */
+	void compact()
+	{
+		this.compactionLock.lock();
+		try
+		{
+			Segment segment = this.compactable();
+			while (segment != null)
+			{
+				long id = segment.getId();
+				Set<String> databases = null;
+				Map<InvocationKey, Invocation> invocations = new HashMap<InvocationKey, Invocation>();
+
+				this.lock.lock();
+				try
+				{
+					if (this.stateSegment == id)
+					{
+						databases = this.activeDatabases;
+					}
+					for (Map.Entry<InvocationKey, Invocation> entry: this.invocations.entrySet())
+					{
+						Invocation invocation = entry.getValue();
+						if (invocation.segment == id)
+						{
+							invocations.put(entry.getKey(), invocation.copy());
+						}
+					}
+				}
+				finally
+				{
+					this.lock.unlock();
+				}
+
+				byte[] state = (databases != null) ? encodeState(databases) : null;
+				Map<InvocationKey, List<byte[]>> records = new HashMap<InvocationKey, List<byte[]>>();
+				for (Map.Entry<InvocationKey, Invocation> entry: invocations.entrySet())
+				{
+					records.put(entry.getKey(), encode(entry.getKey(), entry.getValue()));
+				}
+
+				this.lock.lock();
+				try
+				{
+					// We are stopping
+					if (this.head == null) return;
+
+					List<byte[]> payloads = new ArrayList<byte[]>();
+					List<Invocation> moved = new ArrayList<Invocation>();
+
+					// Any subsequent change of state would have moved the state to the head segment
+					if (this.stateSegment == id)
+					{
+						payloads.add(state);
+					}
+					for (Map.Entry<InvocationKey, Invocation> entry: invocations.entrySet())
+					{
+						InvocationKey key = entry.getKey();
+						Invocation invocation = this.invocations.get(key);
+						// Skip invocations completed since the copy
+						if ((invocation != null) && (invocation.segment == id))
+						{
+							// Re-encode invocations whose invokers changed since the copy
+							payloads.addAll(invocation.invokers.equals(entry.getValue().invokers) ? records.get(key) : encode(key, invocation));
+							moved.add(invocation);
+						}
+					}
+
+					if (!payloads.isEmpty())
+					{
+						this.append(payloads);
+						long target = this.head.getId();
+						if (this.stateSegment == id)
+						{
+							this.stateSegment = target;
+						}
+						for (Invocation invocation: moved)
+						{
+							invocation.segment = target;
+						}
+					}
+				}
+				finally
+				{
+					this.lock.unlock();
+				}
+
+				// The segment was already closed when it was succeeded by a new head segment
+				if (!segment.delete())
+				{
+					// Retry during the next compaction, a younger segment must never be deleted before an older one
+					logger.log(Level.WARN, "Failed to delete {0}", segment);
+					return;
+				}
+
+				this.lock.lock();
+				try
+				{
+					this.segments.remove(id);
+				}
+				finally
+				{
+					this.lock.unlock();
+				}
+
+				segment = this.compactable();
+			}
+		}
+		catch (IOException e)
+		{
+			logger.log(Level.WARN, e, e.getMessage());
+		}
+		finally
+		{
+			this.compactionLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the oldest segment preceding the head segment.
+	 * @return a segment, or null, if there is nothing to compact
+	 */
+	private Segment compactable()
+	{
+		this.lock.lock();
+		try
+		{
+			if ((this.head == null) || (this.segments.firstKey() >= this.head.getId())) return null;
+
+			return this.segments.firstEntry().getValue();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Encodes the records of the specified live invocation.
+	 */
+	private static List<byte[]> encode(InvocationKey key, Invocation invocation) throws IOException
+	{
+		List<byte[]> payloads = new ArrayList<byte[]>(invocation.invokers.size() + 1);
+		payloads.add(encode(new SerializedDurabilityEvent(SerializedDurabilityEvent.Type.BEFORE_INVOCATION, key.transactionId, key.phase, invocation.exceptionType, null, null)));
+		for (Map.Entry<String, byte[]> invoker: invocation.invokers.entrySet())
+		{
+			byte[] result = invoker.getValue();
+			SerializedDurabilityEvent.Type type = (result != null) ? SerializedDurabilityEvent.Type.AFTER_INVOKER : SerializedDurabilityEvent.Type.BEFORE_INVOKER;
+			payloads.add(encode(new SerializedDurabilityEvent(type, key.transactionId, key.phase, (byte) 0, invoker.getKey(), result)));
+		}
+		return payloads;
+	}
+
+	private void apply(long segment, DataInput input) throws IOException
+	{
+		byte type = input.readByte();
+		if (type == STATE)
+		{
+			int size = input.readInt();
+			Set<String> databases = new TreeSet<String>();
+			for (int i = 0; i < size; ++i)
+			{
+				databases.add(input.readUTF());
+			}
+			this.activeDatabases = databases;
+			this.stateSegment = segment;
+			return;
+		}
+
+		byte[] transactionId = readBytes(input);
+		byte phase = input.readByte();
+
+		switch (type)
+		{
+			case BEFORE_INVOCATION:
+			{
+				this.apply(segment, new SerializedDurabilityEvent(SerializedDurabilityEvent.Type.BEFORE_INVOCATION, transactionId, phase, input.readByte(), null, null));
+				break;
+			}
+			case AFTER_INVOCATION:
+			{
+				this.apply(segment, new SerializedDurabilityEvent(SerializedDurabilityEvent.Type.AFTER_INVOCATION, transactionId, phase, (byte) 0, null, null));
+				break;
+			}
+			case BEFORE_INVOKER:
+			{
+				this.apply(segment, new SerializedDurabilityEvent(SerializedDurabilityEvent.Type.BEFORE_INVOKER, transactionId, phase, (byte) 0, input.readUTF(), null));
+				break;
+			}
+			case AFTER_INVOKER:
+			{
+				String databaseId = input.readUTF();
+				this.apply(segment, new SerializedDurabilityEvent(SerializedDurabilityEvent.Type.AFTER_INVOKER, transactionId, phase, (byte) 0, databaseId, readBytes(input)));
+				break;
+			}
+			default:
+			{
+				throw new IOException(String.format("Unexpected record type: %d", type));
+			}
+		}
+	}
+
+	private void apply(long segment, SerializedDurabilityEvent event)
+	{
+		InvocationKey key = new InvocationKey(event.getTransactionId(), event.getPhase());
+
+		switch (event.getType())
+		{
+			case BEFORE_INVOCATION:
+			{
+				// Replaces any copy of this invocation left behind by an interrupted compaction
+				this.invocations.put(key, new Invocation(event.getExceptionType(), segment));
+				break;
+			}
+			case AFTER_INVOCATION:
+			{
+				this.invocations.remove(key);
+				break;
+			}
+			case BEFORE_INVOKER:
+			case AFTER_INVOKER:
+			{
+				Invocation invocation = this.invocations.get(key);
+				if (invocation != null)
+				{
+					invocation.invokers.put(event.getDatabaseId(), event.getResult());
+				}
+				break;
+			}
+		}
+	}
+
+	private static byte[] encode(SerializedDurabilityEvent event) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(bytes);
+
+		switch (event.getType())
+		{
+			case BEFORE_INVOCATION:
+			{
+				output.writeByte(BEFORE_INVOCATION);
+				writeBytes(output, event.getTransactionId());
+				output.writeByte(event.getPhase());
+				output.writeByte(event.getExceptionType());
+				break;
+			}
+			case AFTER_INVOCATION:
+			{
+				output.writeByte(AFTER_INVOCATION);
+				writeBytes(output, event.getTransactionId());
+				output.writeByte(event.getPhase());
+				break;
+			}
+			case BEFORE_INVOKER:
+			{
+				output.writeByte(BEFORE_INVOKER);
+				writeBytes(output, event.getTransactionId());
+				output.writeByte(event.getPhase());
+				output.writeUTF(event.getDatabaseId());
+				break;
+			}
+			case AFTER_INVOKER:
+			{
+				output.writeByte(AFTER_INVOKER);
+				writeBytes(output, event.getTransactionId());
+				output.writeByte(event.getPhase());
+				output.writeUTF(event.getDatabaseId());
+				writeBytes(output, event.getResult());
+				break;
+			}
+		}
+
+		output.flush();
+		return bytes.toByteArray();
+	}
+
+	private static byte[] encodeState(Set<String> databases) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(bytes);
+		output.writeByte(STATE);
+		output.writeInt(databases.size());
+		for (String database: databases)
+		{
+			output.writeUTF(database);
+		}
+		output.flush();
+		return bytes.toByteArray();
+	}
+
+	private static void writeBytes(DataOutput output, byte[] bytes) throws IOException
+	{
+		if (bytes != null)
+		{
+			output.writeInt(bytes.length);
+			output.write(bytes);
+		}
+		else
+		{
+			output.writeInt(-1);
+		}
+	}
+
+	private static byte[] readBytes(DataInput input) throws IOException
+	{
+		int length = input.readInt();
+		if (length < 0) return null;
+		byte[] bytes = new byte[length];
+		input.readFully(bytes);
+		return bytes;
+	}
+
+	private static class InvocationKey
+	{
+		final byte[] transactionId;
+		final byte phase;
+
+		InvocationKey(byte[] transactionId, byte phase)
+		{
+			this.transactionId = transactionId;
+			this.phase = phase;
+		}
+
+		@Override
+		public boolean equals(Object object)
+		{
+			if (!(object instanceof InvocationKey)) return false;
+			InvocationKey key = (InvocationKey) object;
+			return (this.phase == key.phase) && Arrays.equals(this.transactionId, key.transactionId);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (31 * Arrays.hashCode(this.transactionId)) + this.phase;
+		}
+	}
+
+	private static class Invocation
+	{
+		final byte exceptionType;
+		// Result per database, or null if the invoker has not yet completed
+		final Map<String, byte[]> invokers = new HashMap<String, byte[]>();
+		// The oldest segment containing a record of this invocation
+		long segment;
+
+		Invocation(byte exceptionType, long segment)
+		{
+			this.exceptionType = exceptionType;
+			this.segment = segment;
+		}
+
+		Invocation copy()
+		{
+			Invocation invocation = new Invocation(this.exceptionType, this.segment);
+			invocation.invokers.putAll(this.invokers);
+			return invocation;
+		}
+	}
+}
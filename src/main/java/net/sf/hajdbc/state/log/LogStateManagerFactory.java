@@ -0,0 +1,91 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state.log;
+
+import java.io.File;
+import java.text.MessageFormat;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.state.StateManager;
+import net.sf.hajdbc.state.StateManagerFactory;
+import net.sf.hajdbc.util.Strings;
+
+/**
+ * Factory for a state manager backed by a memory-mapped, append-only log.
+ * @author Paul Ferraro
+ */
+public class LogStateManagerFactory implements StateManagerFactory
+{
+	private static final long serialVersionUID = -3436473370294843621L;
+
+	private String locationPattern = "{1}/{0}-log";
+	private int segmentSize = 4 * 1024 * 1024;
+	private boolean force = true;
+
+	@Override
+	public String getId()
+	{
+		return "log";
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> StateManager createStateManager(DatabaseCluster<Z, D> cluster)
+	{
+		String location = MessageFormat.format(this.locationPattern, cluster.getId(), Strings.HA_JDBC_HOME);
+		return new LogStateManager(cluster, new File(location), this.segmentSize, this.force);
+	}
+
+	public String getLocationPattern()
+	{
+		return this.locationPattern;
+	}
+
+	public void setLocationPattern(String pattern)
+	{
+		this.locationPattern = pattern;
+	}
+
+	/**
+	 * Returns the size of each log segment.
+	 * @return a number of bytes
+	 */
+	public int getSegmentSize()
+	{
+		return this.segmentSize;
+	}
+
+	public void setSegmentSize(int size)
+	{
+		this.segmentSize = size;
+	}
+
+	/**
+	 * Indicates whether appended records are forced to the storage device before the corresponding event completes.
+	 * @return true, if records are forced, false if they are left to the operating system
+	 */
+	public boolean isForce()
+	{
+		return this.force;
+	}
+
+	public void setForce(boolean force)
+	{
+		this.force = force;
+	}
+}
@@ -0,0 +1,298 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+import net.sf.hajdbc.util.Resources;
+
+/**
+ * A memory-mapped, append-only segment of a durability log.
+ * A segment consists of a header, followed by a sequence of records, each of the form: length, checksum, payload.
+ * The unused remainder of a segment is zero-filled, so a zero length marks the end of a segment.
+ * @author Paul Ferraro
+ */
+class Segment
+{
+	static final int MAGIC = 0x48414A4C;
+	static final int HEADER_SIZE = 4;
+	// Length + checksum
+	static final int RECORD_OVERHEAD = 8;
+	// Releases a mapping on Java 9+, or null on Java 8
+	private static final Method invokeCleaner;
+	private static final Object unsafe;
+
+	static
+	{
+		Method method = null;
+		Object object = null;
+		try
+		{
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			method = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			object = field.get(null);
+		}
+		catch (ReflectiveOperationException | RuntimeException e)
+		{
+			method = null;
+		}
+		invokeCleaner = method;
+		unsafe = object;
+	}
+
+	/**
+	 * Handles the payload of a record read from a segment.
+	 */
+	interface RecordHandler
+	{
+		void handle(Segment segment, byte[] payload) throws IOException;
+	}
+
+	private final long id;
+	private final File file;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private boolean closed = false;
+
+	/**
+	 * Creates a new empty segment.
+	 * @param file the segment file
+	 * @param id the segment identifier
+	 * @param size the capacity of the segment
+	 * @return a new segment, positioned after its header
+	 * @throws IOException if the segment could not be created
+	 */
+	static Segment create(File file, long id, int size) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try
+		{
+			raf.setLength(size);
+			Segment segment = new Segment(id, file, raf.getChannel(), size);
+			segment.buffer.putInt(MAGIC);
+			segment.buffer.force();
+			return segment;
+		}
+		catch (IOException e)
+		{
+			Resources.close(raf);
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens an existing segment.
+	 * @param file the segment file
+	 * @param id the segment identifier
+	 * @return an existing segment, positioned after its header
+	 * @throws IOException if the segment could not be opened, or is not a valid segment
+	 */
+	static Segment open(File file, long id) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try
+		{
+			long length = raf.length();
+			// A mapping is limited to 2GB
+			if (length > Integer.MAX_VALUE)
+			{
+				throw new IOException(String.format("%s exceeds the maximum size of a log segment", file));
+			}
+			Segment segment = new Segment(id, file, raf.getChannel(), (int) length);
+			if ((segment.buffer.remaining() < HEADER_SIZE) || (segment.buffer.getInt() != MAGIC))
+			{
+				throw new IOException(String.format("%s is not a valid log segment", file));
+			}
+			return segment;
+		}
+		catch (IOException e)
+		{
+			Resources.close(raf);
+			throw e;
+		}
+	}
+
+	private Segment(long id, File file, FileChannel channel, int size) throws IOException
+	{
+		this.id = id;
+		this.file = file;
+		this.channel = channel;
+		this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+	}
+
+	long getId()
+	{
+		return this.id;
+	}
+
+	/**
+	 * Reads the valid records of this segment, positioning this segment after the last valid record.
+	 * A record that is incomplete or fails its checksum, i.e. a torn write, ends the segment, and is erased.
+	 * @param handler handles the payload of each valid record
+	 * @return true, if a torn write was erased, false otherwise
+	 * @throws IOException if a record handler failed
+	 */
+	boolean replay(RecordHandler handler) throws IOException
+	{
+		CRC32 checksum = new CRC32();
+
+		while (this.buffer.remaining() >= RECORD_OVERHEAD)
+		{
+			int position = this.buffer.position();
+			int length = this.buffer.getInt();
+			if ((length <= 0) || (length > this.buffer.remaining() - 4))
+			{
+				this.buffer.position(position);
+				break;
+			}
+			int expected = this.buffer.getInt();
+			byte[] payload = new byte[length];
+			this.buffer.get(payload);
+			checksum.reset();
+			checksum.update(payload, 0, length);
+			if ((int) checksum.getValue() != expected)
+			{
+				this.buffer.position(position);
+				break;
+			}
+			handler.handle(this, payload);
+		}
+
+		// Erase any partially written record
+		boolean torn = false;
+		for (int i = this.buffer.position(); i < this.buffer.limit(); ++i)
+		{
+			if (this.buffer.get(i) != 0)
+			{
+				this.buffer.put(i, (byte) 0);
+				torn = true;
+			}
+		}
+		if (torn)
+		{
+			this.buffer.force();
+		}
+		return torn;
+	}
+
+	/**
+	 * Frames the specified payload as a record.
+	 * @param payload a record payload
+	 * @param target the buffer to which the record is written
+	 */
+	static void frame(byte[] payload, ByteBuffer target)
+	{
+		CRC32 checksum = new CRC32();
+		checksum.update(payload, 0, payload.length);
+		target.putInt(payload.length).putInt((int) checksum.getValue()).put(payload);
+	}
+
+	/**
+	 * Indicates the number of bytes that can still be appended to this segment.
+	 * @return a number of bytes
+	 */
+	int remaining()
+	{
+		return this.buffer.remaining();
+	}
+
+	/**
+	 * Appends the specified records to this segment, via a single sequential write.
+	 * @param records framed records
+	 */
+	void append(ByteBuffer records)
+	{
+		this.buffer.put(records);
+	}
+
+	/**
+	 * Forces any appended records to the storage device.
+	 */
+	void force()
+	{
+		this.buffer.force();
+	}
+
+	/**
+	 * Closes this segment, and releases its mapping, after which this segment must no longer be accessed.
+	 * Otherwise, the segment file could not be deleted on some platforms, e.g. Windows, until the mapping is garbage collected.
+	 */
+	synchronized void close()
+	{
+		if (!this.closed)
+		{
+			this.closed = true;
+			Resources.close(this.channel);
+			unmap(this.buffer);
+		}
+	}
+
+	/**
+	 * Releases the specified mapping, if supported by the JVM; otherwise, the mapping is released once garbage collected.
+	 */
+	private static void unmap(MappedByteBuffer buffer)
+	{
+		try
+		{
+			if (invokeCleaner != null)
+			{
+				invokeCleaner.invoke(unsafe, buffer);
+			}
+			else
+			{
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null)
+				{
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			}
+		}
+		catch (ReflectiveOperationException | RuntimeException e)
+		{
+			// Leave it to the garbage collector
+		}
+	}
+
+	/**
+	 * Closes and deletes this segment.
+	 * @return true, if the segment file was deleted, false otherwise
+	 */
+	boolean delete()
+	{
+		this.close();
+		return this.file.delete();
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.file.getPath();
+	}
+}
@@ -26,7 +26,9 @@ import java.sql.Statement;
 import java.sql.Types;
 import java.text.MessageFormat;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -57,6 +59,8 @@ import net.sf.hajdbc.pool.sql.ConnectionPoolProvider;
 import net.sf.hajdbc.sql.DriverDatabase;
 import net.sf.hajdbc.state.DatabaseEvent;
 import net.sf.hajdbc.state.DurabilityListenerAdapter;
+import net.sf.hajdbc.state.GroupCommitDurabilityListener;
+import net.sf.hajdbc.state.SerializedDurabilityEvent;
 import net.sf.hajdbc.state.SerializedDurabilityListener;
 import net.sf.hajdbc.state.StateManager;
 import net.sf.hajdbc.tx.TransactionIdentifierFactory;
@@ -67,7 +71,7 @@ import net.sf.hajdbc.util.ServiceLoaders;
 /**
  * @author Paul Ferraro
  */
-public class SQLStateManager<Z, D extends Database<Z>> implements StateManager, ConnectionFactory, SerializedDurabilityListener
+public class SQLStateManager<Z, D extends Database<Z>> implements StateManager, ConnectionFactory, SerializedDurabilityListener, GroupCommitDurabilityListener.Store
 {
 	private static final String STATE_TABLE = "cluster_state";
 	private static final String DATABASE_COLUMN = "database_id";
@@ -95,6 +99,16 @@ public class SQLStateManager<Z, D extends Database<Z>> implements StateManager,
 	static final String UPDATE_INVOKER_SQL = MessageFormat.format("UPDATE {0} SET {4} = ? WHERE {1} = ? AND {2} = ? AND {3} = ?", INVOKER_TABLE, TRANSACTION_COLUMN, PHASE_COLUMN, DATABASE_COLUMN, RESULT_COLUMN);
 	static final String DELETE_INVOKER_SQL = MessageFormat.format("DELETE FROM {0} WHERE {1} = ? AND {2} = ?", INVOKER_TABLE, TRANSACTION_COLUMN, PHASE_COLUMN);
 
+	// Statements used to persist a batch of durability events, per event type
+	static final Map<SerializedDurabilityEvent.Type, String> BATCH_SQL = new EnumMap<SerializedDurabilityEvent.Type, String>(SerializedDurabilityEvent.Type.class);
+	static
+	{
+		BATCH_SQL.put(SerializedDurabilityEvent.Type.BEFORE_INVOCATION, INSERT_INVOCATION_SQL);
+		BATCH_SQL.put(SerializedDurabilityEvent.Type.AFTER_INVOCATION, DELETE_INVOKER_SQL);
+		BATCH_SQL.put(SerializedDurabilityEvent.Type.BEFORE_INVOKER, INSERT_INVOKER_SQL);
+		BATCH_SQL.put(SerializedDurabilityEvent.Type.AFTER_INVOKER, UPDATE_INVOKER_SQL);
+	}
+
 
 
 
@@ -115,11 +129,19 @@ public class SQLStateManager<Z, D extends Database<Z>> implements StateManager,
 	private Pool<Connection, SQLException> pool;
 	
 	public SQLStateManager(DatabaseCluster<Z, D> cluster, DriverDatabase database, PoolFactory poolFactory)
+	{
+		this(cluster, database, poolFactory, false);
+	}
+	
+	/**
+	 * @param groupCommit indicates whether concurrent durability events should be persisted within a single transaction
+	 */
+	public SQLStateManager(DatabaseCluster<Z, D> cluster, DriverDatabase database, PoolFactory poolFactory, boolean groupCommit)
 	{
 		this.cluster = cluster;
 		this.database = database;
 		this.poolFactory = poolFactory;
-		this.listener = new DurabilityListenerAdapter(this, cluster.getTransactionIdentifierFactory());
+		this.listener = new DurabilityListenerAdapter(groupCommit ? new GroupCommitDurabilityListener(this) : this, cluster.getTransactionIdentifierFactory());
 	}
 
 	/**
@@ -435,6 +457,106 @@ public class SQLStateManager<Z, D extends Database<Z>> implements StateManager,
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.GroupCommitDurabilityListener.Store#store(java.util.List)
+	 */
+	@Override
+	public void store(final List<SerializedDurabilityEvent> events) throws SQLException
+	{
+		Transaction transaction = new Transaction()
+		{
+			@Override
+			public void execute(Connection connection) throws SQLException
+			{
+				// Events of a batch target distinct rows, so each statement type can be executed as a single batch
+				Map<SerializedDurabilityEvent.Type, PreparedStatement> statements = new EnumMap<SerializedDurabilityEvent.Type, PreparedStatement>(SerializedDurabilityEvent.Type.class);
+				PreparedStatement invocationStatement = null;
+				
+				try
+				{
+					for (SerializedDurabilityEvent event: events)
+					{
+						SerializedDurabilityEvent.Type type = event.getType();
+						PreparedStatement statement = statements.get(type);
+						
+						if (statement == null)
+						{
+							statement = connection.prepareStatement(BATCH_SQL.get(type));
+							statements.put(type, statement);
+						}
+						
+						switch (type)
+						{
+							case BEFORE_INVOCATION:
+							{
+								statement.setBytes(1, event.getTransactionId());
+								statement.setByte(2, event.getPhase());
+								statement.setByte(3, event.getExceptionType());
+								break;
+							}
+							case AFTER_INVOCATION:
+							{
+								statement.setBytes(1, event.getTransactionId());
+								statement.setByte(2, event.getPhase());
+								
+								if (invocationStatement == null)
+								{
+									invocationStatement = connection.prepareStatement(DELETE_INVOCATION_SQL);
+								}
+								invocationStatement.setBytes(1, event.getTransactionId());
+								invocationStatement.setByte(2, event.getPhase());
+								invocationStatement.addBatch();
+								break;
+							}
+							case BEFORE_INVOKER:
+							{
+								statement.setBytes(1, event.getTransactionId());
+								statement.setByte(2, event.getPhase());
+								statement.setString(3, event.getDatabaseId());
+								break;
+							}
+							case AFTER_INVOKER:
+							{
+								statement.setBytes(1, event.getResult());
+								statement.setBytes(2, event.getTransactionId());
+								statement.setByte(3, event.getPhase());
+								statement.setString(4, event.getDatabaseId());
+								break;
+							}
+						}
+						
+						statement.addBatch();
+					}
+					
+					for (PreparedStatement statement: statements.values())
+					{
+						statement.executeBatch();
+					}
+					
+					// Delete invocations after their invokers
+					if (invocationStatement != null)
+					{
+						invocationStatement.executeBatch();
+					}
+				}
+				finally
+				{
+					for (PreparedStatement statement: statements.values())
+					{
+						Resources.close(statement);
+					}
+					if (invocationStatement != null)
+					{
+						Resources.close(invocationStatement);
+					}
+				}
+			}
+		};
+		
+		this.execute(transaction);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.durability.DurabilityListener#beforeInvocation(net.sf.hajdbc.durability.InvocationEvent)
@@ -62,6 +62,7 @@ public class SQLStateManagerFactory extends GenericObjectPoolConfiguration imple
 	private String urlPattern = defaultUrlPattern();
 	private String user;
 	private String password;
+	private boolean groupCommit = true;
 	
 	private static String defaultUrlPattern()
 	{
@@ -114,7 +115,7 @@ public class SQLStateManagerFactory extends GenericObjectPoolConfiguration imple
 		
 		this.logger.log(Level.INFO, "State for database cluster {0} will be persisted to {1}", cluster, url);
 		
-		return new SQLStateManager<Z, D>(cluster, database, new GenericObjectPoolFactory(this));
+		return new SQLStateManager<Z, D>(cluster, database, new GenericObjectPoolFactory(this), this.groupCommit);
 	}
 	
 	public String getUrlPattern()
@@ -146,4 +147,18 @@ public class SQLStateManagerFactory extends GenericObjectPoolConfiguration imple
 	{
 		this.password = password;
 	}
+
+	/**
+	 * Indicates whether concurrent durability events are persisted within a single transaction.
+	 * @return true, if group commit is enabled, false otherwise
+	 */
+	public boolean isGroupCommit()
+	{
+		return this.groupCommit;
+	}
+	
+	public void setGroupCommit(boolean groupCommit)
+	{
+		this.groupCommit = groupCommit;
+	}
 }
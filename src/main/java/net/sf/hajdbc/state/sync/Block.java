@@ -1,11 +1,18 @@
 package net.sf.hajdbc.state.sync;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 
 public class Block implements Serializable {
+  // 与旧版本节点保持兼容，新增字段不得改变此值
+  private static final long serialVersionUID = 1967974977467218344L;
+
   private long length;
   private byte[] data;
   private int size;
+  private long checksum;
+  private BlockCodec codec = BlockCodec.NONE;
   private String md5;
 
 
@@ -33,6 +40,31 @@ public class Block implements Serializable {
     this.size = size;
   }
 
+  /**
+   * 块数据的CRC32
+   */
+  public long getChecksum() {
+    return checksum;
+  }
+
+  public void setChecksum(long checksum) {
+    this.checksum = checksum;
+  }
+
+  /**
+   * 块数据的压缩方式，size为压缩前的长度
+   */
+  public BlockCodec getCodec() {
+    return codec;
+  }
+
+  public void setCodec(BlockCodec codec) {
+    this.codec = codec;
+  }
+
+  /**
+   * 块数据的MD5，仅在与旧版本节点之间传输时使用
+   */
   public String getMd5() {
     return md5;
   }
@@ -40,4 +72,12 @@ public class Block implements Serializable {
   public void setMd5(String md5) {
     this.md5 = md5;
   }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    // 旧版本节点的块不含压缩方式
+    if (codec == null) {
+      codec = BlockCodec.NONE;
+    }
+  }
 }
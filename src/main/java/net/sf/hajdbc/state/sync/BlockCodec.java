@@ -0,0 +1,120 @@
+package net.sf.hajdbc.state.sync;
+
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 文件传输中块的压缩方式。
+ */
+public enum BlockCodec {
+  NONE {
+    @Override
+    public byte[] encode(byte[] data) {
+      return null;
+    }
+
+    @Override
+    public byte[] decode(byte[] data, int size) {
+      return data;
+    }
+  },
+  DEFLATE {
+    private final ThreadLocal<Deflater> deflater = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private final ThreadLocal<Inflater> inflater = ThreadLocal.withInitial(Inflater::new);
+
+    @Override
+    public byte[] encode(byte[] data) {
+      Deflater deflater = this.deflater.get();
+      deflater.reset();
+      deflater.setInput(data);
+      deflater.finish();
+      // 压缩后不小于原数据时放弃
+      byte[] buffer = new byte[data.length];
+      int len = 0;
+      while (!deflater.finished() && len < buffer.length) {
+        len += deflater.deflate(buffer, len, buffer.length - len);
+      }
+      if (!deflater.finished()) {
+        return null;
+      }
+      byte[] result = new byte[len];
+      System.arraycopy(buffer, 0, result, 0, len);
+      return result;
+    }
+
+    @Override
+    public byte[] decode(byte[] data, int size) throws IOException {
+      Inflater inflater = this.inflater.get();
+      inflater.reset();
+      inflater.setInput(data);
+      byte[] result = new byte[size];
+      try {
+        int len = 0;
+        while (len < size) {
+          int n = inflater.inflate(result, len, size - len);
+          if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+            break;
+          }
+          len += n;
+        }
+        if (len != size || !inflater.finished()) {
+          throw new IOException("corrupt block, expected " + size + " bytes");
+        }
+      } catch (DataFormatException e) {
+        throw new IOException(e);
+      }
+      return result;
+    }
+  };
+
+  /**
+   * 系统属性，按优先顺序列出本节点愿意使用的压缩方式，如deflate，默认不压缩
+   */
+  public static final String COMPRESSION = "ha-jdbc.sync.compression";
+
+  static final Logger logger = LoggerFactory.getLogger(BlockCodec.class);
+
+  /**
+   * 压缩数据
+   * @return 压缩后的数据，未能缩小时返回null
+   */
+  public abstract byte[] encode(byte[] data);
+
+  /**
+   * 解压数据
+   * @param size 原数据长度
+   */
+  public abstract byte[] decode(byte[] data, int size) throws IOException;
+
+  /**
+   * 本节点配置的压缩方式，忽略不认识的名称
+   */
+  public static BlockCodec[] configured() {
+    List<BlockCodec> codecs = new ArrayList<>();
+    String value = System.getProperty(COMPRESSION, "");
+    for (String name : value.split(",")) {
+      if (!name.trim().isEmpty()) {
+        BlockCodec codec;
+        try {
+          codec = BlockCodec.valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+          logger.log(Level.WARN, "unknown {0} {1}", COMPRESSION, name.trim());
+          continue;
+        }
+        if (codec != NONE && !codecs.contains(codec)) {
+          codecs.add(codec);
+        }
+      }
+    }
+    return codecs.toArray(new BlockCodec[codecs.size()]);
+  }
+}
@@ -0,0 +1,38 @@
+package net.sf.hajdbc.state.sync;
+
+import net.sf.hajdbc.state.distributed.StateCommandContext;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 协商文件传输的压缩方式：返回对方提供的方式中本节点亦已配置的第一个，没有时不压缩。
+ * 不认识此命令的节点返回null，此时不压缩。
+ */
+public class CodecCommand implements SyncCommand<BlockCodec> {
+  private static final long serialVersionUID = 1L;
+
+  private BlockCodec[] codecs;
+
+  public BlockCodec[] getCodecs() {
+    return codecs;
+  }
+
+  public void setCodecs(BlockCodec[] codecs) {
+    this.codecs = codecs;
+  }
+
+  @SuppressWarnings("rawtypes")
+  @Override
+  public BlockCodec execute(StateCommandContext context) {
+    if (codecs != null) {
+      List<BlockCodec> configured = Arrays.asList(BlockCodec.configured());
+      for (BlockCodec codec : codecs) {
+        if (codec != null && configured.contains(codec)) {
+          return codec;
+        }
+      }
+    }
+    return BlockCodec.NONE;
+  }
+}
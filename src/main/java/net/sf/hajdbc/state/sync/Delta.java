@@ -0,0 +1,68 @@
+package net.sf.hajdbc.state.sync;
+
+import java.io.Serializable;
+
+/**
+ * 发送端文件一个区间的差异：依次为字面数据或接收端的块引用。
+ */
+public class Delta implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private long length;
+  /**
+   * 非负数为接收端的块序号，负数为-字面数据长度
+   */
+  private int[] ops;
+  private byte[] literals;
+  private String md5;
+  private boolean mismatch;
+
+  /**
+   * 发送端文件长度
+   */
+  public long getLength() {
+    return length;
+  }
+
+  public void setLength(long length) {
+    this.length = length;
+  }
+
+  public int[] getOps() {
+    return ops;
+  }
+
+  public void setOps(int[] ops) {
+    this.ops = ops;
+  }
+
+  public byte[] getLiterals() {
+    return literals;
+  }
+
+  public void setLiterals(byte[] literals) {
+    this.literals = literals;
+  }
+
+  /**
+   * 区间内容的MD5
+   */
+  public String getMd5() {
+    return md5;
+  }
+
+  public void setMd5(String md5) {
+    this.md5 = md5;
+  }
+
+  /**
+   * 接收端已有的前缀与发送端不一致，须从头开始
+   */
+  public boolean isMismatch() {
+    return mismatch;
+  }
+
+  public void setMismatch(boolean mismatch) {
+    this.mismatch = mismatch;
+  }
+}
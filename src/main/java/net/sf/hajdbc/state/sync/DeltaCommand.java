@@ -0,0 +1,199 @@
+package net.sf.hajdbc.state.sync;
+
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+import net.sf.hajdbc.state.distributed.StateCommandContext;
+import net.sf.hajdbc.util.MD5;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 计算发送端文件[offset, offset+length)相对于接收端签名的差异。
+ * 块引用不跨越区间边界，因此各区间可以并发请求。
+ */
+public class DeltaCommand implements SyncCommand<Delta> {
+  private static final long serialVersionUID = 1L;
+
+  static final Logger logger = LoggerFactory.getLogger(DeltaCommand.class);
+  static final int MAX_SESSIONS = 16;
+
+  /**
+   * 各次传输的签名，接收端异常退出时由最早的会话让位
+   */
+  static final Map<String, Signatures> SESSIONS = Collections.synchronizedMap(new LinkedHashMap<String, Signatures>() {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Signatures> eldest) {
+      return size() > MAX_SESSIONS;
+    }
+  });
+
+  private String id;
+  private String path;
+  private long offset;
+  private int length;
+  private String verify;
+  private boolean literal;
+
+  public String getId() {
+    return id;
+  }
+
+  public void setId(String id) {
+    this.id = id;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public void setPath(String path) {
+    this.path = path;
+  }
+
+  public long getOffset() {
+    return offset;
+  }
+
+  public void setOffset(long offset) {
+    this.offset = offset;
+  }
+
+  public int getLength() {
+    return length;
+  }
+
+  public void setLength(int length) {
+    this.length = length;
+  }
+
+  /**
+   * 接收端已有的[0, offset)的MD5，续传时校验
+   */
+  public String getVerify() {
+    return verify;
+  }
+
+  public void setVerify(String verify) {
+    this.verify = verify;
+  }
+
+  /**
+   * 仅发送字面数据，用于重建结果校验失败的区间
+   */
+  public boolean isLiteral() {
+    return literal;
+  }
+
+  public void setLiteral(boolean literal) {
+    this.literal = literal;
+  }
+
+  @SuppressWarnings("rawtypes")
+  @Override
+  public Delta execute(StateCommandContext context) {
+    File file = new File(path);
+    if (!file.exists()) {
+      return null;
+    }
+    Signatures signatures = literal ? null : SESSIONS.get(id);
+    if (!literal && signatures == null) {
+      logger.log(Level.WARN, "unknown delta session {0} path={1}", id, path);
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      Delta delta = new Delta();
+      long size = channel.size();
+      delta.setLength(size);
+      MessageDigest md = MD5.newInstance();
+      if (verify != null && !verify.equals(prefix(channel, offset, md))) {
+        delta.setMismatch(true);
+        return delta;
+      }
+      int len = (int) Math.max(0, Math.min(length, size - offset));
+      ByteBuffer buffer = ByteBuffer.allocate(len);
+      Signatures.read(channel, buffer, offset);
+      byte[] data = buffer.array();
+      md.update(data, 0, len);
+      delta.setMd5(MD5.md5DigestToString(md.digest()));
+      encode(delta, signatures, data, len, md);
+      return delta;
+    } catch (IOException e) {
+      logger.log(Level.WARN, e);
+    }
+    return null;
+  }
+
+  private static String prefix(FileChannel channel, long length, MessageDigest md) throws IOException {
+    if (length > channel.size()) {
+      return null;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(UploadedCommand.BUFFER_SIZE);
+    long position = 0;
+    while (position < length) {
+      buffer.clear();
+      buffer.limit((int) Math.min(buffer.capacity(), length - position));
+      Signatures.read(channel, buffer, position);
+      md.update(buffer.array(), 0, buffer.limit());
+      position += buffer.limit();
+    }
+    return MD5.md5DigestToString(md.digest());
+  }
+
+  /**
+   * 逐字节滚动查找匹配块，其余部分作为字面数据
+   */
+  static void encode(Delta delta, Signatures signatures, byte[] data, int len, MessageDigest md) {
+    int[] ops = new int[16];
+    int count = 0;
+    byte[] literals = new byte[len];
+    int literalLength = 0;
+    int blockSize = (signatures != null && signatures.getCount() > 0) ? signatures.getBlockSize() : len + 1;
+    int start = 0;
+    int i = 0;
+    RollingChecksum checksum = (blockSize <= len) ? new RollingChecksum(data, 0, blockSize) : null;
+    while (checksum != null) {
+      int block = signatures.find(checksum.getValue(), md, data, i);
+      if (block >= 0) {
+        if (i > start) {
+          System.arraycopy(data, start, literals, literalLength, i - start);
+          literalLength += i - start;
+          ops = add(ops, count++, start - i);
+        }
+        ops = add(ops, count++, block);
+        i += blockSize;
+        start = i;
+        checksum = (i + blockSize <= len) ? new RollingChecksum(data, i, blockSize) : null;
+      } else if (i + blockSize < len) {
+        checksum.roll(data[i], data[i + blockSize]);
+        i += 1;
+      } else {
+        checksum = null;
+      }
+    }
+    if (len > start) {
+      System.arraycopy(data, start, literals, literalLength, len - start);
+      literalLength += len - start;
+      ops = add(ops, count++, start - len);
+    }
+    delta.setOps(Arrays.copyOf(ops, count));
+    delta.setLiterals((literalLength < len) ? Arrays.copyOf(literals, literalLength) : literals);
+  }
+
+  private static int[] add(int[] ops, int index, int op) {
+    int[] result = (index < ops.length) ? ops : Arrays.copyOf(ops, ops.length * 2);
+    result[index] = op;
+    return result;
+  }
+}
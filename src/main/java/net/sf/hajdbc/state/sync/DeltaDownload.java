@@ -0,0 +1,272 @@
+package net.sf.hajdbc.state.sync;
+
+import net.sf.hajdbc.distributed.Member;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+import net.sf.hajdbc.util.HaJdbcThreadFactory;
+import net.sf.hajdbc.util.MD5;
+import net.sf.hajdbc.util.StopWatch;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 差异下载：接收端发送本地文件的块签名，发送端按区间返回字面数据和块引用。
+ * 重建的区间经MD5校验后按顺序写入部分文件，因此部分文件的长度即为最后校验通过的偏移量，中断后从此处续传。
+ */
+class DeltaDownload {
+  static final Logger logger = LoggerFactory.getLogger(DeltaDownload.class);
+  public static final String PART_SUFFIX = ".part";
+  static final int RANGE_SIZE = 4 * 1024 * 1024;
+  static final int MIN_SIGNATURE_BLOCK_SIZE = 2 * 1024;
+  static final int MAX_SIGNATURE_BLOCK_SIZE = 64 * 1024;
+
+  private final SyncMgr syncMgr;
+  private final Member target;
+  private final File file;
+  private final String path;
+  private final String id = UUID.randomUUID().toString();
+  private FileChannel basis;
+  private Signatures signatures;
+
+  DeltaDownload(SyncMgr syncMgr, Member target, File file, String path) {
+    this.syncMgr = syncMgr;
+    this.target = target;
+    this.file = file;
+    this.path = path;
+  }
+
+  static File part(File file) {
+    return new File(file.getPath() + PART_SUFFIX);
+  }
+
+  /**
+   * 签名块大小约为本地文件长度的平方根
+   */
+  static int signatureBlockSize(long length) {
+    int size = Integer.highestOneBit((int) Math.min(Math.sqrt(length), Integer.MAX_VALUE));
+    return Math.max(MIN_SIGNATURE_BLOCK_SIZE, Math.min(size, MAX_SIGNATURE_BLOCK_SIZE));
+  }
+
+  /**
+   * @return 是否成功，发送端无法提供差异时返回null
+   */
+  Boolean run() {
+    StopWatch stopWatch = StopWatch.createStarted();
+    File part = part(file);
+    long literalBytes = 0;
+    Boolean r = null;
+    ExecutorService executor = null;
+    try {
+      if (file.exists()) {
+        basis = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        signatures = Signatures.of(basis, signatureBlockSize(basis.size()));
+      } else {
+        signatures = new Signatures(MIN_SIGNATURE_BLOCK_SIZE, new int[0], new long[0]);
+      }
+      SignatureCommand register = new SignatureCommand();
+      register.setId(id);
+      register.setSignatures(signatures);
+      if (syncMgr.execute(target, register) == null) {
+        return null;
+      }
+      try (FileChannel channel = FileChannel.open(part.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        long verified = channel.size();
+        Range first = new Range(verified, RANGE_SIZE);
+        first.verify = (verified > 0) ? prefix(channel, verified) : null;
+        first.call();
+        if (first.delta != null && first.delta.isMismatch()) {
+          logger.log(Level.INFO, "delta download restart, partial file differs. path={0} offset={1}", path, verified);
+          channel.truncate(0);
+          verified = 0;
+          first = new Range(0, RANGE_SIZE).call();
+        }
+        if (first.delta == null) {
+          return null;
+        }
+        long length = first.delta.getLength();
+        long offset = first.offset + first.length;
+        Map<Long, Range> done = new TreeMap<>();
+        int pending = 0;
+        executor = Executors.newFixedThreadPool(SyncMgrImpl.WINDOW, HaJdbcThreadFactory.c("sync-delta"));
+        CompletionService<Range> service = new ExecutorCompletionService<>(executor);
+        Range range = first;
+        r = false;
+        while (range != null) {
+          if (range.data == null || range.delta.getLength() != length) {
+            logger.log(Level.WARN, "delta download range failed. path={0} offset={1}", path, range.offset);
+            return r;
+          }
+          literalBytes += range.delta.getLiterals().length;
+          done.put(range.offset, range);
+          // 按顺序写入，部分文件始终只包含已校验的数据
+          for (Range next = done.remove(verified); next != null; next = done.remove(verified)) {
+            ByteBuffer buffer = ByteBuffer.wrap(next.data);
+            while (buffer.hasRemaining()) {
+              channel.write(buffer, verified + buffer.position());
+            }
+            verified += next.data.length;
+          }
+          while (pending + done.size() < SyncMgrImpl.WINDOW && offset < length) {
+            int len = (int) Math.min(RANGE_SIZE, length - offset);
+            service.submit(new Range(offset, len));
+            offset += len;
+            pending += 1;
+          }
+          if (pending > 0) {
+            pending -= 1;
+            range = take(service);
+          } else {
+            range = null;
+          }
+        }
+        channel.truncate(length);
+        channel.force(true);
+        r = (verified == length);
+      }
+      if (r) {
+        close();
+        Files.move(part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+      return r;
+    } catch (IOException e) {
+      logger.log(Level.WARN, e);
+      return r;
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+      close();
+      SignatureCommand unregister = new SignatureCommand();
+      unregister.setId(id);
+      syncMgr.execute(target, unregister);
+      stopWatch.stop();
+      logger.log(Level.INFO, "delta download file path={0} size={1} literal={2} r={3} time={4}", file.getPath(), file.length(), literalBytes, r, stopWatch.toString());
+    }
+  }
+
+  private void close() {
+    if (basis != null) {
+      try {
+        basis.close();
+      } catch (IOException e) {
+        logger.log(Level.WARN, e);
+      }
+      basis = null;
+    }
+  }
+
+  private static String prefix(FileChannel channel, long length) throws IOException {
+    MessageDigest md = MD5.newInstance();
+    ByteBuffer buffer = ByteBuffer.allocate(UploadedCommand.BUFFER_SIZE);
+    long position = 0;
+    while (position < length) {
+      buffer.clear();
+      buffer.limit((int) Math.min(buffer.capacity(), length - position));
+      Signatures.read(channel, buffer, position);
+      md.update(buffer.array(), 0, buffer.limit());
+      position += buffer.limit();
+    }
+    return MD5.md5DigestToString(md.digest());
+  }
+
+  private static Range take(CompletionService<Range> service) throws IOException {
+    try {
+      return service.take().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * 发送端文件的一个区间，请求差异后由本地块和字面数据重建并校验
+   */
+  class Range implements Callable<Range> {
+    final long offset;
+    final int length;
+    String verify;
+    Delta delta;
+    byte[] data;
+
+    Range(long offset, int length) {
+      this.offset = offset;
+      this.length = length;
+    }
+
+    @Override
+    public Range call() throws IOException {
+      delta = fetch(false);
+      if (delta == null || delta.isMismatch()) {
+        return this;
+      }
+      data = rebuild(delta);
+      if (data == null) {
+        // 块签名冲突或本地文件已变化，改为仅传字面数据
+        delta = fetch(true);
+        data = (delta != null) ? rebuild(delta) : null;
+      }
+      return this;
+    }
+
+    private Delta fetch(boolean literal) {
+      DeltaCommand cmd = new DeltaCommand();
+      cmd.setId(id);
+      cmd.setPath(path);
+      cmd.setOffset(offset);
+      cmd.setLength(length);
+      cmd.setVerify(verify);
+      cmd.setLiteral(literal);
+      return syncMgr.execute(target, cmd);
+    }
+
+    private byte[] rebuild(Delta delta) throws IOException {
+      return DeltaDownload.rebuild(delta, basis, signatures.getBlockSize());
+    }
+  }
+
+  /**
+   * 由本地文件的块和字面数据重建区间
+   * @return 重建的数据，校验失败时返回null
+   */
+  static byte[] rebuild(Delta delta, FileChannel basis, int blockSize) throws IOException {
+    int size = 0;
+    for (int op : delta.getOps()) {
+      size += (op < 0) ? -op : blockSize;
+    }
+    byte[] result = new byte[size];
+    int position = 0;
+    int literal = 0;
+    for (int op : delta.getOps()) {
+      if (op < 0) {
+        System.arraycopy(delta.getLiterals(), literal, result, position, -op);
+        literal -= op;
+        position -= op;
+      } else {
+        Signatures.read(basis, ByteBuffer.wrap(result, position, blockSize), (long) op * blockSize);
+        position += blockSize;
+      }
+    }
+    MessageDigest md = MD5.newInstance();
+    md.update(result);
+    return MD5.md5DigestToString(md.digest()).equals(delta.getMd5()) ? result : null;
+  }
+}
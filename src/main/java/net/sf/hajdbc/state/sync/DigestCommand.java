@@ -0,0 +1,65 @@
+package net.sf.hajdbc.state.sync;
+
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+import net.sf.hajdbc.state.distributed.StateCommandContext;
+import net.sf.hajdbc.util.MD5;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * 返回整个文件的MD5，下载完成后用于校验，同时结束发送端对该文件的缓存。
+ */
+public class DigestCommand implements SyncCommand<String> {
+  private static final long serialVersionUID = 1L;
+
+  static final Logger logger = LoggerFactory.getLogger(DigestCommand.class);
+
+  private String path;
+
+  public String getPath() {
+    return path;
+  }
+
+  public void setPath(String path) {
+    this.path = path;
+  }
+
+  @SuppressWarnings("rawtypes")
+  @Override
+  public String execute(StateCommandContext context) {
+    File file = new File(path);
+    FileChannelCache.close(file);
+    try {
+      return digest(file);
+    } catch (IOException e) {
+      logger.log(Level.WARN,e);
+    }
+    return null;
+  }
+
+  /**
+   * @return 文件的MD5，文件不存在时返回null
+   */
+  public static String digest(File file) throws IOException {
+    if(!file.exists()){
+      return null;
+    }
+    MessageDigest md = MD5.newInstance();
+    ByteBuffer buffer = ByteBuffer.allocateDirect(UploadedCommand.BUFFER_SIZE);
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      while (channel.read(buffer) >= 0) {
+        buffer.flip();
+        md.update(buffer);
+        buffer.clear();
+      }
+    }
+    return MD5.md5DigestToString(md.digest());
+  }
+}
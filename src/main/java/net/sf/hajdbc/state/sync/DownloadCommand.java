@@ -8,10 +8,13 @@ import net.sf.hajdbc.util.MD5;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.ObjectInputStream;
 import java.security.MessageDigest;
+import java.util.zip.CRC32;
 
 public class DownloadCommand implements SyncCommand<Block> {
+  // 与旧版本节点保持兼容，新增字段不得改变此值
+  private static final long serialVersionUID = 971833965299245155L;
   static final Logger logger = LoggerFactory.getLogger(DownloadCommand.class);
   public static final int BLOCK_SIZE = 256 * 1024;
 
@@ -19,6 +22,11 @@ public class DownloadCommand implements SyncCommand<Block> {
   private long offset;
 
   private int blockSize = BLOCK_SIZE;
+  private BlockCodec codec = BlockCodec.NONE;
+  /**
+   * 旧版本节点的请求：不含压缩方式，按块的MD5校验
+   */
+  private transient boolean legacy;
 
   public String getPath() {
     return path;
@@ -44,27 +52,67 @@ public class DownloadCommand implements SyncCommand<Block> {
     this.blockSize = blockSize;
   }
 
+  /**
+   * 协商的压缩方式
+   */
+  public BlockCodec getCodec() {
+    return codec;
+  }
+
+  public void setCodec(BlockCodec codec) {
+    this.codec = codec;
+  }
+
+  /**
+   * @return 块数据，文件不存在或读取失败时返回null
+   */
   @Override
   public Block execute(StateCommandContext context) {
-    Block block = new Block();
     File file = new File(path);
-    MessageDigest md = MD5.newInstance();
-    if(file.exists()&&offset<file.length()){
-      block.setLength(file.length());
-      try (RandomAccessFile raf = new RandomAccessFile(file,"r")){
-        raf.seek(offset);
-        byte[] buffer = new byte[blockSize];
-        int len = raf.read(buffer);
-        block.setData(buffer);
-        block.setSize(len);
+    if(!file.exists()){
+      logger.log(Level.WARN,"download file not found. path={0}", path);
+      return null;
+    }
+    Block block = new Block();
+    try {
+      FileChannelCache.Entry entry = FileChannelCache.open(file);
+      try {
+        block.setLength(entry.getSize());
+        // 只发送实际读取的字节
+        int len = (int) Math.max(0, Math.min(blockSize, entry.getSize()-offset));
         if(len>0){
-          md.update(buffer, 0, len);
-          block.setMd5(MD5.md5DigestToString(md.digest()));
+          byte[] data = entry.read(offset, len);
+          CRC32 crc = new CRC32();
+          crc.update(data, 0, len);
+          block.setData(data);
+          block.setSize(len);
+          block.setChecksum(crc.getValue());
+          if(legacy){
+            MessageDigest md = MD5.newInstance();
+            md.update(data, 0, len);
+            block.setMd5(MD5.md5DigestToString(md.digest()));
+          }
+          byte[] encoded = codec.encode(data);
+          if(encoded!=null){
+            block.setData(encoded);
+            block.setCodec(codec);
+          }
         }
-      } catch (IOException e) {
-        logger.log(Level.WARN,e);
+      } finally {
+        entry.release();
       }
+    } catch (IOException e) {
+      logger.log(Level.WARN,e);
+      return null;
     }
     return block;
   }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    if(codec==null){
+      codec = BlockCodec.NONE;
+      legacy = true;
+    }
+  }
 }
@@ -0,0 +1,190 @@
+package net.sf.hajdbc.state.sync;
+
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+import net.sf.hajdbc.util.HaJdbcThreadFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 发送端为每个正在传输的文件缓存一个FileChannel，接收端校验整个文件(即传输结束)或空闲超时后移出缓存。
+ * 缓存非空时由后台线程定期检查空闲超时，因此接收端中止传输或不校验整个文件时文件也会关闭。
+ * 缓存项带引用计数，移出缓存时仍在进行的读取完成后才关闭文件。
+ */
+public final class FileChannelCache {
+  static final Logger logger = LoggerFactory.getLogger(FileChannelCache.class);
+  static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+  static final long EVICT_INTERVAL_NANOS = IDLE_NANOS / 2;
+
+  private static final Map<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+  private static final ScheduledThreadPoolExecutor EVICTOR = evictor();
+  /**
+   * 是否已安排下一次空闲检查
+   */
+  private static final AtomicBoolean SCHEDULED = new AtomicBoolean();
+
+  private FileChannelCache() {
+  }
+
+  /**
+   * 返回文件的缓存项，文件已被修改时重新打开。
+   * 使用完毕后须调用{@link Entry#release()}
+   */
+  public static Entry open(File file) throws IOException {
+    long now = System.nanoTime();
+    String path = file.getPath();
+    while (true) {
+      Entry entry = ENTRIES.get(path);
+      if (entry != null && (entry.modified != file.lastModified() || entry.size != file.length())) {
+        close(path, entry);
+        entry = null;
+      }
+      if (entry == null) {
+        Entry created = new Entry(file);
+        entry = ENTRIES.putIfAbsent(path, created);
+        if (entry == null) {
+          entry = created;
+          schedule();
+        } else {
+          created.release();
+        }
+      }
+      // 已被移出缓存并关闭时重试
+      if (entry.retain()) {
+        entry.accessed = now;
+        return entry;
+      }
+      ENTRIES.remove(path, entry);
+    }
+  }
+
+  /**
+   * 传输结束，移出文件的缓存项
+   */
+  public static void close(File file) {
+    String path = file.getPath();
+    Entry entry = ENTRIES.get(path);
+    if (entry != null) {
+      close(path, entry);
+    }
+  }
+
+  /**
+   * 关闭空闲超时的文件，缓存非空时安排下一次检查
+   */
+  static void expire() {
+    // 先清除标记，检查期间新增的缓存项会重新安排检查
+    SCHEDULED.set(false);
+    evict(System.nanoTime());
+    if (!ENTRIES.isEmpty()) {
+      schedule();
+    }
+  }
+
+  static boolean isScheduled() {
+    return SCHEDULED.get();
+  }
+
+  private static void schedule() {
+    if (SCHEDULED.compareAndSet(false, true)) {
+      EVICTOR.schedule(FileChannelCache::expire, EVICT_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * 没有待检查的缓存时线程退出，不阻止JVM结束
+   */
+  private static ScheduledThreadPoolExecutor evictor() {
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, HaJdbcThreadFactory.c("sync-file-evictor"));
+    executor.setKeepAliveTime(1, TimeUnit.SECONDS);
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private static void evict(long now) {
+    Iterator<Map.Entry<String, Entry>> entries = ENTRIES.entrySet().iterator();
+    while (entries.hasNext()) {
+      Map.Entry<String, Entry> entry = entries.next();
+      if (now - entry.getValue().accessed > IDLE_NANOS) {
+        close(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  private static void close(String path, Entry entry) {
+    if (ENTRIES.remove(path, entry)) {
+      entry.release();
+    }
+  }
+
+  public static class Entry {
+    final FileChannel channel;
+    final long size;
+    final long modified;
+    /**
+     * 缓存本身及各次读取的引用数，为0时关闭文件
+     */
+    final AtomicInteger references = new AtomicInteger(1);
+    volatile long accessed;
+
+    Entry(File file) throws IOException {
+      this.modified = file.lastModified();
+      this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      this.size = channel.size();
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    /**
+     * 读取[offset, offset+length)
+     */
+    public byte[] read(long offset, int length) throws IOException {
+      byte[] data = new byte[length];
+      Signatures.read(channel, ByteBuffer.wrap(data), offset);
+      return data;
+    }
+
+    /**
+     * @return 是否成功增加引用，文件已关闭时返回false
+     */
+    boolean retain() {
+      while (true) {
+        int count = references.get();
+        if (count == 0) {
+          return false;
+        }
+        if (references.compareAndSet(count, count + 1)) {
+          return true;
+        }
+      }
+    }
+
+    /**
+     * 释放{@link FileChannelCache#open(File)}返回的缓存项，最后一个引用释放后关闭文件
+     */
+    public void release() {
+      if (references.decrementAndGet() == 0) {
+        try {
+          channel.close();
+        } catch (IOException e) {
+          logger.log(Level.WARN, e);
+        }
+      }
+    }
+  }
+}
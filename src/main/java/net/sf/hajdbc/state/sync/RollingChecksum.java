@@ -0,0 +1,41 @@
+package net.sf.hajdbc.state.sync;
+
+/**
+ * rsync风格的滚动校验和：窗口向后滑动一个字节时可在常数时间内更新。
+ */
+public final class RollingChecksum {
+  private int a;
+  private int b;
+  private final int length;
+
+  /**
+   * 计算buffer[offset, offset+length)的校验和
+   */
+  public RollingChecksum(byte[] buffer, int offset, int length) {
+    this.length = length;
+    for (int i = 0; i < length; ++i) {
+      a += buffer[offset + i] & 0xFF;
+      b += (length - i) * (buffer[offset + i] & 0xFF);
+    }
+    a &= 0xFFFF;
+    b &= 0xFFFF;
+  }
+
+  /**
+   * 窗口后移一个字节
+   * @param out 移出窗口的字节
+   * @param in 移入窗口的字节
+   */
+  public void roll(byte out, byte in) {
+    a = (a - (out & 0xFF) + (in & 0xFF)) & 0xFFFF;
+    b = (b - length * (out & 0xFF) + a) & 0xFFFF;
+  }
+
+  public int getValue() {
+    return (b << 16) | a;
+  }
+
+  public static int of(byte[] buffer, int offset, int length) {
+    return new RollingChecksum(buffer, offset, length).getValue();
+  }
+}
@@ -0,0 +1,40 @@
+package net.sf.hajdbc.state.sync;
+
+import net.sf.hajdbc.state.distributed.StateCommandContext;
+
+/**
+ * 在发送端登记(或在signatures为null时移除)一次差异传输的签名。
+ */
+public class SignatureCommand implements SyncCommand<Boolean> {
+  private static final long serialVersionUID = 1L;
+
+  private String id;
+  private Signatures signatures;
+
+  public String getId() {
+    return id;
+  }
+
+  public void setId(String id) {
+    this.id = id;
+  }
+
+  public Signatures getSignatures() {
+    return signatures;
+  }
+
+  public void setSignatures(Signatures signatures) {
+    this.signatures = signatures;
+  }
+
+  @SuppressWarnings("rawtypes")
+  @Override
+  public Boolean execute(StateCommandContext context) {
+    if (signatures != null) {
+      DeltaCommand.SESSIONS.put(id, signatures);
+    } else {
+      DeltaCommand.SESSIONS.remove(id);
+    }
+    return true;
+  }
+}
@@ -0,0 +1,132 @@
+package net.sf.hajdbc.state.sync;
+
+import net.sf.hajdbc.util.MD5;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+
+/**
+ * 接收端本地文件各完整块的签名：滚动校验和及MD5的前8个字节。
+ */
+public class Signatures implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final int blockSize;
+  private final int[] weak;
+  private final long[] strong;
+  /**
+   * 以弱校验和开放寻址的散列表，存放相同弱校验和的首个块序号+1，0为空
+   */
+  private transient int[] table;
+  /**
+   * 相同弱校验和的下一个块序号，-1为末尾
+   */
+  private transient int[] next;
+
+  public Signatures(int blockSize, int[] weak, long[] strong) {
+    this.blockSize = blockSize;
+    this.weak = weak;
+    this.strong = strong;
+  }
+
+  /**
+   * 计算文件各完整块的签名，末尾不足一块的部分不参与匹配
+   */
+  public static Signatures of(FileChannel channel, int blockSize) throws IOException {
+    int count = (int) (channel.size() / blockSize);
+    int[] weak = new int[count];
+    long[] strong = new long[count];
+    MessageDigest md = MD5.newInstance();
+    ByteBuffer buffer = ByteBuffer.allocate(blockSize);
+    for (int i = 0; i < count; ++i) {
+      buffer.clear();
+      read(channel, buffer, (long) i * blockSize);
+      weak[i] = RollingChecksum.of(buffer.array(), 0, blockSize);
+      strong[i] = strong(md, buffer.array(), 0, blockSize);
+    }
+    return new Signatures(blockSize, weak, strong);
+  }
+
+  /**
+   * 从position开始读满buffer剩余的空间
+   */
+  static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    long current = position;
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, current);
+      if (read < 0) {
+        throw new IOException("unexpected end of file at " + current);
+      }
+      current += read;
+    }
+  }
+
+  static long strong(MessageDigest md, byte[] buffer, int offset, int length) {
+    md.update(buffer, offset, length);
+    return ByteBuffer.wrap(md.digest()).getLong();
+  }
+
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  public int getCount() {
+    return weak.length;
+  }
+
+  /**
+   * 查找与buffer[offset, offset+blockSize)相同的块
+   * @return 块序号，未找到时返回-1
+   */
+  public int find(int checksum, MessageDigest md, byte[] buffer, int offset) {
+    if (table == null) {
+      index();
+    }
+    int head = table[slot(checksum)];
+    if (head == 0) {
+      return -1;
+    }
+    long hash = strong(md, buffer, offset, blockSize);
+    for (int candidate = head - 1; candidate >= 0; candidate = next[candidate]) {
+      if (strong[candidate] == hash) {
+        return candidate;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * 建立散列表，表长为块数两倍以上的2的幂，因此总有空位
+   */
+  private void index() {
+    int capacity = 2;
+    while (capacity < weak.length * 2) {
+      capacity <<= 1;
+    }
+    int[] table = new int[capacity];
+    next = new int[weak.length];
+    this.table = table;
+    // 倒序插入，使链表按块序号升序
+    for (int i = weak.length - 1; i >= 0; --i) {
+      int slot = slot(weak[i]);
+      next[i] = table[slot] - 1;
+      table[slot] = i + 1;
+    }
+  }
+
+  /**
+   * 线性探测，返回该弱校验和所在或应插入的位置
+   */
+  private int slot(int checksum) {
+    int mask = table.length - 1;
+    int h = checksum * 0x9E3779B9;
+    int slot = (h ^ (h >>> 16)) & mask;
+    while (table[slot] != 0 && weak[table[slot] - 1] != checksum) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+}
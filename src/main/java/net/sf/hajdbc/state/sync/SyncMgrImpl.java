@@ -6,19 +6,50 @@ import net.sf.hajdbc.logging.Level;
 import net.sf.hajdbc.logging.Logger;
 import net.sf.hajdbc.logging.LoggerFactory;
 import net.sf.hajdbc.state.distributed.DistributedStateManager;
+import net.sf.hajdbc.util.HaJdbcThreadFactory;
 import net.sf.hajdbc.util.MD5;
 import net.sf.hajdbc.util.StopWatch;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.nio.file.Paths;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
 
+/**
+ * 文件传输：同时保持 {@link #WINDOW} 个块在途，块大小根据每个块的往返时间调整。
+ */
 public class SyncMgrImpl implements SyncMgr{
   static final Logger logger = LoggerFactory.getLogger(SyncMgr.class);
   public static final int BLOCK_SIZE = 256 * 1024;
+  public static final int MIN_BLOCK_SIZE = 64 * 1024;
+  public static final int MAX_BLOCK_SIZE = 4 * 1024 * 1024;
+  /**
+   * 同时在途的块数
+   */
+  public static final int WINDOW = 4;
+  /**
+   * 单个块往返时间的目标
+   */
+  static final long TARGET_BLOCK_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+  static final int MAX_ATTEMPTS = 3;
+  /**
+   * 上传失败时等待在途块结束的最长时间
+   */
+  static final long ABORT_TIMEOUT_SECONDS = 30;
 
   private DistributedStateManager stateManager;
 
@@ -36,22 +67,43 @@ public class SyncMgrImpl implements SyncMgr{
     if(target!=null) {
       StopWatch stopWatch = StopWatch.createStarted();
       MessageDigest md = MD5.newInstance();
+      BlockSizer sizer = new BlockSizer();
+      BlockCodec codec = negotiate(target);
+      ExecutorService executor = Executors.newFixedThreadPool(WINDOW, HaJdbcThreadFactory.c("sync-upload"));
+      CompletionService<Transfer> service = new ExecutorCompletionService<>(executor);
+      boolean r = false;
       try (FileInputStream fis = new FileInputStream(file)) {
-        byte[] buffer = new byte[BLOCK_SIZE];
-        int len = 0;
-        int offset = 0;
-        UploadCommand cmd = new UploadCommand();
-        cmd.setPath(path);
-        while ((len = fis.read(buffer)) != -1) {
-          cmd.setOffset(offset);
-          byte[] data = new byte[len];
-          System.arraycopy(buffer,0,data,0,len);
-          cmd.setData(data);
-          boolean r = execute(target, cmd);
-          if(r) {
-            offset += len;
-            md.update(buffer, 0, len);
+        long offset = 0;
+        int pending = 0;
+        byte[] data;
+        while ((data = read(fis, sizer.getSize())) != null) {
+          md.update(data);
+          Transfer transfer = new Transfer(target, offset, data.length);
+          transfer.codec = codec;
+          transfer.upload = new UploadCommand();
+          transfer.upload.setPath(path);
+          transfer.upload.setOffset(offset);
+          transfer.upload.setData(data);
+          if(offset==0){
+            // 首块会清空服务器端的临时文件，须在其他块之前完成
+            if(!complete(sizer, transfer.call())){
+              return false;
+            }
           }else{
+            if(pending==WINDOW){
+              pending -= 1;
+              if(!complete(sizer, take(service))){
+                return false;
+              }
+            }
+            service.submit(transfer);
+            pending += 1;
+          }
+          offset += data.length;
+        }
+        while(pending>0){
+          pending -= 1;
+          if(!complete(sizer, take(service))){
             return false;
           }
         }
@@ -60,17 +112,38 @@ public class SyncMgrImpl implements SyncMgr{
         cmd2.setSize(file.length());
         cmd2.setMd5(MD5.md5DigestToString(md.digest()));
         cmd2.setNanos(stopWatch.getNanoTime());
-        boolean r = execute(target, cmd2);
+        r = Boolean.TRUE.equals(execute(target, cmd2));
         stopWatch.stop();
-        logger.log(Level.INFO,"upload file path={0} size={1} r={2} time={3}", file.getPath(),file.length(), r, stopWatch.toString());
+        logger.log(Level.INFO,"upload file path={0} size={1} r={2} time={3} blockSize={4} codec={5} ratio={6}", file.getPath(),file.length(), r, stopWatch.toString(), sizer.getSize(), codec, sizer.getRatio());
         return r;
       } catch (IOException e) {
         logger.log(Level.WARN,e);
+      } finally {
+        executor.shutdownNow();
+        if(!r){
+          abort(target, executor, path);
+        }
       }
     }
     return false;
   }
 
+  /**
+   * 上传失败时删除对方的临时文件。
+   * 须先等在途的块结束，以免其重新创建临时文件。
+   */
+  private void abort(Member target, ExecutorService executor, String path) {
+    try {
+      executor.awaitTermination(ABORT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    UploadedCommand cmd = new UploadedCommand();
+    cmd.setPath(path);
+    cmd.setSize(-1);
+    execute(target, cmd);
+  }
+
   @Override
   public boolean download(Member target, File file) {
     return download(target, file, file.getPath());
@@ -81,49 +154,72 @@ public class SyncMgrImpl implements SyncMgr{
     boolean r = false;
     if(target!=null) {
       StopWatch stopWatch = StopWatch.createStarted();
-      DownloadCommand downloadCommand = new DownloadCommand();
-      if(path!=null){
-        downloadCommand.setPath(path);
-      }else{
-        downloadCommand.setPath(file.getPath());
+      if(path==null){
+        path = file.getPath();
       }
-      long offset = 0;
-      try (RandomAccessFile raf = new RandomAccessFile(file, "rws")) {
-        if(offset>0){
-          raf.seek(offset);
+      // 本地已有旧文件或未完成的部分文件时，只传输差异
+      if(file.length()>0||DeltaDownload.part(file).exists()){
+        Boolean delta = new DeltaDownload(this, target, file, path).run();
+        if(delta!=null){
+          return delta;
         }
-        while (true) {
-          downloadCommand.setOffset(offset);
-          Block block = this.execute(target, downloadCommand);
-          if(block!=null){
-            if(block.getLength()>0) {
-              if(block.getSize()>0&&block.getData()!=null) {
-                MessageDigest md = MD5.newInstance();
-                md.update(block.getData(),0, block.getSize());
-                String md5 = MD5.md5DigestToString(md.digest());
-                if(md5.equals(block.getMd5())) {
-                  raf.write(block.getData(), 0, block.getSize());
-                  offset += block.getSize();
-                }
-              }
-              if(file.length()>=block.getLength()){
-                r = true;
-                break;
-              }
+      }
+      BlockSizer sizer = new BlockSizer();
+      BlockCodec codec = negotiate(target);
+      ExecutorService executor = Executors.newFixedThreadPool(WINDOW, HaJdbcThreadFactory.c("sync-download"));
+      CompletionService<Transfer> service = new ExecutorCompletionService<>(executor);
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+        // 首块确定文件长度
+        Transfer first = new Transfer(target, 0, sizer.getSize()).download(path, codec);
+        first.call();
+        Block block = first.block;
+        if(block!=null){
+          long length = block.getLength();
+          long offset = first.size;
+          int pending = 0;
+          Transfer transfer = first;
+          while(transfer!=null){
+            if(transfer.block==null){
+              logger.log(Level.WARN,"download block failed. offset={0} size={1}", transfer.offset, transfer.size);
+              return false;
+            }
+            int size = write(channel, transfer);
+            if(size==0&&transfer.offset<length){
+              logger.log(Level.WARN,"download block failed. offset={0} size={1}", transfer.offset, transfer.size);
+              return false;
+            }
+            if(size<transfer.size&&transfer.offset+size<length){
+              // 短块：补取剩余部分
+              service.submit(new Transfer(target, transfer.offset+size, transfer.size-size).download(path, codec));
+              pending += 1;
+            }
+            sizer.measured(transfer);
+            while(pending<WINDOW&&offset<length){
+              int blockSize = (int) Math.min(sizer.getSize(), length-offset);
+              service.submit(new Transfer(target, offset, blockSize).download(path, codec));
+              offset += blockSize;
+              pending += 1;
+            }
+            if(pending>0){
+              pending -= 1;
+              transfer = take(service);
             }else{
-              r = true;
-              break;
+              transfer = null;
             }
-          }else{
-            break;
           }
+          channel.truncate(length);
+          channel.force(true);
+          // 旧版本节点不支持整个文件的校验，各块已按MD5校验
+          r = (length==0)||(block.getMd5()!=null)||verify(target, file, path, executor);
         }
       } catch (IOException e) {
         logger.log(Level.WARN, e);
+      } finally {
+        executor.shutdownNow();
       }
 
       stopWatch.stop();
-      logger.log(Level.INFO,"download file path={0} size={1} r={2} time={3}", file.getPath(),file.length(), r, stopWatch.toString());
+      logger.log(Level.INFO,"download file path={0} size={1} r={2} time={3} blockSize={4} codec={5} ratio={6}", file.getPath(),file.length(), r, stopWatch.toString(), sizer.getSize(), codec, sizer.getRatio());
     }
     return r;
   }
@@ -147,4 +243,232 @@ public class SyncMgrImpl implements SyncMgr{
     }
     return null;
   }
+
+  /**
+   * 与对方协商块的压缩方式，对方不支持时不压缩
+   */
+  private BlockCodec negotiate(Member target) {
+    BlockCodec[] codecs = BlockCodec.configured();
+    if(codecs.length==0){
+      return BlockCodec.NONE;
+    }
+    CodecCommand cmd = new CodecCommand();
+    cmd.setCodecs(codecs);
+    BlockCodec codec = execute(target, cmd);
+    return (codec!=null)?codec:BlockCodec.NONE;
+  }
+
+  /**
+   * 以整个文件的MD5校验下载结果，远端与本地同时计算
+   */
+  private boolean verify(Member target, File file, String path, ExecutorService executor) throws IOException {
+    DigestCommand cmd = new DigestCommand();
+    cmd.setPath(path);
+    Future<String> future = executor.submit(() -> execute(target, cmd));
+    String digest = DigestCommand.digest(file);
+    try {
+      String expected = future.get();
+      if(digest.equals(expected)){
+        return true;
+      }
+      logger.log(Level.WARN,"download file md5 error. md5={0} expect={1} path={2}", digest, expected, path);
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * 读取至多size个字节
+   * @return 读取的数据，文件结束时返回null
+   */
+  private static byte[] read(InputStream input, int size) throws IOException {
+    byte[] buffer = new byte[size];
+    int len = 0;
+    while(len<size){
+      int read = input.read(buffer, len, size-len);
+      if(read<0){
+        break;
+      }
+      len += read;
+    }
+    if(len==0){
+      return null;
+    }
+    return (len<size)?Arrays.copyOf(buffer, len):buffer;
+  }
+
+  /**
+   * 按块的偏移量写入本地文件
+   * @return 写入的字节数
+   */
+  private static int write(FileChannel channel, Transfer transfer) throws IOException {
+    Block block = transfer.block;
+    if(block.getData()==null||block.getSize()<=0){
+      return 0;
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(block.getData(), 0, block.getSize());
+    long position = transfer.offset;
+    while(buffer.hasRemaining()){
+      position += channel.write(buffer, position);
+    }
+    return block.getSize();
+  }
+
+  /**
+   * 校验块数据，旧版本节点的块只有MD5
+   */
+  private static boolean check(Block block) {
+    if(block.getMd5()!=null){
+      MessageDigest md = MD5.newInstance();
+      md.update(block.getData(),0, block.getSize());
+      return block.getMd5().equals(MD5.md5DigestToString(md.digest()));
+    }
+    CRC32 crc = new CRC32();
+    crc.update(block.getData(),0, block.getSize());
+    return crc.getValue()==block.getChecksum();
+  }
+
+  private static boolean complete(BlockSizer sizer, Transfer transfer) {
+    if(transfer.uploaded){
+      sizer.measured(transfer);
+      return true;
+    }
+    logger.log(Level.WARN,"upload block failed. offset={0} size={1}", transfer.offset, transfer.size);
+    return false;
+  }
+
+  private static Transfer take(CompletionService<Transfer> service) throws IOException {
+    try {
+      return service.take().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * 单个块的上传或下载
+   */
+  class Transfer implements Callable<Transfer> {
+    final Member target;
+    final long offset;
+    final int size;
+    UploadCommand upload;
+    DownloadCommand download;
+    BlockCodec codec = BlockCodec.NONE;
+    boolean uploaded;
+    Block block;
+    long nanos;
+    /**
+     * 压缩前和实际传输的字节数
+     */
+    long raw;
+    long wire;
+
+    Transfer(Member target, long offset, int size) {
+      this.target = target;
+      this.offset = offset;
+      this.size = size;
+    }
+
+    Transfer download(String path, BlockCodec codec) {
+      download = new DownloadCommand();
+      download.setPath(path);
+      download.setOffset(offset);
+      download.setBlockSize(size);
+      download.setCodec(codec);
+      return this;
+    }
+
+    @Override
+    public Transfer call() {
+      long start = System.nanoTime();
+      if(upload!=null){
+        byte[] data = upload.getData();
+        upload.setSize(data.length);
+        byte[] encoded = codec.encode(data);
+        if(encoded!=null){
+          upload.setData(encoded);
+          upload.setCodec(codec);
+        }
+        raw = data.length;
+        wire = upload.getData().length;
+        Boolean r = execute(target, upload);
+        uploaded = (r!=null)&&r;
+      }else{
+        for(int i = 0; i < MAX_ATTEMPTS && block == null; ++i){
+          Block b = execute(target, download);
+          if(b==null){
+            break;
+          }
+          if(b.getLength()==0||b.getSize()<=0||b.getData()==null){
+            // 文件为空或已到末尾
+            block = b;
+          }else if(decode(b)&&check(b)){
+            block = b;
+          }
+        }
+      }
+      nanos = System.nanoTime() - start;
+      return this;
+    }
+
+    /**
+     * 解压块数据
+     * @return 数据是否完整
+     */
+    private boolean decode(Block b) {
+      BlockCodec codec = (b.getCodec()!=null)?b.getCodec():BlockCodec.NONE;
+      wire += b.getData().length;
+      try {
+        b.setData(codec.decode(b.getData(), b.getSize()));
+        b.setCodec(BlockCodec.NONE);
+        raw += b.getSize();
+        return true;
+      } catch (IOException e) {
+        logger.log(Level.WARN,"download block corrupt. offset={0} codec={1}", offset, codec);
+        return false;
+      }
+    }
+  }
+
+  /**
+   * 根据测得的块往返时间调整块大小：快于目标时加倍，慢于目标时减半。
+   */
+  static class BlockSizer {
+    private int size = BLOCK_SIZE;
+    private long raw;
+    private long wire;
+
+    int getSize() {
+      return size;
+    }
+
+    /**
+     * 实际传输与压缩前字节数之比
+     */
+    double getRatio() {
+      return (raw>0)?((double) wire)/raw:1;
+    }
+
+    void measured(Transfer transfer) {
+      raw += transfer.raw;
+      wire += transfer.wire;
+      // 末尾的短块不能反映吞吐量
+      if(transfer.size<size){
+        return;
+      }
+      if(transfer.nanos<TARGET_BLOCK_NANOS/2){
+        size = Math.min(size*2, MAX_BLOCK_SIZE);
+      }else if(transfer.nanos>TARGET_BLOCK_NANOS*2){
+        size = Math.max(size/2, MIN_BLOCK_SIZE);
+      }
+    }
+  }
 }
@@ -7,15 +7,20 @@ import net.sf.hajdbc.state.distributed.StateCommandContext;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.RandomAccessFile;
 
 public class UploadCommand implements SyncCommand<Boolean> {
+  // 与旧版本节点保持兼容，新增字段不得改变此值
+  private static final long serialVersionUID = 6727167467670282410L;
   static final Logger logger = LoggerFactory.getLogger(UploadCommand.class);
 
   public static final String TMP_FILE_SUFFIX = ".tmp";
   private String path;
   private long offset;
   private byte[] data;
+  private int size;
+  private BlockCodec codec = BlockCodec.NONE;
 
   public String getPath() {
     return path;
@@ -42,6 +47,28 @@ public class UploadCommand implements SyncCommand<Boolean> {
     this.data = data;
   }
 
+  /**
+   * 压缩前的数据长度
+   */
+  public int getSize() {
+    return size;
+  }
+
+  public void setSize(int size) {
+    this.size = size;
+  }
+
+  /**
+   * 数据的压缩方式
+   */
+  public BlockCodec getCodec() {
+    return codec;
+  }
+
+  public void setCodec(BlockCodec codec) {
+    this.codec = codec;
+  }
+
   @Override
   public Boolean execute(StateCommandContext context) {
     String path2 = path + TMP_FILE_SUFFIX;
@@ -58,12 +85,22 @@ public class UploadCommand implements SyncCommand<Boolean> {
     }
 
     try (RandomAccessFile raf = new RandomAccessFile(file,"rws")){
+      byte[] decoded = codec.decode(data, size);
       raf.seek(offset);
-      raf.write(data);
+      raf.write(decoded);
       return true;
     } catch (IOException e) {
       logger.log(Level.WARN,e);
     }
     return false;
   }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    // 旧版本节点发送的数据未压缩
+    if(codec==null){
+      codec = BlockCodec.NONE;
+      size = (data!=null)?data.length:0;
+    }
+  }
 }
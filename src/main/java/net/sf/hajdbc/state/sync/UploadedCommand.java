@@ -56,10 +56,19 @@ public class UploadedCommand implements SyncCommand<Boolean> {
     this.nanos = nanos;
   }
 
+  /**
+   * 校验上传的临时文件，通过后移至目标路径，否则删除临时文件。
+   * size 为负数表示上传已中止，仅删除临时文件。
+   */
   @Override
   public Boolean execute(StateCommandContext context) {
     String path2 = path + TMP_FILE_SUFFIX;
     File file = new File(path2);
+    if(size<0){
+      logger.log(Level.INFO,"upload aborted path={0}",path);
+      file.delete();
+      return false;
+    }
     if(file.exists()){
 
       if(file.length()==size){
@@ -85,6 +94,7 @@ public class UploadedCommand implements SyncCommand<Boolean> {
       }else{
         logger.log(Level.WARN,"uploaded file size error. size={0} expect={1} path={2}",file.length(), size, path);
       }
+      file.delete();
     }
     return false;
   }
@@ -0,0 +1,392 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.util.Resources;
+
+/**
+ * Sizes the batches of the statements executed against the target database during synchronization.
+ * Each statement adapts its batch size independently, between {@link #getMinBatchSize()} and {@link #getMaxBatchSize()}, by comparing the throughput of consecutive batches.
+ * A batch is also executed early once the estimated size of its parameters reaches {@link #getMaxBatchBytes()}, to bound the memory consumed by tables with large rows, e.g. LOBs.
+ * A fixed batch size can be configured by setting the minimum and maximum batch size to the same value.
+ * @author Paul Ferraro
+ */
+public class BatchSizer implements Serializable
+{
+	private static final long serialVersionUID = 4203875283071364123L;
+
+	// Estimated size of a parameter whose size we cannot determine, e.g. a number or a timestamp
+	private static final int DEFAULT_PARAMETER_SIZE = 16;
+
+	private int minBatchSize = 10;
+	private int maxBatchSize = 100;
+	private long maxBatchBytes = 16 * 1024 * 1024;
+
+	/**
+	 * Creates a batch for the specified statement, sized according to the configuration of this sizer.
+	 * @param statement a prepared statement
+	 * @return a new batch
+	 */
+	public Batch createBatch(PreparedStatement statement)
+	{
+		return new Batch(new PreparedStatement[] { statement }, null, this.minBatchSize, Math.max(this.minBatchSize, this.maxBatchSize), this.maxBatchBytes);
+	}
+
+	/**
+	 * Creates a batch of the specified SQL, whose statements are owned, and closed, by the batch.
+	 * @param connection the connection with which to prepare the statements of the batch
+	 * @param sql the SQL of the batch
+	 * @param writer executes full batches, while the next batch is populated, or null, if batches should execute in the calling thread
+	 * @return a new batch
+	 * @throws SQLException if the statements of the batch could not be prepared
+	 */
+	public Batch createBatch(Connection connection, String sql, ExecutorService writer) throws SQLException
+	{
+		PreparedStatement[] statements = new PreparedStatement[(writer != null) ? 2 : 1];
+		
+		for (int i = 0; i < statements.length; ++i)
+		{
+			try
+			{
+				statements[i] = connection.prepareStatement(sql);
+			}
+			catch (SQLException e)
+			{
+				for (int j = 0; j < i; ++j)
+				{
+					Resources.close(statements[j]);
+				}
+				throw e;
+			}
+		}
+		
+		return new Batch(statements, writer, this.minBatchSize, Math.max(this.minBatchSize, this.maxBatchSize), this.maxBatchBytes);
+	}
+
+	/**
+	 * Estimates the number of bytes that the specified parameter value contributes to a batch.
+	 * @param value a parameter value, possibly null
+	 * @return the estimated size of the value in bytes
+	 * @throws SQLException if the length of a LOB could not be determined
+	 */
+	public static long sizeOf(Object value) throws SQLException
+	{
+		if (value instanceof byte[])
+		{
+			return ((byte[]) value).length;
+		}
+		if (value instanceof CharSequence)
+		{
+			return ((CharSequence) value).length() * 2L;
+		}
+		if (value instanceof Blob)
+		{
+			return ((Blob) value).length();
+		}
+		if (value instanceof Clob)
+		{
+			return ((Clob) value).length() * 2L;
+		}
+		if (value instanceof BigDecimal)
+		{
+			return Math.max(((BigDecimal) value).precision() / 2, DEFAULT_PARAMETER_SIZE);
+		}
+		return DEFAULT_PARAMETER_SIZE;
+	}
+
+	/**
+	 * @return the lower bound of the batch size.
+	 */
+	public int getMinBatchSize()
+	{
+		return this.minBatchSize;
+	}
+
+	/**
+	 * @param minBatchSize the lower bound of the batch size.
+	 */
+	public void setMinBatchSize(int minBatchSize)
+	{
+		this.minBatchSize = Math.max(minBatchSize, 1);
+	}
+
+	/**
+	 * @return the upper bound of the batch size.
+	 */
+	public int getMaxBatchSize()
+	{
+		return this.maxBatchSize;
+	}
+
+	/**
+	 * @param maxBatchSize the upper bound of the batch size.
+	 */
+	public void setMaxBatchSize(int maxBatchSize)
+	{
+		this.maxBatchSize = Math.max(maxBatchSize, 1);
+	}
+
+	/**
+	 * @return the estimated number of bytes of parameters at which a batch is executed, or 0 if unbounded.
+	 */
+	public long getMaxBatchBytes()
+	{
+		return this.maxBatchBytes;
+	}
+
+	/**
+	 * @param maxBatchBytes the estimated number of bytes of parameters at which a batch is executed, or 0 if unbounded.
+	 */
+	public void setMaxBatchBytes(long maxBatchBytes)
+	{
+		this.maxBatchBytes = maxBatchBytes;
+	}
+
+	/**
+	 * A batch of a prepared statement, whose size adapts to the observed throughput of the target database.
+	 * The batch size is multiplicatively increased as long as throughput improves, and decreased once it degrades, until throughput degrades again.
+	 * Each reversal of direction narrows the factor by which the batch size changes, so that the batch size settles near the size of optimal throughput.
+	 * Batches executed early, or executed by {@link #flush()}, do not contribute to the measurements.
+	 * If created with a writer, full batches are executed by the writer, while subsequent parameters are added to another statement, so that reading and writing overlap.
+	 * Consequently, parameters must always be set via {@link #getStatement()}, and a failed execution may only be reported by a subsequent {@link #add(long)} or {@link #flush()}.
+	 */
+	public static class Batch
+	{
+		private static final int INITIAL_BATCH_SIZE = 100;
+		private static final double INITIAL_FACTOR = 2;
+		private static final double MIN_FACTOR = 1.1;
+
+		private final PreparedStatement[] statements;
+		private final ExecutorService writer;
+		private final List<Future<Long>> executions;
+		// Number of statements of each execution that contribute to the measurements
+		private final int[] measuredCounts;
+		private final int minSize;
+		private final int maxSize;
+		private final long maxBytes;
+
+		private int current = 0;
+		private int size;
+		private boolean growing = true;
+		private double factor = INITIAL_FACTOR;
+		private double throughput = 0;
+		private int count = 0;
+		private long bytes = 0;
+
+		Batch(PreparedStatement[] statements, ExecutorService writer, int minSize, int maxSize, long maxBytes)
+		{
+			this.statements = statements;
+			this.writer = writer;
+			this.executions = new ArrayList<Future<Long>>(Collections.<Future<Long>>nCopies(statements.length, null));
+			this.measuredCounts = new int[statements.length];
+			this.minSize = minSize;
+			this.maxSize = maxSize;
+			this.maxBytes = maxBytes;
+			this.size = Math.min(Math.max(INITIAL_BATCH_SIZE, minSize), maxSize);
+		}
+
+		/**
+		 * Returns the statement whose parameters are to be added to this batch.
+		 * @return a prepared statement
+		 */
+		public PreparedStatement getStatement()
+		{
+			return this.statements[this.current];
+		}
+
+		/**
+		 * Adds the current parameters of the statement to this batch, executing the batch if it is full.
+		 * @param bytes the estimated size of the parameters
+		 * @throws SQLException if the batch, or a previous batch, could not be executed
+		 */
+		public void add(long bytes) throws SQLException
+		{
+			this.statements[this.current].addBatch();
+			this.count += 1;
+			this.bytes += bytes;
+
+			boolean full = (this.count >= this.size);
+
+			if (full || ((this.maxBytes > 0) && (this.bytes >= this.maxBytes)))
+			{
+				if (!full)
+				{
+					// Never grow beyond the number of rows that fit within the memory bound
+					this.size = Math.max(this.count, this.minSize);
+					this.growing = false;
+				}
+				
+				this.execute(full);
+			}
+		}
+
+		/**
+		 * Executes any pending statements of this batch, and waits for the completion of any executing batches.
+		 * @throws SQLException if a batch could not be executed
+		 */
+		public void flush() throws SQLException
+		{
+			if (this.count > 0)
+			{
+				this.execute(false);
+			}
+			
+			for (int i = 0; i < this.statements.length; ++i)
+			{
+				this.complete(i);
+			}
+		}
+
+		/**
+		 * @return the current batch size
+		 */
+		public int getSize()
+		{
+			return this.size;
+		}
+
+		/**
+		 * Closes the statements of this batch, once any executing batches complete.
+		 */
+		public void close()
+		{
+			for (int i = 0; i < this.statements.length; ++i)
+			{
+				try
+				{
+					this.complete(i);
+				}
+				catch (SQLException e)
+				{
+					// Already reported by the failed synchronization
+				}
+				Resources.close(this.statements[i]);
+			}
+		}
+
+		private void execute(boolean measured) throws SQLException
+		{
+			final PreparedStatement statement = this.statements[this.current];
+			int count = this.count;
+			
+			this.count = 0;
+			this.bytes = 0;
+			
+			if (this.writer == null)
+			{
+				long nanos = executeBatch(statement);
+				
+				if (measured)
+				{
+					this.adapt(count, nanos);
+				}
+			}
+			else
+			{
+				Callable<Long> task = new Callable<Long>()
+				{
+					@Override
+					public Long call() throws SQLException
+					{
+						return executeBatch(statement);
+					}
+				};
+				
+				this.executions.set(this.current, this.writer.submit(task));
+				this.measuredCounts[this.current] = measured ? count : 0;
+				this.current = (this.current + 1) % this.statements.length;
+				
+				// Wait until the next statement is no longer executing
+				this.complete(this.current);
+			}
+		}
+
+		private void complete(int index) throws SQLException
+		{
+			Future<Long> execution = this.executions.set(index, null);
+			
+			if (execution != null)
+			{
+				try
+				{
+					long nanos = execution.get();
+					
+					if (this.measuredCounts[index] > 0)
+					{
+						this.adapt(this.measuredCounts[index], nanos);
+					}
+				}
+				catch (ExecutionException e)
+				{
+					throw ExceptionType.SQL.<SQLException>getExceptionFactory().createException(e.getCause());
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new SQLException(e);
+				}
+			}
+		}
+
+		private static long executeBatch(PreparedStatement statement) throws SQLException
+		{
+			long start = System.nanoTime();
+			
+			statement.executeBatch();
+			statement.clearBatch();
+			
+			return System.nanoTime() - start;
+		}
+
+		/**
+		 * Adapts the batch size to the throughput of a measured execution of the specified number of statements.
+		 */
+		void adapt(int count, long nanos)
+		{
+			double throughput = count / (double) Math.max(nanos, 1L);
+
+			if (throughput < this.throughput)
+			{
+				this.growing = !this.growing;
+				this.factor = Math.max(1 + ((this.factor - 1) / 2), MIN_FACTOR);
+			}
+
+			this.throughput = throughput;
+
+			int size = this.growing ? Math.max((int) (this.size * this.factor), this.size + 1) : (int) (this.size / this.factor);
+
+			this.size = Math.min(Math.max(size, this.minSize), this.maxSize);
+		}
+	}
+}
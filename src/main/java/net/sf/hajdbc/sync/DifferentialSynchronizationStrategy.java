@@ -21,13 +21,16 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
@@ -41,7 +44,6 @@ import net.sf.hajdbc.UniqueConstraint;
 import net.sf.hajdbc.logging.Level;
 import net.sf.hajdbc.logging.Logger;
 import net.sf.hajdbc.logging.LoggerFactory;
-import net.sf.hajdbc.util.Objects;
 import net.sf.hajdbc.util.Resources;
 import net.sf.hajdbc.util.Strings;
 
@@ -57,6 +59,7 @@ import net.sf.hajdbc.util.Strings;
  *    <li>Find the primary key(s) of the table</li>
  *    <li>Query all rows in the inactive database table, sorting by the primary key(s)</li>
  *    <li>Query all rows on the active database table</li>
+ *    <li>If partitioned, perform the above queries and the following comparison for each range of primary keys concurrently</li>
  *    <li>For each row in table:
  *     <ol>
  *      <li>If primary key of the rows are the same, determine whether or not row needs to be updated</li>
@@ -71,15 +74,18 @@ import net.sf.hajdbc.util.Strings;
  * </ol>
  * @author  Paul Ferraro
  */
-public class DifferentialSynchronizationStrategy implements SynchronizationStrategy, TableSynchronizationStrategy
+public class DifferentialSynchronizationStrategy implements SynchronizationStrategy, KeyRangeSynchronizationStrategy
 {
 	private static final long serialVersionUID = -2785092229503649831L;
 
 	static Logger logger = LoggerFactory.getLogger(DifferentialSynchronizationStrategy.class);
 
-	private final SynchronizationStrategy strategy = new PerTableSynchronizationStrategy(this);
+	private final PerTableSynchronizationStrategy strategy = new PerTableSynchronizationStrategy(this);
+	private final KeyRangePartitioner partitioner = new KeyRangePartitioner();
 	private int fetchSize = 0;
-	private int maxBatchSize = 100;
+	private int lookupSize = 100;
+	private boolean pipelined = false;
+	private final BatchSizer batchSizer = new BatchSizer();
 	private Pattern versionPattern = null;
 	
 	@Override
@@ -137,14 +143,29 @@ public class DifferentialSynchronizationStrategy implements SynchronizationStrat
 	@Override
 	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table) throws SQLException
 	{
-		String tableName = table.getName().getDMLName();
+		if (table.getPrimaryKey() == null)
+		{
+			throw new SQLException(Messages.PRIMARY_KEY_REQUIRED.getMessage(this.getClass().getName(), table.getName().getDMLName()));
+		}
 		
-		UniqueConstraint primaryKey = table.getPrimaryKey();
+		List<KeyRange> ranges = this.partitioner.partition(context, table);
 		
-		if (primaryKey == null)
+		if (ranges.size() > 1)
+		{
+			this.partitioner.synchronize(context, table, ranges, this);
+		}
+		else
 		{
-			throw new SQLException(Messages.PRIMARY_KEY_REQUIRED.getMessage(this.getClass().getName(), tableName));
+			this.synchronize(context, table, ranges.get(0));
 		}
+	}
+	
+	@Override
+	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table, KeyRange range) throws SQLException
+	{
+		String tableName = table.getName().getDMLName();
+		
+		UniqueConstraint primaryKey = table.getPrimaryKey();
 		
 		List<String> primaryKeyColumns = primaryKey.getColumnList();
 		
@@ -180,20 +201,43 @@ public class DifferentialSynchronizationStrategy implements SynchronizationStrat
 			selectColumns.addAll(versionColumns);
 		}
 		
+		// Resolve column types and parameter indexes once per table, rather than per row
+		int[] types = new int[allColumns.size()];
+		int[] insertIndexes = new int[allColumns.size()];
+		int[] updateIndexes = new int[allColumns.size()];
+		
+		for (int i = 0; i < allColumns.size(); ++i)
+		{
+			types[i] = context.getDialect().getColumnType(table.getColumnProperties(allColumns.get(i)));
+			insertIndexes[i] = i + 1;
+			// Update statement sets the non-key columns, followed by the key columns
+			updateIndexes[i] = (i < primaryKeyColumns.size()) ? i + 1 + nonPrimaryKeyColumns.size() : i + 1 - primaryKeyColumns.size();
+		}
+		
+		int[] selectTypes = types;
+		if (!versionColumns.isEmpty())
+		{
+			selectTypes = Arrays.copyOf(types, selectColumns.size());
+			for (int i = primaryKeyColumns.size(); i < selectColumns.size(); ++i)
+			{
+				selectTypes[i] = types[allColumns.indexOf(selectColumns.get(i))];
+			}
+		}
+		
 		// Retrieve table rows in primary key order
-		final String selectSQL = String.format("SELECT %s FROM %s ORDER BY %s", Strings.join(selectColumns, Strings.PADDED_COMMA), tableName, Strings.join(primaryKeyColumns, Strings.PADDED_COMMA)); //$NON-NLS-1$
+		final String selectSQL = range.where(String.format("SELECT %s FROM %s", Strings.join(selectColumns, Strings.PADDED_COMMA), tableName)) + String.format(" ORDER BY %s", Strings.join(primaryKeyColumns, Strings.PADDED_COMMA)); //$NON-NLS-1$
 		String primaryKeyWhereClause = Strings.join(new StringBuilder(), primaryKeyColumns, " = ? AND ").append(" = ?").toString(); //$NON-NLS-1$
-		String selectAllSQL = !versionColumns.isEmpty() ? String.format("SELECT %s FROM %s WHERE %s", Strings.join(nonPrimaryKeyColumns, Strings.PADDED_COMMA), tableName, primaryKeyWhereClause) : null;
 		String deleteSQL = String.format("DELETE FROM %s WHERE %s", tableName, primaryKeyWhereClause);
 		String insertSQL = String.format("INSERT INTO %s (%s) VALUES (%s)", tableName, Strings.join(allColumns, Strings.PADDED_COMMA), Strings.join(Collections.nCopies(allColumns.size(), Strings.QUESTION), Strings.PADDED_COMMA)); //$NON-NLS-1$
 		String updateSQL = !nonPrimaryKeyColumns.isEmpty() ? String.format("UPDATE %s SET %s = ? WHERE %s", tableName, Strings.join(nonPrimaryKeyColumns, " = ?, "), primaryKeyWhereClause) : null;
 		
 		Connection targetConnection = context.getConnection(context.getTargetDatabase());
-		final Statement targetStatement = targetConnection.createStatement();
+		final PreparedStatement targetStatement = targetConnection.prepareStatement(selectSQL);
 
 		try
 		{
 			targetStatement.setFetchSize(this.fetchSize);
+			range.bind(targetStatement);
 			
 			Callable<ResultSet> callable = new Callable<ResultSet>()
 			{
@@ -201,48 +245,63 @@ public class DifferentialSynchronizationStrategy implements SynchronizationStrat
 				public ResultSet call() throws SQLException
 				{
 					logger.log(Level.DEBUG, selectSQL);
-					return targetStatement.executeQuery(selectSQL);
+					return targetStatement.executeQuery();
 				}
 			};
 	
 			Future<ResultSet> future = context.getExecutor().submit(callable);
 			
 			Connection sourceConnection = context.getConnection(context.getSourceDatabase());
-			Statement sourceStatement = sourceConnection.createStatement();
+			PreparedStatement sourceStatement = sourceConnection.prepareStatement(selectSQL);
 			
 			try
 			{
 				sourceStatement.setFetchSize(this.fetchSize);
+				range.bind(sourceStatement);
 				
-				ResultSet sourceResultSet = sourceStatement.executeQuery(selectSQL);
+				ResultSet sourceResultSet = sourceStatement.executeQuery();
 		
 				ResultSet targetResultSet = future.get();
 				
-				PreparedStatement selectAllStatement = null;
+				RowComparator comparator = new RowComparator(selectTypes, primaryKeyColumns.size(), sourceResultSet.getMetaData());
+				
+				SynchronizationMonitor.TableMonitor monitor = context.getMonitor().getTable(table);
+				KeyLookup insertLookup = null;
+				KeyLookup updateLookup = null;
+				
+				// Non-key columns of changed rows are fetched from the source database in batches of keys
 				if (!versionColumns.isEmpty())
 				{
-					logger.log(Level.DEBUG, selectAllSQL);
-					selectAllStatement = targetConnection.prepareStatement(selectAllSQL);
+					int[] keyTypes = Arrays.copyOf(types, primaryKeyColumns.size());
+					
+					insertLookup = new KeyLookup(sourceConnection, tableName, primaryKeyColumns, keyTypes, nonPrimaryKeyColumns, this.lookupSize);
+					updateLookup = new KeyLookup(sourceConnection, tableName, primaryKeyColumns, keyTypes, nonPrimaryKeyColumns, this.lookupSize);
 				}
 				
+				// Executes full batches while subsequent rows are read and compared
+				// The writer shares the target connection, and therefore the transaction, of the comparing thread, such that its writes cannot wait for locks held by the reads of the target table
+				ExecutorService writer = this.pipelined ? Executors.newSingleThreadExecutor(context.getDatabaseCluster().getThreadFactory()) : null;
+				// LOB locators of fetched rows need not outlive their result set
+				boolean locators = (insertLookup != null) && hasLocators(types);
+				
 				try
 				{
 					logger.log(Level.DEBUG, deleteSQL);
-					PreparedStatement deleteStatement = targetConnection.prepareStatement(deleteSQL);
+					BatchSizer.Batch deleteBatch = this.batchSizer.createBatch(targetConnection, deleteSQL, writer);
 					
 					try
 					{
 						logger.log(Level.DEBUG, insertSQL);
-						PreparedStatement insertStatement = targetConnection.prepareStatement(insertSQL);
+						BatchSizer.Batch insertBatch = this.batchSizer.createBatch(targetConnection, insertSQL, writer);
 						
 						try
 						{
-							PreparedStatement updateStatement = null;
+							BatchSizer.Batch updateBatch = null;
 							
 							if (!nonPrimaryKeyColumns.isEmpty())
 							{
 								logger.log(Level.DEBUG, updateSQL);
-								updateStatement = targetConnection.prepareStatement(updateSQL);
+								updateBatch = this.batchSizer.createBatch(targetConnection, updateSQL, writer);
 							}
 							
 							try
@@ -268,199 +327,64 @@ public class DifferentialSynchronizationStrategy implements SynchronizationStrat
 									}
 									else
 									{
-										for (int i = 1; i <= primaryKeyColumns.size(); ++i)
-										{
-											Object sourceObject = sourceResultSet.getObject(i);
-											Object targetObject = targetResultSet.getObject(i);
-											
-											// We assume that the primary keys column types are Comparable
-											compare = compare(sourceObject, targetObject);
-											
-											if (compare != 0)
-											{
-												break;
-											}
-										}
+										compare = comparator.compareKeys(sourceResultSet, targetResultSet);
 									}
 									
 									if (compare > 0)
 									{
-										deleteStatement.clearParameters();
+										long bytes = bind(context, targetResultSet, types, insertIndexes, primaryKeyColumns.size(), deleteBatch.getStatement());
 										
-										for (int i = 1; i <= primaryKeyColumns.size(); ++i)
-										{
-											int type = context.getDialect().getColumnType(table.getColumnProperties(allColumns.get(i - 1)));
-											
-											deleteStatement.setObject(i, targetResultSet.getObject(i), type);
-										}
-										
-										deleteStatement.addBatch();
+										deleteBatch.add(bytes);
+										monitor.deleted();
+										monitor.written(bytes);
 										
 										deleteCount += 1;
-										
-										if ((deleteCount % this.maxBatchSize) == 0)
-										{
-											deleteStatement.executeBatch();
-											deleteStatement.clearBatch();
-										}
 									}
 									else if (compare < 0)
 									{
-										insertStatement.clearParameters();
-										
-										for (int i = 1; i <= primaryKeyColumns.size(); ++i)
+										if (insertLookup != null)
 										{
-											int type = context.getDialect().getColumnType(table.getColumnProperties(allColumns.get(i - 1)));
-											
-											insertStatement.setObject(i, sourceResultSet.getObject(i), type);
-										}
-										
-										if (versionColumns.isEmpty())
-										{
-											for (int i = primaryKeyColumns.size() + 1; i <= allColumns.size(); ++i)
+											if (insertLookup.add(sourceResultSet))
 											{
-												int type = context.getDialect().getColumnType(table.getColumnProperties(allColumns.get(i - 1)));
-						
-												Object object = context.getSynchronizationSupport().getObject(sourceResultSet, i, type);
-												
-												if (sourceResultSet.wasNull())
-												{
-													insertStatement.setNull(i, type);
-												}
-												else
-												{
-													insertStatement.setObject(i, object, type);
-												}
+												monitor.written(write(context, insertLookup, types, insertIndexes, insertBatch, locators));
 											}
 										}
 										else
 										{
-											if (selectAllStatement != null)
-											{
-												selectAllStatement.clearParameters();
-												
-												for (int i = 1; i <= primaryKeyColumns.size(); ++i)
-												{
-													int type = context.getDialect().getColumnType(table.getColumnProperties(allColumns.get(i - 1)));
-													
-													selectAllStatement.setObject(i, sourceResultSet.getObject(i), type);
-												}
-												
-												ResultSet selectAllResultSet = selectAllStatement.executeQuery();
-						
-												for (int i = primaryKeyColumns.size() + 1; i <= allColumns.size(); ++i)
-												{
-													int type = context.getDialect().getColumnType(table.getColumnProperties(allColumns.get(i - 1)));
-													
-													Object object = context.getSynchronizationSupport().getObject(selectAllResultSet, i - primaryKeyColumns.size(), type);
-													
-													if (selectAllResultSet.wasNull())
-													{
-														insertStatement.setNull(i, type);
-													}
-													else
-													{
-														insertStatement.setObject(i, object, type);
-													}
-												}
-											}
-										}
+											long bytes = bind(context, sourceResultSet, types, insertIndexes, types.length, insertBatch.getStatement());
 											
-										insertStatement.addBatch();
+											insertBatch.add(bytes);
+											monitor.written(bytes);
+										}
 										
+										monitor.inserted();
 										insertCount += 1;
-										
-										if ((insertCount % this.maxBatchSize) == 0)
-										{
-											insertStatement.executeBatch();
-											insertStatement.clearBatch();
-										}
 									}
-									else if (updateStatement != null) // if (compare == 0)
+									else if ((updateBatch != null) && !comparator.equals(sourceResultSet, targetResultSet)) // if (compare == 0)
 									{
-										updateStatement.clearParameters();
-										
-										boolean updated = false;
-										
-										for (int i = primaryKeyColumns.size() + 1; i <= selectColumns.size(); ++i)
+										if (updateLookup != null)
 										{
-											int type = context.getDialect().getColumnType(table.getColumnProperties(selectColumns.get(i - 1)));
-											
-											Object sourceObject = context.getSynchronizationSupport().getObject(sourceResultSet, i, type);
-											Object targetObject = context.getSynchronizationSupport().getObject(targetResultSet, i, type);
-											
-											int index = i - primaryKeyColumns.size();
-											
-											if (sourceResultSet.wasNull())
-											{
-												updateStatement.setNull(index, type);
-												
-												updated |= !targetResultSet.wasNull();
-											}
-											else
+											if (updateLookup.add(sourceResultSet))
 											{
-												updateStatement.setObject(index, sourceObject, type);
-												
-												updated |= targetResultSet.wasNull();
-												updated |= !Objects.equals(sourceObject, targetObject);
+												monitor.written(write(context, updateLookup, types, updateIndexes, updateBatch, locators));
 											}
 										}
-										
-										if (updated)
+										else
 										{
-											if (selectAllStatement != null)
-											{
-												selectAllStatement.clearParameters();
-												
-												for (int i = 1; i <= primaryKeyColumns.size(); ++i)
-												{
-													int type = context.getDialect().getColumnType(table.getColumnProperties(allColumns.get(i - 1)));
-													
-													selectAllStatement.setObject(i, sourceResultSet.getObject(i), type);
-												}
-												
-												ResultSet selectAllResultSet = selectAllStatement.executeQuery();
-						
-												for (int i = primaryKeyColumns.size() + 1; i <= allColumns.size(); ++i)
-												{
-													int type = context.getDialect().getColumnType(table.getColumnProperties(allColumns.get(i - 1)));
-													
-													int index = i - primaryKeyColumns.size();
-													
-													Object object = context.getSynchronizationSupport().getObject(selectAllResultSet, index, type);
-													
-													if (selectAllResultSet.wasNull())
-													{
-														updateStatement.setNull(index, type);
-													}
-													else
-													{
-														updateStatement.setObject(index, object, type);
-													}
-												}
-											}
-											
-											for (int i = 1; i <= primaryKeyColumns.size(); ++i)
-											{
-												int type = context.getDialect().getColumnType(table.getColumnProperties(allColumns.get(i - 1)));
-												
-												updateStatement.setObject(i + nonPrimaryKeyColumns.size(), targetResultSet.getObject(i), type);
-											}
+											// Keys of both rows are equal
+											long bytes = bind(context, sourceResultSet, types, updateIndexes, types.length, updateBatch.getStatement());
 											
-											updateStatement.addBatch();
-											
-											updateCount += 1;
-											
-											if ((updateCount % this.maxBatchSize) == 0)
-											{
-												updateStatement.executeBatch();
-												updateStatement.clearBatch();
-											}
+											updateBatch.add(bytes);
+											monitor.written(bytes);
 										}
+										
+										monitor.updated();
+										updateCount += 1;
 									}
 									
 									if (hasMoreSourceResults && (compare <= 0))
 									{
+										monitor.scanned();
 										hasMoreSourceResults = sourceResultSet.next();
 									}
 									
@@ -470,22 +394,18 @@ public class DifferentialSynchronizationStrategy implements SynchronizationStrat
 									}
 								}
 								
-								if ((deleteCount % this.maxBatchSize) > 0)
+								if (insertLookup != null)
 								{
-									deleteStatement.executeBatch();
+									monitor.written(write(context, insertLookup, types, insertIndexes, insertBatch, locators));
+									monitor.written(write(context, updateLookup, types, updateIndexes, updateBatch, locators));
 								}
 								
-								if ((insertCount % this.maxBatchSize) > 0)
-								{
-									insertStatement.executeBatch();
-								}
+								deleteBatch.flush();
+								insertBatch.flush();
 								
-								if (updateStatement != null)
+								if (updateBatch != null)
 								{
-									if ((updateCount % this.maxBatchSize) > 0)
-									{
-										updateStatement.executeBatch();
-									}
+									updateBatch.flush();
 								}
 								
 								logger.log(Level.INFO, Messages.INSERT_COUNT.getMessage(), insertCount, tableName);
@@ -494,27 +414,33 @@ public class DifferentialSynchronizationStrategy implements SynchronizationStrat
 							}
 							finally
 							{
-								if (updateStatement != null)
+								if (updateBatch != null)
 								{
-									Resources.close(updateStatement);
+									updateBatch.close();
 								}
 							}
 						}
 						finally
 						{
-							Resources.close(insertStatement);
+							insertBatch.close();
 						}
 					}
 					finally
 					{
-						Resources.close(deleteStatement);
+						deleteBatch.close();
 					}
 				}
 				finally
 				{
-					if (selectAllStatement != null)
+					if (writer != null)
+					{
+						writer.shutdown();
+					}
+					
+					if (insertLookup != null)
 					{
-						Resources.close(selectAllStatement);
+						insertLookup.close();
+						updateLookup.close();
 					}
 				}
 			}
@@ -538,12 +464,96 @@ public class DifferentialSynchronizationStrategy implements SynchronizationStrat
 		}
 	}
 	
-	private static int compare(Object object1, Object object2)
+	/**
+	 * Writes the rows of the pending keys of the specified lookup to the specified statement.
+	 * If the rows contain LOB locators, the batch is flushed before the fetched rows are closed, since a locator need not outlive its result set.
+	 * Otherwise, the bound values are independent of the fetched rows, and the batch is left to fill.
+	 * @param indexes the statement parameter index of each fetched column
+	 * @param locators indicates whether the fetched columns may contain LOB locators
+	 * @return the estimated number of bytes written
+	 */
+	private static <Z, D extends Database<Z>> long write(SynchronizationContext<Z, D> context, KeyLookup lookup, int[] types, int[] indexes, BatchSizer.Batch batch, boolean locators) throws SQLException
+	{
+		if (lookup.isEmpty())
+		{
+			return 0;
+		}
+		
+		long total = 0;
+		ResultSet resultSet = lookup.fetch();
+		
+		try
+		{
+			while (resultSet.next())
+			{
+				long bytes = bind(context, resultSet, types, indexes, types.length, batch.getStatement());
+				
+				batch.add(bytes);
+				total += bytes;
+			}
+			
+			if (locators)
+			{
+				batch.flush();
+			}
+		}
+		finally
+		{
+			lookup.close(resultSet);
+		}
+		
+		return total;
+	}
+	
+	private static boolean hasLocators(int[] types)
 	{
-		@SuppressWarnings("unchecked")
-		Comparable<Object> comparable = (Comparable<Object>) object1;
+		for (int type: types)
+		{
+			switch (type)
+			{
+				case Types.BLOB:
+				case Types.CLOB:
+				case Types.NCLOB:
+				case Types.SQLXML:
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Binds the leading columns of the current row of the specified result set to the cleared parameters of the specified statement.
+	 * @param indexes the statement parameter index of each column
+	 * @param count the number of columns to bind
+	 * @return the estimated size of the bound parameters
+	 */
+	private static <Z, D extends Database<Z>> long bind(SynchronizationContext<Z, D> context, ResultSet resultSet, int[] types, int[] indexes, int count, PreparedStatement statement) throws SQLException
+	{
+		statement.clearParameters();
+		
+		long bytes = 0;
 		
-		return comparable.compareTo(object2);
+		for (int i = 1; i <= count; ++i)
+		{
+			int type = types[i - 1];
+			int index = indexes[i - 1];
+			
+			Object object = context.getSynchronizationSupport().getObject(resultSet, i, type);
+			
+			if (resultSet.wasNull())
+			{
+				statement.setNull(index, type);
+			}
+			else
+			{
+				statement.setObject(index, object, type);
+				bytes += BatchSizer.sizeOf(object);
+			}
+		}
+		
+		return bytes;
 	}
 
 	/**
@@ -563,19 +573,83 @@ public class DifferentialSynchronizationStrategy implements SynchronizationStrat
 	}
 
 	/**
-	 * @return Returns the maxBatchSize.
+	 * @return the lower bound of the adaptive batch size.
+	 */
+	public int getMinBatchSize()
+	{
+		return this.batchSizer.getMinBatchSize();
+	}
+
+	/**
+	 * @param minBatchSize the lower bound of the adaptive batch size.
+	 */
+	public void setMinBatchSize(int minBatchSize)
+	{
+		this.batchSizer.setMinBatchSize(minBatchSize);
+	}
+
+	/**
+	 * @return the upper bound of the adaptive batch size.
 	 */
 	public int getMaxBatchSize()
 	{
-		return this.maxBatchSize;
+		return this.batchSizer.getMaxBatchSize();
 	}
 
 	/**
-	 * @param maxBatchSize The maxBatchSize to set.
+	 * @param maxBatchSize the upper bound of the adaptive batch size.
 	 */
 	public void setMaxBatchSize(int maxBatchSize)
 	{
-		this.maxBatchSize = maxBatchSize;
+		this.batchSizer.setMaxBatchSize(maxBatchSize);
+	}
+
+	/**
+	 * @return the estimated size of a batch, in bytes, at which it is executed regardless of its batch size.
+	 */
+	public long getMaxBatchBytes()
+	{
+		return this.batchSizer.getMaxBatchBytes();
+	}
+
+	/**
+	 * @param maxBatchBytes the estimated size of a batch, in bytes, at which it is executed regardless of its batch size, or 0 if unbounded.
+	 */
+	public void setMaxBatchBytes(long maxBatchBytes)
+	{
+		this.batchSizer.setMaxBatchBytes(maxBatchBytes);
+	}
+
+	/**
+	 * @return Returns the concurrency.
+	 */
+	public int getConcurrency()
+	{
+		return this.strategy.getConcurrency();
+	}
+
+	/**
+	 * @param concurrency The concurrency to set.
+	 */
+	public void setConcurrency(int concurrency)
+	{
+		this.strategy.setConcurrency(concurrency);
+	}
+
+	/**
+	 * @return the number of key ranges into which each table is partitioned.
+	 */
+	public int getPartitions()
+	{
+		return this.partitioner.getPartitions();
+	}
+
+	/**
+	 * @param partitions the number of key ranges into which each table is partitioned.
+	 */
+	public void setPartitions(int partitions)
+	{
+		this.partitioner.setPartitions(partitions);
 	}
 
 	/**
@@ -593,4 +667,36 @@ public class DifferentialSynchronizationStrategy implements SynchronizationStrat
 	{
 		this.versionPattern = (versionPattern != null) ? Pattern.compile(versionPattern, Pattern.CASE_INSENSITIVE) : null;
 	}
+
+	/**
+	 * @return the maximum number of keys whose rows are fetched by a single query, if a version pattern is specified.
+	 */
+	public int getLookupSize()
+	{
+		return this.lookupSize;
+	}
+
+	/**
+	 * @param lookupSize the maximum number of keys whose rows are fetched by a single query, if a version pattern is specified.
+	 */
+	public void setLookupSize(int lookupSize)
+	{
+		this.lookupSize = lookupSize;
+	}
+
+	/**
+	 * @return true, if batches are executed by a separate writer thread, via the target connection of the comparing thread, while subsequent rows are read and compared, false otherwise.
+	 */
+	public boolean isPipelined()
+	{
+		return this.pipelined;
+	}
+
+	/**
+	 * @param pipelined indicates whether batches should be executed by a separate writer thread, via the target connection of the comparing thread, while subsequent rows are read and compared.
+	 */
+	public void setPipelined(boolean pipelined)
+	{
+		this.pipelined = pipelined;
+	}
 }
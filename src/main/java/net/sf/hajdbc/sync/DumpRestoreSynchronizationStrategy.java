@@ -18,6 +18,7 @@
 package net.sf.hajdbc.sync;
 
 import java.io.File;
+import java.io.OutputStream;
 import java.sql.SQLException;
 
 import net.sf.hajdbc.*;
@@ -27,6 +28,8 @@ import net.sf.hajdbc.util.Files;
 
 /**
  * A synchronization strategy that uses dump/restore procedures.
+ * If the dialect supports it, and streaming is enabled, the dump is written directly into the restore, such that both run concurrently.
+ * Otherwise, the dump is written to a temporary file, which is deleted once restored.
  * @author Paul Ferraro
  */
 public class DumpRestoreSynchronizationStrategy implements SynchronizationStrategy
@@ -35,6 +38,7 @@ public class DumpRestoreSynchronizationStrategy implements SynchronizationStrate
 	private static final String DUMP_FILE_SUFFIX = ".dump";
 
 	private boolean dataOnly = false;
+	private boolean streaming = true;
 
 	@Override
 	public String getId()
@@ -52,6 +56,20 @@ public class DumpRestoreSynchronizationStrategy implements SynchronizationStrate
 		this.dataOnly = dataOnly;
 	}
 
+	/**
+	 * Indicates whether the dump is piped directly into the restore, if supported by the dialect.
+	 * @return true, if the dump is streamed, false if it is written to a temporary file
+	 */
+	public boolean isStreaming()
+	{
+		return this.streaming;
+	}
+
+	public void setStreaming(boolean streaming)
+	{
+		this.streaming = streaming;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.SynchronizationStrategy#init(net.sf.hajdbc.DatabaseCluster)
@@ -88,18 +106,13 @@ public class DumpRestoreSynchronizationStrategy implements SynchronizationStrate
 		
 		try
 		{
-			String dbId = context.getSourceDatabase().getId();
-			File file = Files.createTempFile("_"+dbId +DUMP_FILE_SUFFIX);
-			
-			try
+			if (this.streaming && (support instanceof StreamingDumpRestoreSupport))
 			{
-				support.dump(context, context.getSourceDatabase(), decoder, file, this.dataOnly);
-				support.restore(context, context.getTargetDatabase(), decoder, file, this.dataOnly);
+				this.pipe(context, (StreamingDumpRestoreSupport) support, decoder);
 			}
-			finally
+			else
 			{
-				//不再删除该文件
-				//Files.delete(file);
+				this.transfer(context, support, decoder);
 			}
 		}
 		catch (Exception e)
@@ -107,4 +120,39 @@ public class DumpRestoreSynchronizationStrategy implements SynchronizationStrate
 			throw ExceptionType.SQL.<SQLException>getExceptionFactory().createException(e);
 		}
 	}
+
+	private <Z, D extends Database<Z>> void transfer(SynchronizationContext<Z, D> context, DumpRestoreSupport support, Decoder decoder) throws Exception
+	{
+		String dbId = context.getSourceDatabase().getId();
+		File file = Files.createTempFile("_"+dbId +DUMP_FILE_SUFFIX);
+		
+		try
+		{
+			support.dump(context, context.getSourceDatabase(), decoder, file, this.dataOnly);
+			support.restore(context, context.getTargetDatabase(), decoder, file, this.dataOnly);
+		}
+		finally
+		{
+			Files.delete(file);
+		}
+	}
+
+	private <Z, D extends Database<Z>> void pipe(SynchronizationContext<Z, D> context, StreamingDumpRestoreSupport support, Decoder decoder) throws Exception
+	{
+		OutputStream output = support.restore(context, context.getTargetDatabase(), decoder, this.dataOnly);
+		
+		try
+		{
+			support.dump(context, context.getSourceDatabase(), decoder, output, this.dataOnly);
+		}
+		catch (Exception e)
+		{
+			// Ends the restore, such that it does not outlive the synchronization
+			// If the restore exited prematurely, causing the dump to fail, its failure takes precedence
+			output.close();
+			throw e;
+		}
+		
+		output.close();
+	}
 }
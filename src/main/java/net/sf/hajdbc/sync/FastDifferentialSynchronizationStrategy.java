@@ -17,22 +17,59 @@
  */
 package net.sf.hajdbc.sync;
 
-import net.sf.hajdbc.*;
-import net.sf.hajdbc.codec.Decoder;
-import net.sf.hajdbc.dialect.Dialect;
-import net.sf.hajdbc.util.Files;
-
-import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.Messages;
+import net.sf.hajdbc.SynchronizationStrategy;
+import net.sf.hajdbc.TableProperties;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+import net.sf.hajdbc.util.Objects;
+import net.sf.hajdbc.util.Resources;
 
 /**
- * Work in progress...
+ * Database-independent synchronization strategy that only transfers the ranges of rows whose checksums differ between two databases.
+ * This strategy is best used when there are <em>very few</em> differences between the active database and the inactive database.
+ * The following algorithm is used:
+ * <ol>
+ *  <li>Drop the foreign keys and unique constraints on the inactive database (to avoid integrity constraint violations)</li>
+ *  <li>For each database table, starting with a range spanning the entire table:
+ *   <ol>
+ *    <li>Compute the row count and checksum of the range on both databases, via the hash function of the dialect</li>
+ *    <li>If both are equal, skip the range</li>
+ *    <li>Otherwise, if the range contains few enough rows, synchronize the range via the {@link DifferentialSynchronizationStrategy}</li>
+ *    <li>Otherwise, split the range into smaller ranges of primary keys, and repeat for each</li>
+ *   </ol>
+ *  </li>
+ *  <li>Re-create the unique constraints and foreign keys on the inactive database</li>
+ *  <li>Synchronize sequences</li>
+ * </ol>
+ * Tables of a dialect without a checksum function are synchronized entirely via the {@link DifferentialSynchronizationStrategy}.
+ * Likewise, ranges whose checksum evaluates to NULL are compared row by row.
  * @author Paul Ferraro
  */
-public class FastDifferentialSynchronizationStrategy implements SynchronizationStrategy
+public class FastDifferentialSynchronizationStrategy implements SynchronizationStrategy, KeyRangeSynchronizationStrategy
 {
 	private static final long serialVersionUID = 2556031934309008750L;
 
+	static Logger logger = LoggerFactory.getLogger(FastDifferentialSynchronizationStrategy.class);
+
+	private final PerTableSynchronizationStrategy strategy = new PerTableSynchronizationStrategy(this);
+	private final DifferentialSynchronizationStrategy differential = new DifferentialSynchronizationStrategy();
+	private final KeyRangePartitioner partitioner = new KeyRangePartitioner();
+	private int fanout = 16;
+	private int leafSize = 1000;
 
 	@Override
 	public String getId()
@@ -47,7 +84,7 @@ public class FastDifferentialSynchronizationStrategy implements SynchronizationS
 	@Override
 	public <Z, D extends Database<Z>> void init(DatabaseCluster<Z, D> cluster)
 	{
-
+		this.strategy.init(cluster);
 	}
 
 	/**
@@ -55,8 +92,9 @@ public class FastDifferentialSynchronizationStrategy implements SynchronizationS
 	 * @see net.sf.hajdbc.SynchronizationStrategy#synchronize(net.sf.hajdbc.sync.SynchronizationContext)
 	 */
 	@Override
-	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context)
+	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context) throws SQLException
 	{
+		this.strategy.synchronize(context);
 	}
 
 	/**
@@ -66,6 +104,304 @@ public class FastDifferentialSynchronizationStrategy implements SynchronizationS
 	@Override
 	public <Z, D extends Database<Z>> void destroy(DatabaseCluster<Z, D> cluster)
 	{
+		this.strategy.destroy(cluster);
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> void dropConstraints(SynchronizationContext<Z, D> context) throws SQLException
+	{
+		this.differential.dropConstraints(context);
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> void restoreConstraints(SynchronizationContext<Z, D> context) throws SQLException
+	{
+		this.differential.restoreConstraints(context);
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table) throws SQLException
+	{
+		if (table.getPrimaryKey() == null)
+		{
+			throw new SQLException(Messages.PRIMARY_KEY_REQUIRED.getMessage(this.getClass().getName(), table.getName().getDMLName()));
+		}
+		
+		if (checksumFunction(context, table) == null)
+		{
+			this.differential.synchronize(context, table);
+		}
+		else
+		{
+			this.synchronize(context, table, new KeyRange());
+		}
+	}
+
+	/**
+	 * Compares the checksums of the specified range, and if they differ, either synchronizes the range, or recurses into its sub-ranges.
+	 */
+	@Override
+	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table, KeyRange range) throws SQLException
+	{
+		String checksumSQL = range.where(String.format("SELECT COUNT(*), %s FROM %s", checksumFunction(context, table), table.getName().getDMLName()));
+		
+		Future<Checksum> future = context.getExecutor().submit(new ChecksumTask(context.getConnection(context.getTargetDatabase()), checksumSQL, range));
+		
+		Checksum source = new ChecksumTask(context.getConnection(context.getSourceDatabase()), checksumSQL, range).call();
+		Checksum target = null;
+		
+		try
+		{
+			target = future.get();
+		}
+		catch (ExecutionException e)
+		{
+			throw ExceptionType.SQL.<SQLException>getExceptionFactory().createException(e.getCause());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new SQLException(e);
+		}
+		
+		// A checksum cannot vouch for rows whose hashes it could not compute, so compare these row by row
+		if (!source.isKnown() || !target.isKnown())
+		{
+			logger.log(Level.DEBUG, "Checksum of range {1} of {0} is unknown", table.getName(), range);
+			this.differential.synchronize(context, table, range);
+			return;
+		}
+		
+		if (source.equals(target))
+		{
+			logger.log(Level.DEBUG, "Range {1} of {0} is synchronized", table.getName(), range);
+			return;
+		}
+		
+		List<KeyRange> ranges = (Math.max(source.count, target.count) > this.leafSize) ? this.partitioner.partition(context, table, range, this.fanout) : null;
+		
+		if ((ranges == null) || (ranges.size() <= 1))
+		{
+			this.differential.synchronize(context, table, range);
+		}
+		else
+		{
+			for (KeyRange subrange: ranges)
+			{
+				this.synchronize(context, table, subrange);
+			}
+		}
 	}
 
+	private static <Z, D extends Database<Z>> String checksumFunction(SynchronizationContext<Z, D> context, TableProperties table) throws SQLException
+	{
+		return context.getDialect().getChecksumFunction(table);
+	}
+
+	/**
+	 * The row count and checksum of a range of a table.
+	 */
+	private static class Checksum
+	{
+		final long count;
+		final Object checksum;
+		
+		Checksum(long count, Object checksum)
+		{
+			this.count = count;
+			this.checksum = checksum;
+		}
+		
+		/**
+		 * Indicates whether this checksum is meaningful, i.e. the aggregate is not NULL for a non-empty range.
+		 */
+		boolean isKnown()
+		{
+			return (this.count == 0) || (this.checksum != null);
+		}
+
+		@Override
+		public boolean equals(Object object)
+		{
+			if (!(object instanceof Checksum))
+			{
+				return false;
+			}
+			Checksum checksum = (Checksum) object;
+			return (this.count == checksum.count) && Objects.equals(this.checksum, checksum.checksum);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (int) this.count;
+		}
+	}
+
+	/**
+	 * Computes the checksum of a range of a table using a given connection.
+	 */
+	private static class ChecksumTask implements Callable<Checksum>
+	{
+		private final Connection connection;
+		private final String sql;
+		private final KeyRange range;
+		
+		ChecksumTask(Connection connection, String sql, KeyRange range)
+		{
+			this.connection = connection;
+			this.sql = sql;
+			this.range = range;
+		}
+
+		@Override
+		public Checksum call() throws SQLException
+		{
+			PreparedStatement statement = this.connection.prepareStatement(this.sql);
+			try
+			{
+				this.range.bind(statement);
+				
+				logger.log(Level.DEBUG, this.sql);
+				ResultSet resultSet = statement.executeQuery();
+				resultSet.next();
+				
+				return new Checksum(resultSet.getLong(1), resultSet.getObject(2));
+			}
+			finally
+			{
+				Resources.close(statement);
+			}
+		}
+	}
+
+	/**
+	 * @return the fetchSize.
+	 */
+	public int getFetchSize()
+	{
+		return this.differential.getFetchSize();
+	}
+
+	/**
+	 * @param fetchSize the fetchSize to set.
+	 */
+	public void setFetchSize(int fetchSize)
+	{
+		this.differential.setFetchSize(fetchSize);
+	}
+
+	/**
+	 * @return the lower bound of the adaptive batch size.
+	 */
+	public int getMinBatchSize()
+	{
+		return this.differential.getMinBatchSize();
+	}
+
+	/**
+	 * @param minBatchSize the lower bound of the adaptive batch size.
+	 */
+	public void setMinBatchSize(int minBatchSize)
+	{
+		this.differential.setMinBatchSize(minBatchSize);
+	}
+
+	/**
+	 * @return the upper bound of the adaptive batch size.
+	 */
+	public int getMaxBatchSize()
+	{
+		return this.differential.getMaxBatchSize();
+	}
+
+	/**
+	 * @param maxBatchSize the upper bound of the adaptive batch size.
+	 */
+	public void setMaxBatchSize(int maxBatchSize)
+	{
+		this.differential.setMaxBatchSize(maxBatchSize);
+	}
+
+	/**
+	 * @return the estimated size of a batch, in bytes, at which it is executed regardless of its batch size.
+	 */
+	public long getMaxBatchBytes()
+	{
+		return this.differential.getMaxBatchBytes();
+	}
+
+	/**
+	 * @param maxBatchBytes the estimated size of a batch, in bytes, at which it is executed regardless of its batch size.
+	 */
+	public void setMaxBatchBytes(long maxBatchBytes)
+	{
+		this.differential.setMaxBatchBytes(maxBatchBytes);
+	}
+
+	/**
+	 * @return true, if batches are executed by a separate writer thread, false otherwise.
+	 */
+	public boolean isPipelined()
+	{
+		return this.differential.isPipelined();
+	}
+
+	/**
+	 * @param pipelined indicates whether batches should be executed by a separate writer thread.
+	 */
+	public void setPipelined(boolean pipelined)
+	{
+		this.differential.setPipelined(pipelined);
+	}
+
+	/**
+	 * @return the concurrency.
+	 */
+	public int getConcurrency()
+	{
+		return this.strategy.getConcurrency();
+	}
+
+	/**
+	 * @param concurrency the concurrency to set.
+	 */
+	public void setConcurrency(int concurrency)
+	{
+		this.strategy.setConcurrency(concurrency);
+	}
+
+	/**
+	 * Returns the number of ranges into which a range with differing checksums is split.
+	 * @return the fanout.
+	 */
+	public int getFanout()
+	{
+		return this.fanout;
+	}
+
+	/**
+	 * @param fanout the fanout to set.
+	 */
+	public void setFanout(int fanout)
+	{
+		this.fanout = fanout;
+	}
+
+	/**
+	 * Returns the maximum number of rows of a range with differing checksums that is compared row by row, rather than split further.
+	 * @return the leafSize.
+	 */
+	public int getLeafSize()
+	{
+		return this.leafSize;
+	}
+
+	/**
+	 * @param leafSize the leafSize to set.
+	 */
+	public void setLeafSize(int leafSize)
+	{
+		this.leafSize = leafSize;
+	}
 }
@@ -24,6 +24,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -49,7 +50,7 @@ import net.sf.hajdbc.util.Strings;
  *  <li>For each database table:
  *   <ol>
  *    <li>Delete all rows in the inactive database table</li>
- *    <li>Query all rows on the active database table</li>
+ *    <li>Query all rows on the active database table, or if partitioned, each range of primary keys concurrently</li>
  *    <li>For each row in active database table:
  *     <ol>
  *      <li>Insert new row into inactive database table</li>
@@ -62,14 +63,15 @@ import net.sf.hajdbc.util.Strings;
  * </ol>
  * @author  Paul Ferraro
  */
-public class FullSynchronizationStrategy implements SynchronizationStrategy, TableSynchronizationStrategy
+public class FullSynchronizationStrategy implements SynchronizationStrategy, KeyRangeSynchronizationStrategy
 {
 	private static final long serialVersionUID = 9190347092842178162L;
 
 	static Logger logger = LoggerFactory.getLogger(FullSynchronizationStrategy.class);
 
-	private SynchronizationStrategy strategy = new PerTableSynchronizationStrategy(this);
-	private int maxBatchSize = 100;
+	private PerTableSynchronizationStrategy strategy = new PerTableSynchronizationStrategy(this);
+	private KeyRangePartitioner partitioner = new KeyRangePartitioner();
+	private BatchSizer batchSizer = new BatchSizer();
 	private int fetchSize = 0;
 
 	@Override
@@ -98,21 +100,57 @@ public class FullSynchronizationStrategy implements SynchronizationStrategy, Tab
 
 	@Override
 	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table) throws SQLException
+	{
+		final String tableName = table.getName().getDMLName();
+		final String deleteSQL = context.getDialect().getTruncateTableSQL(table);
+		
+		List<KeyRange> ranges = this.partitioner.partition(context, table);
+		
+		Connection targetConnection = context.getConnection(context.getTargetDatabase());
+		Statement deleteStatement = targetConnection.createStatement();
+		
+		try
+		{
+			logger.log(Level.DEBUG, deleteSQL);
+			int deletedRows = deleteStatement.executeUpdate(deleteSQL);
+	
+			logger.log(Level.INFO, Messages.DELETE_COUNT.getMessage(), deletedRows, tableName);
+		}
+		finally
+		{
+			Resources.close(deleteStatement);
+		}
+		
+		if (ranges.size() > 1)
+		{
+			// Ranges are copied via other connections, which must not block on the truncated table
+			targetConnection.commit();
+			
+			this.partitioner.synchronize(context, table, ranges, this);
+		}
+		else
+		{
+			this.synchronize(context, table, ranges.get(0));
+		}
+	}
+	
+	@Override
+	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table, KeyRange range) throws SQLException
 	{
 		final String tableName = table.getName().getDMLName();
 		final Collection<String> columns = table.getColumns();
 		
 		final String commaDelimitedColumns = Strings.join(columns, Strings.PADDED_COMMA);
 		
-		final String selectSQL = String.format("SELECT %s FROM %s", commaDelimitedColumns, tableName);
-		final String deleteSQL = context.getDialect().getTruncateTableSQL(table);
+		final String selectSQL = range.where(String.format("SELECT %s FROM %s", commaDelimitedColumns, tableName));
 		final String insertSQL = String.format("INSERT INTO %s (%s) VALUES (%s)", tableName, commaDelimitedColumns, Strings.join(Collections.nCopies(columns.size(), Strings.QUESTION), Strings.PADDED_COMMA));
 		
 		Connection sourceConnection = context.getConnection(context.getSourceDatabase());
-		final Statement selectStatement = sourceConnection.createStatement();
+		final PreparedStatement selectStatement = sourceConnection.prepareStatement(selectSQL);
 		try
 		{
 			selectStatement.setFetchSize(this.fetchSize);
+			range.bind(selectStatement);
 			
 			Callable<ResultSet> callable = new Callable<ResultSet>()
 			{
@@ -120,26 +158,13 @@ public class FullSynchronizationStrategy implements SynchronizationStrategy, Tab
 				public ResultSet call() throws SQLException
 				{
 					logger.log(Level.DEBUG, selectSQL);
-					return selectStatement.executeQuery(selectSQL);
+					return selectStatement.executeQuery();
 				}
 			};
 	
 			Future<ResultSet> future = context.getExecutor().submit(callable);
 			
 			Connection targetConnection = context.getConnection(context.getTargetDatabase());
-			Statement deleteStatement = targetConnection.createStatement();
-			
-			try
-			{
-				logger.log(Level.DEBUG, deleteSQL);
-				int deletedRows = deleteStatement.executeUpdate(deleteSQL);
-		
-				logger.log(Level.INFO, Messages.DELETE_COUNT.getMessage(), deletedRows, tableName);
-			}
-			finally
-			{
-				Resources.close(deleteStatement);
-			}
 			
 			logger.log(Level.DEBUG, insertSQL);
 			PreparedStatement insertStatement = targetConnection.prepareStatement(insertSQL);
@@ -147,12 +172,15 @@ public class FullSynchronizationStrategy implements SynchronizationStrategy, Tab
 			try
 			{
 				int statementCount = 0;
+				BatchSizer.Batch batch = this.batchSizer.createBatch(insertStatement);
+				SynchronizationMonitor.TableMonitor monitor = context.getMonitor().getTable(table);
 				
 				ResultSet resultSet = future.get();
 				
 				while (resultSet.next())
 				{
 					int index = 0;
+					long bytes = 0;
 					
 					for (String column: table.getColumns())
 					{
@@ -169,25 +197,21 @@ public class FullSynchronizationStrategy implements SynchronizationStrategy, Tab
 						else
 						{
 							insertStatement.setObject(index, object, type);
+							bytes += BatchSizer.sizeOf(object);
 						}
 					}
 					
-					insertStatement.addBatch();
+					batch.add(bytes);
 					statementCount += 1;
 					
-					if ((statementCount % this.maxBatchSize) == 0)
-					{
-						insertStatement.executeBatch();
-						insertStatement.clearBatch();
-					}
+					monitor.scanned();
+					monitor.inserted();
+					monitor.written(bytes);
 					
 					insertStatement.clearParameters();
 				}
 				
-				if ((statementCount % this.maxBatchSize) > 0)
-				{
-					insertStatement.executeBatch();
-				}
+				batch.flush();
 		
 				logger.log(Level.INFO, Messages.INSERT_COUNT.getMessage(), statementCount, table);
 			}
@@ -240,18 +264,82 @@ public class FullSynchronizationStrategy implements SynchronizationStrategy, Tab
 	}
 	
 	/**
-	 * @return the maxBatchSize.
+	 * @return the lower bound of the adaptive batch size.
+	 */
+	public int getMinBatchSize()
+	{
+		return this.batchSizer.getMinBatchSize();
+	}
+
+	/**
+	 * @param minBatchSize the lower bound of the adaptive batch size.
+	 */
+	public void setMinBatchSize(int minBatchSize)
+	{
+		this.batchSizer.setMinBatchSize(minBatchSize);
+	}
+	
+	/**
+	 * @return the upper bound of the adaptive batch size.
 	 */
 	public int getMaxBatchSize()
 	{
-		return this.maxBatchSize;
+		return this.batchSizer.getMaxBatchSize();
 	}
 
 	/**
-	 * @param maxBatchSize the maxBatchSize to set.
+	 * @param maxBatchSize the upper bound of the adaptive batch size.
 	 */
 	public void setMaxBatchSize(int maxBatchSize)
 	{
-		this.maxBatchSize = maxBatchSize;
+		this.batchSizer.setMaxBatchSize(maxBatchSize);
+	}
+
+	/**
+	 * @return the estimated size of a batch, in bytes, at which it is executed regardless of its batch size.
+	 */
+	public long getMaxBatchBytes()
+	{
+		return this.batchSizer.getMaxBatchBytes();
+	}
+
+	/**
+	 * @param maxBatchBytes the estimated size of a batch, in bytes, at which it is executed regardless of its batch size, or 0 if unbounded.
+	 */
+	public void setMaxBatchBytes(long maxBatchBytes)
+	{
+		this.batchSizer.setMaxBatchBytes(maxBatchBytes);
+	}
+
+	/**
+	 * @return the concurrency.
+	 */
+	public int getConcurrency()
+	{
+		return this.strategy.getConcurrency();
+	}
+
+	/**
+	 * @param concurrency the concurrency to set.
+	 */
+	public void setConcurrency(int concurrency)
+	{
+		this.strategy.setConcurrency(concurrency);
+	}
+
+	/**
+	 * @return the number of key ranges into which each table is partitioned.
+	 */
+	public int getPartitions()
+	{
+		return this.partitioner.getPartitions();
+	}
+
+	/**
+	 * @param partitions the number of key ranges into which each table is partitioned.
+	 */
+	public void setPartitions(int partitions)
+	{
+		this.partitioner.setPartitions(partitions);
 	}
 }
@@ -0,0 +1,219 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.SynchronizationStrategy;
+import net.sf.hajdbc.journal.Journal;
+import net.sf.hajdbc.journal.JournalEntry;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+
+/**
+ * Synchronization strategy that replays the writes missed by the inactive database, as recorded by the {@link Journal} of the cluster.
+ * The following algorithm is used:
+ * <ol>
+ *  <li>If the journal contains every write committed since the inactive database was deactivated, replay them, in commit order, within a single transaction on the inactive database</li>
+ *  <li>Synchronize sequences and identity columns</li>
+ *  <li>Otherwise, i.e. if the journal is disabled, overflowed, or was invalidated, or if the replay failed, synchronize via the {@link DifferentialSynchronizationStrategy}</li>
+ * </ol>
+ * @author Paul Ferraro
+ */
+public class JournalSynchronizationStrategy implements SynchronizationStrategy
+{
+	private static final long serialVersionUID = -2043652479301536927L;
+
+	static Logger logger = LoggerFactory.getLogger(JournalSynchronizationStrategy.class);
+
+	private final DifferentialSynchronizationStrategy differential = new DifferentialSynchronizationStrategy();
+
+	@Override
+	public String getId()
+	{
+		return "journal";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.SynchronizationStrategy#init(net.sf.hajdbc.DatabaseCluster)
+	 */
+	@Override
+	public <Z, D extends Database<Z>> void init(DatabaseCluster<Z, D> cluster)
+	{
+		this.differential.init(cluster);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.SynchronizationStrategy#synchronize(net.sf.hajdbc.sync.SynchronizationContext)
+	 */
+	@Override
+	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context) throws SQLException
+	{
+		D target = context.getTargetDatabase();
+		Journal journal = context.getDatabaseCluster().getJournal();
+		List<JournalEntry> entries = (journal != null) ? journal.getEntries(target.getId()) : null;
+		
+		if (entries == null)
+		{
+			logger.log(Level.INFO, "Journal does not contain every write missed by database {0}, falling back to differential synchronization", target);
+			this.differential.synchronize(context);
+			return;
+		}
+		
+		Connection connection = context.getConnection(target);
+		SynchronizationSupport support = context.getSynchronizationSupport();
+		
+		try
+		{
+			connection.setAutoCommit(false);
+			
+			for (JournalEntry entry: entries)
+			{
+				logger.log(Level.DEBUG, "Replaying {0}", entry);
+				entry.replay(connection);
+			}
+			
+			connection.commit();
+		}
+		catch (SQLException e)
+		{
+			support.rollback(connection);
+			logger.log(Level.WARN, e, "Failed to replay journal on database {0}, falling back to differential synchronization", target);
+			this.differential.synchronize(context);
+			return;
+		}
+		
+		logger.log(Level.INFO, "Replayed {0} journaled writes on database {1}", entries.size(), target);
+		
+		support.synchronizeIdentityColumns();
+		support.synchronizeSequences();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.SynchronizationStrategy#destroy(net.sf.hajdbc.DatabaseCluster)
+	 */
+	@Override
+	public <Z, D extends Database<Z>> void destroy(DatabaseCluster<Z, D> cluster)
+	{
+		this.differential.destroy(cluster);
+	}
+
+	/**
+	 * @return the fetchSize of the fallback strategy.
+	 */
+	public int getFetchSize()
+	{
+		return this.differential.getFetchSize();
+	}
+
+	/**
+	 * @param fetchSize the fetchSize of the fallback strategy.
+	 */
+	public void setFetchSize(int fetchSize)
+	{
+		this.differential.setFetchSize(fetchSize);
+	}
+
+	/**
+	 * @return the lower bound of the adaptive batch size of the fallback strategy.
+	 */
+	public int getMinBatchSize()
+	{
+		return this.differential.getMinBatchSize();
+	}
+
+	/**
+	 * @param minBatchSize the lower bound of the adaptive batch size of the fallback strategy.
+	 */
+	public void setMinBatchSize(int minBatchSize)
+	{
+		this.differential.setMinBatchSize(minBatchSize);
+	}
+
+	/**
+	 * @return the upper bound of the adaptive batch size of the fallback strategy.
+	 */
+	public int getMaxBatchSize()
+	{
+		return this.differential.getMaxBatchSize();
+	}
+
+	/**
+	 * @param maxBatchSize the upper bound of the adaptive batch size of the fallback strategy.
+	 */
+	public void setMaxBatchSize(int maxBatchSize)
+	{
+		this.differential.setMaxBatchSize(maxBatchSize);
+	}
+
+	/**
+	 * @return the estimated size of a batch, in bytes, at which it is executed regardless of its batch size of the fallback strategy.
+	 */
+	public long getMaxBatchBytes()
+	{
+		return this.differential.getMaxBatchBytes();
+	}
+
+	/**
+	 * @param maxBatchBytes the estimated size of a batch, in bytes, at which it is executed regardless of its batch size of the fallback strategy.
+	 */
+	public void setMaxBatchBytes(long maxBatchBytes)
+	{
+		this.differential.setMaxBatchBytes(maxBatchBytes);
+	}
+
+	/**
+	 * @return true, if batches are executed by a separate writer thread by the fallback strategy, false otherwise.
+	 */
+	public boolean isPipelined()
+	{
+		return this.differential.isPipelined();
+	}
+
+	/**
+	 * @param pipelined indicates whether batches should be executed by a separate writer thread by the fallback strategy.
+	 */
+	public void setPipelined(boolean pipelined)
+	{
+		this.differential.setPipelined(pipelined);
+	}
+
+	/**
+	 * @return the concurrency of the fallback strategy.
+	 */
+	public int getConcurrency()
+	{
+		return this.differential.getConcurrency();
+	}
+
+	/**
+	 * @param concurrency the concurrency of the fallback strategy.
+	 */
+	public void setConcurrency(int concurrency)
+	{
+		this.differential.setConcurrency(concurrency);
+	}
+}
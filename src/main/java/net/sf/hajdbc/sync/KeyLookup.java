@@ -0,0 +1,183 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+import net.sf.hajdbc.util.Resources;
+import net.sf.hajdbc.util.Strings;
+
+/**
+ * Fetches the rows of a batch of primary keys using a single query, instead of one query per key.
+ * A single column primary key is matched via an IN list, e.g. <code>WHERE id IN (?, ?)</code>,
+ * whereas a composite primary key is matched via a disjunction, e.g. <code>WHERE (id1 = ? AND id2 = ?) OR (id1 = ? AND id2 = ?)</code>.
+ * The selected columns start with the primary key columns.
+ * The statement for a full batch is prepared once, and reused for each full batch.
+ * @author Paul Ferraro
+ */
+public class KeyLookup
+{
+	static final Logger logger = LoggerFactory.getLogger(KeyLookup.class);
+
+	private final Connection connection;
+	private final String selectSQL;
+	private final List<String> keyColumns;
+	private final int[] keyTypes;
+	private final int size;
+	private final List<Object[]> keys;
+	private PreparedStatement statement = null;
+
+	/**
+	 * @param connection the connection to the database from which to fetch rows
+	 * @param tableName the name of the table
+	 * @param keyColumns the primary key columns
+	 * @param keyTypes the SQL types of the primary key columns, as defined by {@link java.sql.Types}
+	 * @param columns the remaining columns to select
+	 * @param size the maximum number of keys per query
+	 */
+	public KeyLookup(Connection connection, String tableName, List<String> keyColumns, int[] keyTypes, List<String> columns, int size)
+	{
+		List<String> selectColumns = new ArrayList<String>(keyColumns.size() + columns.size());
+		selectColumns.addAll(keyColumns);
+		selectColumns.addAll(columns);
+		
+		this.connection = connection;
+		this.selectSQL = String.format("SELECT %s FROM %s WHERE ", Strings.join(selectColumns, Strings.PADDED_COMMA), tableName);
+		this.keyColumns = keyColumns;
+		this.keyTypes = keyTypes;
+		this.size = Math.max(size, 1);
+		this.keys = new ArrayList<Object[]>(this.size);
+	}
+
+	/**
+	 * Adds the primary key of the current row of the specified result set to the pending batch of keys.
+	 * @param resultSet a result set whose leading columns are the primary key columns
+	 * @return true, if the batch is full and should be fetched, false otherwise
+	 * @throws SQLException if the primary key could not be read
+	 */
+	public boolean add(ResultSet resultSet) throws SQLException
+	{
+		Object[] key = new Object[this.keyColumns.size()];
+		
+		for (int i = 0; i < key.length; ++i)
+		{
+			key[i] = resultSet.getObject(i + 1);
+		}
+		
+		this.keys.add(key);
+		
+		return this.keys.size() >= this.size;
+	}
+
+	/**
+	 * Indicates whether there are pending keys to fetch.
+	 * @return true, if no keys are pending, false otherwise
+	 */
+	public boolean isEmpty()
+	{
+		return this.keys.isEmpty();
+	}
+
+	/**
+	 * Fetches the rows of the pending keys, and clears the pending keys.
+	 * The returned result set must be closed, via {@link #close(ResultSet)}, before the next fetch.
+	 * @return a result set containing a row per pending key still present in the table, in no particular order
+	 * @throws SQLException if the rows could not be fetched
+	 */
+	public ResultSet fetch() throws SQLException
+	{
+		int count = this.keys.size();
+		PreparedStatement statement = (count == this.size) ? this.statement : null;
+		
+		if (statement == null)
+		{
+			String sql = this.createSQL(count);
+			logger.log(Level.DEBUG, sql);
+			statement = this.connection.prepareStatement(sql);
+			
+			if (count == this.size)
+			{
+				this.statement = statement;
+			}
+		}
+		
+		int index = 0;
+		
+		for (Object[] key: this.keys)
+		{
+			for (int i = 0; i < key.length; ++i)
+			{
+				statement.setObject(++index, key[i], this.keyTypes[i]);
+			}
+		}
+		
+		this.keys.clear();
+		
+		return statement.executeQuery();
+	}
+
+	/**
+	 * Closes a result set returned by {@link #fetch()}, as well as its statement, unless it will be reused.
+	 * @param resultSet a result set returned by {@link #fetch()}
+	 * @throws SQLException if the statement of the result set could not be determined
+	 */
+	public void close(ResultSet resultSet) throws SQLException
+	{
+		Statement statement = resultSet.getStatement();
+		
+		Resources.close(resultSet);
+		
+		if (statement != this.statement)
+		{
+			Resources.close(statement);
+		}
+	}
+
+	/**
+	 * Closes the statement reused for full batches.
+	 */
+	public void close()
+	{
+		if (this.statement != null)
+		{
+			Resources.close(this.statement);
+		}
+	}
+
+	private String createSQL(int count)
+	{
+		if (this.keyColumns.size() == 1)
+		{
+			return String.format("%s%s IN (%s)", this.selectSQL, this.keyColumns.get(0), Strings.join(Collections.nCopies(count, Strings.QUESTION), Strings.PADDED_COMMA));
+		}
+		
+		String condition = Strings.join(new StringBuilder("("), this.keyColumns, " = ? AND ").append(" = ?)").toString();
+		
+		return this.selectSQL + Strings.join(Collections.nCopies(count, condition), " OR ");
+	}
+}
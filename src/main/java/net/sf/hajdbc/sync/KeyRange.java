@@ -0,0 +1,138 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A range of values of the leading primary key column of a table, used to synchronize a single table in parallel.
+ * The lower bound is inclusive, the upper bound is exclusive, and a null bound is unbounded.
+ * @author Paul Ferraro
+ */
+public class KeyRange
+{
+	private final String column;
+	private final int type;
+	private final Object lower;
+	private final Object upper;
+
+	/**
+	 * Creates a range spanning the entire table.
+	 */
+	public KeyRange()
+	{
+		this(null, 0, null, null);
+	}
+	
+	/**
+	 * @param column the leading primary key column
+	 * @param type the SQL type of the column, as defined by {@link java.sql.Types}
+	 * @param lower the inclusive lower bound, or null if unbounded
+	 * @param upper the exclusive upper bound, or null if unbounded
+	 */
+	public KeyRange(String column, int type, Object lower, Object upper)
+	{
+		this.column = column;
+		this.type = type;
+		this.lower = lower;
+		this.upper = upper;
+	}
+	
+	/**
+	 * Returns the inclusive lower bound of this range.
+	 * @return a key, or null if unbounded
+	 */
+	public Object getLower()
+	{
+		return this.lower;
+	}
+	
+	/**
+	 * Returns the exclusive upper bound of this range.
+	 * @return a key, or null if unbounded
+	 */
+	public Object getUpper()
+	{
+		return this.upper;
+	}
+	
+	/**
+	 * Indicates whether this range spans the entire table.
+	 * @return true, if this range is unbounded, false otherwise
+	 */
+	public boolean isUnbounded()
+	{
+		return (this.lower == null) && (this.upper == null);
+	}
+	
+	/**
+	 * Appends the predicate of this range, if bounded, as a WHERE clause to the specified SQL.
+	 * @param sql a SELECT statement without a WHERE clause
+	 * @return the specified SQL, qualified by this range
+	 */
+	public String where(String sql)
+	{
+		if (this.isUnbounded())
+		{
+			return sql;
+		}
+		
+		StringBuilder builder = new StringBuilder(sql).append(" WHERE ");
+		
+		if (this.lower != null)
+		{
+			builder.append(this.column).append(" >= ?");
+		}
+		if (this.upper != null)
+		{
+			if (this.lower != null)
+			{
+				builder.append(" AND ");
+			}
+			builder.append(this.column).append(" < ?");
+		}
+		
+		return builder.toString();
+	}
+	
+	/**
+	 * Binds the bounds of this range to the parameters of a statement prepared via {@link #where(String)}.
+	 * @param statement a prepared statement
+	 * @throws SQLException if the parameters could not be bound
+	 */
+	public void bind(PreparedStatement statement) throws SQLException
+	{
+		int index = 0;
+		
+		if (this.lower != null)
+		{
+			statement.setObject(++index, this.lower, this.type);
+		}
+		if (this.upper != null)
+		{
+			statement.setObject(++index, this.upper, this.type);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("[%s, %s)", (this.lower != null) ? this.lower : "", (this.upper != null) ? this.upper : "");
+	}
+}
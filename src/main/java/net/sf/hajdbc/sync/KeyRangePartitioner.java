@@ -0,0 +1,617 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.TableProperties;
+import net.sf.hajdbc.UniqueConstraint;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+import net.sf.hajdbc.util.Resources;
+
+/**
+ * Partitions a table into ranges of its leading primary key column, and synchronizes the ranges concurrently, each using its own pair of connections.
+ * Boundaries are interpolated between the minimum and maximum key of the source table, so that no more than a single query is needed per boundary.
+ * Boundaries of numeric and temporal keys are used as is.
+ * Boundaries of character keys are approximated, and then adjusted to the next existing key via an index seek, since the collation of the database may differ from the ordering of {@link String}.
+ * Tables with keys of any other type are not partitioned.
+ * The number of ranges synchronized at any given time, across all tables, is bounded by the number of partitions.
+ * @author Paul Ferraro
+ */
+public class KeyRangePartitioner implements Serializable
+{
+	private static final long serialVersionUID = -3165427305862330562L;
+	
+	static final Logger logger = LoggerFactory.getLogger(KeyRangePartitioner.class);
+	
+	// Number of leading characters of a character key, following any common prefix, from which boundaries are interpolated
+	private static final int CHARACTERS = 8;
+	private static final BigDecimal RADIX = BigDecimal.valueOf(Character.MAX_VALUE + 1);
+	
+	private int partitions = 1;
+	
+	private transient volatile Semaphore workers;
+
+	/**
+	 * Partitions the specified table into key ranges.
+	 * @param context a synchronization context
+	 * @param table a table
+	 * @return a list of contiguous key ranges, which contains a single unbounded range if the table should not be partitioned
+	 * @throws SQLException if the key boundaries could not be determined
+	 */
+	public <Z, D extends Database<Z>> List<KeyRange> partition(SynchronizationContext<Z, D> context, TableProperties table) throws SQLException
+	{
+		return this.partition(context, table, new KeyRange(), this.partitions);
+	}
+	
+	/**
+	 * Partitions the specified range of a table into at most the specified number of contiguous key ranges, spanning the same keys as the specified range.
+	 * Boundaries are determined from the source database.
+	 * @param context a synchronization context
+	 * @param table a table
+	 * @param range the range to partition
+	 * @param partitions the maximum number of ranges
+	 * @return a list of contiguous key ranges, which contains only the specified range if it should not be partitioned
+	 * @throws SQLException if the key boundaries could not be determined
+	 */
+	public <Z, D extends Database<Z>> List<KeyRange> partition(SynchronizationContext<Z, D> context, TableProperties table, KeyRange range, int partitions) throws SQLException
+	{
+		UniqueConstraint primaryKey = table.getPrimaryKey();
+		
+		if ((partitions <= 1) || (primaryKey == null))
+		{
+			return Collections.singletonList(range);
+		}
+		
+		String column = primaryKey.getColumnList().get(0);
+		int type = context.getDialect().getColumnType(table.getColumnProperties(column));
+		String tableName = table.getName().getDMLName();
+		
+		if (!isNumeric(type) && !isTemporal(type) && !isCharacter(type))
+		{
+			logger.log(Level.DEBUG, "{0} will not be partitioned, since its key column {1} is of unsupported type {2}", tableName, column, type);
+			return Collections.singletonList(range);
+		}
+		
+		Connection connection = context.getConnection(context.getSourceDatabase());
+		
+		List<Object> boundaries = this.interpolate(connection, tableName, column, type, range, partitions);
+		
+		if (boundaries.isEmpty())
+		{
+			return Collections.singletonList(range);
+		}
+		
+		List<KeyRange> ranges = new ArrayList<KeyRange>(boundaries.size() + 1);
+		Object lower = range.getLower();
+		
+		for (Object upper: boundaries)
+		{
+			ranges.add(new KeyRange(column, type, lower, upper));
+			lower = upper;
+		}
+		ranges.add(new KeyRange(column, type, lower, range.getUpper()));
+		
+		logger.log(Level.DEBUG, "Partitioned {0} into {1}", tableName, ranges);
+		
+		return ranges;
+	}
+
+	private static boolean isNumeric(int type)
+	{
+		switch (type)
+		{
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+			case Types.BIGINT:
+			case Types.DECIMAL:
+			case Types.NUMERIC:
+			{
+				return true;
+			}
+			default:
+			{
+				return false;
+			}
+		}
+	}
+	
+	private static boolean isTemporal(int type)
+	{
+		return (type == Types.DATE) || (type == Types.TIMESTAMP);
+	}
+	
+	private static boolean isCharacter(int type)
+	{
+		switch (type)
+		{
+			case Types.CHAR:
+			case Types.VARCHAR:
+			case Types.NCHAR:
+			case Types.NVARCHAR:
+			{
+				return true;
+			}
+			default:
+			{
+				return false;
+			}
+		}
+	}
+	
+	/**
+	 * Divides the span between the minimum and maximum key of the specified range into equal intervals.
+	 * @return a list of strictly increasing boundaries, excluding the bounds of the specified range
+	 */
+	private List<Object> interpolate(Connection connection, String tableName, String column, int type, KeyRange range, int partitions) throws SQLException
+	{
+		String sql = range.where(String.format("SELECT MIN(%s), MAX(%s) FROM %s", column, column, tableName));
+		
+		List<Object> candidates = new ArrayList<Object>(partitions - 1);
+		
+		PreparedStatement statement = connection.prepareStatement(sql);
+		try
+		{
+			range.bind(statement);
+			
+			logger.log(Level.DEBUG, sql);
+			ResultSet resultSet = statement.executeQuery();
+			
+			resultSet.next();
+			
+			if (isCharacter(type))
+			{
+				String min = resultSet.getString(1);
+				String max = resultSet.getString(2);
+				if ((min == null) || (max == null))
+				{
+					return Collections.emptyList();
+				}
+				interpolate(min, max, partitions, candidates);
+			}
+			else if (isTemporal(type))
+			{
+				Timestamp min = resultSet.getTimestamp(1);
+				Timestamp max = resultSet.getTimestamp(2);
+				if ((min == null) || (max == null))
+				{
+					return Collections.emptyList();
+				}
+				for (Object candidate: interpolate(BigDecimal.valueOf(min.getTime()), BigDecimal.valueOf(max.getTime()), partitions))
+				{
+					long time = ((BigDecimal) candidate).longValue();
+					candidates.add((type == Types.DATE) ? new java.sql.Date(time) : new Timestamp(time));
+				}
+			}
+			else
+			{
+				BigDecimal min = resultSet.getBigDecimal(1);
+				BigDecimal max = resultSet.getBigDecimal(2);
+				if ((min == null) || (max == null))
+				{
+					return Collections.emptyList();
+				}
+				candidates.addAll(interpolate(min, max, partitions));
+				if (type != Types.DECIMAL && type != Types.NUMERIC)
+				{
+					for (int i = 0; i < candidates.size(); ++i)
+					{
+						candidates.set(i, Long.valueOf(((BigDecimal) candidates.get(i)).longValue()));
+					}
+				}
+			}
+		}
+		finally
+		{
+			Resources.close(statement);
+		}
+		
+		return isCharacter(type) ? this.seek(connection, tableName, column, type, range, candidates) : candidates;
+	}
+	
+	/**
+	 * Interpolates the boundaries between the specified numeric bounds, skipping any boundary that would not exceed its predecessor.
+	 */
+	static List<Object> interpolate(BigDecimal min, BigDecimal max, int partitions)
+	{
+		BigDecimal span = max.subtract(min);
+		BigDecimal count = BigDecimal.valueOf(partitions);
+		boolean integral = (min.scale() <= 0) && (max.scale() <= 0);
+		List<Object> boundaries = new ArrayList<Object>(partitions - 1);
+		BigDecimal previous = min;
+		
+		for (int i = 1; i < partitions; ++i)
+		{
+			BigDecimal boundary = min.add(span.multiply(BigDecimal.valueOf(i)).divide(count, MathContext.DECIMAL128));
+			if (integral)
+			{
+				boundary = new BigDecimal(boundary.toBigInteger());
+			}
+			
+			// Skip empty ranges of narrow spans
+			if (boundary.compareTo(previous) > 0)
+			{
+				boundaries.add(boundary);
+				previous = boundary;
+			}
+		}
+		
+		return boundaries;
+	}
+	
+	/**
+	 * Interpolates approximate boundaries between the specified character bounds.
+	 * Following their common prefix, the leading characters of each bound are interpreted as the digits of a fraction, whose radix is the number of characters.
+	 */
+	static void interpolate(String min, String max, int partitions, List<Object> boundaries)
+	{
+		int prefix = 0;
+		while ((prefix < min.length()) && (prefix < max.length()) && (min.charAt(prefix) == max.charAt(prefix)))
+		{
+			prefix += 1;
+		}
+		
+		BigDecimal lower = fraction(min, prefix);
+		BigDecimal span = fraction(max, prefix).subtract(lower);
+		BigDecimal count = BigDecimal.valueOf(partitions);
+		
+		for (int i = 1; i < partitions; ++i)
+		{
+			BigDecimal value = lower.add(span.multiply(BigDecimal.valueOf(i)).divide(count, MathContext.DECIMAL128));
+			StringBuilder builder = new StringBuilder(min.substring(0, prefix));
+			
+			for (int j = 0; (j < CHARACTERS) && (value.signum() > 0); ++j)
+			{
+				value = value.multiply(RADIX);
+				int digit = value.intValue();
+				value = value.subtract(BigDecimal.valueOf(digit));
+				// Avoid unpaired surrogates
+				builder.append(Character.isSurrogate((char) digit) ? (char) (Character.MIN_SURROGATE - 1) : (char) digit);
+			}
+			
+			boundaries.add(builder.toString());
+		}
+	}
+	
+	private static BigDecimal fraction(String value, int offset)
+	{
+		BigDecimal fraction = BigDecimal.ZERO;
+		BigDecimal scale = BigDecimal.ONE;
+		
+		for (int i = offset; (i < value.length()) && (i < offset + CHARACTERS); ++i)
+		{
+			scale = scale.multiply(RADIX);
+			fraction = fraction.add(new BigDecimal(BigInteger.valueOf(value.charAt(i))).divide(scale));
+		}
+		
+		return fraction;
+	}
+	
+	/**
+	 * Replaces each approximate boundary with the least existing key not less than it, and greater than the previous boundary, via a single index seek per boundary.
+	 * @return a list of strictly increasing boundaries, according to the collation of the database
+	 */
+	private List<Object> seek(Connection connection, String tableName, String column, int type, KeyRange range, List<Object> candidates) throws SQLException
+	{
+		List<Object> boundaries = new ArrayList<Object>(candidates.size());
+		Object previous = range.getLower();
+		
+		StringBuilder builder = new StringBuilder(String.format("SELECT MIN(%s) FROM %s WHERE %s >= ?", column, tableName, column));
+		if (range.getUpper() != null)
+		{
+			builder.append(" AND ").append(column).append(" < ?");
+		}
+		String sql = builder.toString();
+		String nextSQL = builder.append(" AND ").append(column).append(" > ?").toString();
+		
+		for (Object candidate: candidates)
+		{
+			PreparedStatement statement = connection.prepareStatement((previous != null) ? nextSQL : sql);
+			try
+			{
+				int index = 0;
+				statement.setObject(++index, candidate, type);
+				if (range.getUpper() != null)
+				{
+					statement.setObject(++index, range.getUpper(), type);
+				}
+				if (previous != null)
+				{
+					statement.setObject(++index, previous, type);
+				}
+				
+				ResultSet resultSet = statement.executeQuery();
+				resultSet.next();
+				Object boundary = resultSet.getObject(1);
+				
+				// No keys remain
+				if (boundary == null)
+				{
+					return boundaries;
+				}
+				
+				boundaries.add(boundary);
+				previous = boundary;
+			}
+			finally
+			{
+				Resources.close(statement);
+			}
+		}
+		
+		return boundaries;
+	}
+	
+	/**
+	 * Synchronizes the specified key ranges of a table concurrently, each using its own context, committing per range.
+	 * The calling thread synchronizes ranges alongside at most partitions - 1 workers of the executor of the database cluster, whose permits are shared by all tables.
+	 * If the specified context does not support concurrent use, the ranges are synchronized sequentially via the specified context.
+	 * @param context the synchronization context of the table
+	 * @param table the table to synchronize
+	 * @param ranges key ranges of the table
+	 * @param strategy the strategy with which to synchronize each range
+	 * @throws SQLException if any range failed to synchronize
+	 */
+	public <Z, D extends Database<Z>> void synchronize(final SynchronizationContext<Z, D> context, final TableProperties table, List<KeyRange> ranges, final KeyRangeSynchronizationStrategy strategy) throws SQLException
+	{
+		Semaphore workers = this.getWorkers();
+		int permits = acquire(workers, ranges.size());
+		
+		try
+		{
+			List<SynchronizationContext<Z, D>> contexts = new ArrayList<SynchronizationContext<Z, D>>(permits);
+			
+			for (int i = 0; i < permits; ++i)
+			{
+				SynchronizationContext<Z, D> rangeContext = context.createConcurrentContext();
+				
+				if (rangeContext == null)
+				{
+					for (SynchronizationContext<Z, D> created: contexts)
+					{
+						created.close();
+					}
+					
+					for (KeyRange range: ranges)
+					{
+						strategy.synchronize(context, table, range);
+					}
+					return;
+				}
+				
+				contexts.add(rangeContext);
+			}
+			
+			final Queue<KeyRange> queue = new ConcurrentLinkedQueue<KeyRange>(ranges);
+			List<RangeTask<Z, D>> tasks = new ArrayList<RangeTask<Z, D>>(permits - 1);
+			List<Future<Void>> futures = new ArrayList<Future<Void>>(permits - 1);
+			
+			for (SynchronizationContext<Z, D> rangeContext: contexts.subList(1, permits))
+			{
+				RangeTask<Z, D> task = new RangeTask<Z, D>(rangeContext, table, queue, strategy);
+				tasks.add(task);
+				futures.add(context.getDatabaseCluster().getExecutor().submit(task));
+			}
+			
+			SQLException exception = null;
+			
+			try
+			{
+				new RangeTask<Z, D>(contexts.get(0), table, queue, strategy).call();
+			}
+			catch (SQLException e)
+			{
+				exception = e;
+			}
+			
+			for (int i = 0; i < futures.size(); ++i)
+			{
+				Future<Void> future = futures.get(i);
+				
+				// A worker that has yet to start has nothing left to do
+				// Future.cancel(...) cannot tell whether the worker started, since it also succeeds while the worker is running
+				if (tasks.get(i).cancel())
+				{
+					future.cancel(false);
+					contexts.get(i + 1).close();
+					continue;
+				}
+				
+				try
+				{
+					future.get();
+				}
+				catch (ExecutionException e)
+				{
+					if (exception == null)
+					{
+						exception = ExceptionType.SQL.<SQLException>getExceptionFactory().createException(e.getCause());
+					}
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new SQLException(e);
+				}
+			}
+			
+			if (exception != null)
+			{
+				throw exception;
+			}
+		}
+		finally
+		{
+			workers.release(permits);
+		}
+	}
+
+	/**
+	 * Acquires at least one, and at most the specified number of permits.
+	 * @return the number of acquired permits
+	 */
+	private static int acquire(Semaphore workers, int permits) throws SQLException
+	{
+		try
+		{
+			workers.acquire();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new SQLException(e);
+		}
+		int acquired = 1;
+		while ((acquired < permits) && workers.tryAcquire())
+		{
+			acquired += 1;
+		}
+		return acquired;
+	}
+	
+	private Semaphore getWorkers()
+	{
+		Semaphore workers = this.workers;
+		if (workers == null)
+		{
+			synchronized (this)
+			{
+				workers = this.workers;
+				if (workers == null)
+				{
+					workers = new Semaphore(Math.max(this.partitions, 1));
+					this.workers = workers;
+				}
+			}
+		}
+		return workers;
+	}
+	
+	/**
+	 * Synchronizes ranges from a shared queue via a single context, committing per range, until the queue is exhausted.
+	 * Closes its context when done, unless cancelled before it started.
+	 */
+	private static class RangeTask<Z, D extends Database<Z>> implements Callable<Void>
+	{
+		private final SynchronizationContext<Z, D> context;
+		private final TableProperties table;
+		private final Queue<KeyRange> queue;
+		private final KeyRangeSynchronizationStrategy strategy;
+		private final AtomicBoolean started = new AtomicBoolean(false);
+		
+		RangeTask(SynchronizationContext<Z, D> context, TableProperties table, Queue<KeyRange> queue, KeyRangeSynchronizationStrategy strategy)
+		{
+			this.context = context;
+			this.table = table;
+			this.queue = queue;
+			this.strategy = strategy;
+		}
+		
+		/**
+		 * Prevents this task from starting.
+		 * @return true, if this task had not yet started, false otherwise
+		 */
+		boolean cancel()
+		{
+			return this.started.compareAndSet(false, true);
+		}
+		
+		@Override
+		public Void call() throws SQLException
+		{
+			if (!this.started.compareAndSet(false, true))
+			{
+				return null;
+			}
+			
+			try
+			{
+				Connection targetConnection = this.context.getConnection(this.context.getTargetDatabase());
+				targetConnection.setAutoCommit(false);
+				this.context.getConnection(this.context.getSourceDatabase()).setAutoCommit(false);
+				
+				KeyRange range = this.queue.poll();
+				
+				while (range != null)
+				{
+					try
+					{
+						logger.log(Level.DEBUG, "Synchronizing range {1} of {0}", this.table.getName(), range);
+						
+						this.strategy.synchronize(this.context, this.table, range);
+						
+						targetConnection.commit();
+					}
+					catch (SQLException e)
+					{
+						// Abandon remaining ranges
+						this.queue.clear();
+						this.context.getSynchronizationSupport().rollback(targetConnection);
+						throw e;
+					}
+					
+					range = this.queue.poll();
+				}
+				return null;
+			}
+			finally
+			{
+				this.context.close();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of key ranges into which to partition each table.
+	 * @return the number of partitions, where 1 indicates that tables are not partitioned
+	 */
+	public int getPartitions()
+	{
+		return this.partitions;
+	}
+
+	public synchronized void setPartitions(int partitions)
+	{
+		this.partitions = partitions;
+		this.workers = null;
+	}
+}
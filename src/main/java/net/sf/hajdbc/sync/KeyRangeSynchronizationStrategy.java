@@ -0,0 +1,39 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import java.sql.SQLException;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.TableProperties;
+
+/**
+ * A table synchronization strategy that can synchronize a given range of primary keys of a table independently of any other range.
+ * @author Paul Ferraro
+ */
+public interface KeyRangeSynchronizationStrategy extends TableSynchronizationStrategy
+{
+	/**
+	 * Synchronizes the rows of the specified table within the specified key range.
+	 * @param context a synchronization context
+	 * @param table the table to synchronize
+	 * @param range a range of primary keys
+	 * @throws SQLException if synchronization failed
+	 */
+	<Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table, KeyRange range) throws SQLException;
+}
@@ -19,17 +19,36 @@ package net.sf.hajdbc.sync;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.ExceptionType;
 import net.sf.hajdbc.SynchronizationStrategy;
 import net.sf.hajdbc.TableProperties;
 
+/**
+ * Synchronizes each table, committing per table, using a given table synchronization strategy.
+ * Tables are synchronized sequentially by default, or, if the configured concurrency exceeds 1, concurrently, each worker using its own pair of connections.
+ * In either case, constraints are dropped beforehand, and constraints, identity columns and sequences are synchronized afterwards, via the connections of the given context.
+ * Progress is reported to the monitor of the context, which notifies the synchronization listeners as each table commits.
+ */
 public class PerTableSynchronizationStrategy implements SynchronizationStrategy
 {
 	private static final long serialVersionUID = 7952995443041830678L;
 	
 	private final TableSynchronizationStrategy strategy;
+	private int concurrency = 1;
 	
 	@Override
 	public String getId()
@@ -57,28 +76,32 @@ public class PerTableSynchronizationStrategy implements SynchronizationStrategy
 	@Override
 	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context) throws SQLException
 	{
-		Connection sourceConnection = context.getConnection(context.getSourceDatabase());
-		Connection targetConnection = context.getConnection(context.getTargetDatabase());
-		
 		SynchronizationSupport support = context.getSynchronizationSupport();
 		
 		this.strategy.dropConstraints(context);
 		
-		sourceConnection.setAutoCommit(false);
-		targetConnection.setAutoCommit(false);
+		Collection<TableProperties> tables = context.getSourceDatabaseProperties().getTables();
+		SynchronizationMonitor monitor = context.getMonitor();
 		
-		for (TableProperties table: context.getSourceDatabaseProperties().getTables())
+		for (TableProperties table: tables)
 		{
-			try
-			{
-				this.strategy.synchronize(context, table);
-				
-				targetConnection.commit();
-			}
-			catch (SQLException e)
+			monitor.estimate(table, support.estimateRows(table));
+		}
+		
+		// Constraints, identity columns and sequences are restored via this context, in either case
+		this.prepare(context);
+		
+		List<SynchronizationContext<Z, D>> contexts = ((this.concurrency > 1) && (tables.size() > 1)) ? createConcurrentContexts(context, Math.min(this.concurrency, tables.size())) : Collections.<SynchronizationContext<Z, D>>emptyList();
+		
+		if (!contexts.isEmpty())
+		{
+			this.synchronizeConcurrently(context, contexts, tables);
+		}
+		else
+		{
+			for (TableProperties table: tables)
 			{
-				support.rollback(targetConnection);
-				throw e;
+				this.synchronize(context, table);
 			}
 		}
 		
@@ -87,4 +110,165 @@ public class PerTableSynchronizationStrategy implements SynchronizationStrategy
 		support.synchronizeIdentityColumns();
 		support.synchronizeSequences();
 	}
+
+	private <Z, D extends Database<Z>> void prepare(SynchronizationContext<Z, D> context) throws SQLException
+	{
+		context.getConnection(context.getSourceDatabase()).setAutoCommit(false);
+		context.getConnection(context.getTargetDatabase()).setAutoCommit(false);
+	}
+
+	/**
+	 * Synchronizes and commits the specified table, using the connections of the specified context.
+	 */
+	private <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table) throws SQLException
+	{
+		Connection targetConnection = context.getConnection(context.getTargetDatabase());
+		
+		SynchronizationMonitor monitor = context.getMonitor();
+		
+		monitor.getTable(table).start();
+		
+		try
+		{
+			this.strategy.synchronize(context, table);
+			
+			targetConnection.commit();
+		}
+		catch (SQLException e)
+		{
+			context.getSynchronizationSupport().rollback(targetConnection);
+			throw e;
+		}
+		
+		monitor.complete(table);
+	}
+
+	/**
+	 * Creates the specified number of concurrent contexts.
+	 * @return a list of concurrent contexts, or an empty list, if the specified context does not support concurrent use
+	 */
+	private static <Z, D extends Database<Z>> List<SynchronizationContext<Z, D>> createConcurrentContexts(SynchronizationContext<Z, D> context, int count)
+	{
+		List<SynchronizationContext<Z, D>> contexts = new ArrayList<SynchronizationContext<Z, D>>(count);
+		
+		for (int i = 0; i < count; ++i)
+		{
+			SynchronizationContext<Z, D> concurrentContext = context.createConcurrentContext();
+			
+			if (concurrentContext == null)
+			{
+				for (SynchronizationContext<Z, D> created: contexts)
+				{
+					created.close();
+				}
+				return Collections.emptyList();
+			}
+			
+			contexts.add(concurrentContext);
+		}
+		
+		return contexts;
+	}
+
+	/**
+	 * Synchronizes the specified tables concurrently, where each worker takes the next pending table, using its own context.
+	 * Workers run via the executor of the cluster, rather than a dedicated thread pool.
+	 * Once any table fails, the remaining workers stop after their current table.
+	 */
+	private <Z, D extends Database<Z>> void synchronizeConcurrently(SynchronizationContext<Z, D> context, List<SynchronizationContext<Z, D>> contexts, Collection<TableProperties> tables) throws SQLException
+	{
+		final Queue<TableProperties> queue = new ConcurrentLinkedQueue<TableProperties>(tables);
+		final AtomicBoolean failed = new AtomicBoolean(false);
+		
+		ExecutorService executor = context.getDatabaseCluster().getExecutor();
+		List<Future<Void>> futures = new ArrayList<Future<Void>>(contexts.size());
+		
+		try
+		{
+			for (final SynchronizationContext<Z, D> workerContext: contexts)
+			{
+				Callable<Void> task = new Callable<Void>()
+				{
+					@Override
+					public Void call() throws SQLException
+					{
+						try
+						{
+							PerTableSynchronizationStrategy.this.prepare(workerContext);
+							
+							TableProperties table = queue.poll();
+							
+							while ((table != null) && !failed.get())
+							{
+								PerTableSynchronizationStrategy.this.synchronize(workerContext, table);
+								
+								table = queue.poll();
+							}
+							return null;
+						}
+						catch (SQLException e)
+						{
+							failed.set(true);
+							throw e;
+						}
+						finally
+						{
+							workerContext.close();
+						}
+					}
+				};
+				futures.add(executor.submit(task));
+			}
+			
+			SQLException exception = null;
+			
+			for (Future<Void> future: futures)
+			{
+				try
+				{
+					future.get();
+				}
+				catch (ExecutionException e)
+				{
+					if (exception == null)
+					{
+						exception = ExceptionType.SQL.<SQLException>getExceptionFactory().createException(e.getCause());
+					}
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					failed.set(true);
+					throw new SQLException(e);
+				}
+			}
+			
+			if (exception != null)
+			{
+				throw exception;
+			}
+		}
+		finally
+		{
+			// Each worker closes its own context, so only close the contexts of workers that were never submitted
+			for (SynchronizationContext<Z, D> workerContext: contexts.subList(futures.size(), contexts.size()))
+			{
+				workerContext.close();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of tables to synchronize concurrently, each using its own pair of connections.
+	 * @return the number of concurrent workers, where 1 indicates sequential synchronization
+	 */
+	public int getConcurrency()
+	{
+		return this.concurrency;
+	}
+
+	public void setConcurrency(int concurrency)
+	{
+		this.concurrency = concurrency;
+	}
 }
@@ -0,0 +1,330 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+import net.sf.hajdbc.util.Objects;
+
+/**
+ * Compares the rows of a pair of result sets, whose leading columns are the primary key columns, using comparators resolved once per table from the SQL types of its columns.
+ * Where the SQL type allows, column values are read as primitives, e.g. via {@link ResultSet#getLong(int)}, to avoid allocating a boxed value per column per row.
+ * @author Paul Ferraro
+ */
+public class RowComparator
+{
+	private final ColumnComparator[] comparators;
+	private final int keyCount;
+
+	/**
+	 * @param types the SQL types of the columns of each row, as defined by {@link Types}
+	 * @param keyCount the number of leading primary key columns
+	 * @param metaData the meta data of the compared result sets, used to determine the size of {@link Types#BIT} columns
+	 * @throws SQLException if the meta data could not be read
+	 */
+	public RowComparator(int[] types, int keyCount, ResultSetMetaData metaData) throws SQLException
+	{
+		this.comparators = new ColumnComparator[types.length];
+		this.keyCount = keyCount;
+		
+		for (int i = 0; i < types.length; ++i)
+		{
+			this.comparators[i] = ColumnComparator.forType(types[i], (types[i] == Types.BIT) ? metaData.getPrecision(i + 1) : 0);
+		}
+	}
+
+	/**
+	 * Compares the primary keys of the current rows of the specified result sets.
+	 * @param resultSet1 a result set
+	 * @param resultSet2 another result set
+	 * @return a negative integer, zero, or a positive integer if the key of the first row is less than, equal to, or greater than the key of the second row
+	 * @throws SQLException if the keys could not be read
+	 */
+	public int compareKeys(ResultSet resultSet1, ResultSet resultSet2) throws SQLException
+	{
+		for (int i = 0; i < this.keyCount; ++i)
+		{
+			int result = this.comparators[i].compare(resultSet1, resultSet2, i + 1);
+			
+			if (result != 0)
+			{
+				return result;
+			}
+		}
+		
+		return 0;
+	}
+
+	/**
+	 * Indicates whether the non-key columns of the current rows of the specified result sets are equal.
+	 * @param resultSet1 a result set
+	 * @param resultSet2 another result set
+	 * @return true, if all non-key columns are equal, false otherwise
+	 * @throws SQLException if the columns could not be read
+	 */
+	public boolean equals(ResultSet resultSet1, ResultSet resultSet2) throws SQLException
+	{
+		for (int i = this.keyCount; i < this.comparators.length; ++i)
+		{
+			if (!this.comparators[i].equals(resultSet1, resultSet2, i + 1))
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+
+	/**
+	 * Compares the values of a single column of a pair of result sets.
+	 * Null values are equal to each other, and less than any non-null value.
+	 */
+	enum ColumnComparator
+	{
+		LONG
+		{
+			@Override
+			int compare(ResultSet resultSet1, ResultSet resultSet2, int index) throws SQLException
+			{
+				long value1 = resultSet1.getLong(index);
+				boolean null1 = resultSet1.wasNull();
+				long value2 = resultSet2.getLong(index);
+				boolean null2 = resultSet2.wasNull();
+				
+				return (null1 || null2) ? compareNulls(null1, null2) : Long.compare(value1, value2);
+			}
+		},
+		DOUBLE
+		{
+			@Override
+			int compare(ResultSet resultSet1, ResultSet resultSet2, int index) throws SQLException
+			{
+				double value1 = resultSet1.getDouble(index);
+				boolean null1 = resultSet1.wasNull();
+				double value2 = resultSet2.getDouble(index);
+				boolean null2 = resultSet2.wasNull();
+				
+				return (null1 || null2) ? compareNulls(null1, null2) : Double.compare(value1, value2);
+			}
+		},
+		BOOLEAN
+		{
+			@Override
+			int compare(ResultSet resultSet1, ResultSet resultSet2, int index) throws SQLException
+			{
+				boolean value1 = resultSet1.getBoolean(index);
+				boolean null1 = resultSet1.wasNull();
+				boolean value2 = resultSet2.getBoolean(index);
+				boolean null2 = resultSet2.wasNull();
+				
+				return (null1 || null2) ? compareNulls(null1, null2) : Boolean.compare(value1, value2);
+			}
+		},
+		DECIMAL
+		{
+			@Override
+			int compare(ResultSet resultSet1, ResultSet resultSet2, int index) throws SQLException
+			{
+				BigDecimal value1 = resultSet1.getBigDecimal(index);
+				BigDecimal value2 = resultSet2.getBigDecimal(index);
+				
+				return ((value1 == null) || (value2 == null)) ? compareNulls(value1 == null, value2 == null) : value1.compareTo(value2);
+			}
+		},
+		STRING
+		{
+			@Override
+			int compare(ResultSet resultSet1, ResultSet resultSet2, int index) throws SQLException
+			{
+				String value1 = resultSet1.getString(index);
+				String value2 = resultSet2.getString(index);
+				
+				return ((value1 == null) || (value2 == null)) ? compareNulls(value1 == null, value2 == null) : value1.compareTo(value2);
+			}
+		},
+		BYTES
+		{
+			@Override
+			int compare(ResultSet resultSet1, ResultSet resultSet2, int index) throws SQLException
+			{
+				byte[] value1 = resultSet1.getBytes(index);
+				byte[] value2 = resultSet2.getBytes(index);
+				
+				if ((value1 == null) || (value2 == null))
+				{
+					return compareNulls(value1 == null, value2 == null);
+				}
+				
+				int length = Math.min(value1.length, value2.length);
+				
+				for (int i = 0; i < length; ++i)
+				{
+					// Compare as unsigned bytes
+					int result = (value1[i] & 0xFF) - (value2[i] & 0xFF);
+					
+					if (result != 0)
+					{
+						return result;
+					}
+				}
+				
+				return value1.length - value2.length;
+			}
+			
+			@Override
+			boolean equals(ResultSet resultSet1, ResultSet resultSet2, int index) throws SQLException
+			{
+				return Arrays.equals(resultSet1.getBytes(index), resultSet2.getBytes(index));
+			}
+		},
+		/**
+		 * LOBs are not compared by content, so non-null LOBs are never considered equal.
+		 */
+		LOB
+		{
+			@Override
+			int compare(ResultSet resultSet1, ResultSet resultSet2, int index) throws SQLException
+			{
+				throw new SQLException(String.format("Column %d is not comparable", index));
+			}
+			
+			@Override
+			boolean equals(ResultSet resultSet1, ResultSet resultSet2, int index) throws SQLException
+			{
+				resultSet1.getObject(index);
+				boolean null1 = resultSet1.wasNull();
+				resultSet2.getObject(index);
+				boolean null2 = resultSet2.wasNull();
+				
+				return null1 && null2;
+			}
+		},
+		OBJECT
+		{
+			@Override
+			int compare(ResultSet resultSet1, ResultSet resultSet2, int index) throws SQLException
+			{
+				Object value1 = resultSet1.getObject(index);
+				Object value2 = resultSet2.getObject(index);
+				
+				if ((value1 == null) || (value2 == null))
+				{
+					return compareNulls(value1 == null, value2 == null);
+				}
+				
+				// We assume that the primary keys column types are Comparable
+				@SuppressWarnings("unchecked")
+				Comparable<Object> comparable = (Comparable<Object>) value1;
+				
+				return comparable.compareTo(value2);
+			}
+			
+			@Override
+			boolean equals(ResultSet resultSet1, ResultSet resultSet2, int index) throws SQLException
+			{
+				return Objects.equals(resultSet1.getObject(index), resultSet2.getObject(index));
+			}
+		};
+		
+		/**
+		 * Compares the values of the specified column of the current rows of the specified result sets.
+		 */
+		abstract int compare(ResultSet resultSet1, ResultSet resultSet2, int index) throws SQLException;
+		
+		/**
+		 * Indicates whether the values of the specified column of the current rows of the specified result sets are equal.
+		 */
+		boolean equals(ResultSet resultSet1, ResultSet resultSet2, int index) throws SQLException
+		{
+			return this.compare(resultSet1, resultSet2, index) == 0;
+		}
+		
+		static int compareNulls(boolean null1, boolean null2)
+		{
+			return (null1 == null2) ? 0 : (null1 ? -1 : 1);
+		}
+		
+		/**
+		 * Returns the comparator for columns of the specified SQL type.
+		 * @param type a SQL type, as defined by {@link Types}
+		 * @param size the size of a {@link Types#BIT} column, e.g. a bit string of PostgreSQL or MySQL, which is only a boolean if its size is 1
+		 */
+		static ColumnComparator forType(int type, int size)
+		{
+			switch (type)
+			{
+				case Types.TINYINT:
+				case Types.SMALLINT:
+				case Types.INTEGER:
+				case Types.BIGINT:
+				{
+					return LONG;
+				}
+				case Types.REAL:
+				case Types.FLOAT:
+				case Types.DOUBLE:
+				{
+					return DOUBLE;
+				}
+				case Types.BIT:
+				{
+					return (size == 1) ? BOOLEAN : BYTES;
+				}
+				case Types.BOOLEAN:
+				{
+					return BOOLEAN;
+				}
+				case Types.DECIMAL:
+				case Types.NUMERIC:
+				{
+					return DECIMAL;
+				}
+				case Types.CHAR:
+				case Types.VARCHAR:
+				case Types.LONGVARCHAR:
+				case Types.NCHAR:
+				case Types.NVARCHAR:
+				case Types.LONGNVARCHAR:
+				{
+					return STRING;
+				}
+				case Types.BINARY:
+				case Types.VARBINARY:
+				case Types.LONGVARBINARY:
+				{
+					return BYTES;
+				}
+				case Types.BLOB:
+				case Types.CLOB:
+				case Types.NCLOB:
+				{
+					return LOB;
+				}
+				default:
+				{
+					return OBJECT;
+				}
+			}
+		}
+	}
+}
@@ -90,6 +90,25 @@ public interface SynchronizationContext<Z, D extends Database<Z>>
 	
 	Decoder getDecoder();
 	
+	/**
+	 * Returns the monitor to which table synchronization strategies report their progress.
+	 * Concurrent contexts share the monitor of the context from which they were created.
+	 * @return a synchronization monitor
+	 */
+	SynchronizationMonitor getMonitor();
+	
+	/**
+	 * Creates a context that can be used concurrently with this context.
+	 * The returned context shares the databases and meta data of this context, but uses its own connections and executor.
+	 * Closing the returned context closes only its own connections and executor.
+	 * By default, concurrent use is not supported, in which case callers synchronize sequentially via this context.
+	 * @return a synchronization context, or null, if this context does not support concurrent use
+	 */
+	default SynchronizationContext<Z, D> createConcurrentContext()
+	{
+		return null;
+	}
+	
 	/**
 	 * Closes any open database connections and shuts down the executor service. 
 	 */
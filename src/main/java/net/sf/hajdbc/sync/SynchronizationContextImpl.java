@@ -36,6 +36,7 @@ import net.sf.hajdbc.dialect.Dialect;
 import net.sf.hajdbc.logging.Level;
 import net.sf.hajdbc.logging.Logger;
 import net.sf.hajdbc.logging.LoggerFactory;
+import net.sf.hajdbc.state.DatabaseEvent;
 import net.sf.hajdbc.util.Resources;
 
 /**
@@ -54,6 +55,7 @@ public class SynchronizationContextImpl<Z, D extends Database<Z>> implements Syn
 	private final DatabaseProperties targetDatabaseProperties;
 	private final Map<D, Map.Entry<Connection, Boolean>> connectionMap = new HashMap<D, Map.Entry<Connection, Boolean>>();
 	private final ExecutorService executor;
+	private final SynchronizationMonitor monitor;
 	
 	/**
 	 * @param cluster
@@ -61,8 +63,20 @@ public class SynchronizationContextImpl<Z, D extends Database<Z>> implements Syn
 	 * @throws SQLException
 	 */
 	public SynchronizationContextImpl(DatabaseCluster<Z, D> cluster, D database) throws SQLException
+	{
+		this(cluster, database, new SynchronizationMonitor(new DatabaseEvent(database)));
+	}
+	
+	/**
+	 * @param cluster
+	 * @param database
+	 * @param monitor the monitor to which to report progress
+	 * @throws SQLException
+	 */
+	public SynchronizationContextImpl(DatabaseCluster<Z, D> cluster, D database, SynchronizationMonitor monitor) throws SQLException
 	{
 		this.cluster = cluster;
+		this.monitor = monitor;
 		
 		Balancer<Z, D> balancer = cluster.getBalancer();
 		
@@ -78,6 +92,18 @@ public class SynchronizationContextImpl<Z, D extends Database<Z>> implements Syn
 		this.sourceDatabaseProperties = cache.getDatabaseProperties(this.sourceDatabase, this.getConnection(this.sourceDatabase));
 	}
 	
+	private SynchronizationContextImpl(SynchronizationContextImpl<Z, D> context)
+	{
+		this.cluster = context.cluster;
+		this.sourceDatabase = context.sourceDatabase;
+		this.activeDatabaseSet = context.activeDatabaseSet;
+		this.targetDatabase = context.targetDatabase;
+		this.executor = Executors.newFixedThreadPool(this.activeDatabaseSet.size(), this.cluster.getThreadFactory());
+		this.targetDatabaseProperties = context.targetDatabaseProperties;
+		this.sourceDatabaseProperties = context.sourceDatabaseProperties;
+		this.monitor = context.monitor;
+	}
+	
 	/**
 	 * @see net.sf.hajdbc.sync.SynchronizationContext#getConnection(net.sf.hajdbc.Database)
 	 */
@@ -180,6 +206,26 @@ public class SynchronizationContextImpl<Z, D extends Database<Z>> implements Syn
 		return new SynchronizationSupportImpl<Z, D>(this);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.sync.SynchronizationContext#getMonitor()
+	 */
+	@Override
+	public SynchronizationMonitor getMonitor()
+	{
+		return this.monitor;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.sync.SynchronizationContext#createConcurrentContext()
+	 */
+	@Override
+	public SynchronizationContext<Z, D> createConcurrentContext()
+	{
+		return new SynchronizationContextImpl<Z, D>(this);
+	}
+
 	/**
 	 * @see net.sf.hajdbc.sync.SynchronizationContext#close()
 	 */
@@ -0,0 +1,427 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.sf.hajdbc.SynchronizationListener;
+import net.sf.hajdbc.SynchronizationProgress;
+import net.sf.hajdbc.TableProperties;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+import net.sf.hajdbc.management.Description;
+import net.sf.hajdbc.management.MBean;
+import net.sf.hajdbc.management.ManagedAttribute;
+import net.sf.hajdbc.state.DatabaseEvent;
+
+/**
+ * Collects the live progress of a synchronization, shared by all contexts of that synchronization.
+ * Table synchronization strategies count the rows they scan and write, and {@link #complete(TableProperties)} notifies the synchronization listeners.
+ * @author Paul Ferraro
+ */
+@MBean
+@Description("Progress of a database synchronization")
+public class SynchronizationMonitor implements SynchronizationProgress
+{
+	private static final Logger logger = LoggerFactory.getLogger(SynchronizationMonitor.class);
+	
+	private final DatabaseEvent event;
+	private final List<SynchronizationListener> listeners;
+	private final long start = System.nanoTime();
+	private final ConcurrentMap<String, TableMonitor> tables = new ConcurrentSkipListMap<String, TableMonitor>();
+	
+	public SynchronizationMonitor(DatabaseEvent event)
+	{
+		this(event, Collections.<SynchronizationListener>emptyList());
+	}
+	
+	/**
+	 * @param event identifies the database to be synchronized
+	 * @param listeners the listeners to notify of progress
+	 */
+	public SynchronizationMonitor(DatabaseEvent event, List<SynchronizationListener> listeners)
+	{
+		this.event = event;
+		this.listeners = listeners;
+	}
+	
+	/**
+	 * Records the estimated number of rows of the specified table.
+	 * @param table a table
+	 * @param rows a number of rows, or -1 if unknown
+	 */
+	public void estimate(TableProperties table, long rows)
+	{
+		this.getTable(table).estimatedRows = rows;
+	}
+	
+	/**
+	 * Returns the progress of the specified table, to which a table synchronization strategy counts its rows.
+	 * @param table a table
+	 * @return the progress of the table
+	 */
+	public TableMonitor getTable(TableProperties table)
+	{
+		String name = table.getName().getDMLName();
+		TableMonitor monitor = this.tables.get(name);
+		if (monitor == null)
+		{
+			TableMonitor existing = this.tables.putIfAbsent(name, monitor = new TableMonitor());
+			if (existing != null)
+			{
+				monitor = existing;
+			}
+		}
+		return monitor;
+	}
+	
+	/**
+	 * Marks the specified table as complete, and notifies the synchronization listeners.
+	 * A listener that fails is logged, and neither prevents the notification of subsequent listeners, nor fails the synchronization.
+	 * @param table a table
+	 */
+	public void complete(TableProperties table)
+	{
+		this.getTable(table).complete();
+		
+		for (SynchronizationListener listener: this.listeners)
+		{
+			try
+			{
+				listener.synchronizationProgress(this.event, this);
+			}
+			catch (RuntimeException e)
+			{
+				logger.log(Level.WARN, e);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.SynchronizationProgress#getElapsedTime()
+	 */
+	@ManagedAttribute
+	@Description("Milliseconds elapsed since synchronization started")
+	@Override
+	public long getElapsedTime()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.start);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.SynchronizationProgress#getEstimatedRows()
+	 */
+	@ManagedAttribute
+	@Description("Estimated number of rows to scan")
+	@Override
+	public long getEstimatedRows()
+	{
+		long rows = 0;
+		for (TableMonitor table: this.tables.values())
+		{
+			rows += table.isComplete() ? table.getScannedRows() : Math.max(table.getEstimatedRows(), table.getScannedRows());
+		}
+		return rows;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.SynchronizationProgress#getScannedRows()
+	 */
+	@ManagedAttribute
+	@Description("Number of source rows scanned")
+	@Override
+	public long getScannedRows()
+	{
+		long rows = 0;
+		for (TableMonitor table: this.tables.values())
+		{
+			rows += table.getScannedRows();
+		}
+		return rows;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.SynchronizationProgress#getInsertedRows()
+	 */
+	@ManagedAttribute
+	@Description("Number of rows inserted into the target database")
+	@Override
+	public long getInsertedRows()
+	{
+		long rows = 0;
+		for (TableMonitor table: this.tables.values())
+		{
+			rows += table.getInsertedRows();
+		}
+		return rows;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.SynchronizationProgress#getUpdatedRows()
+	 */
+	@ManagedAttribute
+	@Description("Number of rows updated in the target database")
+	@Override
+	public long getUpdatedRows()
+	{
+		long rows = 0;
+		for (TableMonitor table: this.tables.values())
+		{
+			rows += table.getUpdatedRows();
+		}
+		return rows;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.SynchronizationProgress#getDeletedRows()
+	 */
+	@ManagedAttribute
+	@Description("Number of rows deleted from the target database")
+	@Override
+	public long getDeletedRows()
+	{
+		long rows = 0;
+		for (TableMonitor table: this.tables.values())
+		{
+			rows += table.getDeletedRows();
+		}
+		return rows;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.SynchronizationProgress#getBytes()
+	 */
+	@ManagedAttribute
+	@Description("Estimated number of bytes written to the target database")
+	@Override
+	public long getBytes()
+	{
+		long bytes = 0;
+		for (TableMonitor table: this.tables.values())
+		{
+			bytes += table.getBytes();
+		}
+		return bytes;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.SynchronizationProgress#getRowsPerSecond()
+	 */
+	@ManagedAttribute
+	@Description("Average number of source rows scanned per second")
+	@Override
+	public double getRowsPerSecond()
+	{
+		return rate(this.getScannedRows(), System.nanoTime() - this.start);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.SynchronizationProgress#getEstimatedRemainingTime()
+	 */
+	@ManagedAttribute
+	@Description("Estimated milliseconds until all rows are scanned, or -1 if unknown")
+	@Override
+	public long getEstimatedRemainingTime()
+	{
+		double rate = this.getRowsPerSecond();
+		long remaining = this.getEstimatedRows() - this.getScannedRows();
+		
+		if (rate <= 0)
+		{
+			return (remaining > 0) ? -1 : 0;
+		}
+		return (long) (Math.max(remaining, 0) * 1000 / rate);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.SynchronizationProgress#getTables()
+	 */
+	@Override
+	public Map<String, SynchronizationProgress.Table> getTables()
+	{
+		return Collections.<String, SynchronizationProgress.Table>unmodifiableMap(this.tables);
+	}
+	
+	/**
+	 * Returns a summary of the progress of each table.
+	 * @return a map of progress summaries, keyed by qualified table name
+	 */
+	@ManagedAttribute
+	@Description("Progress of each table")
+	public Map<String, String> getTableProgress()
+	{
+		Map<String, String> progress = new TreeMap<String, String>();
+		for (Map.Entry<String, TableMonitor> entry: this.tables.entrySet())
+		{
+			progress.put(entry.getKey(), entry.getValue().toString());
+		}
+		return progress;
+	}
+	
+	static double rate(long rows, long nanos)
+	{
+		return (nanos > 0) ? (rows * 1e9 / nanos) : 0;
+	}
+	
+	/**
+	 * Live progress of a single table, whose counters may be incremented concurrently.
+	 */
+	public static class TableMonitor implements SynchronizationProgress.Table
+	{
+		private final LongAdder scanned = new LongAdder();
+		private final LongAdder inserted = new LongAdder();
+		private final LongAdder updated = new LongAdder();
+		private final LongAdder deleted = new LongAdder();
+		private final LongAdder bytes = new LongAdder();
+		volatile long estimatedRows = -1;
+		private volatile long start = 0;
+		private volatile long end = 0;
+		
+		/**
+		 * Marks the start of the synchronization of this table.
+		 */
+		public void start()
+		{
+			this.start = System.nanoTime();
+		}
+		
+		void complete()
+		{
+			this.end = System.nanoTime();
+		}
+		
+		/**
+		 * Counts a scanned source row.
+		 */
+		public void scanned()
+		{
+			this.scanned.increment();
+		}
+		
+		/**
+		 * Counts an inserted row.
+		 */
+		public void inserted()
+		{
+			this.inserted.increment();
+		}
+		
+		/**
+		 * Counts an updated row.
+		 */
+		public void updated()
+		{
+			this.updated.increment();
+		}
+		
+		/**
+		 * Counts a deleted row.
+		 */
+		public void deleted()
+		{
+			this.deleted.increment();
+		}
+		
+		/**
+		 * Counts the bytes written to the target database.
+		 * @param bytes the estimated size of the written parameters
+		 */
+		public void written(long bytes)
+		{
+			this.bytes.add(bytes);
+		}
+		
+		@Override
+		public long getEstimatedRows()
+		{
+			return this.estimatedRows;
+		}
+		
+		@Override
+		public long getScannedRows()
+		{
+			return this.scanned.sum();
+		}
+		
+		@Override
+		public long getInsertedRows()
+		{
+			return this.inserted.sum();
+		}
+		
+		@Override
+		public long getUpdatedRows()
+		{
+			return this.updated.sum();
+		}
+		
+		@Override
+		public long getDeletedRows()
+		{
+			return this.deleted.sum();
+		}
+		
+		@Override
+		public long getBytes()
+		{
+			return this.bytes.sum();
+		}
+		
+		@Override
+		public double getRowsPerSecond()
+		{
+			long start = this.start;
+			if (start == 0)
+			{
+				return 0;
+			}
+			long end = this.end;
+			return rate(this.getScannedRows(), ((end != 0) ? end : System.nanoTime()) - start);
+		}
+		
+		@Override
+		public boolean isComplete()
+		{
+			return this.end != 0;
+		}
+		
+		@Override
+		public String toString()
+		{
+			return String.format("scanned=%d/%d, inserted=%d, updated=%d, deleted=%d, bytes=%d, rows/sec=%.1f, complete=%b", this.getScannedRows(), this.estimatedRows, this.getInsertedRows(), this.getUpdatedRows(), this.getDeletedRows(), this.getBytes(), this.getRowsPerSecond(), this.isComplete());
+		}
+	}
+}
@@ -21,6 +21,8 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
+import net.sf.hajdbc.TableProperties;
+
 /**
  * @author Paul Ferraro
  *
@@ -70,5 +72,12 @@ public interface SynchronizationSupport
 	 */
 	Object getObject(ResultSet resultSet, int index, int type) throws SQLException;
 	
+	/**
+	 * Estimates the number of rows of the specified table in the source database, using its index statistics.
+	 * @param table a table
+	 * @return an approximate number of rows, or -1 if the source database reports no statistics, or its statistics could not be read
+	 */
+	long estimateRows(TableProperties table);
+	
 	void rollback(Connection connection);
 }
@@ -18,6 +18,7 @@
 package net.sf.hajdbc.sync;
 
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -35,6 +36,7 @@ import java.util.concurrent.Future;
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.ExceptionType;
 import net.sf.hajdbc.ForeignKeyConstraint;
+import net.sf.hajdbc.QualifiedName;
 import net.sf.hajdbc.IdentityColumnSupport;
 import net.sf.hajdbc.Messages;
 import net.sf.hajdbc.SequenceProperties;
@@ -461,4 +463,50 @@ public class SynchronizationSupportImpl<Z, D extends Database<Z>> implements Syn
 			}
 		}
 	}
+
+	/**
+	 * {@inheritDoc}
+	 * Uses the table statistic of the index info, if reported, otherwise the largest cardinality of any unique index.
+	 * Since the estimate only serves to report progress, a failure to read the statistics is logged, rather than failing the synchronization.
+	 * @see net.sf.hajdbc.sync.SynchronizationSupport#estimateRows(net.sf.hajdbc.TableProperties)
+	 */
+	@Override
+	public long estimateRows(TableProperties table)
+	{
+		QualifiedName name = table.getName();
+		long rows = -1;
+		
+		try
+		{
+			DatabaseMetaData metaData = this.context.getConnection(this.context.getSourceDatabase()).getMetaData();
+			
+			// Approximate, so that the database need not compute exact statistics
+			ResultSet resultSet = metaData.getIndexInfo(null, name.getSchema(), name.getName(), true, true);
+			try
+			{
+				while (resultSet.next())
+				{
+					long cardinality = resultSet.getLong("CARDINALITY");
+					
+					if (resultSet.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic)
+					{
+						return cardinality;
+					}
+					
+					rows = Math.max(rows, cardinality);
+				}
+			}
+			finally
+			{
+				Resources.close(resultSet);
+			}
+		}
+		catch (SQLException e)
+		{
+			this.logger.log(Level.WARN, e);
+			return -1;
+		}
+		
+		return rows;
+	}
 }
@@ -3,7 +3,11 @@ package net.sf.hajdbc.util;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
@@ -33,7 +37,7 @@ public class Processes
 	
 	public static void run(final ProcessBuilder processBuilder) throws Exception
 	{
-		run(processBuilder, null);
+		run(processBuilder, (File) null);
 	}
 
 	public static void run(final ProcessBuilder processBuilder, final File input) throws Exception
@@ -97,6 +101,143 @@ public class Processes
 		}
 	}
 
+	/**
+	 * Runs the specified process, copying its standard output to the specified stream.
+	 */
+	public static void run(final ProcessBuilder processBuilder, OutputStream output) throws Exception
+	{
+		Process process = start(processBuilder);
+		Thread outputLogger = log(processBuilder, process.getErrorStream());
+		
+		try
+		{
+			copy(process.getInputStream(), output);
+		}
+		catch (IOException e)
+		{
+			process.destroy();
+			throw e;
+		}
+		
+		waitFor(processBuilder, process, outputLogger);
+	}
+
+	/**
+	 * Starts the specified process, returning a stream to its standard input.
+	 * Closing the returned stream waits for the process to complete, and fails if it did not complete successfully.
+	 */
+	public static OutputStream pipe(final ProcessBuilder processBuilder) throws Exception
+	{
+		processBuilder.redirectErrorStream(true);
+		
+		final Process process = start(processBuilder);
+		// Process may write while it consumes its input
+		final Thread outputLogger = log(processBuilder, process.getInputStream());
+		
+		return new FilterOutputStream(process.getOutputStream())
+		{
+			@Override
+			public void write(byte[] buffer, int offset, int length) throws IOException
+			{
+				this.out.write(buffer, offset, length);
+			}
+
+			@Override
+			public void close() throws IOException
+			{
+				try
+				{
+					this.out.close();
+				}
+				catch (IOException e)
+				{
+					// If the process exited prematurely, report its status instead
+					waitFor(processBuilder, process, outputLogger);
+					throw e;
+				}
+				
+				waitFor(processBuilder, process, outputLogger);
+			}
+		};
+	}
+	
+	private static Process start(final ProcessBuilder processBuilder) throws Exception
+	{
+		logger.log(Level.DEBUG, Strings.join(processBuilder.command(), " "));
+		
+		PrivilegedExceptionAction<Process> action = new PrivilegedExceptionAction<Process>()
+		{
+			@Override
+			public Process run() throws Exception
+			{
+				return processBuilder.start();
+			}
+		};
+		
+		return AccessController.doPrivileged(action);
+	}
+	
+	private static Thread log(ProcessBuilder processBuilder, final InputStream input)
+	{
+		Thread thread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				BufferedReader reader = new BufferedReader(new InputStreamReader(input));
+				try
+				{
+					String line = reader.readLine();
+					while (line != null)
+					{
+						logger.log(Level.DEBUG, line);
+						line = reader.readLine();
+					}
+				}
+				catch (IOException e)
+				{
+					logger.log(Level.DEBUG, e);
+				}
+			}
+		}, processBuilder.command().get(0));
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+	
+	private static void copy(InputStream input, OutputStream output) throws IOException
+	{
+		byte[] buffer = new byte[8192];
+		int bytes = input.read(buffer);
+		while (bytes >= 0)
+		{
+			output.write(buffer, 0, bytes);
+			bytes = input.read(buffer);
+		}
+	}
+	
+	private static void waitFor(ProcessBuilder processBuilder, Process process, Thread outputLogger) throws IOException
+	{
+		try
+		{
+			int status = process.waitFor();
+			
+			outputLogger.join();
+			
+			if (status != 0)
+			{
+				throw new IOException(String.format("%s returned %d", processBuilder.command().get(0), status));
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			process.destroy();
+			
+			throw new IOException(processBuilder.toString(), e);
+		}
+	}
+
 	private Processes()
 	{
 		// Hide
@@ -98,6 +98,25 @@ public class ServiceLoaders
 		return service;
 	}
 
+	public static <T> List<T> findServices(Class<T> serviceClass)
+	{
+		List<T> services = new LinkedList<T>();
+		Iterator<T> loader = ServiceLoader.load(serviceClass, serviceClass.getClassLoader()).iterator();
+
+		while (loader.hasNext())
+		{
+			try
+			{
+				services.add(loader.next());
+			}
+			catch (ServiceConfigurationError e)
+			{
+				logger.log(Level.DEBUG, e.getLocalizedMessage());
+			}
+		}
+		return services;
+	}
+
 	private ServiceLoaders()
 	{
 		// Hide
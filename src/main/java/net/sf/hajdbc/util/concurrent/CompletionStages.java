@@ -0,0 +1,83 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.util.concurrent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+import net.sf.hajdbc.ExceptionFactory;
+
+/**
+ * Utility methods for bridging {@link CompletionStage}s and checked exceptions.
+ * @author Paul Ferraro
+ */
+public class CompletionStages
+{
+	/**
+	 * Returns a stage that is already completed exceptionally with the specified exception.
+	 * @param exception a failure
+	 * @return a completed stage
+	 */
+	public static <T> CompletableFuture<T> failed(Throwable exception)
+	{
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		future.completeExceptionally(exception);
+		return future;
+	}
+
+	/**
+	 * Waits for the specified stage to complete, translating any failure via the specified exception factory.
+	 * @param stage a completion stage
+	 * @param exceptionFactory translates failures
+	 * @return the result of the stage
+	 * @throws E if the stage completed exceptionally
+	 */
+	public static <T, E extends Exception> T join(CompletionStage<T> stage, ExceptionFactory<E> exceptionFactory) throws E
+	{
+		try
+		{
+			return stage.toCompletableFuture().join();
+		}
+		catch (CompletionException e)
+		{
+			throw exceptionFactory.createException(unwrap(e));
+		}
+	}
+
+	/**
+	 * Returns the underlying cause of an exception thrown by a completion stage.
+	 * @param exception an exception
+	 * @return the underlying cause
+	 */
+	public static Throwable unwrap(Throwable exception)
+	{
+		Throwable result = exception;
+		while (((result instanceof CompletionException) || (result instanceof ExecutionException)) && (result.getCause() != null))
+		{
+			result = result.getCause();
+		}
+		return result;
+	}
+
+	private CompletionStages()
+	{
+		// Hide
+	}
+}
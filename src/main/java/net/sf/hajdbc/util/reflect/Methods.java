@@ -17,13 +17,18 @@
  */
 package net.sf.hajdbc.util.reflect;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.sql.SQLException;
+import java.lang.reflect.Modifier;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
 import net.sf.hajdbc.ExceptionFactory;
@@ -33,30 +38,98 @@ import net.sf.hajdbc.ExceptionFactory;
  */
 public final class Methods
 {
+	// Per interface table of method handles, each adapted to the generic (Object, Object[])Object signature
+	private static final ClassValue<ConcurrentMap<Method, MethodHandle>> handles = new ClassValue<ConcurrentMap<Method, MethodHandle>>()
+	{
+		@Override
+		protected ConcurrentMap<Method, MethodHandle> computeValue(Class<?> targetClass)
+		{
+			return new ConcurrentHashMap<Method, MethodHandle>();
+		}
+	};
+	private static final MethodType INVOKE_TYPE = MethodType.genericMethodType(1, true);
+	private static final MethodHandle REFLECTIVE_INVOKE = reflectiveInvoke();
+
+	private static MethodHandle reflectiveInvoke()
+	{
+		try
+		{
+			// Method.invoke(...) is caller sensitive, so requires a full privilege lookup
+			return MethodHandles.lookup().findVirtual(Method.class, "invoke", INVOKE_TYPE);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
 	/**
 	 * Helper method for <code>Method.invoke(Object, Object...)</code> that performs the necessary exception handling.
+	 * Dispatches via a cached method handle, falling back to reflection if the method is not publicly accessible.
 	 * @param method a method to invoke
 	 * @param object the object on which to invoke the given method
 	 * @param parameters the method parameters
 	 * @return the return value of the method invocation
-	 * @throws SQLException the target exception of the method invocation
-	 * @throws IllegalArgumentException if the the underlying method is inaccessible
+	 * @throws E the target exception of the method invocation, including any runtime exception or error, as created by the specified factory
 	 */
 	public static <R, E extends Exception> R invoke(Method method, ExceptionFactory<E> factory, Object object, Object... parameters) throws E
 	{
 		try
 		{
-			return (R) method.invoke(object, parameters);
+			Object result = getMethodHandle(method).invokeExact(object, parameters);
+			return (R) result;
 		}
 		catch (InvocationTargetException e)
 		{
 			throw factory.createException(e.getTargetException());
 		}
-		catch (IllegalAccessException e)
+		catch (Throwable e)
 		{
+			// Callers only handle the exception type of the factory
 			throw factory.createException(e);
 		}
 	}
+
+	/**
+	 * Returns a method handle for the specified method, of type <code>(Object, Object[])Object</code>.
+	 * Method handles are built on first use and cached per declaring class.
+	 * @param method a method
+	 * @return a method handle
+	 */
+	public static MethodHandle getMethodHandle(Method method)
+	{
+		ConcurrentMap<Method, MethodHandle> table = handles.get(method.getDeclaringClass());
+		MethodHandle handle = table.get(method);
+		if (handle == null)
+		{
+			handle = createMethodHandle(method);
+			MethodHandle existing = table.putIfAbsent(method, handle);
+			if (existing != null)
+			{
+				handle = existing;
+			}
+		}
+		return handle;
+	}
+
+	private static MethodHandle createMethodHandle(Method method)
+	{
+		try
+		{
+			MethodHandle handle = MethodHandles.publicLookup().unreflect(method).asFixedArity().asSpreader(Object[].class, method.getParameterTypes().length);
+			if (Modifier.isStatic(method.getModifiers()))
+			{
+				// Ignore target object, like Method.invoke(...)
+				handle = MethodHandles.dropArguments(handle, 0, Object.class);
+			}
+			return handle.asType(INVOKE_TYPE);
+		}
+		catch (IllegalAccessException e)
+		{
+			// Reflection will report the inaccessible method per invocation, as before
+			return MethodHandles.insertArguments(REFLECTIVE_INVOKE, 0, method);
+		}
+	}
 	
 	/**
 	 * Returns a set of methods for the specified class whose names match the specified regular expression patterns.
@@ -22,8 +22,10 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -33,7 +35,9 @@ import java.util.Iterator;
 import java.util.List;
 
 import org.h2.api.ErrorCode;
+import org.junit.Test;
 
+import net.sf.hajdbc.Database;
 import net.sf.hajdbc.ForeignKeyConstraint;
 import net.sf.hajdbc.QualifiedName;
 import net.sf.hajdbc.SequenceProperties;
@@ -243,4 +247,103 @@ public class H2DialectTest extends StandardDialectTest
 		assertTrue(this.dialect.indicatesFailure(new SQLException("", "", ErrorCode.DATABASE_CALLED_AT_SHUTDOWN)));
 		assertTrue(this.dialect.indicatesFailure(new SQLException("", "", ErrorCode.URL_FORMAT_ERROR_2)));
 	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.StandardDialectTest#getChecksumFunction()
+	 */
+	@Override
+	public void getChecksumFunction()
+	{
+		String result = this.dialect.getChecksumFunction(Arrays.asList("column1", "column2"));
+		
+		assertEquals("SUM(ORA_HASH(CONCAT_WS('|', column1, column1 IS NULL, column2, column2 IS NULL)))", result);
+	}
+
+	/**
+	 * Verifies that the checksum function yields the same checksum for the same rows, regardless of their order, on distinct databases.
+	 */
+	@Test
+	public void checksum() throws SQLException
+	{
+		String sql = String.format("SELECT COUNT(*), %s FROM test", this.dialect.getChecksumFunction(Arrays.asList("id", "name")));
+		
+		try (Connection source = DriverManager.getConnection("jdbc:h2:mem:checksum-source"); Connection target = DriverManager.getConnection("jdbc:h2:mem:checksum-target"))
+		{
+			try (Statement sourceStatement = source.createStatement(); Statement targetStatement = target.createStatement())
+			{
+				for (Statement statement: Arrays.asList(sourceStatement, targetStatement))
+				{
+					statement.execute("CREATE TABLE test (id INTEGER NOT NULL PRIMARY KEY, name VARCHAR(10))");
+				}
+				sourceStatement.execute("INSERT INTO test VALUES (1, 'a'), (2, NULL), (3, ''), (4, 'a|b')");
+				targetStatement.execute("INSERT INTO test VALUES (4, 'a|b'), (3, ''), (2, NULL), (1, 'a')");
+				
+				assertEquals(checksum(sourceStatement, sql), checksum(targetStatement, sql));
+				
+				// NULL must not collide with an empty string
+				targetStatement.execute("UPDATE test SET name = CASE id WHEN 2 THEN '' ELSE NULL END WHERE id IN (2, 3)");
+				
+				assertFalse(checksum(sourceStatement, sql).equals(checksum(targetStatement, sql)));
+				
+				targetStatement.execute("UPDATE test SET name = CASE id WHEN 2 THEN NULL ELSE '' END WHERE id IN (2, 3)");
+				targetStatement.execute("UPDATE test SET name = 'b' WHERE id = 1");
+				
+				assertFalse(checksum(sourceStatement, sql).equals(checksum(targetStatement, sql)));
+			}
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void dump() throws Exception
+	{
+		Database<Void> database = mock(Database.class);
+		File file = File.createTempFile("dump", ".sql");
+		
+		try (Connection source = DriverManager.getConnection("jdbc:h2:mem:dump-source;DB_CLOSE_DELAY=-1"); Connection target = DriverManager.getConnection("jdbc:h2:mem:dump-target"))
+		{
+			try (Statement statement = source.createStatement())
+			{
+				statement.execute("CREATE TABLE test (id INTEGER NOT NULL PRIMARY KEY, name VARCHAR(20))");
+				statement.execute("INSERT INTO test VALUES (1, 'a'), (2, NULL), (3, 'it''s;' || CHAR(10) || 'b')");
+			}
+			
+			when(database.decodePassword(null)).thenReturn("");
+			when(database.connect(null, "")).thenReturn(DriverManager.getConnection("jdbc:h2:mem:dump-source"));
+			
+			this.dialect.getDumpRestoreSupport().dump(null, database, null, file, false);
+			
+			try (Statement statement = target.createStatement())
+			{
+				statement.execute("RUNSCRIPT FROM '" + file.getPath() + "'");
+				
+				try (ResultSet resultSet = statement.executeQuery("SELECT id, name FROM test ORDER BY id"))
+				{
+					assertTrue(resultSet.next());
+					assertEquals("a", resultSet.getString(2));
+					assertTrue(resultSet.next());
+					assertNull(resultSet.getString(2));
+					assertTrue(resultSet.next());
+					assertEquals("it's;\nb", resultSet.getString(2));
+					assertFalse(resultSet.next());
+				}
+			}
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+	
+	private static List<Object> checksum(Statement statement, String sql) throws SQLException
+	{
+		try (ResultSet resultSet = statement.executeQuery(sql))
+		{
+			assertTrue(resultSet.next());
+			Object checksum = resultSet.getObject(2);
+			assertNotNull(checksum);
+			return Arrays.asList(resultSet.getLong(1), checksum);
+		}
+	}
 }
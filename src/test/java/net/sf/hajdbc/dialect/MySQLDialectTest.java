@@ -226,4 +226,16 @@ public class MySQLDialectTest extends StandardDialectTest
 		assertEquals("SELECT LOCALTIME FROM test", this.dialect.evaluateCurrentTimestamp("SELECT LOCALTIME FROM test", timestamp));
 		assertEquals("SELECT 1 FROM test", this.dialect.evaluateCurrentTimestamp("SELECT 1 FROM test", timestamp));
 	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.StandardDialectTest#getChecksumFunction()
+	 */
+	@Override
+	public void getChecksumFunction()
+	{
+		String result = this.dialect.getChecksumFunction(Arrays.asList("column1", "column2"));
+		
+		assertEquals("SUM(CAST(CONV(SUBSTRING(MD5(CONCAT_WS('|', column1, ISNULL(column1), column2, ISNULL(column2))), 1, 16), 16, 10) AS UNSIGNED))", result);
+	}
 }
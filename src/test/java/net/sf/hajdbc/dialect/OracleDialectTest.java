@@ -31,10 +31,12 @@ import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 
+import net.sf.hajdbc.ColumnProperties;
 import net.sf.hajdbc.ForeignKeyConstraint;
 import net.sf.hajdbc.QualifiedName;
 import net.sf.hajdbc.SequenceProperties;
@@ -214,4 +216,61 @@ public class OracleDialectTest extends StandardDialectTest
 			assertFalse(sqlState, this.dialect.indicatesFailure(exception));
 		}
 	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.StandardDialectTest#getChecksumFunction()
+	 */
+	@Override
+	public void getChecksumFunction()
+	{
+		// Column types are required
+		assertNull(this.dialect.getChecksumFunction(Arrays.asList("column1", "column2")));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.StandardDialectTest#getTableChecksumFunction()
+	 */
+	@Override
+	public void getTableChecksumFunction() throws SQLException
+	{
+		TableProperties table = mock(TableProperties.class);
+		ColumnProperties id = column(Types.NUMERIC, "NUMBER");
+		ColumnProperties name = column(Types.VARCHAR, "VARCHAR2");
+		ColumnProperties created = column(Types.DATE, "DATE");
+		ColumnProperties modified = column(-101, "TIMESTAMP(6) WITH TIME ZONE");
+		ColumnProperties text = column(Types.CLOB, "CLOB");
+		
+		when(table.getColumns()).thenReturn(Arrays.asList("id", "name", "created", "modified"));
+		when(table.getColumnProperties("id")).thenReturn(id);
+		when(table.getColumnProperties("name")).thenReturn(name);
+		when(table.getColumnProperties("created")).thenReturn(created);
+		when(table.getColumnProperties("modified")).thenReturn(modified);
+		when(table.getColumnProperties("text")).thenReturn(text);
+		
+		String result = this.dialect.getChecksumFunction(table);
+		
+		assertEquals("SUM(ORA_HASH(NVL2(id, TO_CHAR(ORA_HASH(TO_CHAR(id, 'TM9', 'NLS_NUMERIC_CHARACTERS=''.,''')), 'FM0000000000'), 'N') || '|' || NVL2(name, TO_CHAR(ORA_HASH(name), 'FM0000000000'), 'N') || '|' || NVL2(created, TO_CHAR(ORA_HASH(TO_CHAR(created, 'YYYY-MM-DD HH24:MI:SS')), 'FM0000000000'), 'N') || '|' || NVL2(modified, TO_CHAR(ORA_HASH(TO_CHAR(SYS_EXTRACT_UTC(modified), 'YYYY-MM-DD HH24:MI:SS.FF9')), 'FM0000000000'), 'N')))", result);
+		
+		// LOB columns cannot be hashed
+		when(table.getColumns()).thenReturn(Arrays.asList("id", "text"));
+		
+		assertNull(this.dialect.getChecksumFunction(table));
+		
+		// Too wide for VARCHAR2
+		String[] columns = new String[400];
+		Arrays.fill(columns, "name");
+		when(table.getColumns()).thenReturn(Arrays.asList(columns));
+		
+		assertNull(this.dialect.getChecksumFunction(table));
+	}
+	
+	private static ColumnProperties column(int type, String nativeType)
+	{
+		ColumnProperties column = mock(ColumnProperties.class);
+		when(column.getType()).thenReturn(type);
+		when(column.getNativeType()).thenReturn(nativeType);
+		return column;
+	}
 }
@@ -21,6 +21,7 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.List;
@@ -108,6 +109,18 @@ public class PostgreSQLDialectTest extends StandardDialectTest
 		assertEquals("TRUNCATE TABLE table", result);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.StandardDialectTest#getChecksumFunction()
+	 */
+	@Override
+	public void getChecksumFunction()
+	{
+		String result = this.dialect.getChecksumFunction(Arrays.asList("column1", "column2"));
+		
+		assertEquals("SUM(('x' || SUBSTR(MD5(ROW(column1, column2)::TEXT), 1, 16))::BIT(64)::BIGINT)", result);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.dialect.StandardDialectTest#getNextSequenceValueSQL()
@@ -281,6 +281,22 @@ public class StandardDialectTest
 		assertEquals("DELETE FROM table", result);
 	}
 
+	@Test
+	public void getChecksumFunction()
+	{
+		assertNull(this.dialect.getChecksumFunction(Arrays.asList("column1", "column2")));
+	}
+
+	@Test
+	public void getTableChecksumFunction() throws SQLException
+	{
+		TableProperties table = mock(TableProperties.class);
+		
+		when(table.getColumns()).thenReturn(Arrays.asList("column1", "column2"));
+		
+		assertEquals(this.dialect.getChecksumFunction(Arrays.asList("column1", "column2")), this.dialect.getChecksumFunction(table));
+	}
+
 	@Test
 	public void isSelectForUpdate() throws SQLException
 	{
@@ -0,0 +1,255 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.distributed.jgroups;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ObjectStreamConstants;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.distributed.Command;
+import net.sf.hajdbc.distributed.CommandExternalizer;
+import net.sf.hajdbc.distributed.Member;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.InvocationEventImpl;
+import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.durability.InvokerEventImpl;
+import net.sf.hajdbc.durability.InvokerResultImpl;
+import net.sf.hajdbc.lock.distributed.LockType;
+import net.sf.hajdbc.lock.distributed.MemberAcquireLockCommand;
+import net.sf.hajdbc.lock.distributed.MemberReleaseLockCommand;
+import net.sf.hajdbc.lock.distributed.RemoteLockDescriptor;
+import net.sf.hajdbc.state.distributed.InvokerCommand;
+import net.sf.hajdbc.state.distributed.PostInvocationCommand;
+import net.sf.hajdbc.state.distributed.PreInvocationCommand;
+import net.sf.hajdbc.state.distributed.RemoteInvocationDescriptor;
+import net.sf.hajdbc.state.distributed.RemoteInvokerDescriptor;
+import net.sf.hajdbc.state.health.HeartBeatCommand;
+import net.sf.hajdbc.state.health.HostCommand;
+import net.sf.hajdbc.state.health.NodeHealthCommand;
+import net.sf.hajdbc.state.health.UpdateTokenCommand;
+import net.sf.hajdbc.util.ServiceLoaders;
+
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class CommandMarshallerTest
+{
+	private final CommandMarshaller marshaller = new CommandMarshaller();
+	private final Member member = new AddressMember(org.jgroups.util.UUID.randomUUID());
+
+	@Test
+	public void uniqueIds()
+	{
+		Set<Integer> ids = new HashSet<Integer>();
+		Set<Class<?>> targetClasses = new HashSet<Class<?>>();
+		
+		for (CommandExternalizer<?> externalizer: externalizers())
+		{
+			int id = externalizer.getId();
+			
+			assertTrue(externalizer.getClass().getName(), (id > 0) && (id <= CommandMarshaller.MAX_ID));
+			assertTrue(String.format("%s reuses identifier %d", externalizer.getClass().getName(), id), ids.add(id));
+			assertTrue(String.format("%s reuses target class %s", externalizer.getClass().getName(), externalizer.getTargetClass().getName()), targetClasses.add(externalizer.getTargetClass()));
+		}
+		
+		assertFalse(ids.isEmpty());
+	}
+
+	@Test
+	public void duplicateId()
+	{
+		CommandExternalizer<?> externalizer = externalizers().get(0);
+		
+		try
+		{
+			new CommandMarshaller(Arrays.<CommandExternalizer<?>>asList(externalizer, externalizer));
+			fail();
+		}
+		catch (IllegalArgumentException e)
+		{
+			// Expected
+		}
+	}
+
+	/**
+	 * Every registered command type survives a round trip in the compact format.
+	 */
+	@Test
+	public void registered() throws Exception
+	{
+		Map<Class<?>, List<Command<?, ?>>> commands = this.createCommands();
+		
+		for (CommandExternalizer<?> externalizer: externalizers())
+		{
+			List<Command<?, ?>> samples = commands.remove(externalizer.getTargetClass());
+			
+			assertNotNull(String.format("No sample command of %s", externalizer.getTargetClass().getName()), samples);
+			
+			for (Command<?, ?> command: samples)
+			{
+				byte[] payload = this.marshaller.marshal(command);
+				
+				assertEquals(externalizer.getId(), payload[0]);
+				
+				Command<?, ?> result = this.marshaller.unmarshal(payload, 0, payload.length);
+				
+				assertSame(command.getClass(), result.getClass());
+				// All fields were read, and read back as written
+				assertArrayEquals(command.toString(), payload, this.marshaller.marshal(result));
+			}
+		}
+		
+		assertTrue(String.format("Commands without externalizer: %s", commands.keySet()), commands.isEmpty());
+	}
+
+	/**
+	 * A command type without an externalizer is sent via Java serialization.
+	 */
+	@Test
+	public void unregistered()
+	{
+		SerializedCommand command = new SerializedCommand("value");
+		byte[] payload = this.marshaller.marshal(command);
+		
+		assertEquals((byte) (ObjectStreamConstants.STREAM_MAGIC >>> 8), payload[0]);
+		
+		// Also read within a larger buffer
+		byte[] buffer = new byte[payload.length + 4];
+		System.arraycopy(payload, 0, buffer, 2, payload.length);
+		
+		Command<String, Void> result = this.marshaller.unmarshal(buffer, 2, payload.length);
+		
+		assertTrue(result instanceof SerializedCommand);
+		assertEquals("value", result.execute(null));
+	}
+
+	@Test
+	public void unknownId()
+	{
+		try
+		{
+			this.marshaller.unmarshal(new byte[] { CommandMarshaller.MAX_ID }, 0, 1);
+			fail();
+		}
+		catch (IllegalStateException e)
+		{
+			// Expected
+		}
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static List<CommandExternalizer<?>> externalizers()
+	{
+		return new ArrayList<CommandExternalizer<?>>((Collection) ServiceLoaders.findServices(CommandExternalizer.class));
+	}
+
+	private Map<Class<?>, List<Command<?, ?>>> createCommands()
+	{
+		Map<Class<?>, List<Command<?, ?>>> commands = new HashMap<Class<?>, List<Command<?, ?>>>();
+		
+		RemoteLockDescriptor lock = mock(RemoteLockDescriptor.class);
+		when(lock.getId()).thenReturn("db1");
+		when(lock.getType()).thenReturn(LockType.WRITE);
+		when(lock.getMember()).thenReturn(this.member);
+		
+		add(commands, new MemberAcquireLockCommand(lock));
+		add(commands, new MemberReleaseLockCommand(lock));
+		
+		RemoteInvocationDescriptor invocation = mock(RemoteInvocationDescriptor.class);
+		when(invocation.getEvent()).thenReturn(new InvocationEventImpl(UUID.randomUUID(), Durability.Phase.COMMIT, ExceptionType.SQL));
+		when(invocation.getMember()).thenReturn(this.member);
+		
+		add(commands, new PreInvocationCommand<Void, Database<Void>>(invocation));
+		add(commands, new PostInvocationCommand<Void, Database<Void>>(invocation));
+		
+		add(commands, new InvokerCommand<Void, Database<Void>>(invoker(null)));
+		add(commands, new InvokerCommand<Void, Database<Void>>(invoker(new InvokerResultImpl(Integer.valueOf(1)))));
+		add(commands, new InvokerCommand<Void, Database<Void>>(invoker(new InvokerResultImpl(new SQLException("failed")))));
+		
+		add(commands, new HeartBeatCommand<Void, Database<Void>>().preSend());
+		add(commands, new NodeHealthCommand<Void, Database<Void>>());
+		
+		UpdateTokenCommand<Void, Database<Void>> token = new UpdateTokenCommand<Void, Database<Void>>();
+		token.setToken(System.currentTimeMillis());
+		add(commands, token);
+		
+		HostCommand<Void, Database<Void>> host = new HostCommand<Void, Database<Void>>();
+		host.setHost(this.member);
+		host.setToken(System.currentTimeMillis());
+		add(commands, host);
+		
+		return commands;
+	}
+
+	private RemoteInvokerDescriptor invoker(InvokerResultImpl result)
+	{
+		InvokerEvent event = new InvokerEventImpl(UUID.randomUUID(), Durability.Phase.PREPARE, "db1");
+		if (result != null)
+		{
+			event.setResult(result);
+		}
+		RemoteInvokerDescriptor descriptor = mock(RemoteInvokerDescriptor.class);
+		when(descriptor.getEvent()).thenReturn(event);
+		when(descriptor.getMember()).thenReturn(this.member);
+		return descriptor;
+	}
+
+	private static void add(Map<Class<?>, List<Command<?, ?>>> commands, Command<?, ?> command)
+	{
+		List<Command<?, ?>> list = commands.get(command.getClass());
+		if (list == null)
+		{
+			list = new ArrayList<Command<?, ?>>();
+			commands.put(command.getClass(), list);
+		}
+		list.add(command);
+	}
+
+	static class SerializedCommand implements Command<String, Void>
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private final String value;
+		
+		SerializedCommand(String value)
+		{
+			this.value = value;
+		}
+
+		@Override
+		public String execute(Void context)
+		{
+			return this.value;
+		}
+	}
+}
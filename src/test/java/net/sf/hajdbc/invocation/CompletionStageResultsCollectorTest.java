@@ -0,0 +1,179 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.invocation;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.balancer.Balancer;
+import net.sf.hajdbc.balancer.simple.SimpleBalancerFactory;
+import net.sf.hajdbc.invocation.AllResultsCollector.ExecutorProvider;
+import net.sf.hajdbc.invocation.AllResultsCollectorTest.ThreadRecorder;
+import net.sf.hajdbc.sql.SQLExceptionFactory;
+import net.sf.hajdbc.sql.TransactionalProxyFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class CompletionStageResultsCollectorTest
+{
+	private final MockDatabase db1 = new MockDatabase("1");
+	private final MockDatabase db2 = new MockDatabase("2");
+	private final MockDatabase db3 = new MockDatabase("3");
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final ExecutorService serialExecutor = Executors.newSingleThreadExecutor(new ThreadFactory()
+	{
+		@Override
+		public Thread newThread(Runnable task)
+		{
+			return new Thread(task, "serial");
+		}
+	});
+	private final ExecutorProvider parallelProvider = new ExecutorProvider()
+	{
+		@Override
+		public <Z, D extends Database<Z>> ExecutorService getExecutor(DatabaseCluster<Z, D> cluster)
+		{
+			return cluster.getExecutor();
+		}
+	};
+	private final ExecutorProvider serialProvider = new ExecutorProvider()
+	{
+		@Override
+		public <Z, D extends Database<Z>> ExecutorService getExecutor(DatabaseCluster<Z, D> cluster)
+		{
+			return CompletionStageResultsCollectorTest.this.serialExecutor;
+		}
+	};
+	private final ThreadRecorder invoker = new ThreadRecorder();
+	private DatabaseCluster<Void, MockDatabase> cluster;
+	private TransactionalProxyFactory<Void, MockDatabase, Object, Statement> factory;
+	private MockDatabase primary;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void init()
+	{
+		this.cluster = mock(DatabaseCluster.class);
+		this.factory = mock(TransactionalProxyFactory.class);
+
+		when(this.factory.getDatabaseCluster()).thenReturn(this.cluster);
+		when(this.factory.getExceptionFactory()).thenReturn(new SQLExceptionFactory());
+		when(this.cluster.getExecutor()).thenReturn(this.executor);
+		this.setDatabases(this.db1, this.db2, this.db3);
+	}
+
+	@After
+	public void destroy()
+	{
+		this.executor.shutdownNow();
+		this.serialExecutor.shutdownNow();
+	}
+
+	@Test
+	public void callerRunsPrimary() throws Exception
+	{
+		Map.Entry<SortedMap<MockDatabase, Integer>, SortedMap<MockDatabase, SQLException>> results = this.collect(new CompletionStageResultsCollector(this.parallelProvider, true));
+
+		assertEquals(3, results.getKey().size());
+		assertTrue(results.getValue().isEmpty());
+		assertSame(Thread.currentThread(), this.invoker.threads.get(this.primary));
+		for (MockDatabase database: Arrays.asList(this.db1, this.db2, this.db3))
+		{
+			if (database != this.primary)
+			{
+				assertNotSame(Thread.currentThread(), this.invoker.threads.get(database));
+			}
+		}
+	}
+
+	@Test
+	public void executorRunsPrimary() throws Exception
+	{
+		Map.Entry<SortedMap<MockDatabase, Integer>, SortedMap<MockDatabase, SQLException>> results = this.collect(new CompletionStageResultsCollector(this.parallelProvider));
+
+		assertEquals(3, results.getKey().size());
+		assertFalse(this.invoker.threads.containsValue(Thread.currentThread()));
+	}
+
+	@Test
+	public void serialExecutorRunsPrimary() throws Exception
+	{
+		// Caller-runs only applies to the cluster executor
+		Map.Entry<SortedMap<MockDatabase, Integer>, SortedMap<MockDatabase, SQLException>> results = this.collect(new CompletionStageResultsCollector(this.serialProvider, true));
+
+		assertEquals(3, results.getKey().size());
+		assertEquals("serial", this.invoker.threads.get(this.primary).getName());
+		assertFalse(this.invoker.threads.containsValue(Thread.currentThread()));
+	}
+
+	@Test
+	public void singleDatabaseBypassesExecutor() throws Exception
+	{
+		this.setDatabases(this.db1);
+
+		Map.Entry<SortedMap<MockDatabase, Integer>, SortedMap<MockDatabase, SQLException>> results = this.collect(new CompletionStageResultsCollector(this.serialProvider));
+
+		assertEquals(1, results.getKey().size());
+		assertSame(Thread.currentThread(), this.invoker.threads.get(this.db1));
+	}
+
+	@Test
+	public void callerRunsPrimaryFailure() throws Exception
+	{
+		this.invoker.failure = this.primary;
+
+		Map.Entry<SortedMap<MockDatabase, Integer>, SortedMap<MockDatabase, SQLException>> results = this.collect(new CompletionStageResultsCollector(this.parallelProvider, true));
+
+		assertEquals(2, results.getKey().size());
+		assertEquals(1, results.getValue().size());
+		assertNotNull(results.getValue().get(this.primary));
+	}
+
+	private Map.Entry<SortedMap<MockDatabase, Integer>, SortedMap<MockDatabase, SQLException>> collect(CompletionStageResultsCollector collector) throws InterruptedException, ExecutionException, TimeoutException
+	{
+		return collector.collectResultsAsync(this.factory, this.invoker).toCompletableFuture().get(5, TimeUnit.SECONDS);
+	}
+
+	private void setDatabases(MockDatabase... databases)
+	{
+		Balancer<Void, MockDatabase> balancer = new SimpleBalancerFactory().createBalancer(new HashSet<MockDatabase>(Arrays.asList(databases)));
+		when(this.cluster.getBalancer()).thenReturn(balancer);
+		this.primary = balancer.iterator().next();
+	}
+}
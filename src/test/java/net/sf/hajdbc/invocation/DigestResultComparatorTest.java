@@ -0,0 +1,192 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.invocation;
+
+import static org.junit.Assert.*;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+
+import net.sf.hajdbc.ResultComparator;
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.sql.SQLExceptionFactory;
+
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class DigestResultComparatorTest
+{
+	private final ResultComparator comparator = new DigestResultComparator();
+
+	@Test
+	public void supports()
+	{
+		assertTrue(this.comparator.supports(int[].class));
+		assertTrue(this.comparator.supports(long[].class));
+		assertTrue(this.comparator.supports(ResultSet.class));
+		assertTrue(this.comparator.supports(CachedRowSet.class));
+		assertFalse(this.comparator.supports(Integer.TYPE));
+		assertFalse(this.comparator.supports(Object.class));
+	}
+
+	@Test
+	public void updateCounts() throws SQLException
+	{
+		assertFalse(this.differs(new int[] { 1, 2, 3 }, new int[] { 1, 2, 3 }, 0));
+		assertTrue(this.differs(new int[] { 1, 2, 3 }, new int[] { 1, 2, 4 }, 0));
+		assertTrue(this.differs(new int[] { 1, 2, 3 }, new int[] { 1, 2 }, 0));
+		assertTrue(this.differs(new int[] { 1, 2 }, new int[] { 2, 1 }, 0));
+		// Values that differ only in their high order bits
+		assertTrue(this.differs(new int[] { 0x10000 }, new int[] { 0x20000 }, 0));
+		assertTrue(this.differs(new int[] { 1 << 24 }, new int[] { 1 << 25 }, 0));
+
+		assertFalse(this.differs(new long[] { 1L, 2L }, new long[] { 1L, 2L }, 0));
+		assertTrue(this.differs(new long[] { 1L, 2L }, new long[] { 1L, 3L }, 0));
+		assertTrue(this.differs(new long[] { 1L << 40 }, new long[] { 1L << 41 }, 0));
+
+		// Distinct values whose 32-bit halves cancel out
+		assertTrue(this.differs(new long[] { 0x0000000100000001L }, new long[] { 0L }, 0));
+	}
+
+	@Test
+	public void sampleSize() throws SQLException
+	{
+		int[] primary = new int[100];
+		int[] backup = new int[100];
+		// Not sampled, since the stride is 10
+		backup[5] = 1;
+
+		assertFalse(this.differs(primary, backup, 10));
+		assertTrue(this.differs(primary, backup, 0));
+		assertTrue(this.differs(primary, backup, 100));
+
+		// Sampled elements
+		backup[5] = 0;
+		backup[90] = 1;
+		assertTrue(this.differs(primary, backup, 10));
+
+		// Length is always compared
+		assertTrue(this.differs(primary, new int[101], 10));
+
+		// Results no larger than the sample size are digested in full
+		assertTrue(this.differs(new int[] { 0, 0, 0 }, new int[] { 0, 1, 0 }, 3));
+	}
+
+	@Test
+	public void generatedKeys() throws SQLException
+	{
+		assertFalse(this.comparator.differs(this.comparator.digest(keys(1L, 2L), 0), this.comparator.digest(keys(1L, 2L), 0)));
+		assertTrue(this.comparator.differs(this.comparator.digest(keys(1L, 2L), 0), this.comparator.digest(keys(1L, 3L), 0)));
+		assertTrue(this.comparator.differs(this.comparator.digest(keys(1L, 2L), 0), this.comparator.digest(keys(1L), 0)));
+		assertTrue(this.comparator.differs(this.comparator.digest(keys(1L), 0), this.comparator.digest(keys((Long) null), 0)));
+
+		// Digesting must not consume the rows
+		CachedRowSet keys = keys(1L, 2L);
+		this.comparator.digest(keys, 0);
+		assertTrue(keys.next());
+		assertEquals(1L, keys.getLong(1));
+		assertTrue(keys.next());
+		assertEquals(2L, keys.getLong(1));
+		assertFalse(keys.next());
+	}
+
+	@Test
+	public void generatedKeysSampleSize() throws SQLException
+	{
+		Long[] primary = new Long[10];
+		Long[] backup = new Long[10];
+		for (int i = 0; i < 10; ++i)
+		{
+			primary[i] = Long.valueOf(i);
+			backup[i] = Long.valueOf(i);
+		}
+		// Not sampled, since the stride is 5
+		backup[1] = Long.valueOf(-1);
+
+		assertFalse(this.comparator.differs(this.comparator.digest(keys(primary), 2), this.comparator.digest(keys(backup), 2)));
+		assertTrue(this.comparator.differs(this.comparator.digest(keys(primary), 0), this.comparator.digest(keys(backup), 0)));
+	}
+
+	@Test
+	public void materializesGeneratedKeys() throws SQLException
+	{
+		MockDatabase database = new MockDatabase("1");
+		final CachedRowSet keys = keys(1L);
+		Invoker<Void, MockDatabase, Object, ResultSet, SQLException> invoker = new Invoker<Void, MockDatabase, Object, ResultSet, SQLException>()
+		{
+			@Override
+			public ResultSet invoke(MockDatabase database, Object object)
+			{
+				return keys;
+			}
+		};
+		DigestingInvoker<Void, MockDatabase, Object, ResultSet, SQLException> digester = new DigestingInvoker<Void, MockDatabase, Object, ResultSet, SQLException>(invoker, this.comparator, 0, new SQLExceptionFactory());
+
+		ResultSet result = digester.invoke(database, null);
+
+		assertNotSame(keys, result);
+		// Closed
+		assertEquals(0, keys.size());
+		assertTrue(result.next());
+		assertEquals(1L, result.getLong(1));
+		assertFalse(result.next());
+		assertFalse(digester.differs(database, database));
+	}
+
+	private boolean differs(Object primary, Object backup, int sampleSize) throws SQLException
+	{
+		return this.comparator.differs(this.comparator.digest(primary, sampleSize), this.comparator.digest(backup, sampleSize));
+	}
+
+	private static CachedRowSet keys(Long... values) throws SQLException
+	{
+		RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+		metaData.setColumnCount(1);
+		metaData.setColumnType(1, Types.BIGINT);
+		metaData.setNullable(1, ResultSetMetaData.columnNullable);
+
+		CachedRowSet keys = RowSetProvider.newFactory().createCachedRowSet();
+		keys.setMetaData(metaData);
+		keys.moveToInsertRow();
+		// Each row is inserted before the previously inserted row
+		for (int i = values.length - 1; i >= 0; --i)
+		{
+			Long value = values[i];
+			if (value != null)
+			{
+				keys.updateLong(1, value.longValue());
+			}
+			else
+			{
+				keys.updateNull(1);
+			}
+			keys.insertRow();
+		}
+		keys.moveToCurrentRow();
+		keys.beforeFirst();
+		return keys;
+	}
+}
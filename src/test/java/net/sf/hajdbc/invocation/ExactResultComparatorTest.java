@@ -0,0 +1,69 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.invocation;
+
+import static org.junit.Assert.*;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import net.sf.hajdbc.ResultComparator;
+
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class ExactResultComparatorTest
+{
+	private final ResultComparator comparator = new ExactResultComparator();
+
+	@Test
+	public void supports()
+	{
+		assertFalse(this.comparator.supports(int[].class));
+		assertFalse(this.comparator.supports(ResultSet.class));
+		assertFalse(this.comparator.supports(Integer.TYPE));
+	}
+
+	@Test
+	public void differs() throws SQLException
+	{
+		assertFalse(this.differs(1, 1));
+		assertTrue(this.differs(1, 2));
+		assertFalse(this.differs(null, null));
+		assertTrue(this.differs(1, null));
+		assertFalse(this.differs(new int[] { 1, 2 }, new int[] { 1, 2 }));
+		assertTrue(this.differs(new int[] { 1, 2 }, new int[] { 2, 1 }));
+	}
+
+	@Test
+	public void ignoresSampleSize() throws SQLException
+	{
+		int[] primary = new int[100];
+		int[] backup = new int[100];
+		backup[5] = 1;
+
+		assertTrue(this.comparator.differs(this.comparator.digest(primary, 10), this.comparator.digest(backup, 10)));
+	}
+
+	private boolean differs(Object primary, Object backup) throws SQLException
+	{
+		return this.comparator.differs(this.comparator.digest(primary, 0), this.comparator.digest(backup, 0));
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.invocation;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.balancer.Balancer;
+import net.sf.hajdbc.balancer.simple.SimpleBalancerFactory;
+import net.sf.hajdbc.sql.ProxyFactory;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Verifies the single database fast path.
+ * Uses hand written stubs rather than mocks, since mocks allocate per invocation.
+ * @author Paul Ferraro
+ */
+public class InvokeOnManyInvocationStrategyTest
+{
+	// The singleton result map, with room to spare, but well short of the collector, its executor and its per-database maps
+	private static final long ALLOCATION_LIMIT = 96;
+	private static final int OPERATIONS = 100000;
+
+	private final MockDatabase db1 = new MockDatabase("1");
+	private final MockDatabase db2 = new MockDatabase("2");
+	private final Statement statement = stub(Statement.class, null);
+	private final Integer result = 1;
+	private final Invoker<Void, MockDatabase, Statement, Integer, SQLException> invoker = new Invoker<Void, MockDatabase, Statement, Integer, SQLException>()
+	{
+		@Override
+		public Integer invoke(MockDatabase database, Statement statement)
+		{
+			return InvokeOnManyInvocationStrategyTest.this.result;
+		}
+	};
+	private final CountingResultsCollector collector = new CountingResultsCollector();
+
+	@Test
+	public void singleDatabaseBypassesCollector() throws SQLException
+	{
+		SortedMap<MockDatabase, Integer> results = new InvokeOnManyInvocationStrategy(this.collector).invoke(this.createProxyFactory(this.db1), this.invoker);
+
+		assertEquals(1, results.size());
+		assertSame(this.result, results.get(this.db1));
+		assertEquals(0, this.collector.collections.get());
+	}
+
+	@Test
+	public void multipleDatabasesUseCollector() throws SQLException
+	{
+		SortedMap<MockDatabase, Integer> results = new InvokeOnManyInvocationStrategy(this.collector).invoke(this.createProxyFactory(this.db1, this.db2), this.invoker);
+
+		assertEquals(2, results.size());
+		assertEquals(1, this.collector.collections.get());
+	}
+
+	@Test
+	public void missingTargetUsesCollector() throws SQLException
+	{
+		this.collector.target = null;
+
+		new InvokeOnManyInvocationStrategy(this.collector).invoke(this.createProxyFactory(this.db1), this.invoker);
+
+		assertEquals(1, this.collector.collections.get());
+	}
+
+	@Test
+	public void singleDatabaseAllocation() throws SQLException
+	{
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue((threads instanceof com.sun.management.ThreadMXBean) && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported());
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+		bean.setThreadAllocatedMemoryEnabled(true);
+
+		InvokeOnManyInvocationStrategy strategy = new InvokeOnManyInvocationStrategy(this.collector);
+		ProxyFactory<Void, MockDatabase, Statement, SQLException> factory = this.createProxyFactory(this.db1);
+
+		// Warm up
+		for (int i = 0; i < OPERATIONS; ++i)
+		{
+			strategy.invoke(factory, this.invoker);
+		}
+
+		long thread = Thread.currentThread().getId();
+		long start = bean.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < OPERATIONS; ++i)
+		{
+			strategy.invoke(factory, this.invoker);
+		}
+		long allocated = (bean.getThreadAllocatedBytes(thread) - start) / OPERATIONS;
+
+		assertTrue(String.format("%d bytes/op", allocated), allocated <= ALLOCATION_LIMIT);
+	}
+
+	@SuppressWarnings("unchecked")
+	private ProxyFactory<Void, MockDatabase, Statement, SQLException> createProxyFactory(MockDatabase... databases)
+	{
+		Balancer<Void, MockDatabase> balancer = new SimpleBalancerFactory().createBalancer(new HashSet<MockDatabase>(Arrays.asList(databases)));
+		DatabaseCluster<Void, MockDatabase> cluster = stub(DatabaseCluster.class, balancer);
+		return stub(ProxyFactory.class, cluster);
+	}
+
+	/**
+	 * Creates a stub whose no-argument methods return the specified value, if assignable; and null otherwise.
+	 * Unlike a mock, invocations of no-argument methods do not allocate.
+	 */
+	static <T> T stub(Class<T> targetClass, final Object value)
+	{
+		InvocationHandler handler = new InvocationHandler()
+		{
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args)
+			{
+				return (value != null) && method.getReturnType().isInstance(value) ? value : null;
+			}
+		};
+		return targetClass.cast(Proxy.newProxyInstance(InvokeOnManyInvocationStrategyTest.class.getClassLoader(), new Class<?>[] { targetClass }, handler));
+	}
+
+	/**
+	 * Counts result collections, which invoke every database.
+	 */
+	class CountingResultsCollector implements InvokeOnManyInvocationStrategy.ResultsCollector
+	{
+		final AtomicInteger collections = new AtomicInteger();
+		volatile Statement target = InvokeOnManyInvocationStrategyTest.this.statement;
+
+		@Override
+		public <Z, D extends Database<Z>, T, R, E extends Exception> Map.Entry<SortedMap<D, R>, SortedMap<D, E>> collectResults(ProxyFactory<Z, D, T, E> factory, Invoker<Z, D, T, R, E> invoker)
+		{
+			this.collections.incrementAndGet();
+			SortedMap<D, R> results = new TreeMap<D, R>();
+			for (D database: factory.getDatabaseCluster().getBalancer())
+			{
+				try
+				{
+					results.put(database, invoker.invoke(database, null));
+				}
+				catch (Exception e)
+				{
+					throw new AssertionError(e);
+				}
+			}
+			return new AbstractMap.SimpleImmutableEntry<SortedMap<D, R>, SortedMap<D, E>>(results, new TreeMap<D, E>());
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <Z, D extends Database<Z>, T, E extends Exception> T getTarget(ProxyFactory<Z, D, T, E> factory, D database)
+		{
+			return (T) this.target;
+		}
+	}
+}
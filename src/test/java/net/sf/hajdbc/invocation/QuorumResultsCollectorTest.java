@@ -0,0 +1,216 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.invocation;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.balancer.Balancer;
+import net.sf.hajdbc.balancer.simple.SimpleBalancerFactory;
+import net.sf.hajdbc.dialect.StandardDialect;
+import net.sf.hajdbc.invocation.AllResultsCollector.ExecutorProvider;
+import net.sf.hajdbc.sql.SQLExceptionFactory;
+import net.sf.hajdbc.sql.TransactionContext;
+import net.sf.hajdbc.sql.TransactionalProxyFactory;
+import net.sf.hajdbc.state.StateManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * @author Paul Ferraro
+ */
+public class QuorumResultsCollectorTest
+{
+	private final MockDatabase db1 = new MockDatabase("1");
+	private final MockDatabase db2 = new MockDatabase("2");
+	private final MockDatabase db3 = new MockDatabase("3");
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final ExecutorProvider provider = new ExecutorProvider()
+	{
+		@Override
+		public <Z, D extends net.sf.hajdbc.Database<Z>> ExecutorService getExecutor(DatabaseCluster<Z, D> cluster)
+		{
+			return cluster.getExecutor();
+		}
+	};
+	private DatabaseCluster<Void, MockDatabase> cluster;
+	private TransactionalProxyFactory<Void, MockDatabase, Object, Statement> factory;
+	private TransactionContext<Void, MockDatabase> context;
+	private StateManager stateManager;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void init()
+	{
+		this.cluster = mock(DatabaseCluster.class);
+		this.factory = mock(TransactionalProxyFactory.class);
+		this.context = mock(TransactionContext.class);
+		this.stateManager = mock(StateManager.class);
+		Balancer<Void, MockDatabase> balancer = new SimpleBalancerFactory().createBalancer(new HashSet<MockDatabase>(Arrays.asList(this.db1, this.db2, this.db3)));
+
+		when(this.factory.getDatabaseCluster()).thenReturn(this.cluster);
+		when(this.factory.getExceptionFactory()).thenReturn(new SQLExceptionFactory());
+		when(this.factory.getTransactionContext()).thenReturn(this.context);
+		when(this.cluster.getBalancer()).thenReturn(balancer);
+		when(this.cluster.getExecutor()).thenReturn(this.executor);
+		when(this.cluster.getWriteQuorum()).thenReturn(1);
+		when(this.cluster.getDialect()).thenReturn(new StandardDialect());
+		when(this.cluster.getStateManager()).thenReturn(this.stateManager);
+	}
+
+	@After
+	public void destroy()
+	{
+		this.executor.shutdownNow();
+	}
+
+	@Test
+	public void returnsOnQuorum() throws Exception
+	{
+		CountDownLatch latch = new CountDownLatch(1);
+
+		Map.Entry<SortedMap<MockDatabase, Integer>, SortedMap<MockDatabase, SQLException>> results = new QuorumResultsCollector(this.provider).collectResults(this.factory, new BlockingInvoker(this.db3, latch, 1, null));
+
+		assertEquals(2, results.getKey().size());
+		assertEquals(Integer.valueOf(1), results.getKey().get(this.db1));
+		assertEquals(Integer.valueOf(1), results.getKey().get(this.db2));
+		assertTrue(results.getValue().isEmpty());
+
+		Future<?> stragglers = this.captureStragglers();
+		assertFalse(stragglers.isDone());
+
+		latch.countDown();
+		stragglers.get(5, TimeUnit.SECONDS);
+
+		verify(this.cluster, never()).deactivate(this.db3, this.stateManager);
+	}
+
+	@Test
+	public void deactivatesFailedStraggler() throws Exception
+	{
+		CountDownLatch latch = new CountDownLatch(1);
+
+		Map.Entry<SortedMap<MockDatabase, Integer>, SortedMap<MockDatabase, SQLException>> results = new QuorumResultsCollector(this.provider).collectResults(this.factory, new BlockingInvoker(this.db3, latch, 1, new SQLNonTransientConnectionException()));
+
+		assertEquals(2, results.getKey().size());
+		assertTrue(results.getValue().isEmpty());
+
+		Future<?> stragglers = this.captureStragglers();
+		verify(this.cluster, never()).deactivate(this.db3, this.stateManager);
+
+		latch.countDown();
+		stragglers.get(5, TimeUnit.SECONDS);
+
+		verify(this.cluster).deactivate(this.db3, this.stateManager);
+		verify(this.cluster, never()).deactivate(this.db1, this.stateManager);
+		verify(this.cluster, never()).deactivate(this.db2, this.stateManager);
+	}
+
+	@Test
+	public void deactivatesInconsistentStraggler() throws Exception
+	{
+		CountDownLatch latch = new CountDownLatch(1);
+
+		new QuorumResultsCollector(this.provider).collectResults(this.factory, new BlockingInvoker(this.db3, latch, 2, null));
+
+		Future<?> stragglers = this.captureStragglers();
+
+		latch.countDown();
+		stragglers.get(5, TimeUnit.SECONDS);
+
+		verify(this.cluster).deactivate(this.db3, this.stateManager);
+	}
+
+	@Test
+	public void waitsForAllWithoutQuorum() throws Exception
+	{
+		when(this.cluster.getWriteQuorum()).thenReturn(-1);
+
+		Map.Entry<SortedMap<MockDatabase, Integer>, SortedMap<MockDatabase, SQLException>> results = new QuorumResultsCollector(this.provider).collectResults(this.factory, new BlockingInvoker(this.db3, new CountDownLatch(0), 1, null));
+
+		assertEquals(3, results.getKey().size());
+		verify(this.context, never()).addPendingInvocations(any(Future.class));
+	}
+
+	private Future<?> captureStragglers()
+	{
+		ArgumentCaptor<Future> captor = ArgumentCaptor.forClass(Future.class);
+		verify(this.context).addPendingInvocations(captor.capture());
+		return captor.getValue();
+	}
+
+	/**
+	 * Returns 1 from every database, except for the straggler, which waits for the latch, then returns the specified result or throws the specified exception.
+	 */
+	private static class BlockingInvoker implements Invoker<Void, MockDatabase, Statement, Integer, SQLException>
+	{
+		private final MockDatabase straggler;
+		private final CountDownLatch latch;
+		private final int result;
+		private final SQLException exception;
+
+		BlockingInvoker(MockDatabase straggler, CountDownLatch latch, int result, SQLException exception)
+		{
+			this.straggler = straggler;
+			this.latch = latch;
+			this.result = result;
+			this.exception = exception;
+		}
+
+		@Override
+		public Integer invoke(MockDatabase database, Statement statement) throws SQLException
+		{
+			if (database != this.straggler)
+			{
+				return 1;
+			}
+			try
+			{
+				this.latch.await();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new SQLException(e);
+			}
+			if (this.exception != null)
+			{
+				throw this.exception;
+			}
+			return this.result;
+		}
+	}
+}
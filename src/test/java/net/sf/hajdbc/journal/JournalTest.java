@@ -0,0 +1,179 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.journal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class JournalTest
+{
+	private final JournalEntry entry1 = new StatementJournalEntry("INSERT INTO test VALUES (1)");
+	private final JournalEntry entry2 = new StatementJournalEntry("INSERT INTO test VALUES (2)");
+	private final JournalEntry entry3 = new StatementJournalEntry("INSERT INTO test VALUES (3)");
+	
+	@Test
+	public void inactive()
+	{
+		Journal journal = new Journal(10);
+		
+		assertFalse(journal.isActive());
+		
+		journal.append(1, Arrays.asList(this.entry1), Collections.singleton("db1"));
+		
+		assertNull(journal.getEntries("db2"));
+		
+		journal.start("db2");
+		
+		assertTrue(journal.isActive());
+		assertTrue(journal.getEntries("db2").isEmpty());
+	}
+	
+	@Test
+	public void getEntries()
+	{
+		Journal journal = new Journal(10);
+		
+		journal.start("db2");
+		journal.append(1, Arrays.asList(this.entry1), Collections.singleton("db1"));
+		journal.start("db3");
+		journal.append(2, Arrays.asList(this.entry2, this.entry3), Collections.singleton("db1"));
+		
+		assertEquals(Arrays.asList(this.entry1, this.entry2, this.entry3), journal.getEntries("db2"));
+		assertEquals(Arrays.asList(this.entry2, this.entry3), journal.getEntries("db3"));
+		
+		// Starting an already tracked database has no effect
+		journal.start("db2");
+		
+		assertEquals(Arrays.asList(this.entry1, this.entry2, this.entry3), journal.getEntries("db2"));
+	}
+	
+	@Test
+	public void excludesAppliedDatabases()
+	{
+		Journal journal = new Journal(10);
+		
+		journal.start("db2");
+		journal.append(1, Arrays.asList(this.entry1), new HashSet<String>(Arrays.asList("db1", "db2")));
+		journal.append(2, Arrays.asList(this.entry2), Collections.singleton("db1"));
+		
+		assertEquals(Arrays.asList(this.entry2), journal.getEntries("db2"));
+	}
+	
+	@Test
+	public void stop()
+	{
+		Journal journal = new Journal(2);
+		
+		journal.start("db2");
+		journal.append(1, Arrays.asList(this.entry1), Collections.singleton("db1"));
+		journal.start("db3");
+		journal.append(2, Arrays.asList(this.entry2), Collections.singleton("db1"));
+		journal.stop("db2");
+		
+		assertTrue(journal.isActive());
+		assertNull(journal.getEntries("db2"));
+		
+		// Records only needed by db2 were discarded, freeing capacity
+		journal.append(3, Arrays.asList(this.entry3), Collections.singleton("db1"));
+		
+		assertEquals(Arrays.asList(this.entry2, this.entry3), journal.getEntries("db3"));
+		
+		journal.stop("db3");
+		
+		assertFalse(journal.isActive());
+	}
+	
+	@Test
+	public void overflow()
+	{
+		Journal journal = new Journal(2);
+		
+		journal.start("db2");
+		journal.append(1, Arrays.asList(this.entry1, this.entry2), Collections.singleton("db1"));
+		
+		assertEquals(Arrays.asList(this.entry1, this.entry2), journal.getEntries("db2"));
+		
+		journal.append(2, Arrays.asList(this.entry3), Collections.singleton("db1"));
+		
+		assertFalse(journal.isActive());
+		assertNull(journal.getEntries("db2"));
+		
+		// A newly deactivated database is tracked again, but the overflowed database remains incomplete
+		journal.start("db3");
+		journal.append(3, Arrays.asList(this.entry3), Collections.singleton("db1"));
+		
+		assertTrue(journal.isActive());
+		assertNull(journal.getEntries("db2"));
+		assertEquals(Arrays.asList(this.entry3), journal.getEntries("db3"));
+	}
+	
+	@Test
+	public void invalidate()
+	{
+		Journal journal = new Journal(10);
+		
+		journal.start("db2");
+		journal.append(1, Arrays.asList(this.entry1), Collections.singleton("db1"));
+		journal.invalidate();
+		
+		assertFalse(journal.isActive());
+		assertNull(journal.getEntries("db2"));
+		
+		journal.append(2, Arrays.asList(this.entry2), Collections.singleton("db1"));
+		
+		assertNull(journal.getEntries("db2"));
+	}
+	
+	@Test
+	public void invalidateDatabase()
+	{
+		Journal journal = new Journal(10);
+		
+		journal.start("db2");
+		journal.append(1, Arrays.asList(this.entry1), Collections.singleton("db1"));
+		journal.start("db3");
+		journal.append(2, Arrays.asList(this.entry2), Collections.singleton("db1"));
+		journal.invalidate("db2");
+		
+		// Other inactive databases are unaffected
+		assertTrue(journal.isActive());
+		assertNull(journal.getEntries("db2"));
+		assertEquals(Arrays.asList(this.entry2), journal.getEntries("db3"));
+		
+		journal.invalidate("db3");
+		
+		assertFalse(journal.isActive());
+		assertNull(journal.getEntries("db3"));
+		
+		// Untracked databases are unaffected
+		journal.invalidate("db4");
+		
+		assertNull(journal.getEntries("db4"));
+	}
+}
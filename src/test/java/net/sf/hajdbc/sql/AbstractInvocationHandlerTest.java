@@ -0,0 +1,180 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sql;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.balancer.simple.SimpleBalancerFactory;
+import net.sf.hajdbc.invocation.InvocationStrategy;
+import net.sf.hajdbc.invocation.Invoker;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class AbstractInvocationHandlerTest
+{
+	private final MockDatabase database = new MockDatabase("1");
+	private final Target target = mock(Target.class);
+	private final AtomicInteger resolutions = new AtomicInteger();
+	// Invokes the primary database only
+	private final InvocationStrategy strategy = new InvocationStrategy()
+	{
+		@Override
+		public <Z, D extends Database<Z>, T, R, E extends Exception> SortedMap<D, R> invoke(ProxyFactory<Z, D, T, E> factory, Invoker<Z, D, T, R, E> invoker) throws E
+		{
+			SortedMap<D, R> results = new TreeMap<D, R>();
+			D database = factory.getDatabaseCluster().getBalancer().iterator().next();
+			results.put(database, invoker.invoke(database, factory.get(database)));
+			return results;
+		}
+	};
+	private ProxyFactory<Void, MockDatabase, Target, SQLException> factory;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void init() throws SQLException
+	{
+		DatabaseCluster<Void, MockDatabase> cluster = mock(DatabaseCluster.class);
+		this.factory = mock(ProxyFactory.class);
+
+		when(this.factory.getDatabaseCluster()).thenReturn(cluster);
+		when(this.factory.getExceptionFactory()).thenReturn(new SQLExceptionFactory());
+		when(this.factory.get(this.database)).thenReturn(this.target);
+		when(cluster.isActive()).thenReturn(true);
+		when(cluster.getBalancer()).thenReturn(new SimpleBalancerFactory().createBalancer(new HashSet<MockDatabase>(Arrays.asList(this.database))));
+		when(this.target.getStatic()).thenReturn("static");
+		when(this.target.getDynamic()).thenReturn("dynamic");
+	}
+
+	@Test
+	public void staticStrategyResolvedOnce() throws Throwable
+	{
+		Target proxy = this.createProxy(new TargetInvocationHandler(this.factory) {});
+
+		assertEquals("static", proxy.getStatic());
+		assertEquals("static", proxy.getStatic());
+		assertEquals("static", proxy.getStatic());
+
+		assertEquals(1, this.resolutions.get());
+		verify(this.target, times(3)).getStatic();
+	}
+
+	@Test
+	public void dynamicStrategyResolvedPerInvocation() throws Throwable
+	{
+		Target proxy = this.createProxy(new TargetInvocationHandler(this.factory) {});
+
+		assertEquals("dynamic", proxy.getDynamic());
+		assertEquals("dynamic", proxy.getDynamic());
+		assertEquals("dynamic", proxy.getDynamic());
+
+		assertEquals(3, this.resolutions.get());
+	}
+
+	@Test
+	public void strategySharedByHandlersOfSameClass() throws Throwable
+	{
+		class SharedInvocationHandler extends TargetInvocationHandler
+		{
+			SharedInvocationHandler()
+			{
+				super(AbstractInvocationHandlerTest.this.factory);
+			}
+		}
+
+		assertEquals("static", this.createProxy(new SharedInvocationHandler()).getStatic());
+		assertEquals("static", this.createProxy(new SharedInvocationHandler()).getStatic());
+
+		assertEquals(1, this.resolutions.get());
+	}
+
+	@Test
+	public void strategyNotSharedByHandlersOfDistinctClasses() throws Throwable
+	{
+		assertEquals("static", this.createProxy(new TargetInvocationHandler(this.factory) {}).getStatic());
+		assertEquals("static", this.createProxy(new TargetInvocationHandler(this.factory) {}).getStatic());
+
+		assertEquals(2, this.resolutions.get());
+	}
+
+	@Test
+	public void connectionTransactionBoundariesAreDynamic() throws Exception
+	{
+		// Whether a strategy is dynamic does not depend on the proxy factory
+		ConnectionInvocationHandler<Void, MockDatabase, Object> handler = new ConnectionInvocationHandler<Void, MockDatabase, Object>(null);
+
+		assertTrue(handler.isInvocationStrategyDynamic(Connection.class.getMethod("commit")));
+		assertTrue(handler.isInvocationStrategyDynamic(Connection.class.getMethod("rollback")));
+		assertTrue(handler.isInvocationStrategyDynamic(Connection.class.getMethod("setAutoCommit", Boolean.TYPE)));
+		assertFalse(handler.isInvocationStrategyDynamic(Connection.class.getMethod("getAutoCommit")));
+	}
+
+	private Target createProxy(TargetInvocationHandler handler)
+	{
+		return (Target) Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class<?>[] { Target.class }, handler);
+	}
+
+	public interface Target
+	{
+		String getStatic();
+
+		String getDynamic();
+	}
+
+	/**
+	 * Counts the resolutions of invocation strategies.
+	 * Test methods use distinct subclasses, since strategies are cached per handler class.
+	 */
+	abstract class TargetInvocationHandler extends AbstractInvocationHandler<Void, MockDatabase, Target, SQLException, ProxyFactory<Void, MockDatabase, Target, SQLException>>
+	{
+		TargetInvocationHandler(ProxyFactory<Void, MockDatabase, Target, SQLException> factory)
+		{
+			super(Target.class, factory);
+		}
+
+		@Override
+		protected InvocationStrategy getInvocationStrategy(Target object, Method method, Object... parameters)
+		{
+			AbstractInvocationHandlerTest.this.resolutions.incrementAndGet();
+			return AbstractInvocationHandlerTest.this.strategy;
+		}
+
+		@Override
+		protected boolean isInvocationStrategyDynamic(Method method)
+		{
+			return method.getName().equals("getDynamic");
+		}
+	}
+}
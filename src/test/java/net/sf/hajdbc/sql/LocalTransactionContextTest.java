@@ -0,0 +1,341 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sql;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.balancer.simple.SimpleBalancerFactory;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.none.NoDurability;
+import net.sf.hajdbc.invocation.InvocationStrategy;
+import net.sf.hajdbc.invocation.Invoker;
+import net.sf.hajdbc.journal.Journal;
+import net.sf.hajdbc.journal.JournalEntry;
+import net.sf.hajdbc.journal.StatementJournalEntry;
+import net.sf.hajdbc.lock.LockManager;
+import net.sf.hajdbc.tx.SimpleTransactionIdentifierFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class LocalTransactionContextTest
+{
+	private final MockDatabase db1 = new MockDatabase("1");
+	private final MockDatabase db3 = new MockDatabase("3");
+	private final JournalEntry entry1 = new StatementJournalEntry("INSERT INTO test VALUES (1)");
+	private final JournalEntry entry2 = new StatementJournalEntry("INSERT INTO test VALUES (2)");
+	private final Journal journal = new Journal(10);
+	private final Connection connection = mock(Connection.class);
+	private DatabaseCluster<Void, MockDatabase> cluster;
+	private ProxyFactory<Void, MockDatabase, Object, SQLException> proxy;
+	private Invoker<Void, MockDatabase, Object, Object, SQLException> invoker;
+	private LocalTransactionContext<Void, MockDatabase> context;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void init()
+	{
+		this.cluster = mock(DatabaseCluster.class);
+		this.proxy = mock(ProxyFactory.class);
+		this.invoker = mock(Invoker.class);
+		LockManager lockManager = mock(LockManager.class);
+		
+		when(this.cluster.getLockManager()).thenReturn(lockManager);
+		when(lockManager.readLock(null)).thenReturn(mock(Lock.class));
+		when(this.cluster.getDurability()).thenReturn(new NoDurability<Void, MockDatabase>());
+		doReturn(new SimpleTransactionIdentifierFactory()).when(this.cluster).getTransactionIdentifierFactory();
+		when(this.cluster.getJournal()).thenReturn(this.journal);
+		when(this.cluster.getBalancer()).thenReturn(new SimpleBalancerFactory().createBalancer(new HashSet<MockDatabase>(Arrays.asList(this.db1, this.db3))));
+		when(this.proxy.getDatabaseCluster()).thenReturn(this.cluster);
+		when(this.proxy.getExceptionFactory()).thenReturn(new SQLExceptionFactory());
+		
+		// Database 2 is inactive
+		this.journal.start("2");
+		
+		this.context = new LocalTransactionContext<Void, MockDatabase>(this.cluster);
+	}
+
+	@Test
+	public void journalsCommittedWrites() throws SQLException
+	{
+		when(this.connection.getAutoCommit()).thenReturn(false);
+		
+		this.write(this.entry1, new Success(this.db1, this.db3));
+		this.commit(new Success(this.db1, this.db3));
+		
+		assertEquals(Arrays.asList(this.entry1), this.journal.getEntries("2"));
+	}
+
+	@Test
+	public void skipsFailedWrites() throws SQLException
+	{
+		when(this.connection.getAutoCommit()).thenReturn(false);
+		
+		this.write(this.entry1, new Success(this.db1, this.db3));
+		this.failedWrite(this.entry2);
+		this.commit(new Success(this.db1, this.db3));
+		
+		assertEquals(Arrays.asList(this.entry1), this.journal.getEntries("2"));
+	}
+
+	@Test
+	public void skipsFailedAutoCommitWrites() throws SQLException
+	{
+		when(this.connection.getAutoCommit()).thenReturn(true);
+		
+		this.failedWrite(this.entry1);
+		this.write(this.entry2, new Success(this.db1, this.db3));
+		
+		assertEquals(Arrays.asList(this.entry2), this.journal.getEntries("2"));
+	}
+
+	@Test
+	public void discardsRolledBackWrites() throws SQLException
+	{
+		when(this.connection.getAutoCommit()).thenReturn(false);
+		
+		this.write(this.entry1, new Success(this.db1, this.db3));
+		this.context.end(new Success(this.db1, this.db3), Durability.Phase.ROLLBACK).invoke(this.proxy, this.invoker);
+		
+		assertEquals(Collections.emptyList(), this.journal.getEntries("2"));
+	}
+
+	@Test
+	public void invalidatesUnreplayableWrites() throws SQLException
+	{
+		when(this.connection.getAutoCommit()).thenReturn(false);
+		
+		// An unreplayable write that failed has no effect
+		this.failedWrite(null);
+		this.write(this.entry1, new Success(this.db1, this.db3));
+		this.commit(new Success(this.db1, this.db3));
+		
+		assertEquals(Arrays.asList(this.entry1), this.journal.getEntries("2"));
+		
+		this.write(null, new Success(this.db1, this.db3));
+		this.commit(new Success(this.db1, this.db3));
+		
+		assertNull(this.journal.getEntries("2"));
+	}
+
+	@Test
+	public void invalidatesDatabasesThatFailedCommit() throws SQLException
+	{
+		when(this.connection.getAutoCommit()).thenReturn(false);
+		
+		this.write(this.entry1, new Success(this.db1, this.db3));
+		// Database 3 is deactivated, since its commit failed, though it may have committed
+		this.commit(new Success(this.db1)
+		{
+			@Override
+			public <Z, D extends Database<Z>, T, R, E extends Exception> SortedMap<D, R> invoke(ProxyFactory<Z, D, T, E> proxy, Invoker<Z, D, T, R, E> invoker) throws E
+			{
+				LocalTransactionContextTest.this.journal.start("3");
+				return super.invoke(proxy, invoker);
+			}
+		});
+		
+		assertEquals(Arrays.asList(this.entry1), this.journal.getEntries("2"));
+		assertNull(this.journal.getEntries("3"));
+	}
+
+	@Test
+	public void serializesInterleavedCommits() throws Exception
+	{
+		when(this.connection.getAutoCommit()).thenReturn(false);
+		LocalTransactionContext<Void, MockDatabase> other = new LocalTransactionContext<Void, MockDatabase>(this.cluster);
+		
+		this.write(this.entry1, new Success(this.db1, this.db3));
+		this.write(other, this.entry2, new Success(this.db1, this.db3));
+		
+		final CountDownLatch committing = new CountDownLatch(1);
+		final CountDownLatch otherCommitted = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try
+		{
+			// This transaction commits first, but is slow to return, e.g. while waiting for a backup database
+			Future<Void> commit = executor.submit(() ->
+			{
+				this.commit(new Success(this.db1, this.db3)
+				{
+					@Override
+					public <Z, D extends Database<Z>, T, R, E extends Exception> SortedMap<D, R> invoke(ProxyFactory<Z, D, T, E> proxy, Invoker<Z, D, T, R, E> invoker) throws E
+					{
+						SortedMap<D, R> results = super.invoke(proxy, invoker);
+						committing.countDown();
+						try
+						{
+							// Let the other transaction commit in the meantime, if it can
+							otherCommitted.await(200, TimeUnit.MILLISECONDS);
+						}
+						catch (InterruptedException e)
+						{
+							Thread.currentThread().interrupt();
+						}
+						return results;
+					}
+				});
+				return null;
+			});
+			
+			committing.await();
+			
+			other.end(new Success(this.db1, this.db3)
+			{
+				@Override
+				public <Z, D extends Database<Z>, T, R, E extends Exception> SortedMap<D, R> invoke(ProxyFactory<Z, D, T, E> proxy, Invoker<Z, D, T, R, E> invoker) throws E
+				{
+					otherCommitted.countDown();
+					return super.invoke(proxy, invoker);
+				}
+			}, Durability.Phase.COMMIT).invoke(this.proxy, this.invoker);
+			
+			commit.get();
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+		
+		// Commits are journaled in the order in which they committed
+		assertEquals(Arrays.asList(this.entry1, this.entry2), this.journal.getEntries("2"));
+	}
+
+	@Test
+	public void journalsUnderTrackedTransactionId() throws SQLException
+	{
+		when(this.connection.getAutoCommit()).thenReturn(false);
+		final List<Object> appended = new ArrayList<Object>();
+		Journal journal = new Journal(10)
+		{
+			@Override
+			public synchronized void append(Object transactionId, List<JournalEntry> entries, Set<String> databases)
+			{
+				appended.add(transactionId);
+				super.append(transactionId, entries, databases);
+			}
+		};
+		journal.start("2");
+		when(this.cluster.getJournal()).thenReturn(journal);
+		final LocalTransactionContext<Void, MockDatabase> context = new LocalTransactionContext<Void, MockDatabase>(this.cluster);
+		final List<Object> tracked = new ArrayList<Object>();
+		InvocationStrategy strategy = new Success(this.db1, this.db3)
+		{
+			@Override
+			public <Z, D extends Database<Z>, T, R, E extends Exception> SortedMap<D, R> invoke(ProxyFactory<Z, D, T, E> proxy, Invoker<Z, D, T, R, E> invoker) throws E
+			{
+				tracked.add(context.transactionId);
+				return super.invoke(proxy, invoker);
+			}
+		};
+		
+		this.write(context, this.entry1, strategy);
+		this.write(context, this.entry2, strategy);
+		context.end(new Success(this.db1, this.db3), Durability.Phase.COMMIT).invoke(this.proxy, this.invoker);
+		
+		assertNotNull(tracked.get(0));
+		assertEquals(tracked.subList(0, 1), appended);
+		assertEquals(Arrays.asList(this.entry1, this.entry2), journal.getEntries("2"));
+	}
+
+	private void write(JournalEntry entry, InvocationStrategy strategy) throws SQLException
+	{
+		this.write(this.context, entry, strategy);
+	}
+
+	private void write(LocalTransactionContext<Void, MockDatabase> context, JournalEntry entry, InvocationStrategy strategy) throws SQLException
+	{
+		InvocationStrategy transactionStrategy = context.start(strategy, this.connection);
+		context.journal(entry);
+		transactionStrategy.invoke(this.proxy, this.invoker);
+	}
+
+	private void failedWrite(JournalEntry entry) throws SQLException
+	{
+		try
+		{
+			this.write(entry, new Failure());
+			fail();
+		}
+		catch (SQLException e)
+		{
+			// Expected
+		}
+	}
+
+	private void commit(InvocationStrategy strategy) throws SQLException
+	{
+		this.context.end(strategy, Durability.Phase.COMMIT).invoke(this.proxy, this.invoker);
+	}
+
+	static class Success implements InvocationStrategy
+	{
+		private final MockDatabase[] databases;
+		
+		Success(MockDatabase... databases)
+		{
+			this.databases = databases;
+		}
+		
+		@Override
+		public <Z, D extends Database<Z>, T, R, E extends Exception> SortedMap<D, R> invoke(ProxyFactory<Z, D, T, E> proxy, Invoker<Z, D, T, R, E> invoker) throws E
+		{
+			SortedMap<D, R> results = new TreeMap<D, R>();
+			for (MockDatabase database: this.databases)
+			{
+				@SuppressWarnings("unchecked")
+				D db = (D) database;
+				results.put(db, null);
+			}
+			return results;
+		}
+	}
+
+	static class Failure implements InvocationStrategy
+	{
+		@Override
+		public <Z, D extends Database<Z>, T, R, E extends Exception> SortedMap<D, R> invoke(ProxyFactory<Z, D, T, E> proxy, Invoker<Z, D, T, R, E> invoker) throws E
+		{
+			throw proxy.getExceptionFactory().createException(new SQLException());
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sql;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+import net.sf.hajdbc.ExecutorServiceProvider;
+
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class VirtualThreadExecutorServiceProviderTest
+{
+	private final VirtualThreadExecutorServiceProvider provider = new VirtualThreadExecutorServiceProvider();
+
+	@Test
+	public void getId()
+	{
+		assertEquals("virtual", this.provider.getId());
+		
+		// Providers without an explicit identifier are identified by their class name
+		ExecutorServiceProvider custom = new ExecutorServiceProvider()
+		{
+			@Override
+			public ExecutorService getExecutor(ThreadFactory threadFactory)
+			{
+				return null;
+			}
+
+			@Override
+			public void release(ExecutorService service)
+			{
+			}
+		};
+		assertEquals(custom.getClass().getName(), custom.getId());
+	}
+
+	/**
+	 * Without virtual threads, tasks run on platform threads created by the specified thread factory.
+	 */
+	@Test
+	public void fallback() throws Exception
+	{
+		final String name = "fallback";
+		ThreadFactory threadFactory = new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable task)
+			{
+				return new Thread(task, name);
+			}
+		};
+		
+		ExecutorService executor = this.provider.getExecutor(threadFactory, "newUnsupportedExecutor");
+		
+		try
+		{
+			assertEquals(name, executor.submit(new CurrentThreadName()).get());
+		}
+		finally
+		{
+			this.provider.release(executor);
+		}
+		
+		assertTrue(executor.isShutdown());
+	}
+
+	@Test
+	public void execute() throws Exception
+	{
+		ExecutorService executor = this.provider.getExecutor(new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable task)
+			{
+				return new Thread(task);
+			}
+		});
+		
+		try
+		{
+			assertNotNull(executor.submit(new CurrentThreadName()).get());
+		}
+		finally
+		{
+			this.provider.release(executor);
+		}
+		
+		assertTrue(executor.isShutdown());
+	}
+
+	static class CurrentThreadName implements Callable<String>
+	{
+		@Override
+		public String call()
+		{
+			return Thread.currentThread().getName();
+		}
+	}
+}
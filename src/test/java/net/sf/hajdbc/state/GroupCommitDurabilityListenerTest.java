@@ -0,0 +1,137 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class GroupCommitDurabilityListenerTest
+{
+	@Test
+	public void uncontended()
+	{
+		final List<List<SerializedDurabilityEvent>> batches = new ArrayList<List<SerializedDurabilityEvent>>();
+		GroupCommitDurabilityListener listener = new GroupCommitDurabilityListener(new GroupCommitDurabilityListener.Store()
+		{
+			@Override
+			public void store(List<SerializedDurabilityEvent> events)
+			{
+				batches.add(new ArrayList<SerializedDurabilityEvent>(events));
+			}
+		});
+		
+		byte[] txId = new byte[] { 1 };
+		listener.beforeInvocation(txId, (byte) 1, (byte) 0);
+		listener.beforeInvoker(txId, (byte) 1, "db1");
+		listener.afterInvoker(txId, (byte) 1, "db1", null);
+		listener.afterInvocation(txId, (byte) 1);
+		
+		assertEquals(4, batches.size());
+		assertSame(SerializedDurabilityEvent.Type.BEFORE_INVOCATION, batches.get(0).get(0).getType());
+		assertSame(SerializedDurabilityEvent.Type.BEFORE_INVOKER, batches.get(1).get(0).getType());
+		assertEquals("db1", batches.get(1).get(0).getDatabaseId());
+		assertSame(SerializedDurabilityEvent.Type.AFTER_INVOKER, batches.get(2).get(0).getType());
+		assertSame(SerializedDurabilityEvent.Type.AFTER_INVOCATION, batches.get(3).get(0).getType());
+	}
+
+	@Test
+	public void contended() throws Exception
+	{
+		final int threads = 8;
+		final CountDownLatch storing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<List<SerializedDurabilityEvent>> batches = Collections.synchronizedList(new ArrayList<List<SerializedDurabilityEvent>>());
+		final GroupCommitDurabilityListener listener = new GroupCommitDurabilityListener(new GroupCommitDurabilityListener.Store()
+		{
+			@Override
+			public void store(List<SerializedDurabilityEvent> events) throws InterruptedException
+			{
+				batches.add(new ArrayList<SerializedDurabilityEvent>(events));
+				storing.countDown();
+				// Hold the first batch, so that the remaining events accumulate
+				release.await();
+			}
+		});
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try
+		{
+			List<Future<?>> futures = new ArrayList<Future<?>>(threads);
+			futures.add(executor.submit(new Invoker(listener, "db0")));
+			assertTrue(storing.await(10, TimeUnit.SECONDS));
+			
+			for (int i = 1; i < threads; ++i)
+			{
+				futures.add(executor.submit(new Invoker(listener, "db" + i)));
+			}
+			
+			// Callers must not return before their batch is persisted
+			Thread.sleep(100);
+			for (Future<?> future: futures)
+			{
+				assertFalse(future.isDone());
+			}
+			
+			release.countDown();
+			
+			for (Future<?> future: futures)
+			{
+				future.get(10, TimeUnit.SECONDS);
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+		
+		assertEquals(2, batches.size());
+		assertEquals(1, batches.get(0).size());
+		assertEquals(threads - 1, batches.get(1).size());
+	}
+	
+	private static class Invoker implements Runnable
+	{
+		private final SerializedDurabilityListener listener;
+		private final String databaseId;
+		
+		Invoker(SerializedDurabilityListener listener, String databaseId)
+		{
+			this.listener = listener;
+			this.databaseId = databaseId;
+		}
+
+		@Override
+		public void run()
+		{
+			this.listener.beforeInvoker(new byte[] { 1 }, (byte) 1, this.databaseId);
+		}
+	}
+}
@@ -0,0 +1,356 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state.log;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Map;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvocationEventImpl;
+import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.durability.InvokerEventImpl;
+import net.sf.hajdbc.durability.InvokerResultImpl;
+import net.sf.hajdbc.state.DatabaseEvent;
+import net.sf.hajdbc.tx.SimpleTransactionIdentifierFactory;
+
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class LogStateManagerTest
+{
+	private final SimpleTransactionIdentifierFactory txIdFactory = new SimpleTransactionIdentifierFactory();
+
+	@Test
+	public void recover() throws Exception
+	{
+		File directory = createDirectory();
+		try
+		{
+			LogStateManager manager = this.createStateManager(directory, 4096);
+			manager.start();
+			
+			manager.activated(createEvent("db1"));
+			manager.activated(createEvent("db2"));
+			manager.deactivated(createEvent("db2"));
+			
+			Long txId = this.txIdFactory.createTransactionIdentifier();
+			manager.beforeInvocation(new InvocationEventImpl(txId, Durability.Phase.COMMIT, ExceptionType.SQL));
+			InvokerEvent invoker1 = new InvokerEventImpl(txId, Durability.Phase.COMMIT, "db1");
+			manager.beforeInvoker(invoker1);
+			manager.beforeInvoker(new InvokerEventImpl(txId, Durability.Phase.COMMIT, "db2"));
+			invoker1.setResult(new InvokerResultImpl(Integer.valueOf(1)));
+			manager.afterInvoker(invoker1);
+			
+			// Completed invocation
+			Long completedTxId = this.txIdFactory.createTransactionIdentifier();
+			InvocationEvent completed = new InvocationEventImpl(completedTxId, Durability.Phase.COMMIT, ExceptionType.SQL);
+			manager.beforeInvocation(completed);
+			manager.afterInvocation(completed);
+			
+			manager.stop();
+			
+			manager = this.createStateManager(directory, 4096);
+			manager.start();
+			try
+			{
+				assertEquals(1, manager.getActiveDatabases().size());
+				assertTrue(manager.getActiveDatabases().contains("db1"));
+				
+				Map<InvocationEvent, Map<String, InvokerEvent>> invocations = manager.recover();
+				assertEquals(1, invocations.size());
+				Map<String, InvokerEvent> invokers = invocations.get(new InvocationEventImpl(txId, Durability.Phase.COMMIT, null));
+				assertNotNull(invokers);
+				assertEquals(2, invokers.size());
+				assertEquals(Integer.valueOf(1), invokers.get("db1").getResult().getValue());
+				assertNull(invokers.get("db2").getResult());
+			}
+			finally
+			{
+				manager.stop();
+			}
+		}
+		finally
+		{
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void tornWrite() throws Exception
+	{
+		File directory = createDirectory();
+		try
+		{
+			LogStateManager manager = this.createStateManager(directory, 4096);
+			manager.start();
+			manager.activated(createEvent("db1"));
+			manager.stop();
+			
+			// Simulate a partially written record at the end of the segment
+			File[] files = directory.listFiles();
+			assertEquals(1, files.length);
+			RandomAccessFile file = new RandomAccessFile(files[0], "rw");
+			try
+			{
+				file.seek(file.length() - 16);
+				file.writeInt(8);
+				file.writeInt(0xDEADBEEF);
+			}
+			finally
+			{
+				file.close();
+			}
+			
+			manager = this.createStateManager(directory, 4096);
+			manager.start();
+			manager.activated(createEvent("db2"));
+			manager.stop();
+			
+			manager = this.createStateManager(directory, 4096);
+			manager.start();
+			try
+			{
+				assertEquals(2, manager.getActiveDatabases().size());
+			}
+			finally
+			{
+				manager.stop();
+			}
+		}
+		finally
+		{
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void compact() throws Exception
+	{
+		File directory = createDirectory();
+		try
+		{
+			// Tiny segments, so that we roll frequently
+			LogStateManager manager = this.createStateManager(directory, 256);
+			manager.start();
+			manager.activated(createEvent("db1"));
+			
+			Long txId = this.txIdFactory.createTransactionIdentifier();
+			manager.beforeInvocation(new InvocationEventImpl(txId, Durability.Phase.PREPARE, ExceptionType.XA));
+			manager.beforeInvoker(new InvokerEventImpl(txId, Durability.Phase.PREPARE, "db1"));
+			
+			for (int i = 0; i < 100; ++i)
+			{
+				InvocationEvent event = new InvocationEventImpl(this.txIdFactory.createTransactionIdentifier(), Durability.Phase.COMMIT, ExceptionType.SQL);
+				manager.beforeInvocation(event);
+				manager.afterInvocation(event);
+			}
+			
+			manager.compact();
+			
+			// Only the head segment remains, and its predecessor, if copying the live records started a new segment
+			assertTrue(directory.listFiles().length <= 2);
+			
+			manager.stop();
+			
+			manager = this.createStateManager(directory, 256);
+			manager.start();
+			try
+			{
+				assertTrue(manager.getActiveDatabases().contains("db1"));
+				
+				Map<InvocationEvent, Map<String, InvokerEvent>> invocations = manager.recover();
+				assertEquals(1, invocations.size());
+				Map<String, InvokerEvent> invokers = invocations.get(new InvocationEventImpl(txId, Durability.Phase.PREPARE, null));
+				assertNotNull(invokers);
+				assertTrue(invokers.containsKey("db1"));
+			}
+			finally
+			{
+				manager.stop();
+			}
+		}
+		finally
+		{
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void oversizedSegment() throws Exception
+	{
+		File directory = createDirectory();
+		try
+		{
+			File file = new File(directory, "segment-1.log");
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try
+			{
+				// Sparse, so this does not actually consume any disk space
+				raf.setLength(Integer.MAX_VALUE + 1L);
+			}
+			finally
+			{
+				raf.close();
+			}
+
+			try
+			{
+				Segment.open(file, 1);
+				fail();
+			}
+			catch (IOException e)
+			{
+				// Expected
+			}
+		}
+		finally
+		{
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void deleteClosedSegment() throws Exception
+	{
+		File directory = createDirectory();
+		try
+		{
+			File file = new File(directory, "segment-1.log");
+			Segment segment = Segment.create(file, 1, 256);
+			segment.close();
+			// Closing again must not release the mapping again
+			segment.close();
+
+			assertTrue(segment.delete());
+			assertFalse(file.exists());
+		}
+		finally
+		{
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void compactConcurrently() throws Exception
+	{
+		File directory = createDirectory();
+		try
+		{
+			final LogStateManager manager = this.createStateManager(directory, 256);
+			manager.start();
+			manager.activated(createEvent("db1"));
+
+			Long txId = this.txIdFactory.createTransactionIdentifier();
+			manager.beforeInvocation(new InvocationEventImpl(txId, Durability.Phase.PREPARE, ExceptionType.XA));
+			InvokerEvent invoker = new InvokerEventImpl(txId, Durability.Phase.PREPARE, "db1");
+			manager.beforeInvoker(invoker);
+
+			Thread compactor = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for (int i = 0; i < 100; ++i)
+					{
+						manager.compact();
+					}
+				}
+			};
+			compactor.start();
+			for (int i = 0; i < 100; ++i)
+			{
+				InvocationEvent event = new InvocationEventImpl(this.txIdFactory.createTransactionIdentifier(), Durability.Phase.COMMIT, ExceptionType.SQL);
+				manager.beforeInvocation(event);
+				manager.afterInvocation(event);
+			}
+			// Changes the live invocation while it may be being copied
+			invoker.setResult(new InvokerResultImpl(Integer.valueOf(1)));
+			manager.afterInvoker(invoker);
+			compactor.join();
+			manager.compact();
+			manager.stop();
+
+			LogStateManager recovered = this.createStateManager(directory, 256);
+			recovered.start();
+			try
+			{
+				assertTrue(recovered.getActiveDatabases().contains("db1"));
+
+				Map<InvocationEvent, Map<String, InvokerEvent>> invocations = recovered.recover();
+				assertEquals(1, invocations.size());
+				Map<String, InvokerEvent> invokers = invocations.get(new InvocationEventImpl(txId, Durability.Phase.PREPARE, null));
+				assertNotNull(invokers);
+				assertEquals(Integer.valueOf(1), invokers.get("db1").getResult().getValue());
+			}
+			finally
+			{
+				recovered.stop();
+			}
+		}
+		finally
+		{
+			delete(directory);
+		}
+	}
+
+	private LogStateManager createStateManager(File directory, int segmentSize)
+	{
+		DatabaseCluster<?, ?> cluster = mock(DatabaseCluster.class);
+		doReturn(this.txIdFactory).when(cluster).getTransactionIdentifierFactory();
+		return new LogStateManager(cluster, directory, segmentSize, true);
+	}
+
+	private static DatabaseEvent createEvent(String id)
+	{
+		Database<?> database = mock(Database.class);
+		when(database.getId()).thenReturn(id);
+		return new DatabaseEvent(database);
+	}
+
+	private static File createDirectory() throws IOException
+	{
+		File directory = File.createTempFile("log", null);
+		directory.delete();
+		directory.mkdirs();
+		return directory;
+	}
+
+	private static void delete(File directory)
+	{
+		File[] files = directory.listFiles();
+		if (files != null)
+		{
+			for (File file: files)
+			{
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+}
@@ -0,0 +1,54 @@
+package net.sf.hajdbc.state.sync;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class CodecCommandTest {
+
+  @After
+  public void after() {
+    System.clearProperty(BlockCodec.COMPRESSION);
+  }
+
+  @Test
+  public void configured() {
+    assertArrayEquals(new BlockCodec[0], BlockCodec.configured());
+    System.setProperty(BlockCodec.COMPRESSION, "none, deflate");
+    assertArrayEquals(new BlockCodec[] { BlockCodec.DEFLATE }, BlockCodec.configured());
+  }
+
+  /**
+   * 忽略不认识的名称
+   */
+  @Test
+  public void configuredUnknown() {
+    System.setProperty(BlockCodec.COMPRESSION, "lz4,deflate");
+    assertArrayEquals(new BlockCodec[] { BlockCodec.DEFLATE }, BlockCodec.configured());
+    System.setProperty(BlockCodec.COMPRESSION, "lz4");
+    assertArrayEquals(new BlockCodec[0], BlockCodec.configured());
+  }
+
+  @Test
+  public void negotiate() {
+    System.setProperty(BlockCodec.COMPRESSION, "deflate");
+    assertEquals(BlockCodec.DEFLATE, execute(BlockCodec.DEFLATE));
+    assertEquals(BlockCodec.NONE, execute());
+    assertEquals(BlockCodec.NONE, execute((BlockCodec[]) null));
+  }
+
+  /**
+   * 接收端未配置压缩时，不采用发送端提供的方式
+   */
+  @Test
+  public void negotiateNotConfigured() {
+    assertEquals(BlockCodec.NONE, execute(BlockCodec.DEFLATE));
+  }
+
+  private static BlockCodec execute(BlockCodec... codecs) {
+    CodecCommand cmd = new CodecCommand();
+    cmd.setCodecs(codecs);
+    return cmd.execute(null);
+  }
+}
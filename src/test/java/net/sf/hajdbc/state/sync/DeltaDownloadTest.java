@@ -0,0 +1,233 @@
+package net.sf.hajdbc.state.sync;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.distributed.Member;
+import net.sf.hajdbc.util.MD5;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DeltaDownloadTest {
+  private static final int BLOCK_SIZE = 1024;
+
+  private final byte[] basis = random(16 * BLOCK_SIZE, 3);
+  private File directory;
+
+  @Before
+  public void before() throws IOException {
+    directory = Files.createTempDirectory("delta").toFile();
+  }
+
+  @After
+  public void after() {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void identical() throws IOException {
+    Delta delta = roundTrip(basis, basis);
+    assertEquals(0, delta.getLiterals().length);
+    assertEquals(16, delta.getOps().length);
+  }
+
+  @Test
+  public void appended() throws IOException {
+    byte[] source = concat(basis, random(1500, 4));
+    Delta delta = roundTrip(basis, source);
+    assertEquals(1500, delta.getLiterals().length);
+  }
+
+  @Test
+  public void truncated() throws IOException {
+    byte[] source = Arrays.copyOf(basis, basis.length - 100);
+    Delta delta = roundTrip(basis, source);
+    // 仅末尾不足一块的部分为字面数据
+    assertEquals(BLOCK_SIZE - 100, delta.getLiterals().length);
+  }
+
+  @Test
+  public void shifted() throws IOException {
+    byte[] source = concat(random(7, 5), basis);
+    Delta delta = roundTrip(basis, source);
+    assertEquals(7, delta.getLiterals().length);
+  }
+
+  @Test
+  public void changed() throws IOException {
+    byte[] source = basis.clone();
+    source[5 * BLOCK_SIZE + 10] ^= 1;
+    Delta delta = roundTrip(basis, source);
+    assertEquals(BLOCK_SIZE, delta.getLiterals().length);
+  }
+
+  /**
+   * 本地文件在签名后发生变化时，重建结果的校验失败
+   */
+  @Test
+  public void basisChanged() throws IOException {
+    File file = write("basis", basis);
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      Delta delta = encode(Signatures.of(channel, BLOCK_SIZE), basis);
+      channel.write(ByteBuffer.wrap(new byte[] { (byte) (basis[0] + 1) }), 0);
+      assertNull(DeltaDownload.rebuild(delta, channel, BLOCK_SIZE));
+    }
+  }
+
+  /**
+   * 部分文件与发送端一致时从其末尾续传
+   */
+  @Test
+  public void resume() throws IOException {
+    byte[] source = random(DeltaDownload.RANGE_SIZE + 10000, 6);
+    File sourceFile = write("source", source);
+    File file = new File(directory, "target");
+    write("target" + DeltaDownload.PART_SUFFIX, Arrays.copyOf(source, 5000));
+
+    LocalSyncMgr syncMgr = new LocalSyncMgr();
+    assertEquals(Boolean.TRUE, new DeltaDownload(syncMgr, null, file, sourceFile.getPath()).run());
+
+    assertArrayEquals(source, Files.readAllBytes(file.toPath()));
+    assertFalse(DeltaDownload.part(file).exists());
+    DeltaCommand first = syncMgr.deltas.get(0);
+    assertEquals(5000, first.getOffset());
+    assertNotNull(first.getVerify());
+    assertEquals(5000 + DeltaDownload.RANGE_SIZE, syncMgr.deltas.get(1).getOffset());
+    assertEquals(2, syncMgr.deltas.size());
+  }
+
+  /**
+   * 部分文件与发送端不一致时从头开始
+   */
+  @Test
+  public void resumeMismatch() throws IOException {
+    byte[] source = random(20000, 7);
+    File sourceFile = write("source", source);
+    File file = write("target", basis);
+    byte[] partial = Arrays.copyOf(source, 5000);
+    partial[100] ^= 1;
+    write("target" + DeltaDownload.PART_SUFFIX, partial);
+
+    LocalSyncMgr syncMgr = new LocalSyncMgr();
+    assertEquals(Boolean.TRUE, new DeltaDownload(syncMgr, null, file, sourceFile.getPath()).run());
+
+    assertArrayEquals(source, Files.readAllBytes(file.toPath()));
+    assertFalse(DeltaDownload.part(file).exists());
+    assertEquals(2, syncMgr.deltas.size());
+    assertEquals(5000, syncMgr.deltas.get(0).getOffset());
+    assertNotNull(syncMgr.deltas.get(0).getVerify());
+    assertEquals(0, syncMgr.deltas.get(1).getOffset());
+    assertNull(syncMgr.deltas.get(1).getVerify());
+    // 传输结束后发送端移除签名
+    assertTrue(DeltaCommand.SESSIONS.isEmpty());
+  }
+
+  /**
+   * 部分文件长于发送端文件时亦从头开始
+   */
+  @Test
+  public void resumeLongerThanSource() throws IOException {
+    byte[] source = random(3000, 8);
+    File sourceFile = write("source", source);
+    File file = new File(directory, "target");
+    write("target" + DeltaDownload.PART_SUFFIX, concat(source, random(100, 9)));
+
+    LocalSyncMgr syncMgr = new LocalSyncMgr();
+    assertEquals(Boolean.TRUE, new DeltaDownload(syncMgr, null, file, sourceFile.getPath()).run());
+
+    assertArrayEquals(source, Files.readAllBytes(file.toPath()));
+  }
+
+  private Delta roundTrip(byte[] basis, byte[] source) throws IOException {
+    File file = write("basis", basis);
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      Delta delta = encode(Signatures.of(channel, BLOCK_SIZE), source);
+      assertArrayEquals(source, DeltaDownload.rebuild(delta, channel, BLOCK_SIZE));
+      return delta;
+    }
+  }
+
+  private static Delta encode(Signatures signatures, byte[] source) {
+    Delta delta = new Delta();
+    MessageDigest md = MD5.newInstance();
+    md.update(source);
+    delta.setMd5(MD5.md5DigestToString(md.digest()));
+    DeltaCommand.encode(delta, signatures, source, source.length, md);
+    return delta;
+  }
+
+  private File write(String name, byte[] data) throws IOException {
+    File file = new File(directory, name);
+    Files.write(file.toPath(), data);
+    return file;
+  }
+
+  private static byte[] random(int length, long seed) {
+    byte[] data = new byte[length];
+    new Random(seed).nextBytes(data);
+    return data;
+  }
+
+  private static byte[] concat(byte[] a, byte[] b) {
+    byte[] result = Arrays.copyOf(a, a.length + b.length);
+    System.arraycopy(b, 0, result, a.length, b.length);
+    return result;
+  }
+
+  /**
+   * 在本地执行命令，并记录差异请求
+   */
+  static class LocalSyncMgr implements SyncMgr {
+    final List<DeltaCommand> deltas = new ArrayList<>();
+
+    @Override
+    public boolean upload(Member target, File file) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean upload(Member target, File file, String path) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean download(Member target, File file) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean download(Member target, File file, String path) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Member getMember(Database db) {
+      return null;
+    }
+
+    @Override
+    public <R> R execute(Member target, SyncCommand<R> cmd) {
+      if (cmd instanceof DeltaCommand) {
+        synchronized (deltas) {
+          deltas.add((DeltaCommand) cmd);
+        }
+      }
+      return cmd.execute(null);
+    }
+  }
+}
@@ -0,0 +1,152 @@
+package net.sf.hajdbc.state.sync;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileChannelCacheTest {
+  private final byte[] data = new byte[1000];
+  private File file;
+
+  @Before
+  public void before() throws IOException {
+    new Random(1).nextBytes(data);
+    file = File.createTempFile("cache", null);
+    Files.write(file.toPath(), data);
+  }
+
+  @After
+  public void after() {
+    FileChannelCache.close(file);
+    file.delete();
+  }
+
+  /**
+   * 读取了全部内容后文件仍保持打开，以便其他读取继续进行
+   */
+  @Test
+  public void readAll() throws IOException {
+    FileChannelCache.Entry entry = FileChannelCache.open(file);
+    FileChannelCache.Entry other = FileChannelCache.open(file);
+    assertSame(entry, other);
+    assertArrayEquals(data, entry.read(0, data.length));
+    entry.release();
+    assertArrayEquals(Arrays.copyOfRange(data, 500, 600), other.read(500, 100));
+    other.release();
+    assertTrue(entry.channel.isOpen());
+  }
+
+  /**
+   * 传输结束后，仍在进行的读取完成后才关闭文件
+   */
+  @Test
+  public void closeWhileReading() throws IOException {
+    FileChannelCache.Entry entry = FileChannelCache.open(file);
+    FileChannelCache.close(file);
+    assertTrue(entry.channel.isOpen());
+    assertArrayEquals(Arrays.copyOf(data, 10), entry.read(0, 10));
+    entry.release();
+    assertFalse(entry.channel.isOpen());
+
+    // 之后的读取重新打开文件
+    FileChannelCache.Entry reopened = FileChannelCache.open(file);
+    assertNotSame(entry, reopened);
+    assertArrayEquals(Arrays.copyOf(data, 10), reopened.read(0, 10));
+    reopened.release();
+  }
+
+  /**
+   * 并发读取期间反复结束传输，读取不会因文件被关闭而失败
+   */
+  @Test
+  public void closeWhileReadsInFlight() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      List<Future<Object>> readers = new ArrayList<>();
+      for (int i = 0; i < 3; ++i) {
+        readers.add(executor.submit(() -> {
+          for (int j = 0; j < 2000; ++j) {
+            FileChannelCache.Entry entry = FileChannelCache.open(file);
+            try {
+              assertArrayEquals(data, entry.read(0, data.length));
+            } finally {
+              entry.release();
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<Object> reader : readers) {
+        while (!reader.isDone()) {
+          FileChannelCache.close(file);
+        }
+        reader.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * 空闲超时的文件由后台定期检查关闭，无需等待下一次打开
+   */
+  @Test
+  public void evictIdle() throws IOException {
+    FileChannelCache.Entry entry = FileChannelCache.open(file);
+    entry.release();
+    assertTrue(FileChannelCache.isScheduled());
+
+    FileChannelCache.expire();
+    assertTrue(entry.channel.isOpen());
+    assertTrue(FileChannelCache.isScheduled());
+
+    entry.accessed = System.nanoTime() - FileChannelCache.IDLE_NANOS - 1;
+    FileChannelCache.expire();
+    assertFalse(entry.channel.isOpen());
+  }
+
+  @Test
+  public void modified() throws IOException {
+    FileChannelCache.Entry entry = FileChannelCache.open(file);
+    entry.release();
+    Files.write(file.toPath(), Arrays.copyOf(data, 10));
+    FileChannelCache.Entry reopened = FileChannelCache.open(file);
+    assertNotSame(entry, reopened);
+    assertEquals(10, reopened.getSize());
+    assertFalse(entry.channel.isOpen());
+    reopened.release();
+  }
+
+  @Test
+  public void download() throws IOException {
+    DownloadCommand cmd = new DownloadCommand();
+    cmd.setPath(file.getPath());
+    cmd.setOffset(900);
+    Block block = cmd.execute(null);
+    assertEquals(data.length, block.getLength());
+    assertEquals(100, block.getSize());
+    assertArrayEquals(Arrays.copyOfRange(data, 900, 1000), block.getData());
+  }
+
+  /**
+   * 文件不存在时报告失败，而不是返回空块
+   */
+  @Test
+  public void downloadMissing() {
+    DownloadCommand cmd = new DownloadCommand();
+    cmd.setPath(new File(file.getPath() + ".missing").getPath());
+    assertNull(cmd.execute(null));
+  }
+}
@@ -0,0 +1,42 @@
+package net.sf.hajdbc.state.sync;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class RollingChecksumTest {
+
+  /**
+   * 每次滚动后的值与重新计算的校验和一致
+   */
+  @Test
+  public void roll() {
+    byte[] data = new byte[4096];
+    new Random(1).nextBytes(data);
+    for (int blockSize : new int[] { 1, 3, 64, 1000 }) {
+      RollingChecksum checksum = new RollingChecksum(data, 0, blockSize);
+      for (int i = 0; i + blockSize < data.length; ++i) {
+        checksum.roll(data[i], data[i + blockSize]);
+        assertEquals("offset " + (i + 1) + " block " + blockSize, RollingChecksum.of(data, i + 1, blockSize), checksum.getValue());
+      }
+    }
+  }
+
+  /**
+   * 高位字节及累加溢出时仍一致
+   */
+  @Test
+  public void rollOverflow() {
+    byte[] data = new byte[70000];
+    Arrays.fill(data, (byte) 0xFF);
+    data[0] = 0;
+    int blockSize = 65536;
+    RollingChecksum checksum = new RollingChecksum(data, 0, blockSize);
+    for (int i = 0; i + blockSize < data.length; ++i) {
+      checksum.roll(data[i], data[i + blockSize]);
+      assertEquals(RollingChecksum.of(data, i + 1, blockSize), checksum.getValue());
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package net.sf.hajdbc.state.sync;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Random;
+import net.sf.hajdbc.util.MD5;
+import org.junit.Test;
+
+public class SignaturesTest {
+
+  @Test
+  public void find() throws IOException {
+    byte[] data = new byte[64 * 1024];
+    new Random(2).nextBytes(data);
+    int blockSize = 1024;
+    Signatures signatures = signatures(data, blockSize);
+    assertEquals(64, signatures.getCount());
+    MessageDigest md = MD5.newInstance();
+    for (int i = 0; i < signatures.getCount(); ++i) {
+      assertEquals(i, signatures.find(RollingChecksum.of(data, i * blockSize, blockSize), md, data, i * blockSize));
+    }
+    // 未对齐的位置不匹配
+    assertEquals(-1, signatures.find(RollingChecksum.of(data, 1, blockSize), md, data, 1));
+  }
+
+  /**
+   * 弱校验和相同但内容不同的块由MD5排除
+   */
+  @Test
+  public void weakCollision() throws IOException {
+    // 长度为3时 a=x+y+z, b=3x+2y+z，两者均为 a=2, b=4
+    byte[] basis = { 1, 0, 1 };
+    byte[] other = { 0, 2, 0 };
+    assertEquals(RollingChecksum.of(basis, 0, 3), RollingChecksum.of(other, 0, 3));
+
+    Signatures signatures = signatures(basis, 3);
+    MessageDigest md = MD5.newInstance();
+    assertEquals(0, signatures.find(RollingChecksum.of(basis, 0, 3), md, basis, 0));
+    assertEquals(-1, signatures.find(RollingChecksum.of(other, 0, 3), md, other, 0));
+  }
+
+  /**
+   * 弱校验和相同的多个块按MD5选出匹配的块
+   */
+  @Test
+  public void weakCollisionChain() throws IOException {
+    byte[] basis = { 1, 0, 1, 0, 2, 0, 1, 0, 1 };
+    Signatures signatures = signatures(basis, 3);
+    MessageDigest md = MD5.newInstance();
+    byte[] other = { 0, 2, 0 };
+    assertEquals(1, signatures.find(RollingChecksum.of(other, 0, 3), md, other, 0));
+    // 内容相同的块返回序号最小者
+    assertEquals(0, signatures.find(RollingChecksum.of(basis, 6, 3), md, basis, 6));
+  }
+
+  @Test
+  public void empty() {
+    Signatures signatures = new Signatures(1024, new int[0], new long[0]);
+    byte[] data = new byte[1024];
+    assertEquals(-1, signatures.find(RollingChecksum.of(data, 0, 1024), MD5.newInstance(), data, 0));
+  }
+
+  private static Signatures signatures(byte[] data, int blockSize) throws IOException {
+    File file = File.createTempFile("signatures", null);
+    try {
+      Files.write(file.toPath(), data);
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+        return Signatures.of(channel, blockSize);
+      }
+    } finally {
+      file.delete();
+    }
+  }
+}
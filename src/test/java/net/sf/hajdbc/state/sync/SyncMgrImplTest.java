@@ -0,0 +1,333 @@
+package net.sf.hajdbc.state.sync;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sf.hajdbc.distributed.Member;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SyncMgrImplTest {
+  private final Member target = mock(Member.class);
+  private File directory;
+
+  @Before
+  public void before() throws IOException {
+    directory = Files.createTempDirectory("sync").toFile();
+  }
+
+  @After
+  public void after() {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  /**
+   * 后发的块先完成时，上传结果仍与源文件一致
+   */
+  @Test
+  public void uploadOutOfOrder() throws IOException {
+    byte[] source = random(SyncMgrImpl.BLOCK_SIZE * 10 + 123, 1);
+    File file = write("source", source);
+    File uploaded = new File(directory, "uploaded");
+    LocalSyncMgr syncMgr = new LocalSyncMgr();
+
+    assertTrue(syncMgr.upload(target, file, uploaded.getPath()));
+
+    assertArrayEquals(source, Files.readAllBytes(uploaded.toPath()));
+    assertFalse(new File(uploaded.getPath() + UploadedCommand.TMP_FILE_SUFFIX).exists());
+    assertOutOfOrder(syncMgr.completed);
+  }
+
+  /**
+   * 临时文件的MD5与源文件不一致时上传失败，并删除临时文件
+   */
+  @Test
+  public void uploadDigestMismatch() throws IOException {
+    File file = write("source", random(SyncMgrImpl.BLOCK_SIZE * 3, 2));
+    File uploaded = new File(directory, "uploaded");
+    LocalSyncMgr syncMgr = new LocalSyncMgr() {
+      @Override
+      <R> R local(SyncCommand<R> cmd) {
+        if (cmd instanceof UploadedCommand && ((UploadedCommand) cmd).getSize() >= 0) {
+          corrupt(new File(((UploadedCommand) cmd).getPath() + UploadedCommand.TMP_FILE_SUFFIX));
+        }
+        return super.local(cmd);
+      }
+    };
+
+    assertFalse(syncMgr.upload(target, file, uploaded.getPath()));
+
+    assertFalse(uploaded.exists());
+    assertFalse(new File(uploaded.getPath() + UploadedCommand.TMP_FILE_SUFFIX).exists());
+  }
+
+  /**
+   * 块上传失败时中止上传，并删除对方的临时文件
+   */
+  @Test
+  public void uploadBlockFailure() throws IOException {
+    File file = write("source", random(SyncMgrImpl.BLOCK_SIZE * 3, 3));
+    File uploaded = new File(directory, "uploaded");
+    LocalSyncMgr syncMgr = new LocalSyncMgr() {
+      @Override
+      <R> R local(SyncCommand<R> cmd) {
+        if (cmd instanceof UploadCommand && ((UploadCommand) cmd).getOffset() > 0) {
+          return null;
+        }
+        return super.local(cmd);
+      }
+    };
+
+    assertFalse(syncMgr.upload(target, file, uploaded.getPath()));
+
+    assertFalse(uploaded.exists());
+    assertFalse(new File(uploaded.getPath() + UploadedCommand.TMP_FILE_SUFFIX).exists());
+  }
+
+  /**
+   * 后发的块先完成时，下载结果仍与源文件一致
+   */
+  @Test
+  public void downloadOutOfOrder() throws IOException {
+    byte[] source = random(SyncMgrImpl.BLOCK_SIZE * 10 + 123, 4);
+    File file = write("source", source);
+    File downloaded = new File(directory, "downloaded");
+    LocalSyncMgr syncMgr = new LocalSyncMgr();
+
+    assertTrue(syncMgr.download(target, downloaded, file.getPath()));
+
+    assertArrayEquals(source, Files.readAllBytes(downloaded.toPath()));
+    assertOutOfOrder(syncMgr.completed);
+  }
+
+  /**
+   * 本地已有的文件长于源文件时，下载后截断为源文件的长度
+   */
+  @Test
+  public void downloadTruncates() throws IOException {
+    byte[] source = random(SyncMgrImpl.BLOCK_SIZE + 10, 5);
+    File file = write("source", source);
+    File downloaded = write("downloaded", random(SyncMgrImpl.BLOCK_SIZE * 3, 6));
+    LocalSyncMgr syncMgr = new LocalSyncMgr();
+
+    assertTrue(syncMgr.download(target, downloaded, file.getPath()));
+
+    assertArrayEquals(source, Files.readAllBytes(downloaded.toPath()));
+  }
+
+  /**
+   * 下载结果的MD5与对方不一致时下载失败
+   */
+  @Test
+  public void downloadDigestMismatch() throws IOException {
+    File file = write("source", random(SyncMgrImpl.BLOCK_SIZE * 2, 7));
+    File downloaded = new File(directory, "downloaded");
+    LocalSyncMgr syncMgr = new LocalSyncMgr() {
+      @SuppressWarnings("unchecked")
+      @Override
+      <R> R local(SyncCommand<R> cmd) {
+        if (cmd instanceof DigestCommand) {
+          return (R) "00000000000000000000000000000000";
+        }
+        return super.local(cmd);
+      }
+    };
+
+    assertFalse(syncMgr.download(target, downloaded, file.getPath()));
+  }
+
+  /**
+   * 旧版本节点不认识压缩协商和整个文件的校验，其块只有MD5
+   */
+  @Test
+  public void downloadFromLegacyNode() throws IOException {
+    byte[] source = random(SyncMgrImpl.BLOCK_SIZE * 3 + 45, 8);
+    File file = write("source", source);
+    File downloaded = new File(directory, "downloaded");
+    LocalSyncMgr syncMgr = new LocalSyncMgr() {
+      @SuppressWarnings("unchecked")
+      @Override
+      <R> R local(SyncCommand<R> cmd) {
+        if (cmd instanceof CodecCommand || cmd instanceof DigestCommand) {
+          return null;
+        }
+        if (cmd instanceof DownloadCommand) {
+          // 旧版本节点的请求不含压缩方式
+          DownloadCommand legacy = copy((DownloadCommand) cmd);
+          legacy.setCodec(null);
+          Block block = copy(legacy).execute(null);
+          assertNotNull(block.getMd5());
+          block.setChecksum(0);
+          block.setCodec(null);
+          return (R) copy(block);
+        }
+        return super.local(cmd);
+      }
+    };
+
+    assertTrue(syncMgr.download(target, downloaded, file.getPath()));
+
+    assertArrayEquals(source, Files.readAllBytes(downloaded.toPath()));
+  }
+
+  /**
+   * 旧版本节点上传的数据不含压缩方式和长度
+   */
+  @Test
+  public void uploadFromLegacyNode() {
+    UploadCommand cmd = new UploadCommand();
+    cmd.setData(random(100, 9));
+    cmd.setCodec(null);
+
+    UploadCommand legacy = copy(cmd);
+
+    assertSame(BlockCodec.NONE, legacy.getCodec());
+    assertEquals(100, legacy.getSize());
+  }
+
+  /**
+   * 块往返时间快于目标的一半时块大小加倍，慢于目标的两倍时减半
+   */
+  @Test
+  public void blockSizer() {
+    SyncMgrImpl syncMgr = new SyncMgrImpl(null);
+    SyncMgrImpl.BlockSizer sizer = new SyncMgrImpl.BlockSizer();
+    long target = SyncMgrImpl.TARGET_BLOCK_NANOS;
+
+    assertEquals(SyncMgrImpl.BLOCK_SIZE, sizer.getSize());
+
+    sizer.measured(transfer(syncMgr, sizer.getSize(), target / 4));
+    assertEquals(SyncMgrImpl.BLOCK_SIZE * 2, sizer.getSize());
+
+    sizer.measured(transfer(syncMgr, sizer.getSize(), target));
+    assertEquals(SyncMgrImpl.BLOCK_SIZE * 2, sizer.getSize());
+
+    sizer.measured(transfer(syncMgr, sizer.getSize(), target * 4));
+    assertEquals(SyncMgrImpl.BLOCK_SIZE, sizer.getSize());
+
+    // 末尾的短块不参与调整
+    sizer.measured(transfer(syncMgr, sizer.getSize() - 1, target / 4));
+    assertEquals(SyncMgrImpl.BLOCK_SIZE, sizer.getSize());
+
+    for (int i = 0; i < 10; ++i) {
+      sizer.measured(transfer(syncMgr, sizer.getSize(), 0));
+    }
+    assertEquals(SyncMgrImpl.MAX_BLOCK_SIZE, sizer.getSize());
+
+    for (int i = 0; i < 10; ++i) {
+      sizer.measured(transfer(syncMgr, sizer.getSize(), TimeUnit.SECONDS.toNanos(1)));
+    }
+    assertEquals(SyncMgrImpl.MIN_BLOCK_SIZE, sizer.getSize());
+  }
+
+  private static SyncMgrImpl.Transfer transfer(SyncMgrImpl syncMgr, int size, long nanos) {
+    SyncMgrImpl.Transfer transfer = syncMgr.new Transfer(null, 0, size);
+    transfer.nanos = nanos;
+    return transfer;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T extends Serializable> T copy(T object) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+        output.writeObject(object);
+      }
+      try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+        return (T) input.readObject();
+      }
+    } catch (IOException | ClassNotFoundException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void assertOutOfOrder(List<Long> offsets) {
+    List<Long> sorted = new ArrayList<>(offsets);
+    Collections.sort(sorted);
+    assertFalse(offsets.toString(), offsets.equals(sorted));
+  }
+
+  private static void corrupt(File file) {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      int b = raf.read();
+      raf.seek(0);
+      raf.write(b ^ 1);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private File write(String name, byte[] data) throws IOException {
+    File file = new File(directory, name);
+    Files.write(file.toPath(), data);
+    return file;
+  }
+
+  private static byte[] random(int length, long seed) {
+    byte[] data = new byte[length];
+    new Random(seed).nextBytes(data);
+    return data;
+  }
+
+  /**
+   * 在本地执行命令，模拟不支持差异传输的对方。
+   * 每个窗口中首个非首块的块延迟完成，使其后发的块先完成，并记录块完成的顺序。
+   */
+  static class LocalSyncMgr extends SyncMgrImpl {
+    final List<Long> completed = Collections.synchronizedList(new ArrayList<Long>());
+    private final AtomicInteger blocks = new AtomicInteger();
+
+    LocalSyncMgr() {
+      super(null);
+    }
+
+    @Override
+    public <R> R execute(Member target, SyncCommand<R> cmd) {
+      return local(cmd);
+    }
+
+    <R> R local(SyncCommand<R> cmd) {
+      if (cmd instanceof SignatureCommand || cmd instanceof DeltaCommand) {
+        return null;
+      }
+      long offset = -1;
+      if (cmd instanceof UploadCommand) {
+        offset = ((UploadCommand) cmd).getOffset();
+      } else if (cmd instanceof DownloadCommand) {
+        offset = ((DownloadCommand) cmd).getOffset();
+      }
+      if (offset > 0 && blocks.incrementAndGet() % SyncMgrImpl.WINDOW == 1) {
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      R r = cmd.execute(null);
+      if (offset >= 0) {
+        completed.add(offset);
+      }
+      return r;
+    }
+  }
+}
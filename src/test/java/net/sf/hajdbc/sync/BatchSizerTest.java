@@ -0,0 +1,314 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class BatchSizerTest
+{
+	private final PreparedStatement statement = mock(PreparedStatement.class);
+
+	@Test
+	public void defaults()
+	{
+		BatchSizer sizer = new BatchSizer();
+		
+		assertEquals(10, sizer.getMinBatchSize());
+		assertEquals(100, sizer.getMaxBatchSize());
+		assertEquals(16 * 1024 * 1024, sizer.getMaxBatchBytes());
+		assertEquals(100, sizer.createBatch(this.statement).getSize());
+	}
+
+	@Test
+	public void grow()
+	{
+		BatchSizer.Batch batch = this.createSizer(10, 1000, 0).createBatch(this.statement);
+		
+		assertEquals(100, batch.getSize());
+		
+		// Constant time per batch, i.e. improving throughput
+		batch.adapt(100, 1000);
+		assertEquals(200, batch.getSize());
+		
+		batch.adapt(200, 1000);
+		assertEquals(400, batch.getSize());
+		
+		batch.adapt(400, 1000);
+		assertEquals(800, batch.getSize());
+		
+		// Clamped to the maximum
+		batch.adapt(800, 1000);
+		assertEquals(1000, batch.getSize());
+		
+		batch.adapt(1000, 1000);
+		assertEquals(1000, batch.getSize());
+	}
+
+	@Test
+	public void reverse()
+	{
+		BatchSizer.Batch batch = this.createSizer(10, 1000, 0).createBatch(this.statement);
+		
+		batch.adapt(100, 1000);
+		assertEquals(200, batch.getSize());
+		
+		// Throughput halves, so shrink by a narrower factor
+		batch.adapt(200, 4000);
+		assertEquals(133, batch.getSize());
+		
+		// Throughput improves, so keep shrinking
+		batch.adapt(133, 1000);
+		assertEquals(88, batch.getSize());
+		
+		// Throughput degrades, so grow again by an even narrower factor
+		batch.adapt(88, 2000);
+		assertEquals(110, batch.getSize());
+	}
+
+	@Test
+	public void shrinkToMinimum()
+	{
+		BatchSizer.Batch batch = this.createSizer(10, 1000, 0).createBatch(this.statement);
+		
+		batch.adapt(100, 1000);
+		batch.adapt(200, 4000);
+		
+		// Keep improving throughput while shrinking
+		long nanos = 1000;
+		for (int i = 0; i < 100; ++i)
+		{
+			batch.adapt(batch.getSize(), nanos);
+			nanos = Math.max(nanos / 2, 1);
+		}
+		
+		assertEquals(10, batch.getSize());
+	}
+
+	@Test
+	public void initialSizeWithinBounds()
+	{
+		assertEquals(20, this.createSizer(5, 20, 0).createBatch(this.statement).getSize());
+		assertEquals(500, this.createSizer(500, 1000, 0).createBatch(this.statement).getSize());
+		// Maximum never below minimum
+		assertEquals(50, this.createSizer(50, 10, 0).createBatch(this.statement).getSize());
+	}
+
+	@Test
+	public void fixedSize() throws SQLException
+	{
+		BatchSizer.Batch batch = this.createSizer(3, 3, 0).createBatch(this.statement);
+		
+		batch.add(1);
+		batch.add(1);
+		
+		verify(this.statement, never()).executeBatch();
+		
+		batch.add(1);
+		
+		verify(this.statement).executeBatch();
+		assertEquals(3, batch.getSize());
+		
+		batch.add(1);
+		batch.flush();
+		
+		verify(this.statement, times(2)).executeBatch();
+		verify(this.statement, times(4)).addBatch();
+		assertEquals(3, batch.getSize());
+	}
+
+	@Test
+	public void maxBatchBytes() throws SQLException
+	{
+		BatchSizer.Batch batch = this.createSizer(1, 1000, 100).createBatch(this.statement);
+		
+		batch.add(60);
+		
+		verify(this.statement, never()).executeBatch();
+		
+		batch.add(60);
+		
+		// Executed before the batch is full, and no longer grows beyond the rows that fit
+		verify(this.statement).executeBatch();
+		assertEquals(2, batch.getSize());
+		
+		batch.add(10);
+		batch.add(10);
+		
+		verify(this.statement, times(2)).executeBatch();
+		
+		// Flushing an empty batch executes nothing
+		batch.flush();
+		
+		verify(this.statement, times(2)).executeBatch();
+	}
+
+	@Test
+	public void sizeOf() throws SQLException
+	{
+		assertEquals(3, BatchSizer.sizeOf(new byte[3]));
+		assertEquals(6, BatchSizer.sizeOf("abc"));
+		assertEquals(16, BatchSizer.sizeOf(null));
+		assertEquals(16, BatchSizer.sizeOf(Integer.valueOf(1)));
+	}
+
+	@Test
+	public void pipelinedOrder() throws SQLException
+	{
+		List<String> executions = Collections.synchronizedList(new ArrayList<String>());
+		ExecutorService writer = Executors.newSingleThreadExecutor();
+		
+		try
+		{
+			BatchSizer.Batch deleteBatch = new BatchSizer.Batch(new PreparedStatement[] { createStatement("delete", executions, false), createStatement("delete", executions, false) }, writer, 1, 1, 0);
+			BatchSizer.Batch insertBatch = new BatchSizer.Batch(new PreparedStatement[] { createStatement("insert", executions, false), createStatement("insert", executions, false) }, writer, 1, 1, 0);
+			
+			// Parameters alternate between the statements of each batch
+			PreparedStatement statement = deleteBatch.getStatement();
+			deleteBatch.add(1);
+			assertNotSame(statement, deleteBatch.getStatement());
+			
+			insertBatch.add(1);
+			deleteBatch.add(1);
+			insertBatch.add(1);
+			deleteBatch.add(1);
+			
+			deleteBatch.flush();
+			insertBatch.flush();
+			
+			// Batches are executed in the order in which they were added
+			assertEquals(Arrays.asList("delete", "insert", "delete", "insert", "delete"), executions);
+		}
+		finally
+		{
+			writer.shutdown();
+		}
+	}
+
+	@Test
+	public void pipelinedFailureReportedByAdd() throws SQLException
+	{
+		List<String> executions = Collections.synchronizedList(new ArrayList<String>());
+		ExecutorService writer = Executors.newSingleThreadExecutor();
+		
+		try
+		{
+			BatchSizer.Batch batch = new BatchSizer.Batch(new PreparedStatement[] { createStatement("insert", executions, true), createStatement("insert", executions, false) }, writer, 1, 1, 0);
+			
+			batch.add(1);
+			
+			try
+			{
+				// Waits for the failed execution of the first statement before reusing it
+				batch.add(1);
+				fail();
+			}
+			catch (SQLException e)
+			{
+				assertEquals("insert", e.getMessage());
+			}
+			
+			batch.close();
+		}
+		finally
+		{
+			writer.shutdown();
+		}
+	}
+
+	@Test
+	public void pipelinedFailureReportedByFlush() throws SQLException
+	{
+		List<String> executions = Collections.synchronizedList(new ArrayList<String>());
+		ExecutorService writer = Executors.newSingleThreadExecutor();
+		
+		try
+		{
+			BatchSizer.Batch batch = new BatchSizer.Batch(new PreparedStatement[] { createStatement("insert", executions, true), createStatement("insert", executions, false) }, writer, 1, 1, 0);
+			
+			batch.add(1);
+			
+			try
+			{
+				batch.flush();
+				fail();
+			}
+			catch (SQLException e)
+			{
+				assertEquals("insert", e.getMessage());
+			}
+			
+			batch.close();
+		}
+		finally
+		{
+			writer.shutdown();
+		}
+	}
+
+	/**
+	 * Creates a statement that records each execution of its batch, or fails its execution.
+	 */
+	private static PreparedStatement createStatement(final String name, final List<String> executions, final boolean fail)
+	{
+		InvocationHandler handler = new InvocationHandler()
+		{
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws SQLException
+			{
+				if (method.getName().equals("executeBatch"))
+				{
+					if (fail)
+					{
+						throw new SQLException(name);
+					}
+					executions.add(name);
+					return new int[0];
+				}
+				return null;
+			}
+		};
+		return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, handler);
+	}
+
+	private BatchSizer createSizer(int min, int max, long maxBytes)
+	{
+		BatchSizer sizer = new BatchSizer();
+		sizer.setMinBatchSize(min);
+		sizer.setMaxBatchSize(max);
+		sizer.setMaxBatchBytes(maxBytes);
+		return sizer;
+	}
+}
@@ -0,0 +1,250 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.StreamingDumpRestoreSupport;
+import net.sf.hajdbc.codec.Decoder;
+import net.sf.hajdbc.dialect.Dialect;
+import net.sf.hajdbc.util.Processes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class DumpRestoreSynchronizationStrategyTest
+{
+	private final DumpRestoreSynchronizationStrategy strategy = new DumpRestoreSynchronizationStrategy();
+	private SynchronizationContext<Void, MockDatabase> context;
+	private File target;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void init() throws IOException
+	{
+		this.context = mock(SynchronizationContext.class);
+		this.target = File.createTempFile("restore", ".out");
+		
+		when(this.context.getSourceDatabase()).thenReturn(new MockDatabase("source"));
+		when(this.context.getTargetDatabase()).thenReturn(new MockDatabase("target"));
+	}
+
+	@After
+	public void destroy()
+	{
+		this.target.delete();
+	}
+
+	@Test
+	public void pipe() throws Exception
+	{
+		StubSupport support = this.support("printf dump", "cat > " + this.target.getPath());
+		
+		this.strategy.synchronize(this.context);
+		
+		assertEquals("dump", read(this.target));
+		assertTrue(support.closed);
+	}
+
+	@Test
+	public void pipeDumpFailure() throws Exception
+	{
+		// The restore consumes the truncated dump successfully
+		StubSupport support = this.support("printf partial; exit 3", "cat > " + this.target.getPath());
+		
+		try
+		{
+			this.strategy.synchronize(this.context);
+			fail();
+		}
+		catch (SQLException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().contains("returned 3"));
+		}
+		
+		assertEquals("partial", read(this.target));
+		assertTrue(support.closed);
+	}
+
+	@Test
+	public void pipeRestoreFailure() throws Exception
+	{
+		// The restore exits without reading, while the dump is still writing
+		StubSupport support = this.support("yes dump | head -c 1000000", "exit 4");
+		
+		try
+		{
+			this.strategy.synchronize(this.context);
+			fail();
+		}
+		catch (SQLException e)
+		{
+			// The failure of the restore is reported, rather than that of the dump it caused
+			assertTrue(e.getMessage(), e.getMessage().contains("returned 4"));
+		}
+		
+		assertTrue(support.closed);
+		// The dump completed before the synchronization returned
+		assertTrue(support.dumped);
+	}
+
+	@Test
+	public void transfer() throws Exception
+	{
+		StubSupport support = this.support("printf dump", "cat > " + this.target.getPath());
+		this.strategy.setStreaming(false);
+		
+		this.strategy.synchronize(this.context);
+		
+		assertEquals("dump", read(this.target));
+		assertFalse(support.file.exists());
+	}
+
+	@Test
+	public void transferRestoreFailure() throws Exception
+	{
+		StubSupport support = this.support("printf dump", "exit 4");
+		this.strategy.setStreaming(false);
+		
+		try
+		{
+			this.strategy.synchronize(this.context);
+			fail();
+		}
+		catch (SQLException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().contains("returned 4"));
+		}
+		
+		assertFalse(support.file.exists());
+	}
+
+	@Test
+	public void transferDumpFailure() throws Exception
+	{
+		StubSupport support = this.support("exit 3", "cat > " + this.target.getPath());
+		this.strategy.setStreaming(false);
+		
+		try
+		{
+			this.strategy.synchronize(this.context);
+			fail();
+		}
+		catch (SQLException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().contains("returned 3"));
+		}
+		
+		assertFalse(support.file.exists());
+		assertEquals("", read(this.target));
+	}
+
+	private StubSupport support(String dump, String restore)
+	{
+		Dialect dialect = mock(Dialect.class);
+		StubSupport support = new StubSupport(dump, restore);
+		
+		when(this.context.getDialect()).thenReturn(dialect);
+		when(dialect.getDumpRestoreSupport()).thenReturn(support);
+		
+		return support;
+	}
+
+	private static String read(File file) throws IOException
+	{
+		return new String(java.nio.file.Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Dump/restore support that runs trivial shell commands.
+	 */
+	static class StubSupport implements StreamingDumpRestoreSupport
+	{
+		private final String dump;
+		private final String restore;
+		volatile File file;
+		volatile boolean closed = false;
+		volatile boolean dumped = false;
+		
+		StubSupport(String dump, String restore)
+		{
+			this.dump = dump;
+			this.restore = restore;
+		}
+		
+		@Override
+		public <Z, D extends Database<Z>> void dump(SynchronizationContext<Z, D> context, D database, Decoder decoder, File file, boolean dataOnly) throws Exception
+		{
+			this.file = file;
+			Processes.run(new ProcessBuilder("sh", "-c", "(" + this.dump + ") > " + file.getPath()));
+		}
+
+		@Override
+		public <Z, D extends Database<Z>> void restore(SynchronizationContext<Z, D> context, D database, Decoder decoder, File file, boolean dataOnly) throws Exception
+		{
+			Processes.run(new ProcessBuilder("sh", "-c", "(" + this.restore + ") < " + file.getPath()));
+		}
+
+		@Override
+		public <Z, D extends Database<Z>> void dump(SynchronizationContext<Z, D> context, D database, Decoder decoder, OutputStream output, boolean dataOnly) throws Exception
+		{
+			try
+			{
+				Processes.run(new ProcessBuilder("sh", "-c", this.dump), output);
+			}
+			finally
+			{
+				this.dumped = true;
+			}
+		}
+
+		@Override
+		public <Z, D extends Database<Z>> OutputStream restore(SynchronizationContext<Z, D> context, D database, Decoder decoder, boolean dataOnly) throws Exception
+		{
+			return new FilterOutputStream(Processes.pipe(new ProcessBuilder("sh", "-c", this.restore)))
+			{
+				@Override
+				public void write(byte[] buffer, int offset, int length) throws IOException
+				{
+					this.out.write(buffer, offset, length);
+				}
+
+				@Override
+				public void close() throws IOException
+				{
+					StubSupport.this.closed = true;
+					this.out.close();
+				}
+			};
+		}
+	}
+}
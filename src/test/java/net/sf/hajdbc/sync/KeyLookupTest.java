@@ -0,0 +1,143 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class KeyLookupTest
+{
+	private final Connection connection = mock(Connection.class);
+	private final ResultSet keys = mock(ResultSet.class);
+
+	@Test
+	public void singleColumnKey() throws SQLException
+	{
+		PreparedStatement full = mock(PreparedStatement.class);
+		PreparedStatement partial = mock(PreparedStatement.class);
+		
+		when(this.connection.prepareStatement("SELECT id, name FROM test WHERE id IN (?, ?)")).thenReturn(full);
+		when(this.connection.prepareStatement("SELECT id, name FROM test WHERE id IN (?)")).thenReturn(partial);
+		when(this.keys.getObject(1)).thenReturn(1).thenReturn(2).thenReturn(3).thenReturn(4).thenReturn(5);
+		
+		KeyLookup lookup = new KeyLookup(this.connection, "test", Collections.singletonList("id"), new int[] { Types.INTEGER }, Collections.singletonList("name"), 2);
+		
+		assertTrue(lookup.isEmpty());
+		assertFalse(lookup.add(this.keys));
+		assertTrue(lookup.add(this.keys));
+		
+		this.fetch(lookup, full);
+		
+		verify(full).setObject(1, 1, Types.INTEGER);
+		verify(full).setObject(2, 2, Types.INTEGER);
+		
+		assertFalse(lookup.add(this.keys));
+		assertTrue(lookup.add(this.keys));
+		
+		this.fetch(lookup, full);
+		
+		verify(full).setObject(1, 3, Types.INTEGER);
+		verify(full).setObject(2, 4, Types.INTEGER);
+		// The statement of a full batch is prepared once
+		verify(this.connection).prepareStatement("SELECT id, name FROM test WHERE id IN (?, ?)");
+		verify(full, never()).close();
+		
+		// Partial last batch
+		assertFalse(lookup.add(this.keys));
+		
+		this.fetch(lookup, partial);
+		
+		verify(partial).setObject(1, 5, Types.INTEGER);
+		verify(partial).close();
+		
+		lookup.close();
+		
+		verify(full).close();
+	}
+
+	@Test
+	public void compositeKey() throws SQLException
+	{
+		PreparedStatement full = mock(PreparedStatement.class);
+		PreparedStatement partial = mock(PreparedStatement.class);
+		
+		when(this.connection.prepareStatement("SELECT a, b, c FROM test WHERE (a = ? AND b = ?) OR (a = ? AND b = ?) OR (a = ? AND b = ?)")).thenReturn(full);
+		when(this.connection.prepareStatement("SELECT a, b, c FROM test WHERE (a = ? AND b = ?) OR (a = ? AND b = ?)")).thenReturn(partial);
+		when(this.keys.getObject(1)).thenReturn(1).thenReturn(1).thenReturn(2).thenReturn(3).thenReturn(3);
+		when(this.keys.getObject(2)).thenReturn("x").thenReturn("y").thenReturn("x").thenReturn("x").thenReturn("y");
+		
+		KeyLookup lookup = new KeyLookup(this.connection, "test", Arrays.asList("a", "b"), new int[] { Types.INTEGER, Types.VARCHAR }, Collections.singletonList("c"), 3);
+		
+		assertFalse(lookup.add(this.keys));
+		assertFalse(lookup.add(this.keys));
+		assertTrue(lookup.add(this.keys));
+		
+		this.fetch(lookup, full);
+		
+		verify(full).setObject(1, 1, Types.INTEGER);
+		verify(full).setObject(2, "x", Types.VARCHAR);
+		verify(full).setObject(3, 1, Types.INTEGER);
+		verify(full).setObject(4, "y", Types.VARCHAR);
+		verify(full).setObject(5, 2, Types.INTEGER);
+		verify(full).setObject(6, "x", Types.VARCHAR);
+		
+		// Partial last batch
+		assertFalse(lookup.add(this.keys));
+		assertFalse(lookup.add(this.keys));
+		
+		this.fetch(lookup, partial);
+		
+		verify(partial).setObject(1, 3, Types.INTEGER);
+		verify(partial).setObject(2, "x", Types.VARCHAR);
+		verify(partial).setObject(3, 3, Types.INTEGER);
+		verify(partial).setObject(4, "y", Types.VARCHAR);
+		verify(partial).close();
+		
+		lookup.close();
+		
+		verify(full).close();
+	}
+
+	private void fetch(KeyLookup lookup, PreparedStatement statement) throws SQLException
+	{
+		ResultSet resultSet = mock(ResultSet.class);
+		
+		when(statement.executeQuery()).thenReturn(resultSet);
+		when(resultSet.getStatement()).thenReturn(statement);
+		
+		assertSame(resultSet, lookup.fetch());
+		assertTrue(lookup.isEmpty());
+		
+		lookup.close(resultSet);
+		
+		verify(resultSet).close();
+	}
+}
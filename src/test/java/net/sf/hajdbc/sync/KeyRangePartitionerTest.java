@@ -0,0 +1,481 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.hajdbc.ColumnProperties;
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.QualifiedName;
+import net.sf.hajdbc.TableProperties;
+import net.sf.hajdbc.UniqueConstraint;
+import net.sf.hajdbc.dialect.Dialect;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.stubbing.OngoingStubbing;
+
+/**
+ * @author Paul Ferraro
+ */
+public class KeyRangePartitionerTest
+{
+	private static final String BOUNDS_SQL = "SELECT MIN(id), MAX(id) FROM t";
+	
+	private final MockDatabase source = new MockDatabase("source");
+	private final MockDatabase target = new MockDatabase("target");
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final KeyRangePartitioner partitioner = new KeyRangePartitioner();
+	private SynchronizationContext<Void, MockDatabase> context;
+	private TableProperties table;
+	private UniqueConstraint primaryKey;
+	private Dialect dialect;
+	private Connection connection;
+	private PreparedStatement statement;
+	private ResultSet resultSet;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void init() throws SQLException
+	{
+		this.context = mock(SynchronizationContext.class);
+		this.table = mock(TableProperties.class);
+		this.primaryKey = mock(UniqueConstraint.class);
+		this.dialect = mock(Dialect.class);
+		this.connection = mock(Connection.class);
+		this.statement = mock(PreparedStatement.class);
+		this.resultSet = mock(ResultSet.class);
+		DatabaseCluster<Void, MockDatabase> cluster = mock(DatabaseCluster.class);
+		QualifiedName name = mock(QualifiedName.class);
+		ColumnProperties column = mock(ColumnProperties.class);
+		
+		when(this.context.getDatabaseCluster()).thenReturn(cluster);
+		when(cluster.getExecutor()).thenReturn(this.executor);
+		when(this.context.getDialect()).thenReturn(this.dialect);
+		when(this.context.getSourceDatabase()).thenReturn(this.source);
+		when(this.context.getTargetDatabase()).thenReturn(this.target);
+		when(this.context.getConnection(this.source)).thenReturn(this.connection);
+		when(this.table.getName()).thenReturn(name);
+		when(name.getDMLName()).thenReturn("t");
+		when(this.table.getPrimaryKey()).thenReturn(this.primaryKey);
+		when(this.primaryKey.getColumnList()).thenReturn(Arrays.asList("id"));
+		when(this.table.getColumnProperties("id")).thenReturn(column);
+		when(this.dialect.getColumnType(column)).thenReturn(Types.INTEGER);
+		when(this.connection.prepareStatement(BOUNDS_SQL)).thenReturn(this.statement);
+		when(this.statement.executeQuery()).thenReturn(this.resultSet);
+		when(this.resultSet.next()).thenReturn(true);
+		
+		this.partitioner.setPartitions(4);
+	}
+	
+	@After
+	public void destroy()
+	{
+		this.executor.shutdownNow();
+	}
+	
+	private void bounds(long min, long max) throws SQLException
+	{
+		when(this.resultSet.getBigDecimal(1)).thenReturn(BigDecimal.valueOf(min));
+		when(this.resultSet.getBigDecimal(2)).thenReturn(BigDecimal.valueOf(max));
+	}
+	
+	private static void assertRanges(List<KeyRange> ranges, Object... boundaries)
+	{
+		assertEquals(boundaries.length + 1, ranges.size());
+		assertNull(ranges.get(0).getLower());
+		for (int i = 0; i < boundaries.length; ++i)
+		{
+			assertEquals(boundaries[i], ranges.get(i).getUpper());
+			assertEquals(boundaries[i], ranges.get(i + 1).getLower());
+		}
+		assertNull(ranges.get(boundaries.length).getUpper());
+	}
+	
+	@Test
+	public void integral() throws SQLException
+	{
+		this.bounds(0, 100);
+		
+		List<KeyRange> ranges = this.partitioner.partition(this.context, this.table);
+		
+		assertRanges(ranges, 25L, 50L, 75L);
+	}
+	
+	@Test
+	public void emptyTable() throws SQLException
+	{
+		// MIN and MAX of an empty table are NULL
+		List<KeyRange> ranges = this.partitioner.partition(this.context, this.table);
+		
+		assertEquals(1, ranges.size());
+		assertTrue(ranges.get(0).isUnbounded());
+	}
+	
+	@Test
+	public void duplicateKeys() throws SQLException
+	{
+		// e.g. a composite key whose leading column has a single distinct value
+		this.bounds(7, 7);
+		
+		List<KeyRange> ranges = this.partitioner.partition(this.context, this.table);
+		
+		assertEquals(1, ranges.size());
+		assertTrue(ranges.get(0).isUnbounded());
+	}
+	
+	@Test
+	public void narrowSpan() throws SQLException
+	{
+		// Fewer distinct keys than partitions must not yield empty ranges
+		this.bounds(0, 2);
+		
+		List<KeyRange> ranges = this.partitioner.partition(this.context, this.table);
+		
+		assertRanges(ranges, 1L);
+	}
+	
+	@Test
+	public void skewedKeys() throws SQLException
+	{
+		// Boundaries are interpolated from the bounds, regardless of the distribution of keys in between
+		this.bounds(-1000, Long.MAX_VALUE);
+		
+		List<KeyRange> ranges = this.partitioner.partition(this.context, this.table);
+		
+		assertEquals(4, ranges.size());
+		long previous = -1000;
+		for (KeyRange range: ranges.subList(1, 4))
+		{
+			long lower = (Long) range.getLower();
+			assertTrue(lower > previous);
+			previous = lower;
+		}
+	}
+	
+	@Test
+	public void compositeKey() throws SQLException
+	{
+		when(this.primaryKey.getColumnList()).thenReturn(Arrays.asList("id", "seq"));
+		this.bounds(0, 100);
+		
+		List<KeyRange> ranges = this.partitioner.partition(this.context, this.table);
+		
+		// Only the leading column is partitioned
+		assertRanges(ranges, 25L, 50L, 75L);
+		assertEquals("SELECT * FROM t WHERE id >= ? AND id < ?", ranges.get(1).where("SELECT * FROM t"));
+	}
+	
+	@Test
+	public void boundedRange() throws SQLException
+	{
+		when(this.connection.prepareStatement(BOUNDS_SQL + " WHERE id >= ? AND id < ?")).thenReturn(this.statement);
+		this.bounds(10, 29);
+		KeyRange range = new KeyRange("id", Types.INTEGER, 10L, 30L);
+		
+		List<KeyRange> ranges = this.partitioner.partition(this.context, this.table, range, 2);
+		
+		assertEquals(2, ranges.size());
+		assertEquals(10L, ranges.get(0).getLower());
+		assertEquals(19L, ranges.get(0).getUpper());
+		assertEquals(19L, ranges.get(1).getLower());
+		assertEquals(30L, ranges.get(1).getUpper());
+		verify(this.statement).setObject(1, 10L, Types.INTEGER);
+		verify(this.statement).setObject(2, 30L, Types.INTEGER);
+	}
+	
+	@Test
+	public void decimal() throws SQLException
+	{
+		when(this.dialect.getColumnType(any(ColumnProperties.class))).thenReturn(Types.DECIMAL);
+		when(this.resultSet.getBigDecimal(1)).thenReturn(new BigDecimal("0.00"));
+		when(this.resultSet.getBigDecimal(2)).thenReturn(new BigDecimal("1.00"));
+		
+		List<KeyRange> ranges = this.partitioner.partition(this.context, this.table);
+		
+		assertEquals(4, ranges.size());
+		assertEquals(0, new BigDecimal("0.25").compareTo((BigDecimal) ranges.get(0).getUpper()));
+		assertEquals(0, new BigDecimal("0.75").compareTo((BigDecimal) ranges.get(3).getLower()));
+	}
+	
+	@Test
+	public void character() throws SQLException
+	{
+		when(this.dialect.getColumnType(any(ColumnProperties.class))).thenReturn(Types.VARCHAR);
+		when(this.resultSet.getString(1)).thenReturn("apple");
+		when(this.resultSet.getString(2)).thenReturn("apricot");
+		
+		PreparedStatement seekStatement = mock(PreparedStatement.class);
+		PreparedStatement nextStatement = mock(PreparedStatement.class);
+		ResultSet seekResultSet = mock(ResultSet.class);
+		when(this.connection.prepareStatement("SELECT MIN(id) FROM t WHERE id >= ?")).thenReturn(seekStatement);
+		when(this.connection.prepareStatement("SELECT MIN(id) FROM t WHERE id >= ? AND id > ?")).thenReturn(nextStatement);
+		when(seekStatement.executeQuery()).thenReturn(seekResultSet);
+		when(nextStatement.executeQuery()).thenReturn(seekResultSet);
+		when(seekResultSet.next()).thenReturn(true);
+		// Each approximate boundary is replaced by the next existing key, until no keys remain
+		when(seekResultSet.getObject(1)).thenReturn("apples").thenReturn("apricot").thenReturn(null);
+		
+		List<KeyRange> ranges = this.partitioner.partition(this.context, this.table);
+		
+		assertRanges(ranges, "apples", "apricot");
+		verify(nextStatement).setObject(2, "apples", Types.VARCHAR);
+	}
+	
+	@Test
+	public void characterInterpolation()
+	{
+		List<Object> boundaries = new ArrayList<Object>();
+		
+		KeyRangePartitioner.interpolate("user-0001", "user-9999", 4, boundaries);
+		
+		assertEquals(3, boundaries.size());
+		String previous = "user-0001";
+		for (Object boundary: boundaries)
+		{
+			String value = (String) boundary;
+			// Boundaries retain the common prefix
+			assertTrue(value, value.startsWith("user-"));
+			assertTrue(value, value.compareTo(previous) > 0);
+			assertTrue(value, value.compareTo("user-9999") < 0);
+			previous = value;
+		}
+	}
+	
+	@Test
+	public void numericInterpolation()
+	{
+		assertEquals(Arrays.<Object>asList(new BigDecimal(3), new BigDecimal(6)), KeyRangePartitioner.interpolate(BigDecimal.ZERO, BigDecimal.TEN, 3));
+		assertEquals(Collections.emptyList(), KeyRangePartitioner.interpolate(BigDecimal.ONE, BigDecimal.ONE, 3));
+	}
+	
+	@Test
+	public void unsupportedType() throws SQLException
+	{
+		when(this.dialect.getColumnType(any(ColumnProperties.class))).thenReturn(Types.VARBINARY);
+		
+		List<KeyRange> ranges = this.partitioner.partition(this.context, this.table);
+		
+		assertEquals(1, ranges.size());
+		assertTrue(ranges.get(0).isUnbounded());
+		verify(this.connection, never()).prepareStatement(BOUNDS_SQL);
+	}
+	
+	@Test
+	public void noPrimaryKey() throws SQLException
+	{
+		when(this.table.getPrimaryKey()).thenReturn(null);
+		
+		List<KeyRange> ranges = this.partitioner.partition(this.context, this.table);
+		
+		assertEquals(1, ranges.size());
+	}
+	
+	@Test
+	public void boundedWorkers() throws Exception
+	{
+		this.partitioner.setPartitions(3);
+		// At most 3 contexts for each of 4 tables
+		List<SynchronizationContext<Void, MockDatabase>> rangeContexts = new ArrayList<SynchronizationContext<Void, MockDatabase>>(12);
+		for (int i = 0; i < 12; ++i)
+		{
+			rangeContexts.add(this.createRangeContext());
+		}
+		OngoingStubbing<SynchronizationContext<Void, MockDatabase>> stubbing = when(this.context.createConcurrentContext()).thenReturn(rangeContexts.get(0));
+		for (int i = 1; i < 12; ++i)
+		{
+			stubbing = stubbing.thenReturn(rangeContexts.get(i));
+		}
+		final ConcurrentRecorder strategy = new ConcurrentRecorder();
+		final List<KeyRange> ranges = new ArrayList<KeyRange>();
+		for (long i = 0; i < 8; ++i)
+		{
+			ranges.add(new KeyRange("id", Types.INTEGER, i, i + 1));
+		}
+		
+		// Synchronize several tables at once
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (int i = 0; i < 4; ++i)
+		{
+			futures.add(this.executor.submit(new Callable<Void>()
+			{
+				@Override
+				public Void call() throws SQLException
+				{
+					KeyRangePartitionerTest.this.partitioner.synchronize(KeyRangePartitionerTest.this.context, KeyRangePartitionerTest.this.table, ranges, strategy);
+					return null;
+				}
+			}));
+		}
+		for (Future<Void> future: futures)
+		{
+			future.get();
+		}
+		
+		assertEquals(32, strategy.count.get());
+		assertTrue(String.valueOf(strategy.max.get()), strategy.max.get() <= 3);
+	}
+	
+	@Test
+	public void workerFailure() throws SQLException
+	{
+		@SuppressWarnings("unchecked")
+		SynchronizationContext<Void, MockDatabase> rangeContext = mock(SynchronizationContext.class);
+		SynchronizationSupport support = mock(SynchronizationSupport.class);
+		Connection targetConnection = mock(Connection.class);
+		when(rangeContext.getSourceDatabase()).thenReturn(this.source);
+		when(rangeContext.getTargetDatabase()).thenReturn(this.target);
+		when(rangeContext.getConnection(this.source)).thenReturn(mock(Connection.class));
+		when(rangeContext.getConnection(this.target)).thenReturn(targetConnection);
+		when(rangeContext.getSynchronizationSupport()).thenReturn(support);
+		when(this.context.createConcurrentContext()).thenReturn(rangeContext);
+		this.partitioner.setPartitions(1);
+		
+		final SQLException failure = new SQLException();
+		final KeyRange failed = new KeyRange("id", Types.INTEGER, 1L, 2L);
+		final List<KeyRange> synchronizedRanges = new ArrayList<KeyRange>();
+		KeyRangeSynchronizationStrategy strategy = new ConcurrentRecorder()
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table, KeyRange range) throws SQLException
+			{
+				synchronizedRanges.add(range);
+				if (range == failed)
+				{
+					throw failure;
+				}
+			}
+		};
+		List<KeyRange> ranges = Arrays.asList(new KeyRange("id", Types.INTEGER, null, 1L), failed, new KeyRange("id", Types.INTEGER, 2L, null));
+		
+		try
+		{
+			this.partitioner.synchronize(this.context, this.table, ranges, strategy);
+			fail();
+		}
+		catch (SQLException e)
+		{
+			assertSame(failure, e);
+		}
+		
+		// Remaining ranges are abandoned
+		assertEquals(ranges.subList(0, 2), synchronizedRanges);
+		verify(targetConnection).setAutoCommit(false);
+		verify(targetConnection).commit();
+		verify(support).rollback(targetConnection);
+		verify(rangeContext).close();
+	}
+	
+	@Test
+	public void concurrencyUnsupported() throws SQLException
+	{
+		final List<Object> contexts = new ArrayList<Object>();
+		KeyRangeSynchronizationStrategy strategy = new ConcurrentRecorder()
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table, KeyRange range)
+			{
+				contexts.add(context);
+			}
+		};
+		List<KeyRange> ranges = Arrays.asList(new KeyRange("id", Types.INTEGER, null, 1L), new KeyRange("id", Types.INTEGER, 1L, null));
+		
+		this.partitioner.synchronize(this.context, this.table, ranges, strategy);
+		
+		assertEquals(Arrays.<Object>asList(this.context, this.context), contexts);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private SynchronizationContext<Void, MockDatabase> createRangeContext() throws SQLException
+	{
+		SynchronizationContext<Void, MockDatabase> rangeContext = mock(SynchronizationContext.class);
+		when(rangeContext.getSourceDatabase()).thenReturn(this.source);
+		when(rangeContext.getTargetDatabase()).thenReturn(this.target);
+		when(rangeContext.getConnection(this.source)).thenReturn(mock(Connection.class));
+		when(rangeContext.getConnection(this.target)).thenReturn(mock(Connection.class));
+		return rangeContext;
+	}
+	
+	/**
+	 * Records the number of synchronized ranges, and the maximum number of ranges synchronized at once.
+	 */
+	static class ConcurrentRecorder implements KeyRangeSynchronizationStrategy
+	{
+		private static final long serialVersionUID = 1L;
+		
+		final AtomicInteger count = new AtomicInteger();
+		final AtomicInteger active = new AtomicInteger();
+		final AtomicInteger max = new AtomicInteger();
+		
+		@Override
+		public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table, KeyRange range) throws SQLException
+		{
+			int active = this.active.incrementAndGet();
+			this.max.accumulateAndGet(active, Math::max);
+			try
+			{
+				Thread.sleep(5);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			this.count.incrementAndGet();
+			this.active.decrementAndGet();
+		}
+		
+		@Override
+		public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table)
+		{
+		}
+		
+		@Override
+		public <Z, D extends Database<Z>> void dropConstraints(SynchronizationContext<Z, D> context)
+		{
+		}
+		
+		@Override
+		public <Z, D extends Database<Z>> void restoreConstraints(SynchronizationContext<Z, D> context)
+		{
+		}
+	}
+}
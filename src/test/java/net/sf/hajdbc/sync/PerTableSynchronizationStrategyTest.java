@@ -0,0 +1,260 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.DatabaseProperties;
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.QualifiedName;
+import net.sf.hajdbc.TableProperties;
+import net.sf.hajdbc.state.DatabaseEvent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class PerTableSynchronizationStrategyTest
+{
+	private final MockDatabase source = new MockDatabase("source");
+	private final MockDatabase target = new MockDatabase("target");
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final RecordingStrategy strategy = new RecordingStrategy();
+	private final List<TableProperties> tables = new ArrayList<TableProperties>();
+	private final List<SynchronizationContext<Void, MockDatabase>> workerContexts = new ArrayList<SynchronizationContext<Void, MockDatabase>>();
+	private final List<Connection> workerConnections = new ArrayList<Connection>();
+	private final List<SynchronizationSupport> workerSupports = new ArrayList<SynchronizationSupport>();
+	private SynchronizationContext<Void, MockDatabase> context;
+	private SynchronizationSupport support;
+	private Connection sourceConnection;
+	private Connection targetConnection;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void init() throws SQLException
+	{
+		this.context = mock(SynchronizationContext.class);
+		this.support = mock(SynchronizationSupport.class);
+		this.sourceConnection = mock(Connection.class);
+		this.targetConnection = mock(Connection.class);
+		DatabaseCluster<Void, MockDatabase> cluster = mock(DatabaseCluster.class);
+		DatabaseProperties properties = mock(DatabaseProperties.class);
+
+		for (String name: Arrays.asList("a", "b", "c", "d"))
+		{
+			TableProperties table = mock(TableProperties.class);
+			QualifiedName qualifiedName = mock(QualifiedName.class);
+			when(table.getName()).thenReturn(qualifiedName);
+			when(qualifiedName.getDMLName()).thenReturn(name);
+			this.tables.add(table);
+		}
+
+		when(cluster.getExecutor()).thenReturn(this.executor);
+		when(properties.getTables()).thenReturn(this.tables);
+		this.mockContext(this.context, this.support, this.sourceConnection, this.targetConnection);
+		when(this.context.getDatabaseCluster()).thenReturn(cluster);
+		when(this.context.getSourceDatabaseProperties()).thenReturn(properties);
+		SynchronizationMonitor monitor = new SynchronizationMonitor(new DatabaseEvent(this.target));
+		when(this.context.getMonitor()).thenReturn(monitor);
+
+		for (int i = 0; i < 2; ++i)
+		{
+			SynchronizationContext<Void, MockDatabase> workerContext = mock(SynchronizationContext.class);
+			SynchronizationSupport workerSupport = mock(SynchronizationSupport.class);
+			Connection workerConnection = mock(Connection.class);
+			this.mockContext(workerContext, workerSupport, mock(Connection.class), workerConnection);
+			when(workerContext.getMonitor()).thenReturn(monitor);
+			this.workerContexts.add(workerContext);
+			this.workerSupports.add(workerSupport);
+			this.workerConnections.add(workerConnection);
+		}
+	}
+
+	private void mockContext(SynchronizationContext<Void, MockDatabase> context, SynchronizationSupport support, Connection sourceConnection, Connection targetConnection) throws SQLException
+	{
+		when(context.getSourceDatabase()).thenReturn(this.source);
+		when(context.getTargetDatabase()).thenReturn(this.target);
+		when(context.getConnection(this.source)).thenReturn(sourceConnection);
+		when(context.getConnection(this.target)).thenReturn(targetConnection);
+		when(context.getSynchronizationSupport()).thenReturn(support);
+	}
+
+	@After
+	public void destroy()
+	{
+		this.executor.shutdownNow();
+	}
+
+	@Test
+	public void sequential() throws SQLException
+	{
+		PerTableSynchronizationStrategy strategy = new PerTableSynchronizationStrategy(this.strategy);
+
+		strategy.synchronize(this.context);
+
+		assertEquals(this.tables.size(), this.strategy.contexts.size());
+		for (TableProperties table: this.tables)
+		{
+			assertSame(this.context, this.strategy.contexts.get(table));
+		}
+		verify(this.targetConnection).setAutoCommit(false);
+		verify(this.targetConnection, times(this.tables.size())).commit();
+		verify(this.context, never()).createConcurrentContext();
+		verify(this.support).synchronizeIdentityColumns();
+		verify(this.support).synchronizeSequences();
+		assertEquals(1, this.strategy.restored.size());
+	}
+
+	@Test
+	public void concurrent() throws SQLException
+	{
+		when(this.context.createConcurrentContext()).thenReturn(this.workerContexts.get(0)).thenReturn(this.workerContexts.get(1));
+
+		PerTableSynchronizationStrategy strategy = new PerTableSynchronizationStrategy(this.strategy);
+		strategy.setConcurrency(2);
+		strategy.synchronize(this.context);
+
+		assertEquals(this.tables.size(), this.strategy.contexts.size());
+		int commits = 0;
+		for (int i = 0; i < this.workerContexts.size(); ++i)
+		{
+			SynchronizationContext<Void, MockDatabase> workerContext = this.workerContexts.get(i);
+			Connection workerConnection = this.workerConnections.get(i);
+			int tables = 0;
+			for (Object tableContext: this.strategy.contexts.values())
+			{
+				if (tableContext == workerContext)
+				{
+					tables += 1;
+				}
+			}
+			verify(workerConnection).setAutoCommit(false);
+			verify(workerConnection, times(tables)).commit();
+			verify(workerContext).close();
+			commits += tables;
+		}
+		assertEquals(this.tables.size(), commits);
+
+		// The main context prepares as in sequential mode, and restores constraints, identity columns and sequences
+		verify(this.targetConnection).setAutoCommit(false);
+		verify(this.targetConnection, never()).commit();
+		verify(this.support).synchronizeIdentityColumns();
+		verify(this.support).synchronizeSequences();
+		assertEquals(Arrays.asList(this.context), this.strategy.restored);
+	}
+
+	@Test
+	public void concurrentFailure() throws SQLException
+	{
+		when(this.context.createConcurrentContext()).thenReturn(this.workerContexts.get(0)).thenReturn(this.workerContexts.get(1));
+		TableProperties failedTable = this.tables.get(1);
+		SQLException failure = new SQLException();
+		this.strategy.failures.put(failedTable, failure);
+
+		PerTableSynchronizationStrategy strategy = new PerTableSynchronizationStrategy(this.strategy);
+		strategy.setConcurrency(2);
+		try
+		{
+			strategy.synchronize(this.context);
+			fail();
+		}
+		catch (SQLException e)
+		{
+			assertSame(failure, e);
+		}
+
+		// The failed table was rolled back via the context of its worker
+		Object failedContext = this.strategy.contexts.get(failedTable);
+		int index = this.workerContexts.indexOf(failedContext);
+		assertTrue(index >= 0);
+		verify(this.workerSupports.get(index)).rollback(this.workerConnections.get(index));
+
+		for (SynchronizationContext<Void, MockDatabase> workerContext: this.workerContexts)
+		{
+			verify(workerContext).close();
+		}
+		assertTrue(this.strategy.restored.isEmpty());
+		verify(this.support, never()).synchronizeIdentityColumns();
+	}
+
+	@Test
+	public void concurrencyUnsupported() throws SQLException
+	{
+		// By default, a context does not support concurrent use
+		PerTableSynchronizationStrategy strategy = new PerTableSynchronizationStrategy(this.strategy);
+		strategy.setConcurrency(2);
+		strategy.synchronize(this.context);
+
+		assertEquals(this.tables.size(), this.strategy.contexts.size());
+		for (TableProperties table: this.tables)
+		{
+			assertSame(this.context, this.strategy.contexts.get(table));
+		}
+		verify(this.targetConnection, times(this.tables.size())).commit();
+	}
+
+	/**
+	 * Records the context via which each table was synchronized, and fails the synchronization of the configured tables.
+	 */
+	static class RecordingStrategy implements TableSynchronizationStrategy
+	{
+		private static final long serialVersionUID = 1L;
+
+		final Map<TableProperties, Object> contexts = new ConcurrentHashMap<TableProperties, Object>();
+		final Map<TableProperties, SQLException> failures = new ConcurrentHashMap<TableProperties, SQLException>();
+		final List<Object> restored = new ArrayList<Object>();
+
+		@Override
+		public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table) throws SQLException
+		{
+			this.contexts.put(table, context);
+			SQLException failure = this.failures.get(table);
+			if (failure != null)
+			{
+				throw failure;
+			}
+		}
+
+		@Override
+		public <Z, D extends Database<Z>> void dropConstraints(SynchronizationContext<Z, D> context)
+		{
+		}
+
+		@Override
+		public <Z, D extends Database<Z>> void restoreConstraints(SynchronizationContext<Z, D> context)
+		{
+			this.restored.add(context);
+		}
+	}
+}
@@ -0,0 +1,260 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.sql.Blob;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import net.sf.hajdbc.sync.RowComparator.ColumnComparator;
+
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class RowComparatorTest
+{
+	private final ResultSet resultSet1 = mock(ResultSet.class);
+	private final ResultSet resultSet2 = mock(ResultSet.class);
+
+	@Test
+	public void forType()
+	{
+		for (int type: new int[] { Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT })
+		{
+			assertSame(ColumnComparator.LONG, ColumnComparator.forType(type, 0));
+		}
+		for (int type: new int[] { Types.REAL, Types.FLOAT, Types.DOUBLE })
+		{
+			assertSame(ColumnComparator.DOUBLE, ColumnComparator.forType(type, 0));
+		}
+		for (int type: new int[] { Types.DECIMAL, Types.NUMERIC })
+		{
+			assertSame(ColumnComparator.DECIMAL, ColumnComparator.forType(type, 0));
+		}
+		for (int type: new int[] { Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.NCHAR, Types.NVARCHAR, Types.LONGNVARCHAR })
+		{
+			assertSame(ColumnComparator.STRING, ColumnComparator.forType(type, 0));
+		}
+		for (int type: new int[] { Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY })
+		{
+			assertSame(ColumnComparator.BYTES, ColumnComparator.forType(type, 0));
+		}
+		for (int type: new int[] { Types.BLOB, Types.CLOB, Types.NCLOB })
+		{
+			assertSame(ColumnComparator.LOB, ColumnComparator.forType(type, 0));
+		}
+		for (int type: new int[] { Types.DATE, Types.TIME, Types.TIMESTAMP, Types.OTHER, Types.ARRAY })
+		{
+			assertSame(ColumnComparator.OBJECT, ColumnComparator.forType(type, 0));
+		}
+		assertSame(ColumnComparator.BOOLEAN, ColumnComparator.forType(Types.BOOLEAN, 0));
+	}
+
+	@Test
+	public void forBitType()
+	{
+		assertSame(ColumnComparator.BOOLEAN, ColumnComparator.forType(Types.BIT, 1));
+		// e.g. bit(n) of PostgreSQL or BIT(n) of MySQL
+		assertSame(ColumnComparator.BYTES, ColumnComparator.forType(Types.BIT, 8));
+		assertSame(ColumnComparator.BYTES, ColumnComparator.forType(Types.BIT, 0));
+	}
+
+	@Test
+	public void resolvesBitSize() throws SQLException
+	{
+		ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+		
+		when(metaData.getPrecision(1)).thenReturn(1);
+		when(metaData.getPrecision(2)).thenReturn(4);
+		when(this.resultSet1.getBoolean(1)).thenReturn(true);
+		when(this.resultSet2.getBoolean(1)).thenReturn(true);
+		when(this.resultSet1.getBytes(2)).thenReturn(new byte[] { 0x05 });
+		when(this.resultSet2.getBytes(2)).thenReturn(new byte[] { 0x06 });
+		
+		RowComparator comparator = new RowComparator(new int[] { Types.BIT, Types.BIT }, 1, metaData);
+		
+		assertEquals(0, comparator.compareKeys(this.resultSet1, this.resultSet2));
+		assertFalse(comparator.equals(this.resultSet1, this.resultSet2));
+		
+		verify(this.resultSet1, never()).getBoolean(2);
+		verify(metaData, never()).getPrecision(3);
+	}
+
+	@Test
+	public void compareKeys() throws SQLException
+	{
+		when(this.resultSet1.getLong(1)).thenReturn(1L);
+		when(this.resultSet2.getLong(1)).thenReturn(1L);
+		when(this.resultSet1.getString(2)).thenReturn("a");
+		when(this.resultSet2.getString(2)).thenReturn("b");
+		
+		RowComparator comparator = new RowComparator(new int[] { Types.INTEGER, Types.VARCHAR, Types.BLOB }, 2, mock(ResultSetMetaData.class));
+		
+		assertTrue(comparator.compareKeys(this.resultSet1, this.resultSet2) < 0);
+		assertTrue(comparator.compareKeys(this.resultSet2, this.resultSet1) > 0);
+		
+		when(this.resultSet2.getString(2)).thenReturn("a");
+		
+		assertEquals(0, comparator.compareKeys(this.resultSet1, this.resultSet2));
+	}
+
+	@Test
+	public void compareLong() throws SQLException
+	{
+		when(this.resultSet1.getLong(1)).thenReturn(1L);
+		when(this.resultSet2.getLong(1)).thenReturn(2L);
+		
+		assertTrue(ColumnComparator.LONG.compare(this.resultSet1, this.resultSet2, 1) < 0);
+		assertTrue(ColumnComparator.LONG.compare(this.resultSet2, this.resultSet1, 1) > 0);
+		assertFalse(ColumnComparator.LONG.equals(this.resultSet1, this.resultSet2, 1));
+		assertTrue(ColumnComparator.LONG.equals(this.resultSet1, this.resultSet1, 1));
+	}
+
+	@Test
+	public void compareDouble() throws SQLException
+	{
+		when(this.resultSet1.getDouble(1)).thenReturn(1.5);
+		when(this.resultSet2.getDouble(1)).thenReturn(2.5);
+		
+		assertTrue(ColumnComparator.DOUBLE.compare(this.resultSet1, this.resultSet2, 1) < 0);
+		assertTrue(ColumnComparator.DOUBLE.equals(this.resultSet1, this.resultSet1, 1));
+	}
+
+	@Test
+	public void compareBoolean() throws SQLException
+	{
+		when(this.resultSet1.getBoolean(1)).thenReturn(false);
+		when(this.resultSet2.getBoolean(1)).thenReturn(true);
+		
+		assertTrue(ColumnComparator.BOOLEAN.compare(this.resultSet1, this.resultSet2, 1) < 0);
+		assertTrue(ColumnComparator.BOOLEAN.equals(this.resultSet2, this.resultSet2, 1));
+	}
+
+	@Test
+	public void compareDecimal() throws SQLException
+	{
+		when(this.resultSet1.getBigDecimal(1)).thenReturn(new BigDecimal("1.0"));
+		when(this.resultSet2.getBigDecimal(1)).thenReturn(new BigDecimal("1.00"));
+		
+		// Scale is irrelevant
+		assertEquals(0, ColumnComparator.DECIMAL.compare(this.resultSet1, this.resultSet2, 1));
+		assertTrue(ColumnComparator.DECIMAL.equals(this.resultSet1, this.resultSet2, 1));
+		
+		when(this.resultSet2.getBigDecimal(1)).thenReturn(new BigDecimal("1.01"));
+		
+		assertTrue(ColumnComparator.DECIMAL.compare(this.resultSet1, this.resultSet2, 1) < 0);
+	}
+
+	@Test
+	public void compareString() throws SQLException
+	{
+		when(this.resultSet1.getString(1)).thenReturn("a");
+		when(this.resultSet2.getString(1)).thenReturn("b");
+		
+		assertTrue(ColumnComparator.STRING.compare(this.resultSet1, this.resultSet2, 1) < 0);
+		assertFalse(ColumnComparator.STRING.equals(this.resultSet1, this.resultSet2, 1));
+	}
+
+	@Test
+	public void compareBytes() throws SQLException
+	{
+		// Bytes compare unsigned, i.e. 0x80 > 0x7F
+		when(this.resultSet1.getBytes(1)).thenReturn(new byte[] { 0x01, (byte) 0x80 });
+		when(this.resultSet2.getBytes(1)).thenReturn(new byte[] { 0x01, 0x7F });
+		
+		assertTrue(ColumnComparator.BYTES.compare(this.resultSet1, this.resultSet2, 1) > 0);
+		assertTrue(ColumnComparator.BYTES.compare(this.resultSet2, this.resultSet1, 1) < 0);
+		assertFalse(ColumnComparator.BYTES.equals(this.resultSet1, this.resultSet2, 1));
+		
+		// A prefix is less than the longer value
+		when(this.resultSet2.getBytes(1)).thenReturn(new byte[] { 0x01 });
+		
+		assertTrue(ColumnComparator.BYTES.compare(this.resultSet1, this.resultSet2, 1) > 0);
+		
+		when(this.resultSet2.getBytes(1)).thenReturn(new byte[] { 0x01, (byte) 0x80 });
+		
+		assertEquals(0, ColumnComparator.BYTES.compare(this.resultSet1, this.resultSet2, 1));
+		assertTrue(ColumnComparator.BYTES.equals(this.resultSet1, this.resultSet2, 1));
+	}
+
+	@Test
+	public void compareLob() throws SQLException
+	{
+		when(this.resultSet1.getObject(1)).thenReturn(mock(Blob.class));
+		when(this.resultSet2.getObject(1)).thenReturn(null);
+		when(this.resultSet2.wasNull()).thenReturn(true);
+		
+		try
+		{
+			ColumnComparator.LOB.compare(this.resultSet1, this.resultSet2, 1);
+			fail();
+		}
+		catch (SQLException e)
+		{
+			// Expected
+		}
+		
+		// Only null LOBs are equal
+		assertFalse(ColumnComparator.LOB.equals(this.resultSet1, this.resultSet1, 1));
+		assertFalse(ColumnComparator.LOB.equals(this.resultSet1, this.resultSet2, 1));
+		assertTrue(ColumnComparator.LOB.equals(this.resultSet2, this.resultSet2, 1));
+	}
+
+	@Test
+	public void compareObject() throws SQLException
+	{
+		when(this.resultSet1.getObject(1)).thenReturn(java.sql.Date.valueOf("2012-01-01"));
+		when(this.resultSet2.getObject(1)).thenReturn(java.sql.Date.valueOf("2012-01-02"));
+		
+		assertTrue(ColumnComparator.OBJECT.compare(this.resultSet1, this.resultSet2, 1) < 0);
+		assertFalse(ColumnComparator.OBJECT.equals(this.resultSet1, this.resultSet2, 1));
+		assertTrue(ColumnComparator.OBJECT.equals(this.resultSet1, this.resultSet1, 1));
+	}
+
+	@Test
+	public void nullsFirst() throws SQLException
+	{
+		// Primitive accessors indicate null via wasNull()
+		when(this.resultSet1.wasNull()).thenReturn(true);
+		when(this.resultSet2.wasNull()).thenReturn(false);
+		when(this.resultSet2.getLong(1)).thenReturn(Long.MIN_VALUE);
+		when(this.resultSet2.getDouble(1)).thenReturn(-Double.MAX_VALUE);
+		when(this.resultSet2.getBoolean(1)).thenReturn(false);
+		when(this.resultSet2.getBigDecimal(1)).thenReturn(BigDecimal.ZERO);
+		when(this.resultSet2.getString(1)).thenReturn("");
+		when(this.resultSet2.getBytes(1)).thenReturn(new byte[0]);
+		when(this.resultSet2.getObject(1)).thenReturn(Integer.valueOf(0));
+		
+		for (ColumnComparator comparator: new ColumnComparator[] { ColumnComparator.LONG, ColumnComparator.DOUBLE, ColumnComparator.BOOLEAN, ColumnComparator.DECIMAL, ColumnComparator.STRING, ColumnComparator.BYTES, ColumnComparator.OBJECT })
+		{
+			assertTrue(comparator.name(), comparator.compare(this.resultSet1, this.resultSet2, 1) < 0);
+			assertTrue(comparator.name(), comparator.compare(this.resultSet2, this.resultSet1, 1) > 0);
+			assertEquals(comparator.name(), 0, comparator.compare(this.resultSet1, this.resultSet1, 1));
+			assertTrue(comparator.name(), comparator.equals(this.resultSet1, this.resultSet1, 1));
+			assertFalse(comparator.name(), comparator.equals(this.resultSet1, this.resultSet2, 1));
+		}
+	}
+}
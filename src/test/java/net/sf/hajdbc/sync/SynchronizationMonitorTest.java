@@ -0,0 +1,171 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.QualifiedName;
+import net.sf.hajdbc.SynchronizationListener;
+import net.sf.hajdbc.SynchronizationProgress;
+import net.sf.hajdbc.TableProperties;
+import net.sf.hajdbc.state.DatabaseEvent;
+
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class SynchronizationMonitorTest
+{
+	private final DatabaseEvent event = new DatabaseEvent(new MockDatabase("target"));
+
+	@Test
+	public void progress()
+	{
+		SynchronizationMonitor monitor = new SynchronizationMonitor(this.event);
+		TableProperties table1 = table("table1");
+		TableProperties table2 = table("table2");
+		
+		monitor.estimate(table1, 10);
+		monitor.estimate(table2, 2);
+		
+		SynchronizationMonitor.TableMonitor monitor1 = monitor.getTable(table1);
+		SynchronizationMonitor.TableMonitor monitor2 = monitor.getTable(table2);
+		
+		assertSame(monitor1, monitor.getTable(table1));
+		
+		monitor1.start();
+		for (int i = 0; i < 3; ++i)
+		{
+			monitor1.scanned();
+		}
+		monitor1.inserted();
+		monitor1.inserted();
+		monitor1.written(100);
+		
+		monitor2.start();
+		for (int i = 0; i < 3; ++i)
+		{
+			monitor2.scanned();
+		}
+		monitor2.updated();
+		monitor2.deleted();
+		monitor2.written(50);
+		
+		assertEquals(6, monitor.getScannedRows());
+		assertEquals(2, monitor.getInsertedRows());
+		assertEquals(1, monitor.getUpdatedRows());
+		assertEquals(1, monitor.getDeletedRows());
+		assertEquals(150, monitor.getBytes());
+		// A table that scanned more rows than estimated counts its scanned rows
+		assertEquals(13, monitor.getEstimatedRows());
+		
+		monitor.complete(table2);
+		
+		assertFalse(monitor1.isComplete());
+		assertTrue(monitor2.isComplete());
+		
+		monitor.complete(table1);
+		
+		// The estimate of a complete table is its scanned rows
+		assertEquals(6, monitor.getEstimatedRows());
+		assertEquals(0, monitor.getEstimatedRemainingTime());
+		
+		Map<String, SynchronizationProgress.Table> tables = monitor.getTables();
+		
+		assertEquals(Arrays.asList("table1", "table2"), Arrays.asList(tables.keySet().toArray()));
+		assertSame(monitor1, tables.get("table1"));
+		assertEquals(monitor1.toString(), monitor.getTableProgress().get("table1"));
+		assertTrue(monitor1.toString(), monitor1.toString().contains("complete=true"));
+	}
+
+	@Test
+	public void rate()
+	{
+		assertEquals(5.0, SynchronizationMonitor.rate(10, 2000000000L), 0.0);
+		assertEquals(0.0, SynchronizationMonitor.rate(10, 0), 0.0);
+		
+		SynchronizationMonitor monitor = new SynchronizationMonitor(this.event);
+		TableProperties table = table("table");
+		SynchronizationMonitor.TableMonitor tableMonitor = monitor.getTable(table);
+		
+		monitor.estimate(table, 10);
+		
+		// Nothing scanned yet, so the remaining time is unknown
+		assertEquals(0.0, tableMonitor.getRowsPerSecond(), 0.0);
+		assertEquals(-1, monitor.getEstimatedRemainingTime());
+		
+		tableMonitor.scanned();
+		
+		// Not yet started
+		assertEquals(0.0, tableMonitor.getRowsPerSecond(), 0.0);
+		
+		tableMonitor.start();
+		
+		assertTrue(tableMonitor.getRowsPerSecond() > 0);
+		assertTrue(monitor.getRowsPerSecond() > 0);
+		assertTrue(monitor.getEstimatedRemainingTime() >= 0);
+		
+		monitor.complete(table);
+		
+		// The rate of a complete table no longer changes
+		double rate = tableMonitor.getRowsPerSecond();
+		
+		tableMonitor.scanned();
+		
+		assertEquals(2 * rate, tableMonitor.getRowsPerSecond(), rate * 1e-9);
+	}
+
+	@Test
+	public void listeners()
+	{
+		SynchronizationListener failing = mock(SynchronizationListener.class);
+		SynchronizationListener listener = mock(SynchronizationListener.class);
+		SynchronizationMonitor monitor = new SynchronizationMonitor(this.event, Arrays.asList(failing, listener));
+		TableProperties table = table("table");
+		
+		doThrow(new IllegalStateException()).when(failing).synchronizationProgress(this.event, monitor);
+		
+		monitor.complete(table);
+		
+		verify(failing).synchronizationProgress(this.event, monitor);
+		// A failing listener does not prevent the notification of subsequent listeners
+		verify(listener).synchronizationProgress(this.event, monitor);
+		assertTrue(monitor.getTable(table).isComplete());
+		
+		monitor.complete(table);
+		
+		verify(listener, times(2)).synchronizationProgress(this.event, monitor);
+	}
+
+	private static TableProperties table(String name)
+	{
+		TableProperties table = mock(TableProperties.class);
+		QualifiedName qualifiedName = mock(QualifiedName.class);
+		
+		when(table.getName()).thenReturn(qualifiedName);
+		when(qualifiedName.getDMLName()).thenReturn(name);
+		
+		return table;
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.util.concurrent;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import net.sf.hajdbc.ExceptionFactory;
+import net.sf.hajdbc.sql.SQLExceptionFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class CompletionStagesTest
+{
+	private final ExceptionFactory<SQLException> factory = new SQLExceptionFactory();
+
+	@Test
+	public void join() throws SQLException
+	{
+		Assert.assertEquals("result", CompletionStages.join(CompletableFuture.completedFuture("result"), this.factory));
+	}
+
+	@Test
+	public void joinFailed()
+	{
+		SQLException expected = new SQLException("failed");
+		
+		try
+		{
+			CompletionStages.join(CompletionStages.<String>failed(expected), this.factory);
+			Assert.fail();
+		}
+		catch (SQLException e)
+		{
+			Assert.assertSame(expected, e);
+		}
+	}
+
+	@Test
+	public void joinFailedAsync()
+	{
+		SQLException expected = new SQLException("failed");
+		CompletableFuture<String> future = CompletableFuture.supplyAsync(() -> {
+			throw new CompletionException(expected);
+		});
+		
+		try
+		{
+			CompletionStages.join(future.thenApply(value -> value + value), this.factory);
+			Assert.fail();
+		}
+		catch (SQLException e)
+		{
+			Assert.assertSame(expected, e);
+		}
+	}
+
+	@Test
+	public void unwrap()
+	{
+		Exception expected = new Exception();
+		
+		Assert.assertSame(expected, CompletionStages.unwrap(new CompletionException(new CompletionException(expected))));
+		Assert.assertSame(expected, CompletionStages.unwrap(expected));
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.util.reflect;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+
+import net.sf.hajdbc.sql.SQLExceptionFactory;
+
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class MethodsTest
+{
+	private final SQLExceptionFactory factory = new SQLExceptionFactory();
+	private final Method method = Methods.getMethod(Target.class, "invoke", Throwable.class);
+
+	@Test
+	public void result() throws SQLException
+	{
+		Object result = Methods.invoke(this.method, this.factory, new ThrowingTarget(), (Object) null);
+
+		assertEquals("result", result);
+	}
+
+	@Test
+	public void checkedException()
+	{
+		SQLException exception = new SQLException();
+		try
+		{
+			Methods.invoke(this.method, this.factory, new ThrowingTarget(), exception);
+			fail();
+		}
+		catch (SQLException e)
+		{
+			assertSame(exception, e);
+		}
+
+		IOException cause = new IOException();
+		try
+		{
+			Methods.invoke(this.method, this.factory, new ThrowingTarget(), cause);
+			fail();
+		}
+		catch (SQLException e)
+		{
+			assertSame(cause, e.getCause());
+		}
+	}
+
+	@Test
+	public void runtimeException()
+	{
+		IllegalStateException exception = new IllegalStateException();
+		try
+		{
+			Methods.invoke(this.method, this.factory, new ThrowingTarget(), exception);
+			fail();
+		}
+		catch (SQLException e)
+		{
+			assertSame(exception, e.getCause());
+		}
+	}
+
+	@Test
+	public void error()
+	{
+		AbstractMethodError error = new AbstractMethodError();
+		try
+		{
+			Methods.invoke(this.method, this.factory, new ThrowingTarget(), error);
+			fail();
+		}
+		catch (SQLException e)
+		{
+			assertSame(error, e.getCause());
+		}
+	}
+
+	public interface Target
+	{
+		Object invoke(Throwable exception) throws Throwable;
+	}
+
+	public static class ThrowingTarget implements Target
+	{
+		@Override
+		public Object invoke(Throwable exception) throws Throwable
+		{
+			if (exception != null)
+			{
+				throw exception;
+			}
+			return "result";
+		}
+	}
+}
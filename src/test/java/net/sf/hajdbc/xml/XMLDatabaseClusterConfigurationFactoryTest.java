@@ -110,6 +110,7 @@ public class XMLDatabaseClusterConfigurationFactoryTest
 		assertEquals("jdbc:h2:{0}", sqlStateManagerFactory.getUrlPattern());
 		assertNull(sqlStateManagerFactory.getUser());
 		assertNull(sqlStateManagerFactory.getPassword());
+		assertTrue(sqlStateManagerFactory.isGroupCommit());
 		
 		assertEquals(LoadBalancerFactory.class, configuration.getBalancerFactory().getClass());
 		assertEquals(EagerDatabaseMetaDataCacheFactory.class, configuration.getDatabaseMetaDataCacheFactory().getClass());